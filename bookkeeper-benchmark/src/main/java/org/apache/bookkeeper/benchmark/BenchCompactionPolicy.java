@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.CostBenefitCompactionPolicy;
+import org.apache.bookkeeper.bookie.EntryLogCompactionPolicy;
+import org.apache.bookkeeper.bookie.EntryLogMetadata;
+import org.apache.bookkeeper.bookie.UsageCompactionPolicy;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulates the garbage collection and the compaction of the entry logs of a bookie, to compare the
+ * write amplification and the disk usage of the compaction policies.
+ *
+ * <p>The simulation replays a trace of ledger writes and deletions, one event per line:
+ * <pre>
+ * &lt;time millis&gt; create &lt;ledger id&gt; &lt;bytes&gt;
+ * &lt;time millis&gt; write &lt;ledger id&gt; &lt;bytes&gt;
+ * &lt;time millis&gt; delete &lt;ledger id&gt;
+ * </pre>
+ * Without a trace, it generates a workload mixing short-lived and long-lived ledgers.
+ */
+public class BenchCompactionPolicy {
+    static final Logger LOG = LoggerFactory.getLogger(BenchCompactionPolicy.class);
+
+    private static final long MB = 1024 * 1024;
+
+    private static final int EVENT_WRITE = 0;
+    private static final int EVENT_DELETE = 1;
+
+    private static class Event {
+        final long time;
+        final int type;
+        final long ledgerId;
+        final long bytes;
+
+        Event(long time, int type, long ledgerId, long bytes) {
+            this.time = time;
+            this.type = type;
+            this.ledgerId = ledgerId;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class SimulationConfig {
+        long entryLogSize;
+        long gcInterval;
+        double minorThreshold;
+        long minorInterval;
+        double majorThreshold;
+        long majorInterval;
+    }
+
+    /**
+     * Entry logs of a simulated bookie, garbage collected and compacted as by the GarbageCollectorThread.
+     */
+    private static class Simulation {
+        final SimulationConfig conf;
+        final EntryLogCompactionPolicy policy;
+
+        final Map<Long, EntryLogMetadata> entryLogs = new LinkedHashMap<>();
+        final Map<Long, Long> entryLogWriteTimes = new HashMap<>();
+        final Set<Long> deletedLedgers = new HashSet<>();
+        EntryLogMetadata currentLog;
+        long nextLogId = 0;
+
+        long userBytes = 0;
+        long compactionBytes = 0;
+        long compactedLogs = 0;
+        long lastMinorCompaction = 0;
+        long lastMajorCompaction = 0;
+
+        long diskUsageSamples = 0;
+        double diskUsageSum = 0;
+        long maxDiskUsage = 0;
+
+        Simulation(SimulationConfig conf, boolean costBenefit) {
+            this.conf = conf;
+            if (costBenefit) {
+                this.policy = new CostBenefitCompactionPolicy(logId -> entryLogWriteTimes.getOrDefault(logId, 0L));
+            } else {
+                this.policy = new UsageCompactionPolicy();
+            }
+            this.currentLog = new EntryLogMetadata(nextLogId++);
+        }
+
+        void run(List<Event> events) {
+            long nextGc = events.isEmpty() ? 0 : events.get(0).time + conf.gcInterval;
+            lastMinorCompaction = lastMajorCompaction = nextGc - conf.gcInterval;
+            for (Event event : events) {
+                while (event.time >= nextGc) {
+                    gc(nextGc);
+                    nextGc += conf.gcInterval;
+                }
+
+                if (event.type == EVENT_WRITE) {
+                    if (!deletedLedgers.contains(event.ledgerId)) {
+                        userBytes += event.bytes;
+                        write(event.ledgerId, event.bytes, event.time);
+                    }
+                } else {
+                    deletedLedgers.add(event.ledgerId);
+                }
+            }
+        }
+
+        private void write(long ledgerId, long bytes, long now) {
+            currentLog.addLedgerSize(ledgerId, bytes);
+            if (currentLog.getTotalSize() >= conf.entryLogSize) {
+                entryLogs.put(currentLog.getEntryLogId(), currentLog);
+                entryLogWriteTimes.put(currentLog.getEntryLogId(), now);
+                currentLog = new EntryLogMetadata(nextLogId++);
+            }
+        }
+
+        private void gc(long now) {
+            Iterator<EntryLogMetadata> iterator = entryLogs.values().iterator();
+            while (iterator.hasNext()) {
+                EntryLogMetadata meta = iterator.next();
+                meta.removeLedgerIf(ledgerId -> {
+                    if (deletedLedgers.contains(ledgerId)) {
+                        policy.ledgerDeleted(ledgerId, now);
+                        return true;
+                    }
+                    return false;
+                });
+                if (meta.isEmpty()) {
+                    iterator.remove();
+                    policy.entryLogRemoved(meta.getEntryLogId());
+                } else {
+                    policy.update(meta, now);
+                }
+            }
+
+            if (conf.majorInterval > 0 && now - lastMajorCompaction > conf.majorInterval) {
+                compact(conf.majorThreshold, conf.majorInterval, now);
+                lastMajorCompaction = lastMinorCompaction = now;
+            } else if (conf.minorInterval > 0 && now - lastMinorCompaction > conf.minorInterval) {
+                compact(conf.minorThreshold, conf.minorInterval, now);
+                lastMinorCompaction = now;
+            }
+
+            long diskUsage = currentLog.getTotalSize();
+            for (EntryLogMetadata meta : entryLogs.values()) {
+                diskUsage += meta.getTotalSize();
+            }
+            diskUsageSum += diskUsage;
+            diskUsageSamples++;
+            maxDiskUsage = Math.max(maxDiskUsage, diskUsage);
+        }
+
+        private void compact(double threshold, long interval, long now) {
+            List<EntryLogMetadata> candidates = new ArrayList<>();
+            for (EntryLogMetadata meta : entryLogs.values()) {
+                if (meta.getUsage() < threshold) {
+                    candidates.add(meta);
+                }
+            }
+
+            for (EntryLogMetadata meta : policy.selectLogsToCompact(candidates, now, interval)) {
+                entryLogs.remove(meta.getEntryLogId());
+                meta.getLedgersMap().forEach((ledgerId, size) -> {
+                    compactionBytes += size;
+                    write(ledgerId, size, now);
+                });
+                policy.entryLogRemoved(meta.getEntryLogId());
+                compactedLogs++;
+            }
+        }
+
+        void report(String name) {
+            LOG.info("{}: user writes {} MB, compaction writes {} MB, write amplification {}, compacted entry logs {},"
+                            + " avg disk usage {} MB, max disk usage {} MB",
+                    name, userBytes / MB, compactionBytes / MB,
+                    String.format("%.3f", userBytes == 0 ? 1.0 : (userBytes + compactionBytes) / (double) userBytes),
+                    compactedLogs, (long) (diskUsageSum / Math.max(1, diskUsageSamples) / MB), maxDiskUsage / MB);
+        }
+    }
+
+    private static List<Event> readTrace(String path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                long time = Long.parseLong(parts[0]);
+                long ledgerId = Long.parseLong(parts[2]);
+                switch (parts[1]) {
+                case "create":
+                case "write":
+                    long bytes = parts.length > 3 ? Long.parseLong(parts[3]) : 0;
+                    if (bytes > 0) {
+                        events.add(new Event(time, EVENT_WRITE, ledgerId, bytes));
+                    }
+                    break;
+                case "delete":
+                    events.add(new Event(time, EVENT_DELETE, ledgerId, 0));
+                    break;
+                default:
+                    throw new IOException("Unknown event type in trace: " + line);
+                }
+            }
+        }
+        events.sort((e1, e2) -> Long.compare(e1.time, e2.time));
+        return events;
+    }
+
+    /**
+     * Generate ledgers written in a few chunks over a few minutes, with a mix of short-lived ledgers
+     * deleted within hours and ledgers deleted after a retention period of a few days.
+     */
+    private static List<Event> generateTrace(long durationMillis, long seed) {
+        final long ledgerInterval = TimeUnit.SECONDS.toMillis(10);
+        final int chunksPerLedger = 10;
+        final long chunkInterval = TimeUnit.MINUTES.toMillis(1);
+        final long chunkSize = MB;
+        final double shortLivedRatio = 0.8;
+        final long shortLifetime = TimeUnit.HOURS.toMillis(2);
+        final long retention = TimeUnit.DAYS.toMillis(3);
+        final long retentionJitter = TimeUnit.HOURS.toMillis(12);
+
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>();
+        long ledgerId = 0;
+        for (long created = 0; created < durationMillis; created += ledgerInterval) {
+            for (int i = 0; i < chunksPerLedger; i++) {
+                events.add(new Event(created + i * chunkInterval, EVENT_WRITE, ledgerId, chunkSize));
+            }
+            long lifetime;
+            if (random.nextDouble() < shortLivedRatio) {
+                lifetime = (long) (-Math.log(1 - random.nextDouble()) * shortLifetime);
+            } else {
+                lifetime = retention + (long) (random.nextDouble() * retentionJitter);
+            }
+            long deleted = created + chunksPerLedger * chunkInterval + lifetime;
+            if (deleted < durationMillis) {
+                events.add(new Event(deleted, EVENT_DELETE, ledgerId, 0));
+            }
+            ledgerId++;
+        }
+        events.sort((e1, e2) -> Long.compare(e1.time, e2.time));
+        return events;
+    }
+
+    private static void usage(Options options) {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("BenchCompactionPolicy <options>", options);
+    }
+
+    @SuppressWarnings("deprecation")
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("trace", true, "Trace of ledger writes and deletions to replay."
+                + " If empty, a synthetic workload is generated");
+        options.addOption("duration", true, "Duration of the synthetic workload, in hours. Default 168");
+        options.addOption("seed", true, "Seed of the synthetic workload. Default 1");
+        options.addOption("entryLogSize", true, "Entry log size, in MB. Default 1024");
+        options.addOption("gcWaitTime", true, "Garbage collection interval, in seconds. Default 600");
+        options.addOption("minorCompactionThreshold", true, "Minor compaction threshold. Default 0.2");
+        options.addOption("minorCompactionInterval", true, "Minor compaction interval, in seconds. Default 3600");
+        options.addOption("majorCompactionThreshold", true, "Major compaction threshold. Default 0.8");
+        options.addOption("majorCompactionInterval", true, "Major compaction interval, in seconds. Default 86400");
+        options.addOption("help", false, "This message");
+
+        CommandLineParser parser = new PosixParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption("help")) {
+            usage(options);
+            System.exit(-1);
+        }
+
+        SimulationConfig conf = new SimulationConfig();
+        conf.entryLogSize = Long.parseLong(cmd.getOptionValue("entryLogSize", "1024")) * MB;
+        conf.gcInterval = TimeUnit.SECONDS.toMillis(Long.parseLong(cmd.getOptionValue("gcWaitTime", "600")));
+        conf.minorThreshold = Double.parseDouble(cmd.getOptionValue("minorCompactionThreshold", "0.2"));
+        conf.minorInterval = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(cmd.getOptionValue("minorCompactionInterval", "3600")));
+        conf.majorThreshold = Double.parseDouble(cmd.getOptionValue("majorCompactionThreshold", "0.8"));
+        conf.majorInterval = TimeUnit.SECONDS.toMillis(
+                Long.parseLong(cmd.getOptionValue("majorCompactionInterval", "86400")));
+
+        List<Event> events;
+        if (cmd.hasOption("trace")) {
+            events = readTrace(cmd.getOptionValue("trace"));
+        } else {
+            long duration = TimeUnit.HOURS.toMillis(Long.parseLong(cmd.getOptionValue("duration", "168")));
+            events = generateTrace(duration, Long.parseLong(cmd.getOptionValue("seed", "1")));
+        }
+        LOG.info("Replaying {} events", events.size());
+
+        Simulation usage = new Simulation(conf, false);
+        usage.run(events);
+        usage.report("Usage");
+
+        Simulation costBenefit = new Simulation(conf, true);
+        costBenefit.run(events);
+        costBenefit.report("Cost-benefit");
+    }
+}
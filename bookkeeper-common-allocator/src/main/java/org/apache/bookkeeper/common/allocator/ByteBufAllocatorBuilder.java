@@ -94,4 +94,29 @@ public interface ByteBufAllocatorBuilder {
      * <p>Default is {@link LeakDetectionPolicy#Disabled}
      */
     ByteBufAllocatorBuilder leakDetectionPolicy(LeakDetectionPolicy leakDetectionPolicy);
+
+    /**
+     * Charge all the buffers allocated by the allocator to a memory budget.
+     *
+     * <p>Subsystems can then get their own allocator, charged to a child budget, with
+     * {@link MemoryBudget#newChildAllocator(ByteBufAllocator, String, long, long)}.
+     *
+     * <p>Default is to not track the allocated memory.
+     */
+    ByteBufAllocatorBuilder memoryBudget(MemoryBudget memoryBudget);
+
+    /**
+     * Serve short lived, fixed size allocations from per-thread arenas of the given size.
+     *
+     * <p>Only the buffers explicitly allocated through {@link ThreadArenaAllocator}, and no
+     * larger than 1/8 of the chunk size, are carved out of a chunk owned by the allocating
+     * thread with a simple pointer bump, avoiding the synchronization of the shared pool.
+     * The chunk is reused as a whole once all the buffers carved out of it are released, so
+     * a single long lived buffer pins the whole chunk: callers opt in only for buffers that
+     * are released soon after the request that allocated them, e.g. serialized responses.
+     * Only Netty threads use arenas.
+     *
+     * <p>Default is 0, which disables thread arenas.
+     */
+    ByteBufAllocatorBuilder threadArenaChunkSize(int threadArenaChunkSize);
 }
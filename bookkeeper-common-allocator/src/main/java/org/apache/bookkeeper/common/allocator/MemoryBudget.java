@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator;
+
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.List;
+
+import org.apache.bookkeeper.common.allocator.impl.MemoryBudgetByteBufAllocator;
+import org.apache.bookkeeper.common.allocator.impl.MemoryBudgetImpl;
+
+/**
+ * A named amount of memory that a subsystem is allowed to allocate.
+ *
+ * <p>Budgets form a tree: the memory used by a budget is also charged to all its
+ * ancestors, so a child budget can be constrained both by its own limits and by the
+ * ones of its parents. Each budget has:
+ * <ul>
+ * <li>a soft limit: when crossed, the registered {@link MemoryBudgetListener}s are
+ * notified so that the subsystem can apply backpressure, and notified again once the
+ * usage is back under the limit.</li>
+ * <li>a hard limit: an allocation that would cross it fails with a
+ * {@link MemoryBudgetExceededError}.</li>
+ * </ul>
+ *
+ * <p>A limit that is less than or equal to 0 means no limit.
+ */
+public interface MemoryBudget {
+
+    /**
+     * Creates a new root {@link MemoryBudget}.
+     */
+    static MemoryBudget create(String name, long softLimitBytes, long hardLimitBytes) {
+        return new MemoryBudgetImpl(name, null, softLimitBytes, hardLimitBytes);
+    }
+
+    /**
+     * Creates an allocator for a subsystem, charging its allocations to a new child of the
+     * budget of <i>allocator</i>.
+     *
+     * <p>If <i>allocator</i> is not bound to a budget, it is returned as is.
+     */
+    static ByteBufAllocator newChildAllocator(ByteBufAllocator allocator, String name,
+                                              long softLimitBytes, long hardLimitBytes) {
+        if (!(allocator instanceof MemoryBudgetByteBufAllocator)) {
+            return allocator;
+        }
+        MemoryBudgetByteBufAllocator parentAllocator = (MemoryBudgetByteBufAllocator) allocator;
+        return parentAllocator.getBudget().newChild(name, softLimitBytes, hardLimitBytes)
+                .newAllocator(parentAllocator.getDelegate());
+    }
+
+    /**
+     * @return the budget that <i>allocator</i> charges its allocations to, or null if it is
+     *         not bound to a budget
+     */
+    static MemoryBudget of(ByteBufAllocator allocator) {
+        if (allocator instanceof MemoryBudgetByteBufAllocator) {
+            return ((MemoryBudgetByteBufAllocator) allocator).getBudget();
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the budget
+     */
+    String getName();
+
+    /**
+     * @return the parent budget, or null for a root budget
+     */
+    MemoryBudget getParent();
+
+    /**
+     * @return the budgets created as children of this one
+     */
+    List<MemoryBudget> getChildren();
+
+    /**
+     * @return the number of bytes currently charged to this budget, including its children
+     */
+    long getUsedBytes();
+
+    /**
+     * @return the soft limit in bytes, or {@link Long#MAX_VALUE} if there is no soft limit
+     */
+    long getSoftLimitBytes();
+
+    /**
+     * @return the hard limit in bytes, or {@link Long#MAX_VALUE} if there is no hard limit
+     */
+    long getHardLimitBytes();
+
+    /**
+     * @return whether the usage is currently above the soft limit
+     */
+    boolean isSoftLimitExceeded();
+
+    /**
+     * Creates a child budget.
+     */
+    MemoryBudget newChild(String name, long softLimitBytes, long hardLimitBytes);
+
+    /**
+     * Add a listener that is triggered whenever the usage crosses the soft limit.
+     */
+    void addListener(MemoryBudgetListener listener);
+
+    /**
+     * Creates an allocator that forwards the allocation requests to <i>allocator</i> and
+     * charges the allocated buffers to this budget until they are released.
+     */
+    ByteBufAllocator newAllocator(ByteBufAllocator allocator);
+}
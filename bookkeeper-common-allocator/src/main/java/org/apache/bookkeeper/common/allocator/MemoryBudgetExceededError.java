@@ -0,0 +1,34 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator;
+
+/**
+ * Error thrown when an allocation would make a {@link MemoryBudget} go above its hard limit.
+ *
+ * <p>It is an {@link OutOfMemoryError} so that callers already handling allocation
+ * failures treat it the same way, though it only means that a single subsystem is out of
+ * its share of memory.
+ */
+public class MemoryBudgetExceededError extends OutOfMemoryError {
+
+    private static final long serialVersionUID = 1L;
+
+    public MemoryBudgetExceededError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator;
+
+/**
+ * Listener notified when the usage of a {@link MemoryBudget} crosses its soft limit.
+ *
+ * <p>Callbacks are invoked synchronously by the thread doing the allocation or the
+ * release that crossed the limit, so they should be quick and must not allocate from
+ * the same budget. They are invoked one at a time, in the order of the transitions,
+ * and the last one always matches the current usage.
+ */
+public interface MemoryBudgetListener {
+
+    /**
+     * The usage of the budget went above its soft limit.
+     */
+    void onSoftLimitExceeded(MemoryBudget budget);
+
+    /**
+     * The usage of the budget went back under its soft limit.
+     */
+    void onSoftLimitRecovered(MemoryBudget budget);
+}
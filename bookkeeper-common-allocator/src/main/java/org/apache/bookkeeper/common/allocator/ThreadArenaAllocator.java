@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * An allocator able to serve short lived, fixed size buffers from per-thread arenas.
+ *
+ * <p>A buffer carved out of an arena keeps its whole chunk alive until it is released, so
+ * only callers that release the buffer soon after the allocation, such as the encoders of
+ * the requests and responses, should use it. Any other allocation goes to the regular pool.
+ *
+ * @see ByteBufAllocatorBuilder#threadArenaChunkSize(int)
+ */
+public interface ThreadArenaAllocator {
+
+    /**
+     * Allocate a short lived heap buffer with a fixed capacity.
+     */
+    ByteBuf shortLivedHeapBuffer(int capacity);
+
+    /**
+     * Allocate a short lived direct buffer with a fixed capacity.
+     */
+    ByteBuf shortLivedDirectBuffer(int capacity);
+
+    /**
+     * Allocate a short lived heap buffer from the thread arenas of the allocator if it has
+     * any, or a regular fixed size heap buffer otherwise.
+     */
+    static ByteBuf shortLivedHeapBuffer(ByteBufAllocator allocator, int capacity) {
+        if (allocator instanceof ThreadArenaAllocator) {
+            return ((ThreadArenaAllocator) allocator).shortLivedHeapBuffer(capacity);
+        }
+        return allocator.heapBuffer(capacity, capacity);
+    }
+
+    /**
+     * Allocate a short lived direct buffer from the thread arenas of the allocator if it has
+     * any, or a regular fixed size direct buffer otherwise.
+     */
+    static ByteBuf shortLivedDirectBuffer(ByteBufAllocator allocator, int capacity) {
+        if (allocator instanceof ThreadArenaAllocator) {
+            return ((ThreadArenaAllocator) allocator).shortLivedDirectBuffer(capacity);
+        }
+        return allocator.directBuffer(capacity, capacity);
+    }
+}
@@ -23,6 +23,7 @@ import java.util.function.Consumer;
 
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.common.allocator.LeakDetectionPolicy;
+import org.apache.bookkeeper.common.allocator.MemoryBudget;
 import org.apache.bookkeeper.common.allocator.OutOfMemoryPolicy;
 import org.apache.bookkeeper.common.allocator.PoolingPolicy;
 
@@ -38,11 +39,14 @@ public class ByteBufAllocatorBuilderImpl implements ByteBufAllocatorBuilder {
     OutOfMemoryPolicy outOfMemoryPolicy = OutOfMemoryPolicy.FallbackToHeap;
     Consumer<OutOfMemoryError> outOfMemoryListener = null;
     LeakDetectionPolicy leakDetectionPolicy = LeakDetectionPolicy.Disabled;
+    MemoryBudget memoryBudget = null;
+    int threadArenaChunkSize = 0;
 
     @Override
     public ByteBufAllocator build() {
-        return new ByteBufAllocatorImpl(pooledAllocator, unpooledAllocator, poolingPolicy, poolingConcurrency,
-                outOfMemoryPolicy, outOfMemoryListener, leakDetectionPolicy);
+        ByteBufAllocator allocator = new ByteBufAllocatorImpl(pooledAllocator, unpooledAllocator, poolingPolicy,
+                poolingConcurrency, outOfMemoryPolicy, outOfMemoryListener, leakDetectionPolicy, threadArenaChunkSize);
+        return memoryBudget != null ? memoryBudget.newAllocator(allocator) : allocator;
     }
 
     @Override
@@ -87,4 +91,16 @@ public class ByteBufAllocatorBuilderImpl implements ByteBufAllocatorBuilder {
         return this;
     }
 
+    @Override
+    public ByteBufAllocatorBuilder memoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    @Override
+    public ByteBufAllocatorBuilder threadArenaChunkSize(int threadArenaChunkSize) {
+        this.threadArenaChunkSize = threadArenaChunkSize;
+        return this;
+    }
+
 }
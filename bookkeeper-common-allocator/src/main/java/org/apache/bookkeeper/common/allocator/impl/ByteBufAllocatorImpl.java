@@ -24,18 +24,22 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetector.Level;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import java.util.function.Consumer;
 
 import org.apache.bookkeeper.common.allocator.LeakDetectionPolicy;
 import org.apache.bookkeeper.common.allocator.OutOfMemoryPolicy;
 import org.apache.bookkeeper.common.allocator.PoolingPolicy;
+import org.apache.bookkeeper.common.allocator.ThreadArenaAllocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of {@link ByteBufAllocator}.
  */
-public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements ByteBufAllocator {
+public class ByteBufAllocatorImpl extends AbstractByteBufAllocator
+        implements ByteBufAllocator, ThreadArenaAllocator {
 
     private static final Logger log = LoggerFactory.getLogger(ByteBufAllocatorImpl.class);
 
@@ -43,16 +47,22 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
     private static final int DEFAULT_INITIAL_CAPACITY = 256;
     private static final int DEFAULT_MAX_CAPACITY = Integer.MAX_VALUE;
 
+    // Only allocations up to this fraction of the arena chunk size are served by the thread arenas
+    private static final int THREAD_ARENA_MAX_ALLOCATION_RATIO = 8;
+
     private final ByteBufAllocator pooledAllocator;
     private final ByteBufAllocator unpooledAllocator;
     private final PoolingPolicy poolingPolicy;
     private final OutOfMemoryPolicy outOfMemoryPolicy;
     private final Consumer<OutOfMemoryError> outOfMemoryListener;
+    private final int threadArenaMaxAllocationSize;
+    private final FastThreadLocal<ThreadArena> heapThreadArenas;
+    private final FastThreadLocal<ThreadArena> directThreadArenas;
 
     ByteBufAllocatorImpl(ByteBufAllocator pooledAllocator, ByteBufAllocator unpooledAllocator,
             PoolingPolicy poolingPolicy, int poolingConcurrency, OutOfMemoryPolicy outOfMemoryPolicy,
             Consumer<OutOfMemoryError> outOfMemoryListener,
-            LeakDetectionPolicy leakDetectionPolicy) {
+            LeakDetectionPolicy leakDetectionPolicy, int threadArenaChunkSize) {
         super(poolingPolicy == PoolingPolicy.PooledDirect /* preferDirect */);
 
         this.poolingPolicy = poolingPolicy;
@@ -92,6 +102,18 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
 
         this.unpooledAllocator = (unpooledAllocator != null) ? unpooledAllocator : UnpooledByteBufAllocator.DEFAULT;
 
+        if (threadArenaChunkSize > 0) {
+            ByteBufAllocator chunkAllocator = (this.pooledAllocator != null) ? this.pooledAllocator
+                    : this.unpooledAllocator;
+            this.threadArenaMaxAllocationSize = threadArenaChunkSize / THREAD_ARENA_MAX_ALLOCATION_RATIO;
+            this.heapThreadArenas = newThreadArenas(chunkAllocator, false, threadArenaChunkSize);
+            this.directThreadArenas = newThreadArenas(chunkAllocator, true, threadArenaChunkSize);
+        } else {
+            this.threadArenaMaxAllocationSize = 0;
+            this.heapThreadArenas = null;
+            this.directThreadArenas = null;
+        }
+
         // The setting is static in Netty, so it will actually affect all
         // allocators
         switch (leakDetectionPolicy) {
@@ -119,6 +141,54 @@ public class ByteBufAllocatorImpl extends AbstractByteBufAllocator implements By
         }
     }
 
+    private static FastThreadLocal<ThreadArena> newThreadArenas(ByteBufAllocator chunkAllocator, boolean direct,
+            int chunkSize) {
+        return new FastThreadLocal<ThreadArena>() {
+            @Override
+            protected ThreadArena initialValue() {
+                return new ThreadArena(chunkAllocator, direct, chunkSize);
+            }
+
+            @Override
+            protected void onRemoval(ThreadArena arena) {
+                arena.release();
+            }
+        };
+    }
+
+    /**
+     * Allocate a short lived buffer from the arena of the current thread.
+     *
+     * <p>Only Netty threads (event loops and executors created with Netty thread factories) use
+     * arenas, since they release their thread locals when they terminate.
+     *
+     * @return the buffer, or null if it should be allocated from the regular pool
+     */
+    private ByteBuf allocateFromThreadArena(FastThreadLocal<ThreadArena> arenas, int capacity) {
+        if (arenas == null || capacity > threadArenaMaxAllocationSize
+                || !(Thread.currentThread() instanceof FastThreadLocalThread)) {
+            return null;
+        }
+        try {
+            return arenas.get().allocate(capacity);
+        } catch (OutOfMemoryError e) {
+            // let the regular allocation apply the out of memory policy
+            return null;
+        }
+    }
+
+    @Override
+    public ByteBuf shortLivedHeapBuffer(int capacity) {
+        ByteBuf arenaBuf = allocateFromThreadArena(heapThreadArenas, capacity);
+        return arenaBuf != null ? arenaBuf : heapBuffer(capacity, capacity);
+    }
+
+    @Override
+    public ByteBuf shortLivedDirectBuffer(int capacity) {
+        ByteBuf arenaBuf = allocateFromThreadArena(directThreadArenas, capacity);
+        return arenaBuf != null ? arenaBuf : directBuffer(capacity, capacity);
+    }
+
     @Override
     public ByteBuf buffer() {
         return buffer(DEFAULT_INITIAL_CAPACITY);
@@ -0,0 +1,336 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import io.netty.buffer.AbstractReferenceCountedByteBuf;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * A buffer charged to a memory budget.
+ *
+ * <p>The memory is provided by a buffer obtained from the underlying allocator, and this
+ * buffer keeps its own indexes and reference count. Derived buffers (slices and
+ * duplicates) share that reference count, so the memory is given back to the budget
+ * whichever buffer releases the last reference. Growing the buffer is charged too.
+ */
+final class MemoryBudgetByteBuf extends AbstractReferenceCountedByteBuf {
+
+    private final MemoryBudgetByteBufAllocator alloc;
+    private final MemoryBudgetImpl budget;
+    private final ByteBuf buf;
+    private long chargedBytes;
+
+    MemoryBudgetByteBuf(MemoryBudgetByteBufAllocator alloc, MemoryBudgetImpl budget, ByteBuf buf,
+                        long chargedBytes) {
+        super(buf.maxCapacity());
+        this.alloc = alloc;
+        this.budget = budget;
+        this.buf = buf;
+        this.chargedBytes = chargedBytes;
+    }
+
+    @Override
+    protected void deallocate() {
+        buf.release();
+        budget.release(chargedBytes);
+        chargedBytes = 0;
+    }
+
+    @Override
+    public int capacity() {
+        return buf.capacity();
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        checkNewCapacity(newCapacity);
+        if (newCapacity > chargedBytes) {
+            long delta = newCapacity - chargedBytes;
+            budget.reserve(delta);
+            try {
+                buf.capacity(newCapacity);
+            } catch (Throwable t) {
+                budget.release(delta);
+                throw t;
+            }
+            chargedBytes = newCapacity;
+        } else {
+            buf.capacity(newCapacity);
+        }
+        trimIndicesToCapacity(newCapacity);
+        return this;
+    }
+
+    @Override
+    public ByteBufAllocator alloc() {
+        return alloc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ByteOrder order() {
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    @Override
+    public ByteBuf unwrap() {
+        return null;
+    }
+
+    @Override
+    public boolean isDirect() {
+        return buf.isDirect();
+    }
+
+    @Override
+    public boolean isContiguous() {
+        return buf.isContiguous();
+    }
+
+    @Override
+    public boolean hasArray() {
+        return buf.hasArray();
+    }
+
+    @Override
+    public byte[] array() {
+        return buf.array();
+    }
+
+    @Override
+    public int arrayOffset() {
+        return buf.arrayOffset();
+    }
+
+    @Override
+    public boolean hasMemoryAddress() {
+        return buf.hasMemoryAddress();
+    }
+
+    @Override
+    public long memoryAddress() {
+        return buf.memoryAddress();
+    }
+
+    @Override
+    public int nioBufferCount() {
+        return buf.nioBufferCount();
+    }
+
+    @Override
+    public ByteBuffer nioBuffer(int index, int length) {
+        return buf.nioBuffer(index, length);
+    }
+
+    @Override
+    public ByteBuffer internalNioBuffer(int index, int length) {
+        return buf.internalNioBuffer(index, length);
+    }
+
+    @Override
+    public ByteBuffer[] nioBuffers(int index, int length) {
+        return buf.nioBuffers(index, length);
+    }
+
+    @Override
+    public ByteBuf copy(int index, int length) {
+        checkIndex(index, length);
+        ByteBuf copy = isDirect() ? alloc.directBuffer(length, maxCapacity())
+                : alloc.heapBuffer(length, maxCapacity());
+        return copy.writeBytes(this, index, length);
+    }
+
+    @Override
+    protected byte _getByte(int index) {
+        return buf.getByte(index);
+    }
+
+    @Override
+    protected short _getShort(int index) {
+        return buf.getShort(index);
+    }
+
+    @Override
+    protected short _getShortLE(int index) {
+        return buf.getShortLE(index);
+    }
+
+    @Override
+    protected int _getUnsignedMedium(int index) {
+        return buf.getUnsignedMedium(index);
+    }
+
+    @Override
+    protected int _getUnsignedMediumLE(int index) {
+        return buf.getUnsignedMediumLE(index);
+    }
+
+    @Override
+    protected int _getInt(int index) {
+        return buf.getInt(index);
+    }
+
+    @Override
+    protected int _getIntLE(int index) {
+        return buf.getIntLE(index);
+    }
+
+    @Override
+    protected long _getLong(int index) {
+        return buf.getLong(index);
+    }
+
+    @Override
+    protected long _getLongLE(int index) {
+        return buf.getLongLE(index);
+    }
+
+    @Override
+    protected void _setByte(int index, int value) {
+        buf.setByte(index, value);
+    }
+
+    @Override
+    protected void _setShort(int index, int value) {
+        buf.setShort(index, value);
+    }
+
+    @Override
+    protected void _setShortLE(int index, int value) {
+        buf.setShortLE(index, value);
+    }
+
+    @Override
+    protected void _setMedium(int index, int value) {
+        buf.setMedium(index, value);
+    }
+
+    @Override
+    protected void _setMediumLE(int index, int value) {
+        buf.setMediumLE(index, value);
+    }
+
+    @Override
+    protected void _setInt(int index, int value) {
+        buf.setInt(index, value);
+    }
+
+    @Override
+    protected void _setIntLE(int index, int value) {
+        buf.setIntLE(index, value);
+    }
+
+    @Override
+    protected void _setLong(int index, long value) {
+        buf.setLong(index, value);
+    }
+
+    @Override
+    protected void _setLongLE(int index, long value) {
+        buf.setLongLE(index, value);
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buf.getBytes(index, dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        buf.getBytes(index, dst, dstIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, ByteBuffer dst) {
+        checkIndex(index, dst.remaining());
+        buf.getBytes(index, dst);
+        return this;
+    }
+
+    @Override
+    public ByteBuf getBytes(int index, OutputStream out, int length) throws IOException {
+        checkIndex(index, length);
+        buf.getBytes(index, out, length);
+        return this;
+    }
+
+    @Override
+    public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+        checkIndex(index, length);
+        return buf.getBytes(index, out, length);
+    }
+
+    @Override
+    public int getBytes(int index, FileChannel out, long position, int length) throws IOException {
+        checkIndex(index, length);
+        return buf.getBytes(index, out, position, length);
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buf.setBytes(index, src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        buf.setBytes(index, src, srcIndex, length);
+        return this;
+    }
+
+    @Override
+    public ByteBuf setBytes(int index, ByteBuffer src) {
+        checkIndex(index, src.remaining());
+        buf.setBytes(index, src);
+        return this;
+    }
+
+    @Override
+    public int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        return buf.setBytes(index, in, length);
+    }
+
+    @Override
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        return buf.setBytes(index, in, length);
+    }
+
+    @Override
+    public int setBytes(int index, FileChannel in, long position, int length) throws IOException {
+        checkIndex(index, length);
+        return buf.setBytes(index, in, position, length);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
+import org.apache.bookkeeper.common.allocator.MemoryBudget;
+import org.apache.bookkeeper.common.allocator.ThreadArenaAllocator;
+
+/**
+ * An allocator that charges the buffers it hands out to a {@link MemoryBudget}.
+ *
+ * <p>The allocation itself is forwarded to the delegate allocator. Buffers are charged
+ * for their capacity, and the charge is given back when the buffer, or any buffer
+ * derived from it, releases the last reference. Composite buffers are not charged
+ * themselves, only the components allocated from this allocator are.
+ */
+public class MemoryBudgetByteBufAllocator implements ByteBufAllocator, ThreadArenaAllocator {
+
+    // Same as AbstractByteBufAllocator, but copied here since it's not visible
+    private static final int DEFAULT_INITIAL_CAPACITY = 256;
+    private static final int DEFAULT_MAX_CAPACITY = Integer.MAX_VALUE;
+
+    private final MemoryBudgetImpl budget;
+    private final ByteBufAllocator delegate;
+
+    MemoryBudgetByteBufAllocator(MemoryBudgetImpl budget, ByteBufAllocator delegate) {
+        this.budget = budget;
+        this.delegate = delegate;
+    }
+
+    public MemoryBudget getBudget() {
+        return budget;
+    }
+
+    public ByteBufAllocator getDelegate() {
+        return delegate;
+    }
+
+    private ByteBuf charge(int initialCapacity, ByteBufFactory factory) {
+        budget.reserve(initialCapacity);
+        ByteBuf buf;
+        try {
+            buf = factory.newBuffer();
+        } catch (Throwable t) {
+            budget.release(initialCapacity);
+            throw t;
+        }
+        return new MemoryBudgetByteBuf(this, budget, buf, initialCapacity);
+    }
+
+    private interface ByteBufFactory {
+        ByteBuf newBuffer();
+    }
+
+    @Override
+    public ByteBuf buffer() {
+        return buffer(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity) {
+        return buffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf buffer(int initialCapacity, int maxCapacity) {
+        return charge(initialCapacity, () -> delegate.buffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf ioBuffer() {
+        return ioBuffer(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity) {
+        return ioBuffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf ioBuffer(int initialCapacity, int maxCapacity) {
+        return charge(initialCapacity, () -> delegate.ioBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf heapBuffer() {
+        return heapBuffer(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity) {
+        return heapBuffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf heapBuffer(int initialCapacity, int maxCapacity) {
+        return charge(initialCapacity, () -> delegate.heapBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf directBuffer() {
+        return directBuffer(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity) {
+        return directBuffer(initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    @Override
+    public ByteBuf directBuffer(int initialCapacity, int maxCapacity) {
+        return charge(initialCapacity, () -> delegate.directBuffer(initialCapacity, maxCapacity));
+    }
+
+    @Override
+    public ByteBuf shortLivedHeapBuffer(int capacity) {
+        return charge(capacity, () -> ThreadArenaAllocator.shortLivedHeapBuffer(delegate, capacity));
+    }
+
+    @Override
+    public ByteBuf shortLivedDirectBuffer(int capacity) {
+        return charge(capacity, () -> ThreadArenaAllocator.shortLivedDirectBuffer(delegate, capacity));
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer() {
+        return delegate.compositeBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeBuffer(int maxNumComponents) {
+        return delegate.compositeBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer() {
+        return delegate.compositeHeapBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeHeapBuffer(int maxNumComponents) {
+        return delegate.compositeHeapBuffer(maxNumComponents);
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer() {
+        return delegate.compositeDirectBuffer();
+    }
+
+    @Override
+    public CompositeByteBuf compositeDirectBuffer(int maxNumComponents) {
+        return delegate.compositeDirectBuffer(maxNumComponents);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return delegate.isDirectBufferPooled();
+    }
+
+    @Override
+    public int calculateNewCapacity(int minNewCapacity, int maxCapacity) {
+        return delegate.calculateNewCapacity(minNewCapacity, maxCapacity);
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.bookkeeper.common.allocator.MemoryBudget;
+import org.apache.bookkeeper.common.allocator.MemoryBudgetExceededError;
+import org.apache.bookkeeper.common.allocator.MemoryBudgetListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link MemoryBudget}.
+ */
+public class MemoryBudgetImpl implements MemoryBudget {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryBudgetImpl.class);
+
+    private final String name;
+    private final MemoryBudgetImpl parent;
+    private final long softLimitBytes;
+    private final long hardLimitBytes;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    // Only changed under the lock of the budget, which also orders the notifications
+    private volatile boolean softLimitExceeded = false;
+
+    private final List<MemoryBudget> children = new CopyOnWriteArrayList<>();
+    private final List<MemoryBudgetListener> listeners = new CopyOnWriteArrayList<>();
+
+    public MemoryBudgetImpl(String name, MemoryBudgetImpl parent, long softLimitBytes, long hardLimitBytes) {
+        this.name = name;
+        this.parent = parent;
+        this.softLimitBytes = softLimitBytes > 0 ? softLimitBytes : Long.MAX_VALUE;
+        this.hardLimitBytes = hardLimitBytes > 0 ? hardLimitBytes : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public MemoryBudget getParent() {
+        return parent;
+    }
+
+    @Override
+    public List<MemoryBudget> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    @Override
+    public long getSoftLimitBytes() {
+        return softLimitBytes;
+    }
+
+    @Override
+    public long getHardLimitBytes() {
+        return hardLimitBytes;
+    }
+
+    @Override
+    public boolean isSoftLimitExceeded() {
+        return softLimitExceeded;
+    }
+
+    @Override
+    public MemoryBudget newChild(String name, long softLimitBytes, long hardLimitBytes) {
+        MemoryBudgetImpl child = new MemoryBudgetImpl(name, this, softLimitBytes, hardLimitBytes);
+        children.add(child);
+        return child;
+    }
+
+    @Override
+    public void addListener(MemoryBudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public ByteBufAllocator newAllocator(ByteBufAllocator allocator) {
+        return new MemoryBudgetByteBufAllocator(this, allocator);
+    }
+
+    /**
+     * Charge an allocation to this budget and all its ancestors.
+     *
+     * @throws MemoryBudgetExceededError if that would make any of them go above its hard limit,
+     *         in which case nothing is charged
+     */
+    void reserve(long bytes) {
+        for (MemoryBudgetImpl budget = this; budget != null; budget = budget.parent) {
+            if (!budget.tryReserve(bytes)) {
+                // undo the reservations already done on the descendants
+                for (MemoryBudgetImpl undo = this; undo != budget; undo = undo.parent) {
+                    undo.doRelease(bytes);
+                }
+                throw new MemoryBudgetExceededError("Unable to allocate " + bytes + " bytes: memory budget '"
+                        + budget.name + "' would exceed its hard limit of " + budget.hardLimitBytes
+                        + " bytes (used: " + budget.usedBytes.get() + " bytes)");
+            }
+        }
+    }
+
+    /**
+     * Give back bytes previously charged with {@link #reserve(long)}.
+     */
+    void release(long bytes) {
+        for (MemoryBudgetImpl budget = this; budget != null; budget = budget.parent) {
+            budget.doRelease(bytes);
+        }
+    }
+
+    private boolean tryReserve(long bytes) {
+        long used;
+        long newUsed;
+        do {
+            used = usedBytes.get();
+            newUsed = used + bytes;
+            if (newUsed > hardLimitBytes) {
+                return false;
+            }
+        } while (!usedBytes.compareAndSet(used, newUsed));
+
+        if (newUsed > softLimitBytes && !softLimitExceeded) {
+            updateSoftLimitState();
+        }
+        return true;
+    }
+
+    private void doRelease(long bytes) {
+        long newUsed = usedBytes.addAndGet(-bytes);
+        if (newUsed <= softLimitBytes && softLimitExceeded) {
+            updateSoftLimitState();
+        }
+    }
+
+    /**
+     * Bring the soft limit state in line with the current usage, notifying the listeners of
+     * every transition.
+     *
+     * <p>The usage is read again after each transition, since a concurrent reservation or
+     * release may have seen the previous state and skipped the update. The state therefore
+     * always ends up matching the usage, and the listeners see the transitions in order.
+     */
+    private synchronized void updateSoftLimitState() {
+        while (true) {
+            long used = usedBytes.get();
+            boolean exceeded = used > softLimitBytes;
+            if (exceeded == softLimitExceeded) {
+                return;
+            }
+            softLimitExceeded = exceeded;
+            if (exceeded) {
+                log.warn("Memory budget '{}' is above its soft limit of {} bytes (used: {} bytes)",
+                        name, softLimitBytes, used);
+                for (MemoryBudgetListener listener : listeners) {
+                    listener.onSoftLimitExceeded(this);
+                }
+            } else {
+                log.info("Memory budget '{}' is back under its soft limit of {} bytes (used: {} bytes)",
+                        name, softLimitBytes, used);
+                for (MemoryBudgetListener listener : listeners) {
+                    listener.onSoftLimitRecovered(this);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget(name=" + name + ", used=" + usedBytes.get() + ", softLimit=" + softLimitBytes
+                + ", hardLimit=" + hardLimitBytes + ")";
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.allocator.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * A bump pointer arena owned by a single thread, handing out fixed size buffers carved
+ * out of a larger chunk.
+ *
+ * <p>Each buffer is a retained slice of the chunk, so the chunk reference count tells
+ * whether any buffer handed out is still in use, wherever it has been released. Once all
+ * of them are released the whole chunk is reused from the start, which is what happens
+ * when the request that allocated them completes. If some buffers outlive the request,
+ * e.g. because a response is still queued on a channel, a new chunk is taken from the
+ * allocator and the old one is freed when its last slice is released.
+ *
+ * <p>Not thread safe: the arena must only be used by its owner thread, while the
+ * buffers it hands out can be released by any thread.
+ */
+final class ThreadArena {
+
+    private static final int ALIGNMENT = 8;
+
+    private final ByteBufAllocator allocator;
+    private final boolean direct;
+    private final int chunkSize;
+
+    private ByteBuf chunk = null;
+    private int offset = 0;
+
+    ThreadArena(ByteBufAllocator allocator, boolean direct, int chunkSize) {
+        this.allocator = allocator;
+        this.direct = direct;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Allocate a buffer with a fixed capacity.
+     */
+    ByteBuf allocate(int capacity) {
+        if (chunk != null && chunk.refCnt() == 1) {
+            // all the buffers carved out of the chunk have been released
+            offset = 0;
+        }
+        if (chunk == null || offset + capacity > chunkSize) {
+            ByteBuf newChunk = direct ? allocator.directBuffer(chunkSize, chunkSize)
+                    : allocator.heapBuffer(chunkSize, chunkSize);
+            release();
+            chunk = newChunk;
+            offset = 0;
+        }
+        ByteBuf buf = chunk.retainedSlice(offset, capacity).clear();
+        offset += (capacity + ALIGNMENT - 1) & -ALIGNMENT;
+        return buf;
+    }
+
+    /**
+     * Drop the reference of the arena on its current chunk.
+     */
+    void release() {
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
+    }
+}
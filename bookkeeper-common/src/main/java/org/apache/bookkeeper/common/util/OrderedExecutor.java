@@ -67,11 +67,23 @@ import org.slf4j.MDC;
  * basic amount of ordering we want (e.g. , per ledger handle). Ordering is
  * achieved by hashing the key objects to threads by their {@link #hashCode()}
  * method.
+ *
+ * <p>In work-stealing mode, the keys are hashed to a larger number of ordered task
+ * queues instead, and idle threads can take over the queues waiting for a busy
+ * thread, see {@link OrderedWorkStealingPool}. The per-key ordering is preserved,
+ * but the tasks of a key are not always executed by the same thread.
+ *
+ * <p>The executor can also run its tasks on virtual threads, when the JVM supports them,
+ * see {@link VirtualThreads}. Each ordered queue is still served by a single thread, so
+ * the ordering is unchanged, but the executor can be given many more threads for tasks
+ * that block on I/O.
  */
 @Slf4j
 public class OrderedExecutor implements ExecutorService {
     public static final int NO_TASK_LIMIT = -1;
     private static final int DEFAULT_MAX_ARRAY_QUEUE_SIZE = 10_000;
+    // Number of ordered task queues per thread in work-stealing mode
+    private static final int WORK_STEALING_QUEUES_PER_THREAD = 16;
     protected static final long WARN_TIME_MICRO_SEC_DEFAULT = TimeUnit.SECONDS.toMicros(1);
 
     final String name;
@@ -85,6 +97,7 @@ public class OrderedExecutor implements ExecutorService {
     final long warnTimeMicroSec;
     final int maxTasksInQueue;
     final boolean enableBusyWait;
+    final OrderedWorkStealingPool workStealingPool;
 
     public static Builder newBuilder() {
         return new Builder();
@@ -97,12 +110,10 @@ public class OrderedExecutor implements ExecutorService {
 
         @Override
         public OrderedExecutor build() {
-            if (null == threadFactory) {
-                threadFactory = new DefaultThreadFactory("bookkeeper-ordered-safe-executor");
-            }
+            resolveThreadFactory("bookkeeper-ordered-safe-executor");
             return new OrderedExecutor(name, numThreads, threadFactory, statsLogger,
                                            traceTaskExecution, preserveMdcForTaskExecution,
-                                           warnTimeMicroSec, maxTasksInQueue, enableBusyWait);
+                                           warnTimeMicroSec, maxTasksInQueue, enableBusyWait, workStealing);
         }
     }
 
@@ -119,6 +130,8 @@ public class OrderedExecutor implements ExecutorService {
         protected long warnTimeMicroSec = WARN_TIME_MICRO_SEC_DEFAULT;
         protected int maxTasksInQueue = NO_TASK_LIMIT;
         protected boolean enableBusyWait = false;
+        protected boolean workStealing = false;
+        protected boolean virtualThreads = false;
 
         public AbstractBuilder<T> name(String name) {
             this.name = name;
@@ -165,11 +178,43 @@ public class OrderedExecutor implements ExecutorService {
             return this;
         }
 
-        @SuppressWarnings("unchecked")
-        public T build() {
+        /**
+         * Let idle threads execute the tasks of keys hashed to busy threads, while still
+         * executing the tasks of each key in order. Only supported by {@link OrderedExecutor},
+         * busy-wait is ignored in this mode.
+         */
+        public AbstractBuilder<T> workStealing(boolean workStealing) {
+            this.workStealing = workStealing;
+            return this;
+        }
+
+        /**
+         * Run the tasks on virtual threads if the JVM supports them, otherwise on platform
+         * threads. The thread factory is ignored and busy-wait is disabled when virtual threads
+         * are used, since spinning would pin the carrier threads.
+         */
+        public AbstractBuilder<T> virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        protected void resolveThreadFactory(String defaultThreadName) {
+            if (virtualThreads) {
+                if (VirtualThreads.isSupported()) {
+                    threadFactory = VirtualThreads.newThreadFactory();
+                    enableBusyWait = false;
+                    return;
+                }
+                log.warn("Virtual threads are not supported by this JVM, {} will use platform threads", name);
+            }
             if (null == threadFactory) {
-                threadFactory = new DefaultThreadFactory(name);
+                threadFactory = new DefaultThreadFactory(defaultThreadName);
             }
+        }
+
+        @SuppressWarnings("unchecked")
+        public T build() {
+            resolveThreadFactory(name);
             return (T) new OrderedExecutor(
                 name,
                 numThreads,
@@ -179,7 +224,8 @@ public class OrderedExecutor implements ExecutorService {
                 preserveMdcForTaskExecution,
                 warnTimeMicroSec,
                 maxTasksInQueue,
-                enableBusyWait);
+                enableBusyWait,
+                workStealing);
         }
     }
 
@@ -382,6 +428,21 @@ public class OrderedExecutor implements ExecutorService {
                                 StatsLogger statsLogger, boolean traceTaskExecution,
                                 boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
                                 boolean enableBusyWait) {
+        this(baseName, numThreads, threadFactory, statsLogger, traceTaskExecution, preserveMdcForTaskExecution,
+                warnTimeMicroSec, maxTasksInQueue, enableBusyWait, false);
+    }
+
+    /**
+     * Constructs Safe executor.
+     *
+     * @param workStealing
+     *            - let idle threads execute the ordered tasks queued for busy threads
+     * @see #OrderedExecutor(String, int, ThreadFactory, StatsLogger, boolean, boolean, long, int, boolean)
+     */
+    protected OrderedExecutor(String baseName, int numThreads, ThreadFactory threadFactory,
+                                StatsLogger statsLogger, boolean traceTaskExecution,
+                                boolean preserveMdcForTaskExecution, long warnTimeMicroSec, int maxTasksInQueue,
+                                boolean enableBusyWait, boolean workStealing) {
         checkArgument(numThreads > 0);
         checkArgument(!StringUtils.isBlank(baseName));
 
@@ -389,41 +450,102 @@ public class OrderedExecutor implements ExecutorService {
         this.warnTimeMicroSec = warnTimeMicroSec;
         this.enableBusyWait = enableBusyWait;
         name = baseName;
-        threads = new ExecutorService[numThreads];
-        threadIds = new long[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            ThreadPoolExecutor thread = createSingleThreadExecutor(
-                    new ThreadFactoryBuilder().setNameFormat(name + "-" + getClass().getSimpleName() + "-" + i + "-%d")
-                    .setThreadFactory(threadFactory).build());
-
-            threads[i] = addExecutorDecorators(getBoundedExecutor(thread));
 
-            final int idx = i;
-            try {
-                threads[idx].submit(() -> {
-                    threadIds[idx] = Thread.currentThread().getId();
-
-                    if (enableBusyWait) {
-                        // Try to acquire 1 CPU core to the executor thread. If it fails we
-                        // are just logging the error and continuing, falling back to
-                        // non-isolated CPUs.
-                        try {
-                            CpuAffinity.acquireCore();
-                        } catch (Throwable t) {
-                            log.warn("Failed to acquire CPU core for thread {}", Thread.currentThread().getName(),
-                                    t.getMessage(), t);
+        if (workStealing) {
+            workStealingPool = new OrderedWorkStealingPool(numThreads, numThreads * WORK_STEALING_QUEUES_PER_THREAD,
+                    maxTasksInQueue, i -> new ThreadFactoryBuilder()
+                            .setNameFormat(name + "-" + getClass().getSimpleName() + "-" + i + "-%d")
+                            .setThreadFactory(threadFactory).build());
+            threads = new ExecutorService[workStealingPool.queues.length];
+            threadIds = new long[0];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = addExecutorDecorators(workStealingPool.queues[i]);
+            }
+            registerWorkStealingGauges(statsLogger);
+        } else {
+            workStealingPool = null;
+            threads = new ExecutorService[numThreads];
+            threadIds = new long[numThreads];
+
+            for (int i = 0; i < numThreads; i++) {
+                ThreadPoolExecutor thread = createSingleThreadExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat(name + "-" + getClass().getSimpleName() + "-" + i + "-%d")
+                        .setThreadFactory(threadFactory).build());
+
+                threads[i] = addExecutorDecorators(getBoundedExecutor(thread));
+
+                final int idx = i;
+                try {
+                    threads[idx].submit(() -> {
+                        threadIds[idx] = Thread.currentThread().getId();
+
+                        if (enableBusyWait) {
+                            // Try to acquire 1 CPU core to the executor thread. If it fails we
+                            // are just logging the error and continuing, falling back to
+                            // non-isolated CPUs.
+                            try {
+                                CpuAffinity.acquireCore();
+                            } catch (Throwable t) {
+                                log.warn("Failed to acquire CPU core for thread {}", Thread.currentThread().getName(),
+                                        t.getMessage(), t);
+                            }
                         }
+                    }).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Couldn't start thread " + i, e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Couldn't start thread " + i, e);
+                }
+
+                // Register gauges
+                statsLogger.registerGauge(String.format("%s-queue-%d", name, idx), new Gauge<Number>() {
+                    @Override
+                    public Number getDefaultValue() {
+                        return 0;
                     }
-                }).get();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Couldn't start thread " + i, e);
-            } catch (ExecutionException e) {
-                throw new RuntimeException("Couldn't start thread " + i, e);
+
+                    @Override
+                    public Number getSample() {
+                        return thread.getQueue().size();
+                    }
+                });
+                statsLogger.registerGauge(String.format("%s-completed-tasks-%d", name, idx), new Gauge<Number>() {
+                    @Override
+                    public Number getDefaultValue() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Number getSample() {
+                        return thread.getCompletedTaskCount();
+                    }
+                });
+                statsLogger.registerGauge(String.format("%s-total-tasks-%d", name, idx), new Gauge<Number>() {
+                    @Override
+                    public Number getDefaultValue() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Number getSample() {
+                        return thread.getTaskCount();
+                    }
+                });
             }
+        }
 
-            // Register gauges
-            statsLogger.registerGauge(String.format("%s-queue-%d", name, idx), new Gauge<Number>() {
+        // Stats
+        this.taskExecutionStats = statsLogger.scope(name).getOpStatsLogger("task_execution");
+        this.taskPendingStats = statsLogger.scope(name).getOpStatsLogger("task_queued");
+        this.traceTaskExecution = traceTaskExecution;
+        this.preserveMdcForTaskExecution = preserveMdcForTaskExecution;
+    }
+
+    private void registerWorkStealingGauges(StatsLogger statsLogger) {
+        for (int i = 0; i < workStealingPool.workers.length; i++) {
+            OrderedWorkStealingPool.Worker worker = workStealingPool.workers[i];
+            statsLogger.registerGauge(String.format("%s-queue-%d", name, i), new Gauge<Number>() {
                 @Override
                 public Number getDefaultValue() {
                     return 0;
@@ -431,10 +553,10 @@ public class OrderedExecutor implements ExecutorService {
 
                 @Override
                 public Number getSample() {
-                    return thread.getQueue().size();
+                    return worker.getPendingTasks();
                 }
             });
-            statsLogger.registerGauge(String.format("%s-completed-tasks-%d", name, idx), new Gauge<Number>() {
+            statsLogger.registerGauge(String.format("%s-completed-tasks-%d", name, i), new Gauge<Number>() {
                 @Override
                 public Number getDefaultValue() {
                     return 0;
@@ -442,10 +564,10 @@ public class OrderedExecutor implements ExecutorService {
 
                 @Override
                 public Number getSample() {
-                    return thread.getCompletedTaskCount();
+                    return worker.completedTasks.sum();
                 }
             });
-            statsLogger.registerGauge(String.format("%s-total-tasks-%d", name, idx), new Gauge<Number>() {
+            statsLogger.registerGauge(String.format("%s-stolen-queues-%d", name, i), new Gauge<Number>() {
                 @Override
                 public Number getDefaultValue() {
                     return 0;
@@ -453,16 +575,21 @@ public class OrderedExecutor implements ExecutorService {
 
                 @Override
                 public Number getSample() {
-                    return thread.getTaskCount();
+                    return worker.stolenQueues.sum();
                 }
             });
         }
+        statsLogger.registerGauge(String.format("%s-queue-imbalance", name), new Gauge<Number>() {
+            @Override
+            public Number getDefaultValue() {
+                return 0;
+            }
 
-        // Stats
-        this.taskExecutionStats = statsLogger.scope(name).getOpStatsLogger("task_execution");
-        this.taskPendingStats = statsLogger.scope(name).getOpStatsLogger("task_queued");
-        this.traceTaskExecution = traceTaskExecution;
-        this.preserveMdcForTaskExecution = preserveMdcForTaskExecution;
+            @Override
+            public Number getSample() {
+                return workStealingPool.getQueueImbalance();
+            }
+        });
     }
 
     /**
@@ -518,6 +645,11 @@ public class OrderedExecutor implements ExecutorService {
 
 
     public long getThreadID(long orderingKey) {
+        if (workStealingPool != null) {
+            // the tasks of a key are executed by whichever thread is running its queue
+            return workStealingPool.queues[MathUtils.signSafeMod(orderingKey, threads.length)].getRunningThreadId();
+        }
+
         // skip hashcode generation in this special case
         if (threadIds.length == 1) {
             return threadIds[0];
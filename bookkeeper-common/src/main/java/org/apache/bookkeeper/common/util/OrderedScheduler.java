@@ -17,13 +17,14 @@
  */
 package org.apache.bookkeeper.common.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.util.concurrent.ForwardingListeningExecutorService;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 
-import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.util.Collection;
 import java.util.List;
@@ -72,9 +73,8 @@ public class OrderedScheduler extends OrderedExecutor implements ScheduledExecut
     public static class SchedulerBuilder extends OrderedExecutor.AbstractBuilder<OrderedScheduler> {
         @Override
         public OrderedScheduler build() {
-            if (null == threadFactory) {
-                threadFactory = new DefaultThreadFactory(name);
-            }
+            checkArgument(!workStealing, "Work-stealing is not supported by OrderedScheduler");
+            resolveThreadFactory(name);
             return new OrderedScheduler(
                 name,
                 numThreads,
@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pool of worker threads executing the tasks of a fixed set of ordered task queues, used by
+ * {@link OrderedExecutor} in work-stealing mode.
+ *
+ * <p>Each ordering key is hashed to a {@link KeyQueue}, which runs its tasks one at a time, in
+ * submission order. A key queue with pending tasks waits in the ready queue of the worker that
+ * ran it last. A worker with no ready key queue steals the most recently queued one from the
+ * worker with the most ready key queues, so that a few hot keys hashed to the same worker don't
+ * keep the other keys of that worker waiting while other workers are idle.
+ *
+ * <p>A key queue runs at most {@link #MAX_TASKS_PER_RUN} tasks before going back to the end of
+ * the ready queue, to be fair with the other key queues of the same worker.
+ */
+@Slf4j
+class OrderedWorkStealingPool {
+
+    static final int MAX_TASKS_PER_RUN = 64;
+
+    final Worker[] workers;
+    final KeyQueue[] queues;
+    private final int maxTasksInQueue;
+
+    private final AtomicLong pendingTasks = new AtomicLong();
+    private volatile boolean shutdown = false;
+    private final CountDownLatch terminationLatch;
+
+    OrderedWorkStealingPool(int numThreads, int numQueues, int maxTasksInQueue,
+                            IntFunction<ThreadFactory> threadFactories) {
+        this.maxTasksInQueue = maxTasksInQueue;
+        this.workers = new Worker[numThreads];
+        this.queues = new KeyQueue[numQueues];
+        this.terminationLatch = new CountDownLatch(numThreads);
+
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker(threadFactories.apply(i));
+        }
+        for (int i = 0; i < numQueues; i++) {
+            queues[i] = new KeyQueue(workers[i % numThreads]);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * @return the difference between the number of pending tasks in the most and in the least
+     *         loaded worker ready queues
+     */
+    long getQueueImbalance() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (Worker worker : workers) {
+            long pending = worker.getPendingTasks();
+            min = Math.min(min, pending);
+            max = Math.max(max, pending);
+        }
+        return max - min;
+    }
+
+    void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    List<Runnable> shutdownNow() {
+        shutdown();
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (KeyQueue queue : queues) {
+            Runnable task;
+            while ((task = queue.pollTask()) != null) {
+                tasks.add(task);
+                taskDone();
+            }
+        }
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        return tasks;
+    }
+
+    boolean isShutdown() {
+        return shutdown;
+    }
+
+    boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    private void taskDone() {
+        if (pendingTasks.decrementAndGet() == 0 && shutdown) {
+            // Let the idle workers exit
+            for (Worker worker : workers) {
+                LockSupport.unpark(worker.thread);
+            }
+        }
+    }
+
+    /**
+     * Wake up the worker that owns a newly ready key queue, or any idle worker that could steal it.
+     */
+    private void wakeUp(Worker owner) {
+        if (owner.idle) {
+            LockSupport.unpark(owner.thread);
+            return;
+        }
+        for (Worker worker : workers) {
+            if (worker.idle) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private KeyQueue steal(Worker thief) {
+        Worker victim = null;
+        int victimReadyQueues = 0;
+        for (Worker worker : workers) {
+            int readyQueues = worker.readyQueuesCount.get();
+            if (worker != thief && readyQueues > victimReadyQueues) {
+                victim = worker;
+                victimReadyQueues = readyQueues;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+
+        KeyQueue queue = victim.readyQueues.pollLast();
+        if (queue != null) {
+            victim.readyQueuesCount.decrementAndGet();
+            thief.stolenQueues.increment();
+        }
+        return queue;
+    }
+
+    /**
+     * A worker thread, with the key queues that are ready to run on it.
+     */
+    final class Worker implements Runnable {
+        final Thread thread;
+        final Deque<KeyQueue> readyQueues = new ConcurrentLinkedDeque<>();
+        final AtomicInteger readyQueuesCount = new AtomicInteger();
+        final LongAdder completedTasks = new LongAdder();
+        final LongAdder stolenQueues = new LongAdder();
+        volatile boolean idle = false;
+
+        Worker(ThreadFactory threadFactory) {
+            this.thread = threadFactory.newThread(this);
+        }
+
+        long getPendingTasks() {
+            long pending = 0;
+            for (KeyQueue queue : readyQueues) {
+                pending += queue.size.get();
+            }
+            return pending;
+        }
+
+        void schedule(KeyQueue queue) {
+            readyQueues.offerLast(queue);
+            readyQueuesCount.incrementAndGet();
+            wakeUp(this);
+        }
+
+        private KeyQueue nextQueue() {
+            KeyQueue queue = readyQueues.pollFirst();
+            if (queue != null) {
+                readyQueuesCount.decrementAndGet();
+                return queue;
+            }
+            return steal(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    KeyQueue queue = nextQueue();
+                    if (queue == null) {
+                        // Advertise that we're idle before checking again, so that a key queue
+                        // becoming ready in the meantime will unpark us
+                        idle = true;
+                        queue = nextQueue();
+                        if (queue == null) {
+                            if (shutdown && pendingTasks.get() == 0) {
+                                break;
+                            }
+                            LockSupport.park(this);
+                            idle = false;
+                            continue;
+                        }
+                        idle = false;
+                    }
+
+                    queue.run(this);
+                }
+            } finally {
+                idle = false;
+                terminationLatch.countDown();
+            }
+        }
+    }
+
+    /**
+     * The tasks of the ordering keys hashed to the same queue, executed one at a time.
+     */
+    final class KeyQueue extends AbstractExecutorService {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile Worker owner;
+        private volatile long runningThreadId = -1;
+
+        KeyQueue(Worker owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * @return the id of the thread currently running the tasks of this queue, or -1.
+         */
+        long getRunningThreadId() {
+            return runningThreadId;
+        }
+
+        Runnable pollTask() {
+            Runnable task = tasks.poll();
+            if (task != null) {
+                size.decrementAndGet();
+            }
+            return task;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (maxTasksInQueue > 0 && size.get() >= maxTasksInQueue) {
+                throw new RejectedExecutionException("Queue at limit of " + maxTasksInQueue + " items");
+            }
+            pendingTasks.incrementAndGet();
+            if (shutdown) {
+                taskDone();
+                throw new RejectedExecutionException("Executor is shutting down");
+            }
+
+            size.incrementAndGet();
+            tasks.offer(task);
+            if (scheduled.compareAndSet(false, true)) {
+                owner.schedule(this);
+            }
+        }
+
+        void run(Worker worker) {
+            owner = worker;
+            runningThreadId = worker.thread.getId();
+            try {
+                for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                    Runnable task = pollTask();
+                    if (task == null) {
+                        break;
+                    }
+
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        log.error("Uncaught exception while executing task {}", task, t);
+                    } finally {
+                        worker.completedTasks.increment();
+                        taskDone();
+                    }
+                }
+            } finally {
+                runningThreadId = -1;
+            }
+
+            if (!tasks.isEmpty()) {
+                worker.schedule(this);
+            } else {
+                scheduled.set(false);
+                // A task could have been added after we found the queue empty
+                if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    worker.schedule(this);
+                }
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            OrderedWorkStealingPool.this.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return OrderedWorkStealingPool.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return OrderedWorkStealingPool.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return OrderedWorkStealingPool.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return OrderedWorkStealingPool.this.awaitTermination(timeout, unit);
+        }
+    }
+}
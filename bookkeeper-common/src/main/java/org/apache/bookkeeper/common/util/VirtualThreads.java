@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.common.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Access to the virtual threads of the running JVM, if it supports them.
+ *
+ * <p>Virtual threads are cheap enough to run blocking tasks, such as disk reads or
+ * ZooKeeper calls, on many more threads than there are CPUs. Since the code base is
+ * built for Java 8, they are looked up by reflection.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method factory = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            // Fails when virtual threads are a preview feature that is not enabled
+            factory.invoke(ofVirtual.invoke(null));
+        } catch (Throwable t) {
+            if (log.isDebugEnabled()) {
+                log.debug("Virtual threads are not supported by this JVM", t);
+            }
+            ofVirtual = null;
+            factory = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return whether the JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Create a factory of virtual threads.
+     *
+     * @return a new factory creating unnamed virtual threads
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+     */
+    public static ThreadFactory newThreadFactory() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            return (ThreadFactory) FACTORY.invoke(OF_VIRTUAL.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Failed to create a virtual thread factory", e);
+        }
+    }
+}
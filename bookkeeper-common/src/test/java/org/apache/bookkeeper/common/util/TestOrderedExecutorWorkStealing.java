@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link OrderedExecutor} in work-stealing mode.
+ */
+public class TestOrderedExecutorWorkStealing {
+
+    private final OrderedExecutor executor = OrderedExecutor.newBuilder()
+            .name("test-work-stealing")
+            .numThreads(4)
+            .workStealing(true)
+            .build();
+
+    @After
+    public void teardown() throws Exception {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPerKeyOrdering() throws Exception {
+        int numKeys = 100;
+        int tasksPerKey = 1000;
+        List<List<Integer>> executed = new ArrayList<>();
+        for (int i = 0; i < numKeys; i++) {
+            executed.add(new ArrayList<>());
+        }
+
+        CountDownLatch latch = new CountDownLatch(numKeys * tasksPerKey);
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int key = 0; key < numKeys; key++) {
+                // Skew the load, a few keys get much slower tasks
+                final int k = key;
+                final int seq = i;
+                executor.executeOrdered(key, () -> {
+                    if (k < 4) {
+                        busyWait(TimeUnit.MICROSECONDS.toNanos(50));
+                    }
+                    executed.get(k).add(seq);
+                    latch.countDown();
+                });
+            }
+        }
+
+        assertTrue(latch.await(1, TimeUnit.MINUTES));
+        for (int key = 0; key < numKeys; key++) {
+            List<Integer> keyTasks = executed.get(key);
+            assertEquals(tasksPerKey, keyTasks.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, (int) keyTasks.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testIdleThreadsStealQueues() throws Exception {
+        // All the keys are hashed to queues owned by the first thread, which is kept busy
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean release = new AtomicBoolean(false);
+        int numQueues = executor.threads.length;
+        int numThreads = executor.workStealingPool.workers.length;
+        executor.executeOrdered(0L, () -> {
+            blocked.countDown();
+            while (!release.get()) {
+                Thread.yield();
+            }
+        });
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch latch = new CountDownLatch(10);
+        for (int i = 1; i <= 10; i++) {
+            executor.executeOrdered((long) i * numThreads % numQueues, latch::countDown);
+        }
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            release.set(true);
+        }
+    }
+
+    @Test
+    public void testGetThreadID() throws Exception {
+        long[] threadId = new long[2];
+        executor.submitOrdered(5L, () -> {
+            threadId[0] = Thread.currentThread().getId();
+            threadId[1] = executor.getThreadID(5L);
+            return null;
+        }).get();
+        assertEquals(threadId[0], threadId[1]);
+        // The queue is released by its thread right after the task completes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.getThreadID(5L) != -1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(-1, executor.getThreadID(5L));
+    }
+
+    private static void busyWait(long nanos) {
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < nanos) {
+            // spin
+        }
+    }
+}
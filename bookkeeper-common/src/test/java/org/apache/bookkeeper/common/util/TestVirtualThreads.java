@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link OrderedExecutor} running on virtual threads.
+ */
+public class TestVirtualThreads {
+
+    @Test
+    public void testPerKeyOrdering() throws Exception {
+        OrderedExecutor executor = OrderedExecutor.newBuilder()
+                .name("test-virtual-threads")
+                .numThreads(64)
+                .virtualThreads(true)
+                .build();
+        try {
+            int numKeys = 100;
+            int tasksPerKey = 100;
+            List<List<Integer>> executed = new ArrayList<>();
+            for (int i = 0; i < numKeys; i++) {
+                executed.add(new ArrayList<>());
+            }
+
+            CountDownLatch latch = new CountDownLatch(numKeys * tasksPerKey);
+            for (int i = 0; i < tasksPerKey; i++) {
+                for (int key = 0; key < numKeys; key++) {
+                    final int k = key;
+                    final int seq = i;
+                    executor.executeOrdered(key, () -> {
+                        executed.get(k).add(seq);
+                        latch.countDown();
+                    });
+                }
+            }
+
+            assertTrue(latch.await(1, TimeUnit.MINUTES));
+            for (int key = 0; key < numKeys; key++) {
+                List<Integer> keyTasks = executed.get(key);
+                assertEquals(tasksPerKey, keyTasks.size());
+                for (int i = 0; i < tasksPerKey; i++) {
+                    assertEquals(i, (int) keyTasks.get(i));
+                }
+            }
+
+            boolean isVirtual = executor.submitOrdered(0L, () -> isVirtual(Thread.currentThread())).get();
+            assertEquals(VirtualThreads.isSupported(), isVirtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testScheduler() throws Exception {
+        OrderedScheduler scheduler = OrderedScheduler.newSchedulerBuilder()
+                .name("test-virtual-threads-scheduler")
+                .numThreads(4)
+                .virtualThreads(true)
+                .build();
+        try {
+            boolean isVirtual = scheduler.schedule(() -> isVirtual(Thread.currentThread()),
+                    10, TimeUnit.MILLISECONDS).get();
+            assertEquals(VirtualThreads.isSupported(), isVirtual);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            return false;
+        }
+        return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+}
@@ -21,8 +21,7 @@
 
 package org.apache.bookkeeper.bookie;
 
-import com.google.common.util.concurrent.RateLimiter;
-
+import java.io.IOException;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 
 /**
@@ -31,7 +30,8 @@ import org.apache.bookkeeper.conf.ServerConfiguration;
 public abstract class AbstractLogCompactor {
 
     protected final ServerConfiguration conf;
-    protected final Throttler throttler;
+    protected final CompactionThrottler throttler;
+    protected final int readBufferSize;
 
     interface LogRemovalListener {
         void removeEntryLog(long logToRemove);
@@ -40,9 +40,27 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, new CompactionThrottler(conf), logRemovalListener);
+    }
+
+    public AbstractLogCompactor(ServerConfiguration conf, CompactionThrottler throttler,
+                                LogRemovalListener logRemovalListener) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = throttler;
         this.logRemovalListener = logRemovalListener;
+        this.readBufferSize = conf.getCompactionReadBufferBytes();
+    }
+
+    /**
+     * Scan the entry log to compact, in large sequential chunks unless disabled.
+     */
+    protected void scanEntryLog(EntryLogger entryLogger, long entryLogId, EntryLogger.EntryLogScanner scanner)
+            throws IOException {
+        if (readBufferSize > 0) {
+            entryLogger.scanEntryLogInChunks(entryLogId, scanner, readBufferSize);
+        } else {
+            entryLogger.scanEntryLog(entryLogId, scanner);
+        }
     }
 
     /**
@@ -57,20 +75,4 @@ public abstract class AbstractLogCompactor {
      */
     public void cleanUpAndRecover() {}
 
-    static class Throttler {
-        private final RateLimiter rateLimiter;
-        private final boolean isThrottleByBytes;
-
-        Throttler(ServerConfiguration conf) {
-            this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
-                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
-        }
-
-        // acquire. if bybytes: bytes of this entry; if byentries: 1.
-        void acquire(int permits) {
-            rateLimiter.acquire(this.isThrottleByBytes ? permits : 1);
-        }
-    }
-
 }
@@ -83,6 +83,8 @@ public interface BookKeeperServerStats {
     String BOOKIE_RECOVERY_ADD_ENTRY = "BOOKIE_RECOVERY_ADD_ENTRY";
     String BOOKIE_READ_ENTRY = "BOOKIE_READ_ENTRY";
     String BOOKIE_FORCE_LEDGER = "BOOKIE_FORCE_LEDGER";
+    String BOOKIE_ADD_ENTRY_DIGEST_MISMATCH = "BOOKIE_ADD_ENTRY_DIGEST_MISMATCH";
+    String BOOKIE_READ_ENTRY_DIGEST_MISMATCH = "BOOKIE_READ_ENTRY_DIGEST_MISMATCH";
     String BOOKIE_READ_LAST_CONFIRMED = "BOOKIE_READ_LAST_CONFIRMED";
     String BOOKIE_ADD_ENTRY_BYTES = "BOOKIE_ADD_ENTRY_BYTES";
     String BOOKIE_READ_ENTRY_BYTES = "BOOKIE_READ_ENTRY_BYTES";
@@ -149,6 +151,8 @@ public interface BookKeeperServerStats {
     String MINOR_COMPACTION_COUNT = "MINOR_COMPACTION_COUNT";
     String ACTIVE_LEDGER_COUNT = "ACTIVE_LEDGER_COUNT";
     String DELETED_LEDGER_COUNT = "DELETED_LEDGER_COUNT";
+    String ENTRY_LOG_OFFLOAD_COUNT = "ENTRY_LOG_OFFLOAD_COUNT";
+    String ENTRY_LOG_OFFLOAD_BYTES = "ENTRY_LOG_OFFLOAD_BYTES";
 
     // Index Related Counters
     String INDEX_INMEM_ILLEGAL_STATE_RESET = "INDEX_INMEM_ILLEGAL_STATE_RESET";
@@ -189,4 +193,12 @@ public interface BookKeeperServerStats {
     String NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE = "NUM_OF_WRITE_LEDGERS_REMOVED_CACHE_MAXSIZE";
     String NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS = "NUM_LEDGERS_HAVING_MULTIPLE_ENTRYLOGS";
     String ENTRYLOGS_PER_LEDGER = "ENTRYLOGS_PER_LEDGER";
+
+    // Allocator memory budgets Stats (scoped under memory_budget.<budget name>)
+    String MEMORY_BUDGET_SCOPE = "memory_budget";
+    String MEMORY_BUDGET_NETTY = "netty";
+    String MEMORY_BUDGET_JOURNAL = "journal";
+    String MEMORY_BUDGET_STORAGE = "storage";
+    String MEMORY_BUDGET_USED_BYTES = "USED_BYTES";
+    String MEMORY_BUDGET_SOFT_LIMIT_EXCEEDED = "SOFT_LIMIT_EXCEEDED";
 }
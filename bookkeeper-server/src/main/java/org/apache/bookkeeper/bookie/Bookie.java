@@ -24,6 +24,8 @@ package org.apache.bookkeeper.bookie;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LD_INDEX_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LD_LEDGER_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_JOURNAL;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_STORAGE;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
@@ -72,6 +74,8 @@ import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.BookieStats;
 import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.common.allocator.MemoryBudget;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.discover.BookieServiceInfo;
@@ -84,7 +88,9 @@ import org.apache.bookkeeper.meta.exceptions.MetadataException;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.net.DNS;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.checksum.CRC32CEntryVerifier;
 import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.BookKeeperConstants;
 import org.apache.bookkeeper.util.DiskChecker;
@@ -109,6 +115,8 @@ public class Bookie extends BookieCriticalThread {
 
     final List<File> journalDirectories;
     final ServerConfiguration conf;
+    // Digest types of the ledgers, when verifying the CRC32C digests of their entries, null otherwise
+    private final LedgerDigestTypeCache ledgerDigestTypes;
 
     final SyncThread syncThread;
     final LedgerManagerFactory ledgerManagerFactory;
@@ -238,6 +246,11 @@ public class Bookie extends BookieCriticalThread {
         if (indexDirsManager != ledgerDirsManager) {
             allLedgerDirs.addAll(indexDirsManager.getAllLedgerDirs());
         }
+        // The offloaded entry logs are lost if the cold ledger dirs are swapped
+        File[] coldDirs = conf.getColdLedgerDirs();
+        if (null != coldDirs) {
+            allLedgerDirs.addAll(Arrays.asList(getCurrentDirectories(coldDirs)));
+        }
         if (metadataDriver == null) { // exists only for testing, just make sure directories are correct
 
             for (File journalDirectory : journalDirectories) {
@@ -710,6 +723,12 @@ public class Bookie extends BookieCriticalThread {
         } catch (MetadataException e) {
             throw new MetadataStoreException("Failed to initialize ledger manager", e);
         }
+        if (conf.isCrc32cDigestVerificationEnabled() && ledgerManager == null) {
+            LOG.warn("CRC32C digest verification is disabled, since the digest types of the ledgers are unknown"
+                    + " without a metadata service");
+        }
+        this.ledgerDigestTypes = conf.isCrc32cDigestVerificationEnabled() && ledgerManager != null
+                ? new LedgerDigestTypeCache(ledgerManager) : null;
         stateManager = initializeStateManager();
         // register shutdown handler using trigger mode
         stateManager.setShutdownHandler(exitCode -> triggerBookieShutdown(exitCode));
@@ -735,12 +754,14 @@ public class Bookie extends BookieCriticalThread {
 
         // instantiate the journals
         journals = Lists.newArrayList();
+        ByteBufAllocator journalAllocator = MemoryBudget.newChildAllocator(allocator, MEMORY_BUDGET_JOURNAL, 0, 0);
         for (int i = 0; i < journalDirectories.size(); i++) {
             journals.add(new Journal(i, journalDirectories.get(i),
-                    conf, ledgerDirsManager, statsLogger.scope(JOURNAL_SCOPE), allocator));
+                    conf, ledgerDirsManager, statsLogger.scope(JOURNAL_SCOPE), journalAllocator));
         }
 
-        this.entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled();
+        // Lifetime groups have multiple active entry logs as well
+        this.entryLogPerLedgerEnabled = conf.isEntryLogPerLedgerEnabled() || conf.isEntryLogPerLifetimeGroupEnabled();
         CheckpointSource checkpointSource = new CheckpointSourceList(journals);
 
         ledgerStorage = buildLedgerStorage(conf);
@@ -792,7 +813,7 @@ public class Bookie extends BookieCriticalThread {
             checkpointSource,
             syncThread,
             statsLogger,
-            allocator);
+            MemoryBudget.newChildAllocator(allocator, MEMORY_BUDGET_STORAGE, 0, 0));
 
 
         handles = new HandleFactoryImpl(ledgerStorage);
@@ -1263,19 +1284,7 @@ public class Bookie extends BookieCriticalThread {
         // journal `addEntry` should happen after the entry is added to ledger storage.
         // otherwise the journal entry can potentially be rolled before the ledger is created in ledger storage.
         if (masterKeyCache.get(ledgerId) == null) {
-            // Force the load into masterKey cache
-            byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
-            if (oldValue == null) {
-                // new handle, we should add the key to journal ensure we can rebuild
-                ByteBuffer bb = ByteBuffer.allocate(8 + 8 + 4 + masterKey.length);
-                bb.putLong(ledgerId);
-                bb.putLong(METAENTRY_ID_LEDGER_KEY);
-                bb.putInt(masterKey.length);
-                bb.put(masterKey);
-                bb.flip();
-
-                getJournal(ledgerId).logAddEntry(bb, false /* ackBeforeSync */, new NopWriteCallback(), null);
-            }
+            logMasterKeyIfAbsent(ledgerId, masterKey);
         }
 
         if (LOG.isTraceEnabled()) {
@@ -1284,6 +1293,22 @@ public class Bookie extends BookieCriticalThread {
         getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
     }
 
+    private void logMasterKeyIfAbsent(long ledgerId, byte[] masterKey) throws InterruptedException {
+        // Force the load into masterKey cache
+        byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
+        if (oldValue == null) {
+            // new handle, we should add the key to journal ensure we can rebuild
+            ByteBuffer bb = ByteBuffer.allocate(8 + 8 + 4 + masterKey.length);
+            bb.putLong(ledgerId);
+            bb.putLong(METAENTRY_ID_LEDGER_KEY);
+            bb.putInt(masterKey.length);
+            bb.put(masterKey);
+            bb.flip();
+
+            getJournal(ledgerId).logAddEntry(bb, false /* ackBeforeSync */, new NopWriteCallback(), null);
+        }
+    }
+
     /**
      * Add entry to a ledger, even if the ledger has previous been fenced. This should only
      * happen in bookie recovery or ledger recovery cases, where entries are being replicates
@@ -1296,6 +1321,7 @@ public class Bookie extends BookieCriticalThread {
         boolean success = false;
         int entrySize = 0;
         try {
+            verifyDigestIfEnabled(entry);
             LedgerDescriptor handle = getLedgerForEntry(entry, masterKey);
             synchronized (handle) {
                 entrySize = entry.readableBytes();
@@ -1319,6 +1345,28 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Check whether the CRC32C digest of an entry should be verified, which is only the case
+     * for the entries of the ledgers known to use the CRC32C digest type.
+     */
+    private boolean shouldVerifyDigest(ByteBuf entry) {
+        return ledgerDigestTypes != null && entry.readableBytes() >= 8
+                && ledgerDigestTypes.getIfKnown(entry.getLong(entry.readerIndex())) == DigestType.CRC32C;
+    }
+
+    private void verifyDigestIfEnabled(ByteBuf entry) throws BookieException {
+        if (shouldVerifyDigest(entry) && !CRC32CEntryVerifier.verify(entry)) {
+            bookieStats.getAddEntryDigestMismatches().inc();
+            if (entry.readableBytes() >= 16) {
+                LOG.error("Rejecting entry {}@{} whose CRC32C digest does not match its content",
+                        entry.getLong(entry.readerIndex() + 8), entry.getLong(entry.readerIndex()));
+            } else {
+                LOG.error("Rejecting truncated entry of {} bytes", entry.readableBytes());
+            }
+            throw new BookieException.DigestMismatchException();
+        }
+    }
+
     private ByteBuf createExplicitLACEntry(long ledgerId, ByteBuf explicitLac) {
         ByteBuf bb = allocator.directBuffer(8 + 8 + 4 + explicitLac.capacity());
         bb.writeLong(ledgerId);
@@ -1379,6 +1427,7 @@ public class Bookie extends BookieCriticalThread {
         boolean success = false;
         int entrySize = 0;
         try {
+            verifyDigestIfEnabled(entry);
             LedgerDescriptor handle = getLedgerForEntry(entry, masterKey);
             synchronized (handle) {
                 if (handle.isFenced()) {
@@ -1406,6 +1455,69 @@ public class Bookie extends BookieCriticalThread {
         }
     }
 
+    /**
+     * Add a batch of entries of a ledger.
+     *
+     * <p>The entries are added to the ledger storage under a single acquisition of the
+     * ledger handle and appended to the journal as a single write. The callback is triggered
+     * once, when all the entries are persisted, with the id of the last entry of the batch.
+     *
+     * @param recovery whether the entries are added by a recovery, in which case they are
+     *                 added even if the ledger is fenced
+     */
+    public void addEntries(long ledgerId, List<ByteBuf> entries, boolean ackBeforeSync, boolean recovery,
+                           WriteCallback cb, Object ctx, byte[] masterKey)
+            throws IOException, BookieException, InterruptedException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        int batchSize = 0;
+        try {
+            for (ByteBuf entry : entries) {
+                if (entry.readableBytes() < 16 || entry.getLong(entry.readerIndex()) != ledgerId) {
+                    throw new IOException("Entry of a batch of ledger " + ledgerId + " does not belong to it");
+                }
+                verifyDigestIfEnabled(entry);
+            }
+            LedgerDescriptor handle = handles.getHandle(ledgerId, masterKey);
+            synchronized (handle) {
+                if (!recovery && handle.isFenced()) {
+                    throw BookieException
+                            .create(BookieException.Code.LedgerFencedException);
+                }
+                for (ByteBuf entry : entries) {
+                    handle.addEntry(entry);
+                    batchSize += entry.readableBytes();
+                }
+                bookieStats.getWriteBytes().add(batchSize);
+                if (masterKeyCache.get(ledgerId) == null) {
+                    // journal the master key ahead of the entries, as for a single entry
+                    logMasterKeyIfAbsent(ledgerId, masterKey);
+                }
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Adding {} entries to ledger {}", entries.size(), ledgerId);
+                }
+                getJournal(ledgerId).logAddEntries(ledgerId, entries, ackBeforeSync, cb, ctx);
+            }
+            success = true;
+        } catch (NoWritableLedgerDirException e) {
+            stateManager.transitionToReadOnlyMode();
+            throw new IOException(e);
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            OpStatsLogger addStats = recovery
+                    ? bookieStats.getRecoveryAddEntryStats() : bookieStats.getAddEntryStats();
+            if (success) {
+                addStats.registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getAddBytesStats().registerSuccessfulValue(batchSize);
+            } else {
+                addStats.registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getAddBytesStats().registerFailedValue(batchSize);
+            }
+
+            entries.forEach(ByteBuf::release);
+        }
+    }
+
     /**
      * Fences a ledger. From this point on, clients will be unable to
      * write to this ledger. Only recoveryAddEntry will be
@@ -1430,6 +1542,12 @@ public class Bookie extends BookieCriticalThread {
                 LOG.trace("Reading {}@{}", entryId, ledgerId);
             }
             ByteBuf entry = handle.readEntry(entryId);
+            if (shouldVerifyDigest(entry) && !CRC32CEntryVerifier.verify(entry)) {
+                entry.release();
+                bookieStats.getReadEntryDigestMismatches().inc();
+                LOG.error("Stored entry {}@{} does not match its CRC32C digest", entryId, ledgerId);
+                throw new IOException("Entry " + entryId + "@" + ledgerId + " does not match its CRC32C digest");
+            }
             bookieStats.getReadBytes().add(entry.readableBytes());
             success = true;
             return entry;
@@ -1564,6 +1682,16 @@ public class Bookie extends BookieCriticalThread {
                     }
                 }
             }
+
+            File[] coldDirs = conf.getColdLedgerDirs();
+            if (null != coldDirs) {
+                for (File dir : coldDirs) {
+                    if (!cleanDir(dir)) {
+                        LOG.error("Formatting cold ledger directory " + dir + " failed");
+                        return false;
+                    }
+                }
+            }
         }
 
         LOG.info("Bookie format completed successfully");
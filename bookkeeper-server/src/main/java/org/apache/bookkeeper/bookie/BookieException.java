@@ -69,6 +69,8 @@ public abstract class BookieException extends Exception {
             return new MetadataStoreException();
         case Code.UnknownBookieIdException:
             return new UnknownBookieIdException();
+        case Code.DigestMismatchException:
+            return new DigestMismatchException();
         default:
             return new BookieIllegalOpException();
         }
@@ -91,6 +93,7 @@ public abstract class BookieException extends Exception {
         int UnknownBookieIdException = -107;
         int OperationRejectedException = -108;
         int CookieExistsException = -109;
+        int DigestMismatchException = -110;
     }
 
     public int getCode() {
@@ -133,6 +136,9 @@ public abstract class BookieException extends Exception {
         case Code.OperationRejectedException:
             err = "Operation rejected";
             break;
+        case Code.DigestMismatchException:
+            err = "Entry digest does not match its content";
+            break;
         default:
             err = "Invalid operation";
             break;
@@ -185,6 +191,15 @@ public abstract class BookieException extends Exception {
         }
     }
 
+    /**
+     * Signals that the digest of an entry does not match its content.
+     */
+    public static class DigestMismatchException extends BookieException {
+        public DigestMismatchException() {
+            super(Code.DigestMismatchException);
+        }
+    }
+
     /**
      * Signals that a ledger has been fenced in a bookie. No more entries can be appended to that ledger.
      */
@@ -47,6 +47,13 @@ public abstract class BufferedChannelBase {
         return fileChannel;
     }
 
+    /**
+     * Whether the underlying FileChannel is still open.
+     */
+    public boolean isOpen() {
+        return fileChannel.isOpen();
+    }
+
     /**
      * Get the current size of the underlying FileChannel.
      * @return
@@ -0,0 +1,155 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rate limiter of the compaction I/O, shared by the garbage collectors of all the ledger directories
+ * of a ledger storage. The configured compaction rate applies to each directory, so the shared rate
+ * is the configured one times the number of directories.
+ *
+ * <p>When a compaction latency threshold is configured, the rate adapts to the latency of the
+ * foreground reads and writes of the ledger storage: it is halved when the 99th percentile of the
+ * latencies recorded since the last adjustment is above the threshold, and raised back by a tenth
+ * of the configured rate otherwise.
+ */
+public class CompactionThrottler {
+    private static final Logger LOG = LoggerFactory.getLogger(CompactionThrottler.class);
+
+    static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final double MIN_RATE_FRACTION = 0.05;
+    static final double RATE_INCREASE_FRACTION = 0.1;
+
+    // Latencies are recorded in power of 2 buckets of microseconds
+    private static final int NUM_LATENCY_BUCKETS = 40;
+
+    private final RateLimiter rateLimiter;
+    private final boolean isThrottleByBytes;
+    private final double maxRate;
+
+    private final long latencyThresholdMicros;
+    // Only allocated when the rate adapts to the foreground latency
+    private final LongAdder[] latencyBuckets;
+    private final AtomicLong lastAdjustTime = new AtomicLong(MathUtils.nowInNano());
+
+    public CompactionThrottler(ServerConfiguration conf) {
+        this(conf, 1);
+    }
+
+    public CompactionThrottler(ServerConfiguration conf, int numberOfDirs) {
+        this.isThrottleByBytes = conf.getIsThrottleByBytes();
+        double rate = this.isThrottleByBytes ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries();
+        this.maxRate = rate * Math.max(1, numberOfDirs);
+        this.rateLimiter = RateLimiter.create(maxRate);
+        this.latencyThresholdMicros = TimeUnit.MILLISECONDS.toMicros(conf.getCompactionLatencyThresholdMs());
+
+        if (latencyThresholdMicros > 0) {
+            latencyBuckets = new LongAdder[NUM_LATENCY_BUCKETS];
+            for (int i = 0; i < NUM_LATENCY_BUCKETS; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        } else {
+            latencyBuckets = null;
+        }
+    }
+
+    // acquire. if bybytes: bytes of this entry; if byentries: 1.
+    void acquire(int permits) {
+        if (latencyBuckets != null) {
+            maybeAdjustRate();
+        }
+        rateLimiter.acquire(this.isThrottleByBytes ? permits : 1);
+    }
+
+    /**
+     * Record the latency of a read or a write of the ledger storage.
+     */
+    public void recordForegroundLatency(long latencyNanos) {
+        if (latencyBuckets != null) {
+            latencyBuckets[bucketIndex(TimeUnit.NANOSECONDS.toMicros(latencyNanos))].increment();
+        }
+    }
+
+    double getRate() {
+        return rateLimiter.getRate();
+    }
+
+    private void maybeAdjustRate() {
+        long now = MathUtils.nowInNano();
+        long lastAdjust = lastAdjustTime.get();
+        if (now - lastAdjust < ADJUST_INTERVAL_NANOS || !lastAdjustTime.compareAndSet(lastAdjust, now)) {
+            return;
+        }
+
+        long[] counts = new long[NUM_LATENCY_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_LATENCY_BUCKETS; i++) {
+            counts[i] = latencyBuckets[i].sumThenReset();
+            total += counts[i];
+        }
+        adjustRate(counts, total);
+    }
+
+    void adjustRate(long[] counts, long total) {
+        double rate = rateLimiter.getRate();
+        double newRate;
+        if (total > 0 && p99UpperBoundMicros(counts, total) > latencyThresholdMicros) {
+            newRate = Math.max(maxRate * MIN_RATE_FRACTION, rate / 2);
+        } else {
+            newRate = Math.min(maxRate, rate + maxRate * RATE_INCREASE_FRACTION);
+        }
+
+        if (newRate != rate) {
+            rateLimiter.setRate(newRate);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Compaction rate changed from {} to {}", rate, newRate);
+            }
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        // Bucket i holds the latencies in [2^(i-1), 2^i)
+        return Math.min(NUM_LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, micros)));
+    }
+
+    private static long p99UpperBoundMicros(long[] counts, long total) {
+        long rank = (long) Math.ceil(total * 0.99);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compaction policy choosing the entry logs by cost-benefit, in the style of the log-structured
+ * file system cleaner.
+ *
+ * <p>The entry logs are compacted by decreasing (1 - usage) * age / (1 + usage), where the age is the
+ * time since the entry log was last written: the older an entry log, the less likely its remaining
+ * data is to be deleted soon, and the more it is worth rewriting it to reclaim its garbage.
+ *
+ * <p>The policy also keeps a histogram of the lifetime of the deleted ledgers, from the write time of
+ * the oldest entry log in which they were seen to their deletion by the garbage collector. It predicts
+ * which fraction of the remaining data of an entry log will still be live at the next compaction, from
+ * the age of each of its ledgers. The score is weighted by this fraction, and the entry logs expected to
+ * lose more data before the next compaction than the garbage they would reclaim are left to the
+ * garbage collector rather than rewritten.
+ */
+public class CostBenefitCompactionPolicy implements EntryLogCompactionPolicy {
+    private static final Logger LOG = LoggerFactory.getLogger(CostBenefitCompactionPolicy.class);
+
+    // Ledger lifetimes in power of 2 buckets of seconds
+    static final int NUM_LIFETIME_BUCKETS = 40;
+    // The lifetime histogram is halved past this number of samples, to follow the changes of the workload
+    private static final long MAX_LIFETIME_SAMPLES = 1 << 20;
+
+    private final LongUnaryOperator lastWriteTime;
+
+    private final ConcurrentLongLongHashMap entryLogWriteTimes = new ConcurrentLongLongHashMap();
+    private final ConcurrentLongLongHashMap ledgerFirstSeenTimes = new ConcurrentLongLongHashMap();
+    private final long[] lifetimeCounts = new long[NUM_LIFETIME_BUCKETS];
+    private long lifetimeSamples = 0;
+
+    /**
+     * Create a cost-benefit compaction policy.
+     *
+     * @param lastWriteTime the last write time of an entry log from its id, or 0 if it is unknown
+     */
+    public CostBenefitCompactionPolicy(LongUnaryOperator lastWriteTime) {
+        this.lastWriteTime = lastWriteTime;
+    }
+
+    @Override
+    public synchronized void update(EntryLogMetadata entryLogMeta, long nowMillis) {
+        long entryLogId = entryLogMeta.getEntryLogId();
+        long writeTime = entryLogWriteTimes.get(entryLogId);
+        if (writeTime < 0) {
+            writeTime = lastWriteTime.applyAsLong(entryLogId);
+            writeTime = writeTime > 0 ? Math.min(writeTime, nowMillis) : nowMillis;
+            entryLogWriteTimes.put(entryLogId, writeTime);
+        }
+
+        // A ledger is as old as the oldest entry log it was written to
+        final long entryLogWriteTime = writeTime;
+        entryLogMeta.getLedgersMap().forEach((ledgerId, size) -> {
+            long firstSeen = ledgerFirstSeenTimes.get(ledgerId);
+            if (firstSeen < 0 || firstSeen > entryLogWriteTime) {
+                ledgerFirstSeenTimes.put(ledgerId, entryLogWriteTime);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void ledgerDeleted(long ledgerId, long nowMillis) {
+        long firstSeen = ledgerFirstSeenTimes.remove(ledgerId);
+        if (firstSeen < 0) {
+            // Already accounted, or never seen in a compactable entry log
+            return;
+        }
+
+        if (lifetimeSamples >= MAX_LIFETIME_SAMPLES) {
+            lifetimeSamples = 0;
+            for (int i = 0; i < NUM_LIFETIME_BUCKETS; i++) {
+                lifetimeCounts[i] /= 2;
+                lifetimeSamples += lifetimeCounts[i];
+            }
+        }
+        lifetimeCounts[bucketIndex(TimeUnit.MILLISECONDS.toSeconds(nowMillis - firstSeen))]++;
+        lifetimeSamples++;
+    }
+
+    @Override
+    public synchronized void entryLogRemoved(long entryLogId) {
+        entryLogWriteTimes.remove(entryLogId);
+    }
+
+    @Override
+    public synchronized List<EntryLogMetadata> selectLogsToCompact(List<EntryLogMetadata> candidates,
+                                                                   long nowMillis, long horizonMillis) {
+        List<ScoredEntryLog> scoredLogs = new ArrayList<>(candidates.size());
+        for (EntryLogMetadata meta : candidates) {
+            double usage = meta.getUsage();
+            double survival = predictSurvival(meta, nowMillis, horizonMillis);
+            // Don't rewrite more data that is about to be deleted than the garbage reclaimed
+            if (usage * (1 - survival) > 1 - usage) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping compaction of entry log {}, {} of its data is expected to be deleted",
+                            meta.getEntryLogId(), 1 - survival);
+                }
+                continue;
+            }
+
+            long writeTime = entryLogWriteTimes.get(meta.getEntryLogId());
+            long age = writeTime < 0 ? 0 : Math.max(0, nowMillis - writeTime);
+            double score = (1 - usage) * age / (1 + usage) * survival;
+            scoredLogs.add(new ScoredEntryLog(meta, score));
+        }
+
+        scoredLogs.sort(Comparator.comparingDouble((ScoredEntryLog log) -> -log.score)
+                .thenComparingDouble(log -> log.meta.getUsage()));
+        List<EntryLogMetadata> logsToCompact = new ArrayList<>(scoredLogs.size());
+        for (ScoredEntryLog scoredLog : scoredLogs) {
+            logsToCompact.add(scoredLog.meta);
+        }
+        return logsToCompact;
+    }
+
+    /**
+     * @return the fraction of the remaining data of the entry log expected to be still live at the
+     *         end of the horizon
+     */
+    synchronized double predictSurvival(EntryLogMetadata meta, long nowMillis, long horizonMillis) {
+        if (lifetimeSamples == 0) {
+            return 1.0;
+        }
+
+        double[] expectedLiveSize = new double[1];
+        long[] liveSize = new long[1];
+        meta.getLedgersMap().forEach((ledgerId, size) -> {
+            long firstSeen = ledgerFirstSeenTimes.get(ledgerId);
+            long ageMillis = firstSeen < 0 ? 0 : Math.max(0, nowMillis - firstSeen);
+            expectedLiveSize[0] += size * survivalProbability(ageMillis, horizonMillis);
+            liveSize[0] += size;
+        });
+        return liveSize[0] == 0 ? 1.0 : expectedLiveSize[0] / liveSize[0];
+    }
+
+    /**
+     * @return the probability that a ledger of the given age is still live after the horizon
+     */
+    private double survivalProbability(long ageMillis, long horizonMillis) {
+        double aliveNow = countLongerLifetimes(ageMillis / 1000.0);
+        if (aliveNow <= 0) {
+            // No ledger was ever deleted at that age
+            return 1.0;
+        }
+        return countLongerLifetimes((ageMillis + horizonMillis) / 1000.0) / aliveNow;
+    }
+
+    /**
+     * @return the number of recorded lifetimes longer than the given one, interpolated within its bucket
+     */
+    private double countLongerLifetimes(double seconds) {
+        int index = bucketIndex((long) seconds);
+        double count = 0;
+        for (int i = index + 1; i < NUM_LIFETIME_BUCKETS; i++) {
+            count += lifetimeCounts[i];
+        }
+
+        double lowerBound = index == 0 ? 0 : 1L << (index - 1);
+        double upperBound = 1L << index;
+        double fractionAbove = Math.max(0, Math.min(1, (upperBound - seconds) / (upperBound - lowerBound)));
+        return count + lifetimeCounts[index] * fractionAbove;
+    }
+
+    static int bucketIndex(long seconds) {
+        // Bucket i holds the lifetimes in [2^(i-1), 2^i) seconds
+        return Math.min(NUM_LIFETIME_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, seconds)));
+    }
+
+    private static class ScoredEntryLog {
+        final EntryLogMetadata meta;
+        final double score;
+
+        ScoredEntryLog(EntryLogMetadata meta, double score) {
+            this.meta = meta;
+            this.score = score;
+        }
+    }
+}
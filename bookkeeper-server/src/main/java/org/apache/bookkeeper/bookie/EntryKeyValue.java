@@ -26,19 +26,19 @@ import java.nio.ByteBuffer;
 
 /**
  * An entry Key/Value.
- * EntryKeyValue wraps a byte array and takes offsets and lengths into the array to
- * interpret the content as entry blob.
+ * EntryKeyValue wraps a buffer and takes offsets and lengths into the buffer to
+ * interpret the content as entry blob. The buffer is not owned by the EntryKeyValue.
  */
 public class EntryKeyValue extends EntryKey {
-    private final byte [] bytes;
+    private final ByteBuf buffer;
     private int offset = 0; // start offset of entry blob
     private int length = 0; // length of entry blob
 
     /**
-    * @return The byte array backing this EntryKeyValue.
+    * @return The buffer backing this EntryKeyValue.
     */
-    public byte [] getBuffer() {
-        return this.bytes;
+    public ByteBuf getBuffer() {
+        return this.buffer;
     }
 
     /**
@@ -72,19 +72,40 @@ public class EntryKeyValue extends EntryKey {
      * @param length of blob
      */
     public EntryKeyValue(long ledgerId, long entryId, final byte [] bytes, int offset, int length) {
+        this(ledgerId, entryId, Unpooled.wrappedBuffer(bytes), offset, length);
+    }
+
+    /**
+     * Creates a EntryKeyValue from a part of the specified buffer.
+     * @param buffer buffer, possibly shared by several entries
+     * @param offset offset in buffer as start of blob
+     * @param length of blob
+     */
+    public EntryKeyValue(long ledgerId, long entryId, final ByteBuf buffer, int offset, int length) {
         super(ledgerId, entryId);
-        this.bytes = bytes;
+        this.buffer = buffer;
         this.offset = offset;
         this.length = length;
     }
 
     /**
-    * Returns the blob wrapped in a new <code>ByteBuffer</code>.
+    * Returns the blob in a new retained <code>ByteBuf</code>, which stays valid after the backing
+    * buffer is released by its owner. It has to be released by the caller.
     *
     * @return the value
     */
     public ByteBuf getValueAsByteBuffer() {
-        return Unpooled.wrappedBuffer(getBuffer(), getOffset(), getLength());
+        return buffer.retainedSlice(getOffset(), getLength());
+    }
+
+    /**
+    * Returns the blob in a new <code>ByteBuf</code>, only valid as long as the backing
+    * buffer is not released by its owner.
+    *
+    * @return the value
+    */
+    ByteBuf getValue() {
+        return buffer.slice(getOffset(), getLength());
     }
 
     /**
@@ -102,7 +123,10 @@ public class EntryKeyValue extends EntryKey {
             throw new IllegalArgumentException("Buffer size " + dst.remaining() + " < " + getLength());
         }
 
-        dst.put(getBuffer(), getOffset(), getLength());
+        int limit = dst.limit();
+        dst.limit(dst.position() + getLength());
+        buffer.getBytes(getOffset(), dst);
+        dst.limit(limit);
         return getLength();
     }
 
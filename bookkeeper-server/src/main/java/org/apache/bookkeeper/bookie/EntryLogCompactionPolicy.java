@@ -0,0 +1,66 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.util.List;
+
+/**
+ * Chooses the entry logs to compact among the ones below the compaction threshold, and the order
+ * in which they are compacted.
+ */
+public interface EntryLogCompactionPolicy {
+
+    /**
+     * Track the metadata of an entry log at each garbage collection, after the deleted ledgers have
+     * been removed from it.
+     *
+     * @param entryLogMeta metadata of the entry log
+     * @param nowMillis current time
+     */
+    default void update(EntryLogMetadata entryLogMeta, long nowMillis) {}
+
+    /**
+     * Notify that a ledger was found deleted by the garbage collector.
+     *
+     * @param ledgerId the deleted ledger
+     * @param nowMillis current time
+     */
+    default void ledgerDeleted(long ledgerId, long nowMillis) {}
+
+    /**
+     * Notify that an entry log was removed, after it was garbage collected or compacted.
+     *
+     * @param entryLogId the removed entry log
+     */
+    default void entryLogRemoved(long entryLogId) {}
+
+    /**
+     * Select the entry logs to compact.
+     *
+     * @param candidates the entry logs below the compaction threshold
+     * @param nowMillis current time
+     * @param horizonMillis time until the entry logs left out are considered again for compaction
+     * @return the entry logs to compact, in compaction order
+     */
+    List<EntryLogMetadata> selectLogsToCompact(List<EntryLogMetadata> candidates, long nowMillis,
+                                               long horizonMillis);
+}
@@ -48,8 +48,9 @@ public class EntryLogCompactor extends AbstractLogCompactor {
             ServerConfiguration conf,
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
+            CompactionThrottler throttler,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        super(conf, throttler, logRemover);
         this.maxOutstandingRequests = conf.getCompactionMaxOutstandingRequests();
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
@@ -58,7 +59,7 @@ public class EntryLogCompactor extends AbstractLogCompactor {
     @Override
     public boolean compact(EntryLogMetadata entryLogMeta) {
         try {
-            entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
+            scanEntryLog(entryLogger, entryLogMeta.getEntryLogId(),
                 scannerFactory.newScanner(entryLogMeta));
             scannerFactory.flush();
             LOG.info("Removing entry log {} after compaction", entryLogMeta.getEntryLogId());
@@ -70,6 +70,15 @@ abstract class EntryLogManagerBase implements EntryLogManager {
     public long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
         int entrySize = entry.readableBytes() + 4; // Adding 4 bytes to prepend the size
         BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(ledger, entrySize, rollLog);
+        return writeEntry(logChannel, ledger, entry);
+    }
+
+    /*
+     * Append the entry to the given log channel, callers of this method should
+     * hold the lock guarding the log channel.
+     */
+    long writeEntry(BufferedLogChannel logChannel, long ledger, ByteBuf entry) throws IOException {
+        int entrySize = entry.readableBytes() + 4;
         ByteBuf sizeBuffer = sizeBufferForAdd.get();
         sizeBuffer.clear();
         sizeBuffer.writeInt(entry.readableBytes());
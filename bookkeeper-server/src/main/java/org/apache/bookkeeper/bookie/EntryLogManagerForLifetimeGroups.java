@@ -0,0 +1,383 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.EntryLogger.BufferedLogChannel;
+import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
+import org.apache.bookkeeper.client.LedgerMetadataBuilder;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.commons.lang3.mutable.MutableInt;
+
+/**
+ * Entry log manager writing the ledgers into a bounded number of active entry logs, one for each
+ * group of ledgers with about the same expected lifetime, so that the entries of an entry log expire
+ * together and the entry log needs little compaction.
+ *
+ * <p>The expected lifetime of a ledger is the retention hint of its custom metadata
+ * ({@link LedgerMetadataBuilder#RETENTION_HINT_KEY}), read in background the first time an entry of
+ * the ledger is added. Until then, and for the ledgers without a retention hint, the entries go to the
+ * entry log of the group {@link #NO_HINT_GROUP}.
+ *
+ * <p>The log channels are tracked by {@link EntryLogManagerBase} by the index of their group, in place
+ * of a ledger id.
+ */
+@Slf4j
+class EntryLogManagerForLifetimeGroups extends EntryLogManagerBase {
+
+    static final int NO_HINT_GROUP = 0;
+
+    private static class LifetimeGroup {
+        // Guarded by the group monitor, read without it by flush and lookups
+        private volatile BufferedLogChannel activeLogChannel;
+        private long logCreationNanos;
+        private volatile boolean ledgerDirFull = false;
+    }
+
+    private final LifetimeGroup[] groups;
+    // Upper bound of the retention of the ledgers of the groups after NO_HINT_GROUP, in milliseconds
+    private final long[] groupBoundariesMs;
+    private final long maxOpenTimeMs;
+    private final Cache<Long, Integer> ledgerGroups;
+    private final EntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus;
+    private volatile LedgerManager ledgerManager;
+
+    EntryLogManagerForLifetimeGroups(ServerConfiguration conf, LedgerDirsManager ledgerDirsManager,
+            EntryLoggerAllocator entryLoggerAllocator, List<EntryLogger.EntryLogListener> listeners,
+            EntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus) {
+        super(conf, ledgerDirsManager, entryLoggerAllocator, listeners);
+        this.rotatedLogChannels = new CopyOnWriteArrayList<BufferedLogChannel>();
+        this.recentlyCreatedEntryLogsStatus = recentlyCreatedEntryLogsStatus;
+
+        long[] boundariesSeconds = conf.getEntryLogLifetimeGroupBoundariesSeconds();
+        this.groupBoundariesMs = new long[boundariesSeconds.length];
+        for (int i = 0; i < boundariesSeconds.length; i++) {
+            groupBoundariesMs[i] = TimeUnit.SECONDS.toMillis(boundariesSeconds[i]);
+        }
+        // One group without hint, one for each boundary and one above the last boundary
+        this.groups = new LifetimeGroup[groupBoundariesMs.length + 2];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new LifetimeGroup();
+        }
+        this.maxOpenTimeMs = TimeUnit.SECONDS.toMillis(conf.getEntryLogLifetimeGroupMaxOpenTimeSeconds());
+        // Forget the ledgers not written for a while, their group is looked up again if they are written again
+        this.ledgerGroups = CacheBuilder.newBuilder()
+                .expireAfterAccess(conf.getEntryLogLifetimeGroupMaxOpenTimeSeconds(), TimeUnit.SECONDS)
+                .build();
+
+        ledgerDirsManager.addLedgerDirsListener(getLedgerDirsListener());
+        log.info("Grouping the ledgers into {} entry logs by retention, with boundaries {} ms",
+                groups.length, groupBoundariesMs);
+    }
+
+    private LedgerDirsListener getLedgerDirsListener() {
+        return new LedgerDirsListener() {
+            @Override
+            public void diskFull(File disk) {
+                setLedgerDirFull(disk, true);
+            }
+
+            @Override
+            public void diskWritable(File disk) {
+                setLedgerDirFull(disk, false);
+            }
+        };
+    }
+
+    private void setLedgerDirFull(File disk, boolean ledgerDirFull) {
+        for (LifetimeGroup group : groups) {
+            BufferedLogChannel logChannel = group.activeLogChannel;
+            if (logChannel != null && disk.equals(logChannel.getLogFile().getParentFile())) {
+                group.ledgerDirFull = ledgerDirFull;
+            }
+        }
+    }
+
+    /**
+     * Set the ledger manager used to read the retention hints of the ledgers.
+     */
+    void setLedgerManager(LedgerManager ledgerManager) {
+        this.ledgerManager = ledgerManager;
+    }
+
+    int getNumGroups() {
+        return groups.length;
+    }
+
+    /**
+     * Get the lifetime group of a ledger, and look it up in background if the ledger is unknown.
+     */
+    @VisibleForTesting
+    int getLifetimeGroup(long ledgerId) {
+        Integer groupId = ledgerGroups.getIfPresent(ledgerId);
+        if (groupId != null) {
+            return groupId;
+        }
+        if (ledgerGroups.asMap().putIfAbsent(ledgerId, NO_HINT_GROUP) == null) {
+            lookupLifetimeGroup(ledgerId);
+        }
+        return NO_HINT_GROUP;
+    }
+
+    private void lookupLifetimeGroup(long ledgerId) {
+        LedgerManager lm = ledgerManager;
+        if (lm == null) {
+            return;
+        }
+        lm.readLedgerMetadata(ledgerId).whenComplete((metadata, exception) -> {
+            if (exception != null) {
+                // The ledger stays in the group without hint until it is forgotten
+                log.debug("Failed to read the metadata of ledger {} to find its lifetime group", ledgerId, exception);
+                return;
+            }
+            byte[] hint = metadata.getValue().getCustomMetadata().get(LedgerMetadataBuilder.RETENTION_HINT_KEY);
+            int groupId = getLifetimeGroupForRetentionHint(hint);
+            if (groupId != NO_HINT_GROUP) {
+                ledgerGroups.asMap().replace(ledgerId, NO_HINT_GROUP, groupId);
+            }
+        });
+    }
+
+    @VisibleForTesting
+    int getLifetimeGroupForRetentionHint(byte[] hint) {
+        if (hint == null) {
+            return NO_HINT_GROUP;
+        }
+        long retentionMs;
+        try {
+            retentionMs = Long.parseLong(new String(hint, UTF_8).trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid ledger retention hint : {}", new String(hint, UTF_8));
+            return NO_HINT_GROUP;
+        }
+        int i = 0;
+        while (i < groupBoundariesMs.length && retentionMs > groupBoundariesMs[i]) {
+            i++;
+        }
+        return NO_HINT_GROUP + 1 + i;
+    }
+
+    @Override
+    public long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
+        // The group is resolved once, since the lookup may complete in between
+        int groupId = getLifetimeGroup(ledger);
+        synchronized (groups[groupId]) {
+            BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(groupId, entry.readableBytes() + 4,
+                    rollLog);
+            return writeEntry(logChannel, ledger, entry);
+        }
+    }
+
+    @Override
+    BufferedLogChannel getCurrentLogForLedgerForAddEntry(long groupId, int entrySize, boolean rollLog)
+            throws IOException {
+        LifetimeGroup group = groups[(int) groupId];
+        synchronized (group) {
+            BufferedLogChannel logChannel = group.activeLogChannel;
+            boolean reachEntryLogLimit = rollLog ? reachEntryLogLimit(logChannel, entrySize)
+                    : readEntryLogHardLimit(logChannel, entrySize);
+            // Create new log if logSizeLimit reached or current disk is full
+            boolean diskFull = logChannel != null && group.ledgerDirFull;
+            boolean allDisksFull = !ledgerDirsManager.hasWritableLedgerDirs();
+
+            // As with an entry log per ledger, proceed with the current log if all the disks are full
+            if ((diskFull && !allDisksFull) || reachEntryLogLimit || logChannel == null) {
+                if (logChannel != null) {
+                    logChannel.flushAndForceWriteIfRegularFlush(false);
+                }
+                createNewLog(groupId, "for lifetime group " + groupId + " : diskFull = " + diskFull
+                        + ", allDisksFull = " + allDisksFull + ", reachEntryLogLimit = " + reachEntryLogLimit);
+            }
+            return group.activeLogChannel;
+        }
+    }
+
+    @Override
+    void createNewLog(long groupId) throws IOException {
+        synchronized (groups[(int) groupId]) {
+            super.createNewLog(groupId);
+        }
+    }
+
+    @Override
+    void setCurrentLogForLedgerAndAddToRotate(long groupId, BufferedLogChannel logChannel) {
+        LifetimeGroup group = groups[(int) groupId];
+        synchronized (group) {
+            BufferedLogChannel hasToRotateLogChannel = group.activeLogChannel;
+            group.activeLogChannel = logChannel;
+            group.logCreationNanos = MathUtils.nowInNano();
+            group.ledgerDirFull = false;
+            if (hasToRotateLogChannel != null) {
+                rotatedLogChannels.add(hasToRotateLogChannel);
+            }
+        }
+    }
+
+    @Override
+    BufferedLogChannel getCurrentLogForLedger(long groupId) {
+        return groups[(int) groupId].activeLogChannel;
+    }
+
+    @Override
+    public BufferedLogChannel getCurrentLogIfPresent(long entryLogId) {
+        for (LifetimeGroup group : groups) {
+            BufferedLogChannel logChannel = group.activeLogChannel;
+            if (logChannel != null && logChannel.getLogId() == entryLogId) {
+                return logChannel;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Returns writable ledger dir with least number of current active
+     * entrylogs.
+     */
+    @Override
+    public File getDirForNextEntryLog(List<File> writableLedgerDirs) {
+        Map<File, MutableInt> writableLedgerDirFrequency = new HashMap<File, MutableInt>();
+        writableLedgerDirs.forEach((ledgerDir) -> writableLedgerDirFrequency.put(ledgerDir, new MutableInt()));
+        for (LifetimeGroup group : groups) {
+            BufferedLogChannel logChannel = group.activeLogChannel;
+            if (logChannel != null) {
+                MutableInt frequency = writableLedgerDirFrequency.get(logChannel.getLogFile().getParentFile());
+                if (frequency != null) {
+                    frequency.increment();
+                }
+            }
+        }
+        return writableLedgerDirFrequency.entrySet().stream()
+                .min(Map.Entry.comparingByValue()).get().getKey();
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        /*
+         * The entry logs of the slow groups are rolled once they have been
+         * open for long enough, otherwise they would hold back the garbage
+         * collection of all the entry logs created after them.
+         */
+        for (int i = 0; i < groups.length; i++) {
+            LifetimeGroup group = groups[i];
+            synchronized (group) {
+                BufferedLogChannel logChannel = group.activeLogChannel;
+                long openTimeMs = MathUtils.elapsedMSec(group.logCreationNanos);
+                if (logChannel != null && logChannel.position() > EntryLogger.LOGFILE_HEADER_SIZE
+                        && openTimeMs >= maxOpenTimeMs) {
+                    createNewLog(i, "for lifetime group " + i + " since it has been open for " + openTimeMs + " ms");
+                }
+            }
+        }
+        // As with an entry log per ledger, SyncThread drives the checkpoints and all the logs are flushed
+        super.flush();
+    }
+
+    @Override
+    public void prepareSortedLedgerStorageCheckpoint(long numBytesFlushed) throws IOException {
+        // do nothing, SyncThread drives the checkpoints
+    }
+
+    @Override
+    public void prepareEntryMemTableFlush() {
+        // do nothing
+    }
+
+    @Override
+    public boolean commitEntryMemTableFlush() throws IOException {
+        for (int i = 0; i < groups.length; i++) {
+            LifetimeGroup group = groups[i];
+            if (reachEntryLogLimit(group.activeLogChannel, 0L)) {
+                synchronized (group) {
+                    if (reachEntryLogLimit(group.activeLogChannel, 0L)) {
+                        log.info("Rolling entry logger since it reached size limitation for lifetime group: {}", i);
+                        createNewLog(i, "after entry log file is rotated");
+                    }
+                }
+            }
+        }
+        // SyncThread drives the checkpoints, as with an entry log per ledger
+        return false;
+    }
+
+    @Override
+    void flushCurrentLogs() throws IOException {
+        for (LifetimeGroup group : groups) {
+            /**
+             * flushCurrentLogs method is called during checkpoint, so metadata
+             * of the file also should be force written.
+             */
+            flushLogChannel(group.activeLogChannel, true);
+        }
+    }
+
+    @Override
+    void flushRotatedLogs() throws IOException {
+        for (BufferedLogChannel channel : rotatedLogChannels) {
+            channel.flushAndForceWrite(true);
+            // since this channel is only used for writing, after flushing the channel,
+            // we had to close the underlying file channel. Otherwise, we might end up
+            // leaking fds which cause the disk spaces could not be reclaimed.
+            channel.close();
+            recentlyCreatedEntryLogsStatus.flushRotatedEntryLog(channel.getLogId());
+            rotatedLogChannels.remove(channel);
+            log.info("Synced entry logger {} to disk.", channel.getLogId());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LifetimeGroup group : groups) {
+            BufferedLogChannel logChannel = group.activeLogChannel;
+            if (logChannel != null) {
+                logChannel.close();
+            }
+        }
+    }
+
+    @Override
+    public void forceClose() {
+        for (LifetimeGroup group : groups) {
+            IOUtils.close(log, group.activeLogChannel);
+        }
+    }
+
+    @Override
+    public BufferedLogChannel createNewLogForCompaction() throws IOException {
+        return entryLoggerAllocator.createNewLogForCompaction(selectDirForNextEntryLog());
+    }
+}
@@ -21,6 +21,9 @@
 
 package org.apache.bookkeeper.bookie;
 
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.function.LongPredicate;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
@@ -29,6 +32,10 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
  * Records the total size, remaining size and the set of ledgers that comprise a entry log.
  */
 public class EntryLogMetadata {
+    private static final short SERIALIZATION_VERSION = 1;
+    // version, entry log id, total size, remaining size, number of ledgers
+    private static final int SERIALIZED_HEADER_SIZE = Short.BYTES + 3 * Long.BYTES + Integer.BYTES;
+
     private final long entryLogId;
     private long totalSize;
     private long remainingSize;
@@ -88,6 +95,44 @@ public class EntryLogMetadata {
         });
     }
 
+    /**
+     * Serialize the metadata, to persist it in the {@link PersistentEntryLogMetadataMap}.
+     */
+    public byte[] serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(SERIALIZED_HEADER_SIZE
+                + (int) ledgersMap.size() * 2 * Long.BYTES);
+        buffer.putShort(SERIALIZATION_VERSION);
+        buffer.putLong(entryLogId);
+        buffer.putLong(totalSize);
+        buffer.putLong(remainingSize);
+        buffer.putInt((int) ledgersMap.size());
+        ledgersMap.forEach((ledgerId, size) -> {
+            buffer.putLong(ledgerId);
+            buffer.putLong(size);
+        });
+        return buffer.array();
+    }
+
+    public static EntryLogMetadata deserialize(byte[] data) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            short version = buffer.getShort();
+            if (version != SERIALIZATION_VERSION) {
+                throw new IOException("Unsupported entry log metadata serialization version " + version);
+            }
+            EntryLogMetadata meta = new EntryLogMetadata(buffer.getLong());
+            meta.totalSize = buffer.getLong();
+            meta.remainingSize = buffer.getLong();
+            int numLedgers = buffer.getInt();
+            for (int i = 0; i < numLedgers; i++) {
+                meta.ledgersMap.put(buffer.getLong(), buffer.getLong());
+            }
+            return meta;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated entry log metadata", e);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,75 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BiConsumer;
+
+/**
+ * Map-store to store Entrylogger metadata, used by the {@link GarbageCollectorThread}.
+ */
+public interface EntryLogMetadataMap extends Closeable {
+
+    /**
+     * Checks if record with entryLogId exists into the map.
+     *
+     * @param entryLogId
+     * @return true if the map contains the metadata of the entry log
+     */
+    boolean containsKey(long entryLogId);
+
+    /**
+     * Adds or replaces the metadata of an entry log.
+     *
+     * <p>The map may keep a copy of the metadata, so it has to be put again after it is modified.
+     *
+     * @param entryLogId
+     * @param entryLogMeta
+     * @throws IOException
+     */
+    void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException;
+
+    /**
+     * Performs the given action for each entry in this map until all entries
+     * have been processed or the action throws an exception.
+     *
+     * @param action
+     * @throws IOException
+     */
+    void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException;
+
+    /**
+     * Removes the metadata of an entry log.
+     *
+     * @param entryLogId
+     * @throws IOException
+     */
+    void remove(long entryLogId) throws IOException;
+
+    /**
+     * Returns number of entry logs in the map.
+     *
+     * @return the number of entry logs
+     */
+    int size();
+}
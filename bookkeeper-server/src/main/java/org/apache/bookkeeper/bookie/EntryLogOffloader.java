@@ -0,0 +1,242 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_OFFLOAD_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ENTRY_LOG_OFFLOAD_COUNT;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
+import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.DiskChecker.DiskErrorException;
+import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.SafeRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves the sealed entry logs from the ledger directories to the cold tier in the background,
+ * once they have not been modified for {@link ServerConfiguration#getEntryLogOffloadMinAgeSeconds()}.
+ *
+ * <p>The current entry logs and the index files stay in the ledger directories, so the writes and
+ * the tailing reads are served by the fast disks, while the older entries are read from the
+ * cold tier.
+ *
+ * <p>The cold directories are checked like the ledger directories: the logs are only offloaded
+ * to the directories under the disk usage threshold, and a directory that fails the disk check
+ * is not used anymore and switches the bookie to read-only mode, as some of its entries may be
+ * lost.
+ */
+public class EntryLogOffloader extends SafeRunnable {
+    private static final Logger LOG = LoggerFactory.getLogger(EntryLogOffloader.class);
+
+    private final EntryLogger entryLogger;
+    private final LedgerDirsManager ledgerDirsManager;
+    private final LedgerDirsManager coldDirsManager;
+    private final LedgerDirsMonitor coldDirsMonitor;
+    private final StateManager stateManager;
+    private final long intervalSeconds;
+    private final long minAgeMillis;
+    private final float diskUsageThreshold;
+    // Limits the bytes copied per second, null if unlimited
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+
+    // Cold directories that failed the disk check
+    private final Set<File> failedColdDirs = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    // Channels of the copies that have been offloaded. They are closed at the next run, when the
+    // reads that were using them are done.
+    private final List<FileChannel> retiredChannels = new ArrayList<FileChannel>();
+
+    private final Counter offloadedLogsCounter;
+    private final Counter offloadedBytesCounter;
+
+    public EntryLogOffloader(ServerConfiguration conf, EntryLogger entryLogger, StateManager stateManager,
+                             StatsLogger statsLogger) {
+        this.entryLogger = entryLogger;
+        this.ledgerDirsManager = entryLogger.getLedgerDirsManager();
+        this.coldDirsManager = new LedgerDirsManager(conf, conf.getColdLedgerDirs(),
+                ledgerDirsManager.getDiskChecker(), statsLogger.scope("cold"));
+        this.coldDirsManager.addLedgerDirsListener(getColdDirsListener());
+        this.coldDirsMonitor = new LedgerDirsMonitor(conf, ledgerDirsManager.getDiskChecker(),
+                Collections.singletonList(coldDirsManager));
+        this.stateManager = stateManager;
+        this.intervalSeconds = conf.getEntryLogOffloadIntervalSeconds();
+        this.minAgeMillis = TimeUnit.SECONDS.toMillis(conf.getEntryLogOffloadMinAgeSeconds());
+        this.diskUsageThreshold = conf.getDiskUsageThreshold();
+        int rateByBytes = conf.getEntryLogOffloadRateByBytes();
+        this.rateLimiter = rateByBytes > 0 ? RateLimiter.create(rateByBytes) : null;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("EntryLogOffloader"));
+        this.offloadedLogsCounter = statsLogger.getCounter(ENTRY_LOG_OFFLOAD_COUNT);
+        this.offloadedBytesCounter = statsLogger.getCounter(ENTRY_LOG_OFFLOAD_BYTES);
+    }
+
+    private LedgerDirsListener getColdDirsListener() {
+        return new LedgerDirsListener() {
+
+            @Override
+            public void diskFailed(File disk) {
+                if (failedColdDirs.add(disk)) {
+                    LOG.error("Cold ledger directory {} failed, transitioning the bookie to read-only mode", disk);
+                    if (stateManager != null) {
+                        stateManager.transitionToReadOnlyMode();
+                    }
+                }
+            }
+
+            @Override
+            public void allDisksFull(boolean highPriorityWritesAllowed) {
+                // The writes don't go to the cold tier, only the offloads stop until some space is freed
+                LOG.warn("All the cold ledger directories are full, the entry logs are not offloaded anymore");
+            }
+
+            @Override
+            public void fatalError() {
+                LOG.error("Fatal error reported while checking the cold ledger directories");
+            }
+        };
+    }
+
+    public void start() {
+        try {
+            coldDirsMonitor.init();
+        } catch (DiskErrorException e) {
+            // The failed directory is excluded at the next run of the monitor
+            LOG.error("Cold ledger directory failed on disk checking", e);
+        } catch (NoWritableLedgerDirException e) {
+            LOG.warn("All the cold ledger directories are full, the entry logs are not offloaded until some"
+                    + " space is freed");
+        }
+        coldDirsMonitor.start();
+        executor.scheduleWithFixedDelay(this, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() throws InterruptedException {
+        LOG.info("Shutting down EntryLogOffloader");
+        coldDirsMonitor.shutdown();
+        executor.shutdownNow();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            LOG.warn("EntryLogOffloader didn't stop in time");
+            return;
+        }
+        closeRetiredChannels();
+    }
+
+    @Override
+    public void safeRun() {
+        closeRetiredChannels();
+
+        // The logs from the least unflushed one can still be written
+        long leastUnflushedLogId = entryLogger.getLeastUnflushedLogId();
+        long now = System.currentTimeMillis();
+        for (File dir : ledgerDirsManager.getAllLedgerDirs()) {
+            File[] logFiles = dir.listFiles(file -> file.getName().endsWith(".log"));
+            if (logFiles == null) {
+                continue;
+            }
+            for (File logFile : logFiles) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                long logId = EntryLogger.fileName2LogId(logFile.getName());
+                if (logId == EntryLogger.INVALID_LID || logId >= leastUnflushedLogId
+                        || now - logFile.lastModified() < minAgeMillis) {
+                    continue;
+                }
+                long size = logFile.length();
+                File coldDir = pickColdDir(size);
+                if (coldDir == null) {
+                    LOG.warn("No cold ledger directory has enough space to offload entry log {}", logFile);
+                    return;
+                }
+                try {
+                    FileChannel previousFc = entryLogger.offloadEntryLog(logId, coldDir, rateLimiter);
+                    if (previousFc != null) {
+                        retiredChannels.add(previousFc);
+                    }
+                    offloadedLogsCounter.inc();
+                    offloadedBytesCounter.add(size);
+                    LOG.info("Offloaded entry log {} to {}", logFile, coldDir);
+                } catch (FileNotFoundException fnfe) {
+                    // Garbage collected in the meantime
+                    LOG.debug("Entry log {} removed while it was offloaded", logFile);
+                } catch (IOException ioe) {
+                    LOG.error("Failed to offload entry log {} to {}", logFile, coldDir, ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the writable cold directory with the most usable space, as long as it stays under the
+     * disk usage threshold after the copy of the log.
+     */
+    private File pickColdDir(long size) {
+        List<File> writableDirs;
+        try {
+            writableDirs = coldDirsManager.getWritableLedgerDirs();
+        } catch (NoWritableLedgerDirException e) {
+            return null;
+        }
+        File best = null;
+        long bestUsableSpace = 0;
+        for (File dir : writableDirs) {
+            if (failedColdDirs.contains(dir)) {
+                continue;
+            }
+            long usableSpace = dir.getUsableSpace();
+            long minUsableSpace = (long) (dir.getTotalSpace() * (1 - diskUsageThreshold));
+            if (usableSpace - size > minUsableSpace && usableSpace > bestUsableSpace) {
+                best = dir;
+                bestUsableSpace = usableSpace;
+            }
+        }
+        return best;
+    }
+
+    private void closeRetiredChannels() {
+        for (FileChannel fc : retiredChannels) {
+            IOUtils.close(LOG, fc);
+        }
+        retiredChannels.clear();
+    }
+}
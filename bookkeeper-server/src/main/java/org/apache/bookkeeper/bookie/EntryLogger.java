@@ -27,6 +27,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
@@ -44,6 +45,9 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -55,11 +59,15 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.bookkeeper.client.api.DigestType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.proto.checksum.CRC32CEntryVerifier;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.DiskChecker;
 import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.NativeIO;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap.BiConsumerLong;
 import org.slf4j.Logger;
@@ -221,6 +229,14 @@ public class EntryLogger {
 
     private final CopyOnWriteArrayList<EntryLogListener> listeners = new CopyOnWriteArrayList<EntryLogListener>();
 
+    // Directories of the cold tier, where the sealed entry logs are offloaded
+    private final List<File> coldLedgerDirs;
+    // Guards the entry log files against being removed while they are offloaded
+    private final Object offloadLock = new Object();
+    static final String OFFLOADING_SUFFIX = ".log.offloading";
+    // Bytes copied at once when offloading an entry log, in between the waits for the rate limit
+    private static final int OFFLOAD_CHUNK_SIZE = 1024 * 1024;
+
     private static final int HEADER_V0 = 0; // Old log file format (no ledgers map index)
     private static final int HEADER_V1 = 1; // Introduced ledger map index
     static final int HEADER_CURRENT_VERSION = HEADER_V1;
@@ -281,6 +297,9 @@ public class EntryLogger {
     static final long MB = 1024 * 1024;
 
     private final int maxSaneEntrySize;
+    private final boolean verifyCrc32cDigest;
+    // Digest types of the ledgers, to only verify the CRC32C digests of the entries of CRC32C ledgers
+    private volatile LedgerDigestTypeCache ledgerDigestTypes = null;
 
     private final ByteBufAllocator allocator;
 
@@ -342,6 +361,7 @@ public class EntryLogger {
         //We reserve 500 bytes as overhead for the protocol.  This is not 100% accurate
         // but the protocol varies so an exact value is difficult to determine
         this.maxSaneEntrySize = conf.getNettyMaxFrameSizeBytes() - 500;
+        this.verifyCrc32cDigest = conf.isCrc32cDigestVerificationEnabled();
         this.allocator = allocator;
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
@@ -359,9 +379,32 @@ public class EntryLogger {
         logfileHeader.writeInt(HEADER_CURRENT_VERSION);
         logfileHeader.writerIndex(LOGFILE_HEADER_SIZE);
 
+        File[] coldDirs = conf.getColdLedgerDirs();
+        if (coldDirs != null) {
+            List<File> dirs = new ArrayList<File>();
+            for (File dir : Bookie.getCurrentDirectories(coldDirs)) {
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Failed to create cold ledger directory " + dir);
+                }
+                // Remove the copies left by an offload that didn't complete
+                File[] offloading = dir.listFiles(file -> file.getName().endsWith(OFFLOADING_SUFFIX));
+                if (offloading != null) {
+                    for (File f : offloading) {
+                        if (!f.delete()) {
+                            LOG.warn("Could not delete incomplete offloaded entry log {}", f);
+                        }
+                    }
+                }
+                dirs.add(dir);
+            }
+            this.coldLedgerDirs = Collections.unmodifiableList(dirs);
+        } else {
+            this.coldLedgerDirs = Collections.emptyList();
+        }
+
         // Find the largest logId
         long logId = INVALID_LID;
-        for (File dir : ledgerDirsManager.getAllLedgerDirs()) {
+        for (File dir : getAllEntryLogDirs()) {
             if (!dir.exists()) {
                 throw new FileNotFoundException(
                         "Entry log directory '" + dir + "' does not exist");
@@ -377,6 +420,9 @@ public class EntryLogger {
         if (entryLogPerLedgerEnabled) {
             this.entryLogManager = new EntryLogManagerForEntryLogPerLedger(conf, ledgerDirsManager,
                     entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus, statsLogger);
+        } else if (conf.isEntryLogPerLifetimeGroupEnabled()) {
+            this.entryLogManager = new EntryLogManagerForLifetimeGroups(conf, ledgerDirsManager,
+                    entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus);
         } else {
             this.entryLogManager = new EntryLogManagerForSingleEntryLog(conf, ledgerDirsManager, entryLoggerAllocator,
                     listeners, recentlyCreatedEntryLogsStatus);
@@ -387,6 +433,20 @@ public class EntryLogger {
         return entryLogManager;
     }
 
+    /**
+     * Set the ledger manager used to read the retention hints of the ledgers, when the ledgers are
+     * grouped into entry logs by expected lifetime, and their digest types, when the CRC32C digests
+     * are verified.
+     */
+    public void setLedgerManager(LedgerManager ledgerManager) {
+        if (verifyCrc32cDigest && ledgerManager != null) {
+            ledgerDigestTypes = new LedgerDigestTypeCache(ledgerManager);
+        }
+        if (entryLogManager instanceof EntryLogManagerForLifetimeGroups) {
+            ((EntryLogManagerForLifetimeGroups) entryLogManager).setLedgerManager(ledgerManager);
+        }
+    }
+
     void addListener(EntryLogListener listener) {
         if (null != listener) {
             listeners.add(listener);
@@ -525,20 +585,99 @@ public class EntryLogger {
      */
     protected boolean removeEntryLog(long entryLogId) {
         removeFromChannelsAndClose(entryLogId);
-        File entryLogFile;
-        try {
-            entryLogFile = findFile(entryLogId);
-        } catch (FileNotFoundException e) {
+        boolean found = false;
+        synchronized (offloadLock) {
+            // After a crash during an offload, the log can be in both tiers
+            for (File d : getAllEntryLogDirs()) {
+                File entryLogFile = new File(d, Long.toHexString(entryLogId) + ".log");
+                if (entryLogFile.exists()) {
+                    found = true;
+                    if (!entryLogFile.delete()) {
+                        LOG.warn("Could not delete entry log file {}", entryLogFile);
+                    }
+                }
+            }
+        }
+        if (!found) {
             LOG.error("Trying to delete an entryLog file that could not be found: "
                     + entryLogId + ".log");
             return false;
         }
-        if (!entryLogFile.delete()) {
-            LOG.warn("Could not delete entry log file {}", entryLogFile);
-        }
         return true;
     }
 
+    /**
+     * Get the directories of the cold tier.
+     */
+    List<File> getColdLedgerDirs() {
+        return coldLedgerDirs;
+    }
+
+    /**
+     * Get the directories of both tiers, starting with the ledger directories.
+     */
+    private List<File> getAllEntryLogDirs() {
+        if (coldLedgerDirs.isEmpty()) {
+            return ledgerDirsManager.getAllLedgerDirs();
+        }
+        List<File> dirs = new ArrayList<File>(ledgerDirsManager.getAllLedgerDirs());
+        dirs.addAll(coldLedgerDirs);
+        return dirs;
+    }
+
+    /**
+     * Move a sealed entry log to a directory of the cold tier.
+     *
+     * <p>The log is copied and synced under a temporary name, then renamed and removed from its
+     * current directory. The entry locations don't depend on the directory of the log, so the
+     * index is left untouched, and the new reads open the offloaded copy. The file channel of
+     * the previous copy is returned, it must be closed once the reads in progress are done.
+     *
+     * @param entryLogId id of the sealed entry log
+     * @param coldDir directory of the cold tier
+     * @param rateLimiter limits the bytes copied per second, or null for no limit
+     * @return the file channel that was opened on the previous copy, or null
+     * @throws FileNotFoundException if the log doesn't exist anymore
+     */
+    FileChannel offloadEntryLog(long entryLogId, File coldDir, RateLimiter rateLimiter) throws IOException {
+        File entryLogFile = findFile(entryLogId);
+        String name = Long.toHexString(entryLogId);
+        File offloadingFile = new File(coldDir, name + OFFLOADING_SUFFIX);
+        try (FileChannel src = FileChannel.open(entryLogFile.toPath(), StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(offloadingFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = src.size();
+            long pos = 0;
+            while (pos < size) {
+                long count = Math.min(size - pos, OFFLOAD_CHUNK_SIZE);
+                if (rateLimiter != null) {
+                    rateLimiter.acquire((int) count);
+                }
+                pos += src.transferTo(pos, count, dst);
+            }
+            dst.force(true);
+        } catch (IOException e) {
+            offloadingFile.delete();
+            throw e;
+        }
+
+        synchronized (offloadLock) {
+            if (!entryLogFile.exists()) {
+                // Removed by the garbage collector in the meantime
+                offloadingFile.delete();
+                throw new FileNotFoundException("No file for log " + name);
+            }
+            Files.move(offloadingFile.toPath(), new File(coldDir, name + ".log").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            // New readers open the offloaded copy from now on
+            FileChannel previousFc = logid2FileChannel.remove(entryLogId);
+            if (!entryLogFile.delete()) {
+                LOG.warn("Could not delete entry log file {} after offloading it", entryLogFile);
+            }
+            return previousFc;
+        }
+    }
+
     private long getLastLogId(File dir) {
         long id = readLastLogId(dir);
         // read success
@@ -738,6 +877,19 @@ public class EntryLogger {
             }
         }
 
+        /**
+         * Represents case where the entry content does not match its digest.
+         */
+        static class DigestMismatchException extends EntryLookupException {
+            DigestMismatchException(long ledgerId, long entryId, long entryLogId, long pos) {
+                super(String.format("Digest mismatch at pos %d (entry %d for ledgerId %d) for entryLog %d",
+                        pos,
+                        entryId,
+                        ledgerId,
+                        entryLogId));
+            }
+        }
+
         /**
          * Represents case where the entry at pos is wrong.
          */
@@ -789,6 +941,39 @@ public class EntryLogger {
         BufferedReadChannel fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
         ByteBuf sizeBuf = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
         validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuf);
+        if (isCrc32cLedger(ledgerId)) {
+            int entrySize = sizeBuf.getInt(0);
+            ByteBuf data = allocator.buffer(entrySize, entrySize);
+            try {
+                int rc = readFromLogChannel(entryLogId, fc, data, pos);
+                if (rc != entrySize) {
+                    throw new EntryLookupException.MissingEntryException(ledgerId, entryId, entryLogId, pos);
+                }
+                data.writerIndex(entrySize);
+                if (!CRC32CEntryVerifier.verify(data)) {
+                    throw new EntryLookupException.DigestMismatchException(ledgerId, entryId, entryLogId, pos);
+                }
+            } finally {
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Whether the stored entries of the ledger should have their CRC32C digest verified. The scrub
+     * runs in the background, so it waits for the digest type of the ledger to be known.
+     */
+    private boolean isCrc32cLedger(long ledgerId) throws IOException {
+        LedgerDigestTypeCache digestTypes = ledgerDigestTypes;
+        if (digestTypes == null) {
+            return false;
+        }
+        try {
+            return digestTypes.get(ledgerId) == DigestType.CRC32C;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the digest type of ledger " + ledgerId, e);
+        }
     }
 
     private void validateEntry(long ledgerId, long entryId, long entryLogId, long pos, ByteBuf sizeBuff)
@@ -889,21 +1074,42 @@ public class EntryLogger {
 
     private BufferedReadChannel getChannelForLogId(long entryLogId) throws IOException {
         BufferedReadChannel fc = getFromChannels(entryLogId);
-        if (fc != null) {
+        // The channel is closed once the log has been offloaded, then the offloaded copy is opened
+        if (fc != null && fc.isOpen()) {
             return fc;
         }
-        File file = findFile(entryLogId);
-        // get channel is used to open an existing entry log file
-        // it would be better to open using read mode
-        FileChannel newFc = new RandomAccessFile(file, "r").getChannel();
-        FileChannel oldFc = logid2FileChannel.putIfAbsent(entryLogId, newFc);
-        if (null != oldFc) {
-            newFc.close();
-            newFc = oldFc;
+        File file;
+        FileChannel newFc;
+        while (true) {
+            file = findFile(entryLogId);
+            // get channel is used to open an existing entry log file
+            // it would be better to open using read mode
+            try {
+                newFc = new RandomAccessFile(file, "r").getChannel();
+            } catch (FileNotFoundException fnfe) {
+                if (file.exists()) {
+                    throw fnfe;
+                }
+                // Just offloaded to the cold tier, look for it again
+                continue;
+            }
+            FileChannel oldFc = logid2FileChannel.putIfAbsent(entryLogId, newFc);
+            if (null != oldFc) {
+                newFc.close();
+                newFc = oldFc;
+            } else if (!file.exists()) {
+                // Offloaded while it was opened, don't keep the previous copy open
+                logid2FileChannel.remove(entryLogId, newFc);
+                newFc.close();
+                continue;
+            }
+            break;
         }
         // We set the position of the write buffer of this buffered channel to Long.MAX_VALUE
         // so that there are no overlaps with the write buffer while reading
-        fc = new BufferedReadChannel(newFc, conf.getReadBufferBytes());
+        int readBufferBytes = coldLedgerDirs.contains(file.getParentFile())
+                ? conf.getColdReadBufferBytes() : conf.getReadBufferBytes();
+        fc = new BufferedReadChannel(newFc, readBufferBytes);
         putInReadChannels(entryLogId, fc);
         return fc;
     }
@@ -912,7 +1118,7 @@ public class EntryLogger {
      * Whether the log file exists or not.
      */
     boolean logExists(long logId) {
-        for (File d : ledgerDirsManager.getAllLedgerDirs()) {
+        for (File d : getAllEntryLogDirs()) {
             File f = new File(d, Long.toHexString(logId) + ".log");
             if (f.exists()) {
                 return true;
@@ -921,6 +1127,19 @@ public class EntryLogger {
         return false;
     }
 
+    /**
+     * Get the last modification time of a log file.
+     *
+     * @return the last modification time in milliseconds, or 0 if the log file doesn't exist
+     */
+    long getLastModifiedTime(long logId) {
+        try {
+            return findFile(logId).lastModified();
+        } catch (FileNotFoundException e) {
+            return 0;
+        }
+    }
+
     /**
      * Returns a set with the ids of all the entry log files.
      *
@@ -936,7 +1155,7 @@ public class EntryLogger {
             }
         };
 
-        for (File d : ledgerDirsManager.getAllLedgerDirs()) {
+        for (File d : getAllEntryLogDirs()) {
             File[] files = d.listFiles(logFileFilter);
             if (files == null) {
                 throw new IOException("Failed to get list of files in directory " + d);
@@ -951,7 +1170,7 @@ public class EntryLogger {
     }
 
     private File findFile(long logId) throws FileNotFoundException {
-        for (File d : ledgerDirsManager.getAllLedgerDirs()) {
+        for (File d : getAllEntryLogDirs()) {
             File f = new File(d, Long.toHexString(logId) + ".log");
             if (f.exists()) {
                 return f;
@@ -1034,6 +1253,82 @@ public class EntryLogger {
         }
     }
 
+    /**
+     * Scan entry log reading it in large sequential chunks, instead of going through the read buffer
+     * of the entry log channel. The next chunk is read ahead by the kernel while the entries of the
+     * current chunk are processed, and the chunks processed are dropped from the page cache.
+     *
+     * <p>The entries passed to the scanner are only valid until {@link EntryLogScanner#process} returns.
+     *
+     * @param entryLogId Entry Log Id
+     * @param scanner Entry Log Scanner
+     * @param chunkSize size of the reads, extended to fit entries larger than it
+     * @throws IOException
+     */
+    public void scanEntryLogInChunks(long entryLogId, EntryLogScanner scanner, int chunkSize) throws IOException {
+        if (entryLogManager.getCurrentLogIfPresent(entryLogId) != null) {
+            // The end of the entry log could still be in the write buffer
+            scanEntryLog(entryLogId, scanner);
+            return;
+        }
+
+        File file = findFile(entryLogId);
+        ByteBuf chunk = allocator.directBuffer(chunkSize);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            int fd = NativeIO.getSysFileDescriptor(raf.getFD());
+            long size = channel.size();
+
+            // Start the read position in the current entry log file to be after
+            // the header where all of the ledger entries are.
+            long readPos = LOGFILE_HEADER_SIZE;
+            long processedPos = 0;
+            NativeIO.bestEffortReadAhead(fd, readPos, chunkSize);
+            while (readPos < size) {
+                // Fill the rest of the chunk, after the partial entry left from the previous one
+                int toRead = (int) Math.min(chunk.writableBytes(), size - readPos);
+                int read = chunk.writeBytes(channel, readPos, toRead);
+                if (read <= 0) {
+                    LOG.warn("Short read from entrylog {}@{}", entryLogId, readPos);
+                    return;
+                }
+                readPos += read;
+                NativeIO.bestEffortReadAhead(fd, readPos, chunkSize);
+
+                while (chunk.readableBytes() >= 4 + 8) {
+                    int entrySize = chunk.getInt(chunk.readerIndex());
+                    long offset = readPos - chunk.readableBytes();
+                    if (entrySize < 0 || offset + 4 + entrySize > size) {
+                        LOG.warn("bad read for ledger entry from entryLog {}@{} (entry size {})",
+                                entryLogId, offset, entrySize);
+                        return;
+                    }
+                    if (chunk.readableBytes() < 4 + entrySize) {
+                        if (4 + entrySize > chunk.capacity()) {
+                            // Make room for the whole entry
+                            chunk.discardReadBytes();
+                            chunk.capacity(4 + entrySize);
+                        }
+                        break;
+                    }
+
+                    long ledgerId = chunk.getLong(chunk.readerIndex() + 4);
+                    if (ledgerId != INVALID_LID && scanner.accept(ledgerId)) {
+                        scanner.process(ledgerId, offset, chunk.slice(chunk.readerIndex() + 4, entrySize));
+                    }
+                    chunk.skipBytes(4 + entrySize);
+                }
+                // The scanned part of the log won't be read again, don't let it evict other pages
+                long chunkEnd = readPos - chunk.readableBytes();
+                NativeIO.bestEffortRemoveFromPageCache(fd, processedPos, chunkEnd - processedPos);
+                processedPos = chunkEnd;
+                chunk.discardReadBytes();
+            }
+        } finally {
+            chunk.release();
+        }
+    }
+
     public EntryLogMetadata getEntryLogMetadata(long entryLogId) throws IOException {
         // First try to extract the EntryLogMetada from the index, if there's no index then fallback to scanning the
         // entry log
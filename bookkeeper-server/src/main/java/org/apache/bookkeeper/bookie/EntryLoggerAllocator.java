@@ -165,7 +165,11 @@ class EntryLoggerAllocator {
         File newLogFile = new File(dirForNextEntryLog, logFileName);
         FileChannel channel = new RandomAccessFile(newLogFile, "rw").getChannel();
 
-        BufferedLogChannel logChannel = new BufferedLogChannel(byteBufAllocator, channel, conf.getWriteBufferBytes(),
+        // Entries are copied to the compaction logs in batches as large as the compaction reads
+        int writeBufferSize = COMPACTING_SUFFIX.equals(suffix)
+                ? Math.max(conf.getWriteBufferBytes(), conf.getCompactionReadBufferBytes())
+                : conf.getWriteBufferBytes();
+        BufferedLogChannel logChannel = new BufferedLogChannel(byteBufAllocator, channel, writeBufferSize,
                 conf.getReadBufferBytes(), preallocatedLogId, newLogFile, conf.getFlushIntervalInBytes());
         logfileHeader.readerIndex(0);
         logChannel.write(logfileHeader);
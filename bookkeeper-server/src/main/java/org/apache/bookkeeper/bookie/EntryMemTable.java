@@ -19,8 +19,12 @@
 
 package org.apache.bookkeeper.bookie;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.ConcurrentSkipListMap;
@@ -28,7 +32,9 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 import org.apache.bookkeeper.bookie.Bookie.NoLedgerException;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
@@ -43,26 +49,30 @@ import org.slf4j.LoggerFactory;
 /**
  * The EntryMemTable holds in-memory representation to the entries not-yet flushed.
  * When asked to flush, current EntrySkipList is moved to snapshot and is cleared.
- * We continue to serve edits out of new EntrySkipList and backing snapshot until
+ * We continue to serve edits out of new EntrySkipList and backing snapshots until
  * flusher reports in that the flush succeeded. At that point we let the snapshot go.
+ *
+ * <p>Up to {@link ServerConfiguration#getSkipListMaxSnapshots()} snapshots can wait for the flusher,
+ * so that the adds are not throttled while a slow flush is in progress. The snapshots are flushed
+ * from the oldest to the newest.
  */
 public class EntryMemTable implements AutoCloseable{
     private static Logger logger = LoggerFactory.getLogger(EntryMemTable.class);
+
+    private static final int MAX_LOCK_STRIPES = 64;
+
     /**
      * Entry skip list.
      */
     static class EntrySkipList extends ConcurrentSkipListMap<EntryKey, EntryKeyValue> {
         final Checkpoint cp;
-        static final EntrySkipList EMPTY_VALUE = new EntrySkipList(Checkpoint.MAX) {
-            @Override
-            public boolean isEmpty() {
-                return true;
-            }
-        };
+        // Arena holding the values of this skip list, released once the skip list is flushed
+        final SkipListArena arena;
 
-        EntrySkipList(final Checkpoint cp) {
+        EntrySkipList(final Checkpoint cp, final SkipListArena arena) {
             super(EntryKey.COMPARATOR);
             this.cp = cp;
+            this.arena = arena;
         }
 
         int compareTo(final Checkpoint cp) {
@@ -88,27 +98,32 @@ public class EntryMemTable implements AutoCloseable{
 
     volatile EntrySkipList kvmap;
 
-    // Snapshot of EntryMemTable.  Made for flusher.
-    volatile EntrySkipList snapshot;
+    // Snapshots of EntryMemTable, from the oldest to the newest. Made for flusher.
+    // The array is never modified, it is replaced under the write locks.
+    volatile EntrySkipList[] snapshots = new EntrySkipList[0];
 
     final ServerConfiguration conf;
     final CheckpointSource checkpointSource;
 
-    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // The adds and reads take the read lock of the stripe of their thread, so that they don't contend
+    // on a single lock. Swapping the skip lists takes all the write locks.
+    private final ReentrantReadWriteLock[] locks;
 
     // Used to track own data size
     final AtomicLong size;
 
     final long skipListSizeLimit;
+    final int maxSnapshots;
     final Semaphore skipListSemaphore;
 
-    SkipListArena allocator;
+    // Allocator of the arenas in direct memory, or null to keep them on the heap
+    private final ByteBufAllocator arenaAllocator;
 
     // flag indicating the status of the previous flush call
     private final AtomicBoolean previousFlushSucceeded;
 
     private EntrySkipList newSkipList() {
-        return new EntrySkipList(checkpointSource.newCheckpoint());
+        return new EntrySkipList(checkpointSource.newCheckpoint(), new SkipListArena(conf, arenaAllocator));
     }
 
     // Stats
@@ -120,35 +135,72 @@ public class EntryMemTable implements AutoCloseable{
     */
     public EntryMemTable(final ServerConfiguration conf, final CheckpointSource source,
                          final StatsLogger statsLogger) {
+        this(conf, source, statsLogger, ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+    * Constructor.
+    * @param conf Server configuration
+    * @param allocator allocator of the arenas, when they are kept in direct memory
+    */
+    public EntryMemTable(final ServerConfiguration conf, final CheckpointSource source,
+                         final StatsLogger statsLogger, final ByteBufAllocator allocator) {
         this.checkpointSource = source;
-        this.kvmap = newSkipList();
-        this.snapshot = EntrySkipList.EMPTY_VALUE;
         this.conf = conf;
+        this.arenaAllocator = conf.isSkipListArenaOffHeap() ? allocator : null;
+        this.kvmap = newSkipList();
         this.size = new AtomicLong(0);
-        this.allocator = new SkipListArena(conf);
         this.previousFlushSucceeded = new AtomicBoolean(true);
         // skip list size limit
         this.skipListSizeLimit = conf.getSkipListSizeLimit();
+        this.maxSnapshots = Math.max(1, conf.getSkipListMaxSnapshots());
 
-        if (skipListSizeLimit > (Integer.MAX_VALUE - 1) / 2) {
-            // gives 2*1023MB for mem table.
+        if (skipListSizeLimit > (Integer.MAX_VALUE - 1) / (maxSnapshots + 1)) {
+            // gives 2*1023MB for mem table with a single snapshot.
             // consider a way to create semaphore with long num of permits
             // until that 1023MB should be enough for everything (tm)
-            throw new IllegalArgumentException("skiplist size over " + ((Integer.MAX_VALUE - 1) / 2));
+            throw new IllegalArgumentException("skiplist size over " + ((Integer.MAX_VALUE - 1) / (maxSnapshots + 1)));
+        }
+        // the size for the snapshots in progress + incoming data
+        this.skipListSemaphore = new Semaphore((int) skipListSizeLimit * (maxSnapshots + 1));
+
+        int numLocks = 1;
+        while (numLocks < Runtime.getRuntime().availableProcessors() && numLocks < MAX_LOCK_STRIPES) {
+            numLocks <<= 1;
+        }
+        this.locks = new ReentrantReadWriteLock[numLocks];
+        for (int i = 0; i < numLocks; i++) {
+            this.locks[i] = new ReentrantReadWriteLock();
         }
-        // double the size for snapshot in progress + incoming data
-        this.skipListSemaphore = new Semaphore((int) skipListSizeLimit * 2);
 
         // Stats
         this.memTableStats = new EntryMemTableStats(statsLogger);
     }
 
+    private Lock readLock() {
+        return locks[(int) Thread.currentThread().getId() & (locks.length - 1)].readLock();
+    }
+
+    private void writeLockAll() {
+        for (ReentrantReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+    }
+
+    private void writeUnlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+
     void dump() {
         for (EntryKey key: this.kvmap.keySet()) {
             logger.info(key.toString());
         }
-        for (EntryKey key: this.snapshot.keySet()) {
-            logger.info(key.toString());
+        for (EntrySkipList snapshot : this.snapshots) {
+            for (EntryKey key: snapshot.keySet()) {
+                logger.info(key.toString());
+            }
         }
     }
 
@@ -167,24 +219,26 @@ public class EntryMemTable implements AutoCloseable{
      */
     Checkpoint snapshot(Checkpoint oldCp) throws IOException {
         Checkpoint cp = null;
-        // No-op if snapshot currently has entries
-        if (this.snapshot.isEmpty() && this.kvmap.compareTo(oldCp) < 0) {
+        // No-op if all the snapshots currently have entries
+        if (this.snapshots.length < maxSnapshots && this.kvmap.compareTo(oldCp) < 0) {
             final long startTimeNanos = MathUtils.nowInNano();
-            this.lock.writeLock().lock();
+            writeLockAll();
             try {
-                if (this.snapshot.isEmpty() && !this.kvmap.isEmpty()
+                EntrySkipList[] current = this.snapshots;
+                if (current.length < maxSnapshots && !this.kvmap.isEmpty()
                         && this.kvmap.compareTo(oldCp) < 0) {
-                    this.snapshot = this.kvmap;
+                    EntrySkipList[] newSnapshots = Arrays.copyOf(current, current.length + 1);
+                    newSnapshots[current.length] = this.kvmap;
+                    this.snapshots = newSnapshots;
+                    // a fresh arena comes with the new skip list
                     this.kvmap = newSkipList();
                     // get the checkpoint of the memtable.
                     cp = this.kvmap.cp;
                     // Reset heap to not include any keys
                     this.size.set(0);
-                    // Reset allocator so we get a fresh buffer for the new EntryMemTable
-                    this.allocator = new SkipListArena(conf);
                 }
             } finally {
-                this.lock.writeLock().unlock();
+                writeUnlockAll();
             }
 
             if (null != cp) {
@@ -233,39 +287,55 @@ public class EntryMemTable implements AutoCloseable{
     }
 
     /**
-     * Flush snapshot and clear it iff its data is before checkpoint. Only this
-     * function change non-empty this.snapshot.
-     *
-     * <p>EntryMemTableWithParallelFlusher overrides this flushSnapshot method. So
-     * any change in functionality/behavior/characteristic of this method should
-     * also reflect in EntryMemTableWithParallelFlusher's flushSnapshot method.
+     * Flush the snapshots and clear them, from the oldest, as long as their data is before
+     * checkpoint. Only this function removes snapshots.
      */
     long flushSnapshot(final SkipListFlusher flusher, Checkpoint checkpoint) throws IOException {
         long size = 0;
-        if (this.snapshot.compareTo(checkpoint) < 0) {
-            long ledger, ledgerGC = -1;
+        EntrySkipList[] current = this.snapshots;
+        if (current.length > 0 && current[0].compareTo(checkpoint) < 0) {
             synchronized (this) {
-                EntrySkipList keyValues = this.snapshot;
-                if (keyValues.compareTo(checkpoint) < 0) {
-                    for (EntryKey key : keyValues.keySet()) {
-                        EntryKeyValue kv = (EntryKeyValue) key;
-                        size += kv.getLength();
-                        ledger = kv.getLedgerId();
-                        if (ledgerGC != ledger) {
-                            try {
-                                flusher.process(ledger, kv.getEntryId(), kv.getValueAsByteBuffer());
-                            } catch (NoLedgerException exception) {
-                                ledgerGC = ledger;
-                            }
-                        }
+                while (true) {
+                    current = this.snapshots;
+                    if (current.length == 0 || current[0].compareTo(checkpoint) >= 0) {
+                        break;
                     }
-                    memTableStats.getFlushBytesCounter().add(size);
+                    EntrySkipList keyValues = current[0];
+                    long flushedSize = flushSkipList(flusher, keyValues);
+                    memTableStats.getFlushBytesCounter().add(flushedSize);
                     clearSnapshot(keyValues);
+                    skipListSemaphore.release((int) flushedSize);
+                    size += flushedSize;
                 }
             }
         }
+        return size;
+    }
 
-        skipListSemaphore.release((int) size);
+    /**
+     * Write all the entries of a snapshot through the flusher.
+     *
+     * <p>EntryMemTableWithParallelFlusher overrides this flushSkipList method. So
+     * any change in functionality/behavior/characteristic of this method should
+     * also reflect in EntryMemTableWithParallelFlusher's flushSkipList method.
+     *
+     * @return the size of the entries flushed
+     */
+    long flushSkipList(final SkipListFlusher flusher, EntrySkipList keyValues) throws IOException {
+        long size = 0;
+        long ledger, ledgerGC = -1;
+        for (EntryKey key : keyValues.keySet()) {
+            EntryKeyValue kv = (EntryKeyValue) key;
+            size += kv.getLength();
+            ledger = kv.getLedgerId();
+            if (ledgerGC != ledger) {
+                try {
+                    flusher.process(ledger, kv.getEntryId(), kv.getValue());
+                } catch (NoLedgerException exception) {
+                    ledgerGC = ledger;
+                }
+            }
+        }
         return size;
     }
 
@@ -277,14 +347,17 @@ public class EntryMemTable implements AutoCloseable{
     void clearSnapshot(final EntrySkipList keyValues) {
         // Caller makes sure that keyValues not empty
         assert !keyValues.isEmpty();
-        this.lock.writeLock().lock();
+        writeLockAll();
         try {
-            // create a new snapshot and let the old one go.
-            assert this.snapshot == keyValues;
-            this.snapshot = EntrySkipList.EMPTY_VALUE;
+            // let the oldest snapshot go.
+            EntrySkipList[] current = this.snapshots;
+            assert current.length > 0 && current[0] == keyValues;
+            this.snapshots = Arrays.copyOfRange(current, 1, current.length);
         } finally {
-            this.lock.writeLock().unlock();
+            writeUnlockAll();
         }
+        // No reader can find the values anymore, the ones already read have been retained
+        keyValues.arena.release();
     }
 
     /**
@@ -316,12 +389,14 @@ public class EntryMemTable implements AutoCloseable{
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(throttlingStartTimeNanos), TimeUnit.NANOSECONDS);
             }
 
-            this.lock.readLock().lock();
+            Lock readLock = readLock();
+            readLock.lock();
             try {
-                EntryKeyValue toAdd = cloneWithAllocator(ledgerId, entryId, entry);
-                size = internalAdd(toAdd);
+                EntrySkipList skipList = this.kvmap;
+                EntryKeyValue toAdd = cloneWithAllocator(skipList.arena, ledgerId, entryId, entry);
+                size = internalAdd(skipList, toAdd);
             } finally {
-                this.lock.readLock().unlock();
+                readLock.unlock();
             }
             success = true;
             return size;
@@ -341,9 +416,9 @@ public class EntryMemTable implements AutoCloseable{
     * allocator, and doesn't take the lock.
     * Callers should ensure they already have the read lock taken
     */
-    private long internalAdd(final EntryKeyValue toAdd) throws IOException {
+    private long internalAdd(final EntrySkipList skipList, final EntryKeyValue toAdd) throws IOException {
         long sizeChange = 0;
-        if (kvmap.putIfAbsent(toAdd, toAdd) == null) {
+        if (skipList.putIfAbsent(toAdd, toAdd) == null) {
             sizeChange = toAdd.getLength();
             size.addAndGet(sizeChange);
         }
@@ -360,7 +435,8 @@ public class EntryMemTable implements AutoCloseable{
         return new EntryKeyValue(ledgerId, entryId, buf, offset, length);
     }
 
-    private EntryKeyValue cloneWithAllocator(long ledgerId, long entryId, final ByteBuffer entry) {
+    private EntryKeyValue cloneWithAllocator(SkipListArena allocator, long ledgerId, long entryId,
+                                             final ByteBuffer entry) {
         int len = entry.remaining();
         SkipListArena.MemorySlice alloc = allocator.allocateBytes(len);
         if (alloc == null) {
@@ -370,7 +446,7 @@ public class EntryMemTable implements AutoCloseable{
         }
 
         assert alloc.getData() != null;
-        entry.get(alloc.getData(), alloc.getOffset(), len);
+        alloc.getData().setBytes(alloc.getOffset(), entry);
         return new EntryKeyValue(ledgerId, entryId, alloc.getData(), alloc.getOffset(), len);
     }
 
@@ -381,19 +457,39 @@ public class EntryMemTable implements AutoCloseable{
      * @return the entry kv or null if none found.
      */
     public EntryKeyValue getEntry(long ledgerId, long entryId) throws IOException {
+        return getEntry(ledgerId, entryId, Function.identity());
+    }
+
+    /**
+     * Find the value of the entry with given key.
+     * @param ledgerId
+     * @param entryId
+     * @return the retained value, to be released by the caller, or null if none found.
+     */
+    public ByteBuf getEntryValue(long ledgerId, long entryId) throws IOException {
+        return getEntry(ledgerId, entryId, EntryKeyValue::getValueAsByteBuffer);
+    }
+
+    private <T> T getEntry(long ledgerId, long entryId, Function<EntryKeyValue, T> valueFn) throws IOException {
         EntryKey key = new EntryKey(ledgerId, entryId);
-        EntryKeyValue value = null;
+        T value = null;
         long startTimeNanos = MathUtils.nowInNano();
         boolean success = false;
-        this.lock.readLock().lock();
+        Lock readLock = readLock();
+        readLock.lock();
         try {
-            value = this.kvmap.get(key);
-            if (value == null) {
-                value = this.snapshot.get(key);
+            EntryKeyValue kv = this.kvmap.get(key);
+            EntrySkipList[] current = this.snapshots;
+            for (int i = current.length - 1; kv == null && i >= 0; i--) {
+                kv = current[i].get(key);
+            }
+            if (kv != null) {
+                // read the value under the lock, before its arena can be released
+                value = valueFn.apply(kv);
             }
             success = true;
         } finally {
-            this.lock.readLock().unlock();
+            readLock.unlock();
             if (success) {
                 memTableStats.getGetEntryStats()
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
@@ -412,19 +508,39 @@ public class EntryMemTable implements AutoCloseable{
      * @return the entry kv or null if none found.
      */
     public EntryKeyValue getLastEntry(long ledgerId) throws IOException {
+        return getLastEntry(ledgerId, Function.identity());
+    }
+
+    /**
+     * Find the value of the last entry with the given ledger key.
+     * @param ledgerId
+     * @return the retained value, to be released by the caller, or null if none found.
+     */
+    public ByteBuf getLastEntryValue(long ledgerId) throws IOException {
+        return getLastEntry(ledgerId, EntryKeyValue::getValueAsByteBuffer);
+    }
+
+    private <T> T getLastEntry(long ledgerId, Function<EntryKeyValue, T> valueFn) throws IOException {
         EntryKey result = null;
         EntryKey key = new EntryKey(ledgerId, Long.MAX_VALUE);
+        T value = null;
         long startTimeNanos = MathUtils.nowInNano();
         boolean success = false;
-        this.lock.readLock().lock();
+        Lock readLock = readLock();
+        readLock.lock();
         try {
             result = this.kvmap.floorKey(key);
-            if (result == null || result.getLedgerId() != ledgerId) {
-                result = this.snapshot.floorKey(key);
+            EntrySkipList[] current = this.snapshots;
+            for (int i = current.length - 1; (result == null || result.getLedgerId() != ledgerId) && i >= 0; i--) {
+                result = current[i].floorKey(key);
+            }
+            if (result != null && result.getLedgerId() == ledgerId) {
+                // read the value under the lock, before its arena can be released
+                value = valueFn.apply((EntryKeyValue) result);
             }
             success = true;
         } finally {
-            this.lock.readLock().unlock();
+            readLock.unlock();
             if (success) {
                 memTableStats.getGetEntryStats()
                     .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
@@ -434,10 +550,7 @@ public class EntryMemTable implements AutoCloseable{
             }
         }
 
-        if (result == null || result.getLedgerId() != ledgerId) {
-            return null;
-        }
-        return (EntryKeyValue) result;
+        return value;
     }
 
     /**
@@ -452,12 +565,21 @@ public class EntryMemTable implements AutoCloseable{
      * @return
      */
     boolean isEmpty() {
-        return size.get() == 0 && snapshot.isEmpty();
+        return size.get() == 0 && snapshots.length == 0;
     }
 
     @Override
     public void close() throws Exception {
-        // no-op
+        // free the direct memory of the entries that are not flushed
+        writeLockAll();
+        try {
+            kvmap.arena.release();
+            for (EntrySkipList snapshot : snapshots) {
+                snapshot.arena.release();
+            }
+        } finally {
+            writeUnlockAll();
+        }
     }
 
     /*
@@ -469,8 +591,9 @@ public class EntryMemTable implements AutoCloseable{
         EntryKey thisLedgerFloorEntry = new EntryKey(ledgerId, 0);
         EntryKey thisLedgerCeilingEntry = new EntryKey(ledgerId, Long.MAX_VALUE);
         Iterator<EntryKey> thisLedgerEntriesInKVMap;
-        Iterator<EntryKey> thisLedgerEntriesInSnapshot;
-        this.lock.readLock().lock();
+        Iterator<EntryKey>[] thisLedgerEntriesInSnapshots;
+        Lock readLock = readLock();
+        readLock.lock();
         try {
             /*
              * Gets a view of the portion of this map that corresponds to
@@ -493,14 +616,30 @@ public class EntryMemTable implements AutoCloseable{
              */
             thisLedgerEntriesInKVMap = this.kvmap.subMap(thisLedgerFloorEntry, thisLedgerCeilingEntry).keySet()
                     .iterator();
-            thisLedgerEntriesInSnapshot = this.snapshot.subMap(thisLedgerFloorEntry, thisLedgerCeilingEntry).keySet()
-                    .iterator();
+            EntrySkipList[] current = this.snapshots;
+            @SuppressWarnings("unchecked")
+            Iterator<EntryKey>[] iterators = new Iterator[current.length];
+            for (int i = 0; i < current.length; i++) {
+                iterators[i] = current[i].subMap(thisLedgerFloorEntry, thisLedgerCeilingEntry).keySet().iterator();
+            }
+            thisLedgerEntriesInSnapshots = iterators;
         } finally {
-            this.lock.readLock().unlock();
+            readLock.unlock();
         }
-        return IteratorUtility.mergeIteratorsForPrimitiveLongIterator(thisLedgerEntriesInKVMap,
-                thisLedgerEntriesInSnapshot, EntryKey.COMPARATOR, (entryKey) -> {
+        PrimitiveIterator.OfLong entries = IteratorUtility.mergeIteratorsForPrimitiveLongIterator(
+                thisLedgerEntriesInKVMap,
+                thisLedgerEntriesInSnapshots.length > 0 ? thisLedgerEntriesInSnapshots[0]
+                        : Collections.emptyIterator(),
+                EntryKey.COMPARATOR, (entryKey) -> {
                     return entryKey.entryId;
                 });
+        for (int i = 1; i < thisLedgerEntriesInSnapshots.length; i++) {
+            entries = IteratorUtility.mergePrimitiveLongIterator(entries,
+                    IteratorUtility.mergeIteratorsForPrimitiveLongIterator(thisLedgerEntriesInSnapshots[i],
+                            Collections.emptyIterator(), EntryKey.COMPARATOR, (entryKey) -> {
+                                return entryKey.entryId;
+                            }));
+        }
+        return entries;
     }
 }
@@ -19,15 +19,16 @@
 
 package org.apache.bookkeeper.bookie;
 
+import io.netty.buffer.ByteBufAllocator;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.Bookie.NoLedgerException;
-import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -43,14 +44,19 @@ class EntryMemTableWithParallelFlusher extends EntryMemTable {
 
     public EntryMemTableWithParallelFlusher(final ServerConfiguration conf, final CheckpointSource source,
             final StatsLogger statsLogger) {
-        super(conf, source, statsLogger);
+        this(conf, source, statsLogger, ByteBufAllocator.DEFAULT);
+    }
+
+    public EntryMemTableWithParallelFlusher(final ServerConfiguration conf, final CheckpointSource source,
+            final StatsLogger statsLogger, final ByteBufAllocator allocator) {
+        super(conf, source, statsLogger, allocator);
         this.flushExecutor = OrderedExecutor.newBuilder().numThreads(conf.getNumOfMemtableFlushThreads())
                 .name("MemtableFlushThreads").build();
     }
 
     /**
-     * Functionally this overridden flushSnapshot does the same as
-     * EntryMemTable's flushSnapshot, but it uses flushExecutor
+     * Functionally this overridden flushSkipList does the same as
+     * EntryMemTable's flushSkipList, but it uses flushExecutor
      * (OrderedExecutor) to process an entry through flusher.
      *
      * <p>SubMaps of the snapshot corresponding to the entries of the ledgers are
@@ -58,98 +64,99 @@ class EntryMemTableWithParallelFlusher extends EntryMemTable {
      * orderingKey to flush process the entries of a ledger.
      */
     @Override
-    long flushSnapshot(final SkipListFlusher flusher, Checkpoint checkpoint) throws IOException {
+    long flushSkipList(final SkipListFlusher flusher, EntrySkipList keyValues) throws IOException {
         AtomicLong flushedSize = new AtomicLong();
-        if (this.snapshot.compareTo(checkpoint) < 0) {
-            synchronized (this) {
-                EntrySkipList keyValues = this.snapshot;
-
-                Phaser pendingNumOfLedgerFlushes = new Phaser(1);
-                AtomicReference<Exception> exceptionWhileFlushingParallelly = new AtomicReference<Exception>();
-
-                if (keyValues.compareTo(checkpoint) < 0) {
+        Phaser pendingNumOfLedgerFlushes = new Phaser(1);
+        AtomicReference<Exception> exceptionWhileFlushingParallelly = new AtomicReference<Exception>();
 
-                    Map.Entry<EntryKey, EntryKeyValue> thisLedgerFirstMapEntry = keyValues.firstEntry();
-                    EntryKeyValue thisLedgerFirstEntry;
-                    long thisLedgerId;
+        Map.Entry<EntryKey, EntryKeyValue> thisLedgerFirstMapEntry = keyValues.firstEntry();
+        EntryKeyValue thisLedgerFirstEntry;
+        long thisLedgerId;
 
-                    while (thisLedgerFirstMapEntry != null) {
-                        thisLedgerFirstEntry = thisLedgerFirstMapEntry.getValue();
-                        thisLedgerId = thisLedgerFirstEntry.getLedgerId();
-                        EntryKey thisLedgerCeilingKeyMarker = new EntryKey(thisLedgerId, Long.MAX_VALUE - 1);
-                        /*
-                         * Gets a view of the portion of this map that
-                         * corresponds to entries of this ledger.
-                         */
-                        ConcurrentNavigableMap<EntryKey, EntryKeyValue> thisLedgerEntries = keyValues
-                                .subMap(thisLedgerFirstEntry, thisLedgerCeilingKeyMarker);
-                        pendingNumOfLedgerFlushes.register();
-                        flushExecutor.executeOrdered(thisLedgerId, new SafeRunnable() {
-                            @Override
-                            public void safeRun() {
+        while (thisLedgerFirstMapEntry != null) {
+            thisLedgerFirstEntry = thisLedgerFirstMapEntry.getValue();
+            thisLedgerId = thisLedgerFirstEntry.getLedgerId();
+            EntryKey thisLedgerCeilingKeyMarker = new EntryKey(thisLedgerId, Long.MAX_VALUE - 1);
+            /*
+             * Gets a view of the portion of this map that
+             * corresponds to entries of this ledger.
+             */
+            ConcurrentNavigableMap<EntryKey, EntryKeyValue> thisLedgerEntries = keyValues
+                    .subMap(thisLedgerFirstEntry, thisLedgerCeilingKeyMarker);
+            pendingNumOfLedgerFlushes.register();
+            flushExecutor.executeOrdered(thisLedgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    try {
+                        long ledger;
+                        boolean ledgerDeleted = false;
+                        for (EntryKey key : thisLedgerEntries.keySet()) {
+                            EntryKeyValue kv = (EntryKeyValue) key;
+                            flushedSize.addAndGet(kv.getLength());
+                            ledger = kv.getLedgerId();
+                            if (!ledgerDeleted) {
                                 try {
-                                    long ledger;
-                                    boolean ledgerDeleted = false;
-                                    for (EntryKey key : thisLedgerEntries.keySet()) {
-                                        EntryKeyValue kv = (EntryKeyValue) key;
-                                        flushedSize.addAndGet(kv.getLength());
-                                        ledger = kv.getLedgerId();
-                                        if (!ledgerDeleted) {
-                                            try {
-                                                flusher.process(ledger, kv.getEntryId(), kv.getValueAsByteBuffer());
-                                            } catch (NoLedgerException exception) {
-                                                ledgerDeleted = true;
-                                            }
-                                        }
-                                    }
-                                    pendingNumOfLedgerFlushes.arriveAndDeregister();
-                                } catch (Exception exc) {
-                                    log.error("Got Exception while trying to flush process entryies: ", exc);
-                                    exceptionWhileFlushingParallelly.set(exc);
-                                    /*
-                                     * if we get any unexpected exception while
-                                     * trying to flush process entries of a
-                                     * ledger, then terminate the
-                                     * pendingNumOfLedgerFlushes phaser.
-                                     */
-                                    pendingNumOfLedgerFlushes.forceTermination();
+                                    flusher.process(ledger, kv.getEntryId(), kv.getValue());
+                                } catch (NoLedgerException exception) {
+                                    ledgerDeleted = true;
                                 }
                             }
-                        });
-                        thisLedgerFirstMapEntry = keyValues.ceilingEntry(thisLedgerCeilingKeyMarker);
-                    }
-
-                    boolean phaserTerminatedAbruptly = false;
-                    try {
+                        }
+                        pendingNumOfLedgerFlushes.arriveAndDeregister();
+                    } catch (Exception exc) {
+                        log.error("Got Exception while trying to flush process entryies: ", exc);
+                        exceptionWhileFlushingParallelly.set(exc);
                         /*
-                         * while flush processing entries of a ledger if it
-                         * failed because of any unexpected exception then
-                         * pendingNumOfLedgerFlushes phaser would be force
-                         * terminated and because of that arriveAndAwaitAdvance
-                         * would be a negative value.
+                         * if we get any unexpected exception while
+                         * trying to flush process entries of a
+                         * ledger, then terminate the
+                         * pendingNumOfLedgerFlushes phaser.
                          */
-                        phaserTerminatedAbruptly = (pendingNumOfLedgerFlushes.arriveAndAwaitAdvance() < 0);
-                    } catch (IllegalStateException ise) {
-                        log.error("Got IllegalStateException while awaiting on Phaser", ise);
-                        throw new IOException("Got IllegalStateException while awaiting on Phaser", ise);
-                    }
-                    if (phaserTerminatedAbruptly) {
-                        log.error("Phaser is terminated while awaiting flushExecutor to complete the entry flushes",
-                                exceptionWhileFlushingParallelly.get());
-                        throw new IOException("Failed to complete the flushSnapshotByParallelizing",
-                                exceptionWhileFlushingParallelly.get());
+                        pendingNumOfLedgerFlushes.forceTermination();
                     }
-                    memTableStats.getFlushBytesCounter().add(flushedSize.get());
-                    clearSnapshot(keyValues);
                 }
-            }
+            });
+            thisLedgerFirstMapEntry = keyValues.ceilingEntry(thisLedgerCeilingKeyMarker);
+        }
+
+        boolean phaserTerminatedAbruptly = false;
+        try {
+            /*
+             * while flush processing entries of a ledger if it
+             * failed because of any unexpected exception then
+             * pendingNumOfLedgerFlushes phaser would be force
+             * terminated and because of that arriveAndAwaitAdvance
+             * would be a negative value.
+             */
+            phaserTerminatedAbruptly = (pendingNumOfLedgerFlushes.arriveAndAwaitAdvance() < 0);
+        } catch (IllegalStateException ise) {
+            log.error("Got IllegalStateException while awaiting on Phaser", ise);
+            throw new IOException("Got IllegalStateException while awaiting on Phaser", ise);
+        }
+        if (phaserTerminatedAbruptly) {
+            log.error("Phaser is terminated while awaiting flushExecutor to complete the entry flushes",
+                    exceptionWhileFlushingParallelly.get());
+            throw new IOException("Failed to complete the flushSnapshotByParallelizing",
+                    exceptionWhileFlushingParallelly.get());
         }
-        skipListSemaphore.release(flushedSize.intValue());
         return flushedSize.longValue();
     }
 
     @Override
     public void close() throws Exception {
+        // the flushes in progress still read the entries from the arenas released by super.close()
         flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Memtable flush threads didn't stop in time, not releasing the memtable memory");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the memtable flush threads to stop, "
+                    + "not releasing the memtable memory");
+            return;
+        }
+        super.close();
     }
 }
@@ -375,6 +375,14 @@ class FileInfo extends Watchable<LastAddConfirmedUpdateNotification> {
         return returnVal;
     }
 
+    /**
+     * Sync the writes done without forcing them, and the header, to the disk.
+     */
+    public synchronized void forceWrite() throws IOException {
+        checkOpen(true);
+        fc.force(true);
+    }
+
     // flush the header when header is changed
     public synchronized void flushHeader() throws IOException {
         if (needFlushHeader) {
@@ -476,6 +484,16 @@ class FileInfo extends Watchable<LastAddConfirmedUpdateNotification> {
     }
 
     public synchronized long write(ByteBuffer[] buffs, long position) throws IOException {
+        return write(buffs, position, true);
+    }
+
+    /**
+     * Write the buffers at the given position of the index.
+     *
+     * @param forceWrite whether the file is synced after the write, otherwise the caller is
+     *                   expected to call {@link #forceWrite()} once all its writes are done
+     */
+    public synchronized long write(ByteBuffer[] buffs, long position, boolean forceWrite) throws IOException {
         checkOpen(true);
         long total = 0;
         try {
@@ -488,7 +506,9 @@ class FileInfo extends Watchable<LastAddConfirmedUpdateNotification> {
                 total += rc;
             }
         } finally {
-            fc.force(true);
+            if (forceWrite) {
+                fc.force(true);
+            }
             long newsize = position + START_OF_DATA + total;
             if (newsize > size) {
                 size = newsize;
@@ -24,12 +24,10 @@ package org.apache.bookkeeper.bookie;
 import com.google.common.annotations.VisibleForTesting;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -56,9 +54,11 @@ public class GarbageCollectorThread extends SafeRunnable {
     private static final int SECOND = 1000;
 
     // Maps entry log files to the set of ledgers that comprise the file and the size usage per ledger
-    private Map<Long, EntryLogMetadata> entryLogMetaMap = new ConcurrentHashMap<Long, EntryLogMetadata>();
+    private final EntryLogMetadataMap entryLogMetaMap;
 
     private final ScheduledExecutorService gcExecutor;
+    // Whether the gc executor is shared with the garbage collectors of other ledger directories
+    private final boolean sharedGcExecutor;
     Future<?> scheduledFuture = null;
 
     // This is how often we want to run the Garbage Collector Thread (in milliseconds).
@@ -80,6 +80,8 @@ public class GarbageCollectorThread extends SafeRunnable {
     // Entry Logger Handle
     final EntryLogger entryLogger;
     final AbstractLogCompactor compactor;
+    final CompactionThrottler compactionThrottler;
+    final EntryLogCompactionPolicy compactionPolicy;
 
     // Stats loggers for garbage collection operations
     private final GarbageCollectorStats gcStats;
@@ -140,12 +142,48 @@ public class GarbageCollectorThread extends SafeRunnable {
                                   StatsLogger statsLogger,
                                   ScheduledExecutorService gcExecutor)
         throws IOException {
+        this(conf, ledgerManager, ledgerStorage, statsLogger, gcExecutor, false, new CompactionThrottler(conf));
+    }
+
+    /**
+     * Create a garbage collector thread running on an executor shared with the garbage collectors of
+     * other ledger directories, which compact their entry logs in parallel.
+     *
+     * <p>The executor is owned by the caller, and isn't shut down with the garbage collector.
+     *
+     * @param conf
+     *          Server Configuration Object.
+     * @param compactionThrottler
+     *          compaction rate limiter shared with the garbage collectors of the other directories
+     * @throws IOException
+     */
+    public GarbageCollectorThread(ServerConfiguration conf,
+                                  LedgerManager ledgerManager,
+                                  final CompactableLedgerStorage ledgerStorage,
+                                  StatsLogger statsLogger,
+                                  ScheduledExecutorService gcExecutor,
+                                  CompactionThrottler compactionThrottler)
+        throws IOException {
+        this(conf, ledgerManager, ledgerStorage, statsLogger, gcExecutor, true, compactionThrottler);
+    }
+
+    private GarbageCollectorThread(ServerConfiguration conf,
+                                   LedgerManager ledgerManager,
+                                   final CompactableLedgerStorage ledgerStorage,
+                                   StatsLogger statsLogger,
+                                   ScheduledExecutorService gcExecutor,
+                                   boolean sharedGcExecutor,
+                                   CompactionThrottler compactionThrottler)
+        throws IOException {
         this.gcExecutor = gcExecutor;
+        this.sharedGcExecutor = sharedGcExecutor;
+        this.compactionThrottler = compactionThrottler;
         this.conf = conf;
 
         this.entryLogger = ledgerStorage.getEntryLogger();
         this.ledgerStorage = ledgerStorage;
         this.gcWaitTime = conf.getGcWaitTime();
+        this.entryLogMetaMap = createEntryLogMetadataMap();
 
         this.numActiveEntryLogs = 0;
         this.totalEntryLogSize = 0L;
@@ -183,9 +221,10 @@ public class GarbageCollectorThread extends SafeRunnable {
             }
         };
         if (conf.getUseTransactionalCompaction()) {
-            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage,
+                    compactionThrottler, remover);
         } else {
-            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
+            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, compactionThrottler, remover);
         }
 
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
@@ -222,6 +261,12 @@ public class GarbageCollectorThread extends SafeRunnable {
             }
         }
 
+        if (conf.getUseCostBenefitCompaction()) {
+            compactionPolicy = new CostBenefitCompactionPolicy(entryLogger::getLastModifiedTime);
+        } else {
+            compactionPolicy = new UsageCompactionPolicy();
+        }
+
         LOG.info("Minor Compaction : enabled=" + enableMinorCompaction + ", threshold="
                + minorCompactionThreshold + ", interval=" + minorCompactionInterval);
         LOG.info("Major Compaction : enabled=" + enableMajorCompaction + ", threshold="
@@ -230,6 +275,33 @@ public class GarbageCollectorThread extends SafeRunnable {
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
 
+    private EntryLogMetadataMap createEntryLogMetadataMap() {
+        if (!conf.isGcEntryLogMetadataCacheEnabled()) {
+            return new InMemoryEntryLogMetadataMap();
+        }
+
+        File ledgerDir = entryLogger.getLedgerDirsManager().getAllLedgerDirs().get(0);
+        String baseDir = conf.getGcEntryLogMetadataCachePath();
+        String metadataPath;
+        if (baseDir == null) {
+            metadataPath = ledgerDir.getPath();
+        } else {
+            // Keep the stores of the different ledger storages apart
+            metadataPath = baseDir + File.separator
+                    + ledgerDir.getAbsolutePath().replace(File.separatorChar, '_');
+        }
+
+        try {
+            PersistentEntryLogMetadataMap metadataMap = new PersistentEntryLogMetadataMap(metadataPath, conf);
+            metadataMap.removeMissingEntryLogs(entryLogger);
+            return metadataMap;
+        } catch (IOException e) {
+            LOG.warn("Failed to open the entry log metadata store at {}, keeping the metadata in memory",
+                    metadataPath, e);
+            return new InMemoryEntryLogMetadataMap();
+        }
+    }
+
     public void enableForceGC() {
         if (forceGarbageCollection.compareAndSet(false, true)) {
             LOG.info("Forced garbage collection triggered by thread: {}", Thread.currentThread().getName());
@@ -315,7 +387,11 @@ public class GarbageCollectorThread extends SafeRunnable {
         }
     }
 
-    public void runWithFlags(boolean force, boolean suspendMajor, boolean suspendMinor) {
+    public synchronized void runWithFlags(boolean force, boolean suspendMajor, boolean suspendMinor) {
+        // A run can be queued on a shared executor after the shutdown
+        if (!running) {
+            return;
+        }
         long threadStart = MathUtils.nowInNano();
         if (force) {
             LOG.info("Garbage collector thread forced to perform GC before expiry of wait time.");
@@ -325,7 +401,7 @@ public class GarbageCollectorThread extends SafeRunnable {
 
         // Extract all of the ledger ID's that comprise all of the entry logs
         // (except for the current new one which is still being written to).
-        entryLogMetaMap = extractMetaFromEntryLogs(entryLogMetaMap);
+        extractMetaFromEntryLogs();
 
         // gc inactive/deleted ledgers
         doGcLedgers();
@@ -346,7 +422,7 @@ public class GarbageCollectorThread extends SafeRunnable {
             // enter major compaction
             LOG.info("Enter major compaction, suspendMajor {}", suspendMajor);
             majorCompacting.set(true);
-            doCompactEntryLogs(majorCompactionThreshold);
+            doCompactEntryLogs(majorCompactionThreshold, majorCompactionInterval);
             lastMajorCompactionTime = System.currentTimeMillis();
             // and also move minor compaction time
             lastMinorCompactionTime = lastMajorCompactionTime;
@@ -357,7 +433,7 @@ public class GarbageCollectorThread extends SafeRunnable {
             // enter minor compaction
             LOG.info("Enter minor compaction, suspendMinor {}", suspendMinor);
             minorCompacting.set(true);
-            doCompactEntryLogs(minorCompactionThreshold);
+            doCompactEntryLogs(minorCompactionThreshold, minorCompactionInterval);
             lastMinorCompactionTime = System.currentTimeMillis();
             gcStats.getMinorCompactionCounter().inc();
             minorCompacting.set(false);
@@ -388,28 +464,52 @@ public class GarbageCollectorThread extends SafeRunnable {
         AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
 
         // Loop through all of the entry logs and remove the non-active ledgers.
-        entryLogMetaMap.forEach((entryLogId, meta) -> {
-           removeIfLedgerNotExists(meta);
-           if (meta.isEmpty()) {
-               // This means the entry log is not associated with any active ledgers anymore.
-               // We can remove this entry log file now.
-               LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
-               removeEntryLog(entryLogId);
-               gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
-           }
-
-           totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
-        });
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+               long numLedgers = meta.getLedgersMap().size();
+               removeIfLedgerNotExists(meta);
+               if (meta.isEmpty()) {
+                   // This means the entry log is not associated with any active ledgers anymore.
+                   // We can remove this entry log file now.
+                   LOG.info("Deleting entryLogId " + entryLogId + " as it has no active ledgers!");
+                   removeEntryLog(entryLogId);
+                   gcStats.getReclaimedSpaceViaDeletes().add(meta.getTotalSize());
+               } else if (meta.getLedgersMap().size() != numLedgers) {
+                   // Keep the stored metadata in sync with the deleted ledgers
+                   updateEntryLogMetadata(entryLogId, meta);
+               }
+               if (!meta.isEmpty()) {
+                   compactionPolicy.update(meta, System.currentTimeMillis());
+               }
+
+               totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry log metadata, entry logs gc will be retried on the next run", e);
+            return;
+        }
 
         this.totalEntryLogSize = totalEntryLogSizeAcc.get();
-        this.numActiveEntryLogs = entryLogMetaMap.keySet().size();
+        this.numActiveEntryLogs = entryLogMetaMap.size();
+    }
+
+    private void updateEntryLogMetadata(long entryLogId, EntryLogMetadata meta) {
+        try {
+            entryLogMetaMap.put(entryLogId, meta);
+        } catch (IOException e) {
+            LOG.warn("Failed to update the metadata of entry log {}", entryLogId, e);
+        }
     }
 
     private void removeIfLedgerNotExists(EntryLogMetadata meta) {
         meta.removeLedgerIf((entryLogLedger) -> {
             // Remove the entry log ledger from the set if it isn't active.
             try {
-                return !ledgerStorage.ledgerExists(entryLogLedger);
+                if (!ledgerStorage.ledgerExists(entryLogLedger)) {
+                    compactionPolicy.ledgerDeleted(entryLogLedger, System.currentTimeMillis());
+                    return true;
+                }
+                return false;
             } catch (IOException e) {
                 LOG.error("Error reading from ledger storage", e);
                 return false;
@@ -421,32 +521,44 @@ public class GarbageCollectorThread extends SafeRunnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
+     * The {@link EntryLogCompactionPolicy} chooses the entry logs to compact and their order,
+     * by default from low unused space to high unused space.
      * Those entry log files whose remaining size percentage is higher than threshold
      * would not be compacted.
      * </p>
+     *
+     * @param threshold usage below which the entry logs are compacted
+     * @param compactionInterval time until the next compaction with the same threshold
      */
     @VisibleForTesting
-    void doCompactEntryLogs(double threshold) {
+    void doCompactEntryLogs(double threshold, long compactionInterval) {
         LOG.info("Do compaction to compact those files lower than {}", threshold);
 
-        // sort the ledger meta by usage in ascending order.
-        List<EntryLogMetadata> logsToCompact = new ArrayList<EntryLogMetadata>();
-        logsToCompact.addAll(entryLogMetaMap.values());
-        logsToCompact.sort(Comparator.comparing(EntryLogMetadata::getUsage));
-
         final int numBuckets = 10;
         int[] entryLogUsageBuckets = new int[numBuckets];
 
-        for (EntryLogMetadata meta : logsToCompact) {
-            int bucketIndex = Math.min(
-                    numBuckets - 1,
-                    (int) Math.ceil(meta.getUsage() * numBuckets));
-            entryLogUsageBuckets[bucketIndex]++;
+        // only keep the entry logs below the threshold, the others aren't needed past the usage buckets
+        List<EntryLogMetadata> candidates = new ArrayList<EntryLogMetadata>();
+        try {
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+                int bucketIndex = Math.min(
+                        numBuckets - 1,
+                        (int) Math.ceil(meta.getUsage() * numBuckets));
+                entryLogUsageBuckets[bucketIndex]++;
+
+                if (meta.getUsage() < threshold) {
+                    candidates.add(meta);
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to read the entry log metadata, skipping compaction", e);
+            return;
+        }
 
-            if (meta.getUsage() >= threshold) {
-                continue;
-            }
+        List<EntryLogMetadata> logsToCompact = compactionPolicy.selectLogsToCompact(candidates,
+                System.currentTimeMillis(), compactionInterval);
+
+        for (EntryLogMetadata meta : logsToCompact) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Compacting entry log {} below threshold {}", meta.getEntryLogId(), threshold);
             }
@@ -478,8 +590,35 @@ public class GarbageCollectorThread extends SafeRunnable {
             Thread.sleep(100);
         }
 
+        if (sharedGcExecutor) {
+            // Don't interrupt the garbage collectors of the other directories, only wait for the
+            // current run to stop
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+            synchronized (this) {
+                closeEntryLogMetadataMap();
+            }
+            return;
+        }
+
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+
+        // The metadata store can only be closed once the gc thread is done with it
+        if (gcExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+            closeEntryLogMetadataMap();
+        } else {
+            LOG.warn("GarbageCollectorThread didn't stop in time, not closing the entry log metadata map");
+        }
+    }
+
+    private void closeEntryLogMetadataMap() {
+        try {
+            entryLogMetaMap.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close the entry log metadata map", e);
+        }
     }
 
     /**
@@ -492,7 +631,12 @@ public class GarbageCollectorThread extends SafeRunnable {
         // remove entry log file successfully
         if (entryLogger.removeEntryLog(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
-            entryLogMetaMap.remove(entryLogId);
+            compactionPolicy.entryLogRemoved(entryLogId);
+            try {
+                entryLogMetaMap.remove(entryLogId);
+            } catch (IOException e) {
+                LOG.warn("Failed to remove the metadata of entry log {}", entryLogId, e);
+            }
         }
     }
 
@@ -527,12 +671,8 @@ public class GarbageCollectorThread extends SafeRunnable {
     /**
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
-     *
-     * @param entryLogMetaMap
-     *          Existing EntryLogs to Meta
-     * @throws IOException
      */
-    protected Map<Long, EntryLogMetadata> extractMetaFromEntryLogs(Map<Long, EntryLogMetadata> entryLogMetaMap) {
+    protected void extractMetaFromEntryLogs() {
         // Extract it for every entry log except for the current one.
         // Entry Log ID's are just a long value that starts at 0 and increments
         // by 1 when the log fills up and we roll to a new one.
@@ -574,7 +714,10 @@ public class GarbageCollectorThread extends SafeRunnable {
                 ++scannedLogId;
             }
         }
-        return entryLogMetaMap;
+    }
+
+    CompactionThrottler getCompactionThrottler() {
+        return compactionThrottler;
     }
 
     CompactableLedgerStorage getLedgerStorage() {
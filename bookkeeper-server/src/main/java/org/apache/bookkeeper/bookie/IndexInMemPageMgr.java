@@ -27,18 +27,18 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_CACHE_RE
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.NUM_INDEX_PAGES;
 
 import com.google.common.base.Stopwatch;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.bookkeeper.bookie.stats.IndexInMemPageMgrStats;
@@ -48,31 +48,65 @@ import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.util.DirectMemoryUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairMap;
+import org.apache.bookkeeper.util.collections.ConcurrentOffHeapLongLongPairHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class IndexInMemPageMgr {
     private static final Logger LOG = LoggerFactory.getLogger(IndexInMemPageMgr.class);
-    private static final ConcurrentHashMap<Long, LedgerEntryPage> EMPTY_PAGE_MAP =
-            new ConcurrentHashMap<Long, LedgerEntryPage>();
 
-    private static class InMemPageCollection implements LEPStateChangeCallback {
+    /**
+     * Table of the pages in memory.
+     *
+     * <p>The pages are looked up by (ledgerId, firstEntry) in an off-heap open hash map, which maps them
+     * to the slot of the page in an array holding all the pages ever allocated, so that a lookup neither
+     * boxes the keys nor allocates. The slots of the pages of each ledger are also kept in a small array
+     * per ledger, to flush or remove the pages of a ledger.
+     *
+     * <p>The clean pages are evicted with the clock algorithm: a page is marked as referenced when it is
+     * accessed, and the clock hand sweeping the slots clears the mark of the referenced pages and
+     * reclaims the first clean page that is neither referenced nor in use.
+     */
+    private static class InMemPageCollection {
 
-        final ConcurrentMap<Long, ConcurrentMap<Long, LedgerEntryPage>> pages;
-        final Map<EntryKey, LedgerEntryPage> lruCleanPageMap;
-        final ConcurrentLinkedQueue<LedgerEntryPage> listOfFreePages;
+        private static final int INITIAL_SLOTS = 1024;
+
+        // (ledgerId, firstEntry) --> (slot of the page, 0)
+        final ConcurrentLongLongPairMap pageTable;
+        final ConcurrentLongHashMap<LedgerPages> ledgerPages;
+
+        // All the pages allocated, indexed by their slot. Grown under the lock of the collection
+        private volatile LedgerEntryPage[] slots = new LedgerEntryPage[INITIAL_SLOTS];
+        // Guarded by the lock of the collection
+        private int numSlots = 0;
+        private int clockHand = 0;
 
         // Stats
         private final IndexInMemPageMgrStats inMemPageMgrStats;
 
         public InMemPageCollection(StatsLogger statsLogger) {
-            pages = new ConcurrentHashMap<>();
-            lruCleanPageMap =
-                    Collections.synchronizedMap(new LinkedHashMap<EntryKey, LedgerEntryPage>(16, 0.75f, true));
-            listOfFreePages = new ConcurrentLinkedQueue<LedgerEntryPage>();
+            pageTable = new ConcurrentOffHeapLongLongPairHashMap(UnpooledByteBufAllocator.DEFAULT);
+            ledgerPages = new ConcurrentLongHashMap<>();
             inMemPageMgrStats = new IndexInMemPageMgrStats(statsLogger);
         }
 
+        /**
+         * Add a newly allocated page to the collection.
+         *
+         * @param lep Ledger Entry Page object
+         */
+        synchronized void addNewPage(LedgerEntryPage lep) {
+            LedgerEntryPage[] pages = slots;
+            if (numSlots == pages.length) {
+                pages = Arrays.copyOf(pages, pages.length * 2);
+            }
+            lep.setSlot(numSlots);
+            pages[numSlots++] = lep;
+            slots = pages;
+        }
+
         /**
          * Retrieve the LedgerEntryPage corresponding to the ledger and firstEntry.
          *
@@ -81,11 +115,11 @@ class IndexInMemPageMgr {
          * @returns LedgerEntryPage if present
          */
         private LedgerEntryPage getPage(long ledgerId, long firstEntry) {
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
-            if (null != map) {
-                return map.get(firstEntry);
+            long slot = pageTable.getFirstValue(ledgerId, firstEntry);
+            if (slot < 0) {
+                return null;
             }
-            return null;
+            return slots[(int) slot];
         }
 
         /**
@@ -94,24 +128,31 @@ class IndexInMemPageMgr {
          * @param lep Ledger Entry Page object
          */
         private LedgerEntryPage putPage(LedgerEntryPage lep) {
-            // Do a get here to avoid too many new ConcurrentHashMaps() as putIntoTable is called frequently.
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(lep.getLedger());
-            if (null == map) {
-                ConcurrentMap<Long, LedgerEntryPage> mapToPut = new ConcurrentHashMap<Long, LedgerEntryPage>();
-                map = pages.putIfAbsent(lep.getLedger(), mapToPut);
-                if (null == map) {
-                    map = mapToPut;
+            long ledgerId = lep.getLedger();
+            while (true) {
+                if (pageTable.putIfAbsent(ledgerId, lep.getFirstEntry(), lep.getSlot(), 0)) {
+                    addToLedgerPages(ledgerId, lep.getSlot());
+                    return lep;
+                }
+                LedgerEntryPage oldPage = getPage(ledgerId, lep.getFirstEntry());
+                if (null != oldPage) {
+                    return oldPage;
                 }
+                // The old page has been reclaimed in the meantime, try again
             }
-            LedgerEntryPage oldPage = map.putIfAbsent(lep.getFirstEntry(), lep);
-            if (null == oldPage) {
-                oldPage = lep;
-                // Also include this in the clean page map if it qualifies.
-                // Note: This is done for symmetry and correctness, however it should never
-                // get exercised since we shouldn't attempt a put without the page being in use
-                addToCleanPagesList(lep);
+        }
+
+        private void addToLedgerPages(long ledgerId, int slot) {
+            while (!ledgerPages.computeIfAbsent(ledgerId, id -> new LedgerPages()).add(slot)) {
+                // The pages of the ledger have been removed in the meantime, try again
+            }
+        }
+
+        private void removeFromLedgerPages(long ledgerId, int slot) {
+            LedgerPages pagesOfLedger = ledgerPages.get(ledgerId);
+            if (null != pagesOfLedger && pagesOfLedger.remove(slot)) {
+                ledgerPages.remove(ledgerId, pagesOfLedger);
             }
-            return oldPage;
         }
 
         /**
@@ -123,16 +164,20 @@ class IndexInMemPageMgr {
         private long getLastEntryInMem(long ledgerId) {
             long lastEntry = 0;
             // Find the last entry in the cache
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
-            if (map != null) {
-                for (LedgerEntryPage lep: map.values()) {
+            LedgerPages pagesOfLedger = ledgerPages.get(ledgerId);
+            if (pagesOfLedger != null) {
+                LedgerEntryPage[] pages = slots;
+                for (int slot : pagesOfLedger.getSlots()) {
+                    LedgerEntryPage lep = pages[slot];
                     if (lep.getMaxPossibleEntry() < lastEntry) {
                         continue;
                     }
                     lep.usePage();
-                    long highest = lep.getLastEntry();
-                    if (highest > lastEntry) {
-                        lastEntry = highest;
+                    if (lep.getLedger() == ledgerId) {
+                        long highest = lep.getLastEntry();
+                        if (highest > lastEntry) {
+                            lastEntry = highest;
+                        }
                     }
                     lep.releasePage();
                 }
@@ -148,178 +193,188 @@ class IndexInMemPageMgr {
          */
         private void removeEntriesForALedger(long ledgerId) {
             // remove pages first to avoid page flushed when deleting file info
-            ConcurrentMap<Long, LedgerEntryPage> lPages = pages.remove(ledgerId);
-            if (null != lPages) {
-                for (Map.Entry<Long, LedgerEntryPage> pageEntry: lPages.entrySet()) {
-                    LedgerEntryPage lep = pageEntry.getValue();
-                    lep.usePage();
-                    lep.markDeleted();
-                    lep.releasePage();
+            LedgerPages pagesOfLedger = ledgerPages.remove(ledgerId);
+            if (null != pagesOfLedger) {
+                LedgerEntryPage[] pages = slots;
+                for (int slot : pagesOfLedger.removeAll()) {
+                    LedgerEntryPage lep = pages[slot];
+                    if (pageTable.remove(ledgerId, lep.getFirstEntry(), slot, 0)) {
+                        // The page will be reclaimed by the clock once released
+                        lep.usePage();
+                        lep.markDeleted();
+                        lep.releasePage();
+                    }
                 }
             }
         }
 
         /**
-         * Gets the list of pages in memory that have been changed and hence need to
-         * be written as a part of the flush operation that is being issued.
+         * Gets the pages in memory that have been changed and hence need to be written as a part of the
+         * flush operation that is being issued. The pages are returned in use.
          *
          * @param ledgerId Ledger id
-         * @returns last entry in the in memory pages.
+         * @returns dirty pages of the ledger.
          */
-        private LinkedList<Long> getFirstEntryListToBeFlushed(long ledgerId) {
-            ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(ledgerId);
-            if (pageMap == null || pageMap.isEmpty()) {
-                return null;
+        private List<LedgerEntryPage> getPagesToBeFlushed(long ledgerId) {
+            LedgerPages pagesOfLedger = ledgerPages.get(ledgerId);
+            if (pagesOfLedger == null) {
+                return Collections.emptyList();
             }
 
-            LinkedList<Long> firstEntryList = new LinkedList<Long>();
-            for (ConcurrentMap.Entry<Long, LedgerEntryPage> entry: pageMap.entrySet()) {
-                LedgerEntryPage lep = entry.getValue();
+            List<LedgerEntryPage> dirtyPages = new ArrayList<>();
+            LedgerEntryPage[] pages = slots;
+            for (int slot : pagesOfLedger.getSlots()) {
+                LedgerEntryPage lep = pages[slot];
                 if (lep.isClean()) {
-                    if (!lep.inUse()) {
-                        addToCleanPagesList(lep);
-                    }
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Page is clean " + lep);
                     }
+                    continue;
+                }
+                lep.usePage();
+                if (lep.getLedger() == ledgerId && !lep.isDeleted() && !lep.isClean()) {
+                    dirtyPages.add(lep);
                 } else {
-                    firstEntryList.add(lep.getFirstEntry());
+                    lep.releasePage();
                 }
             }
-            return firstEntryList;
+            return dirtyPages;
         }
 
         /**
-         * Add the LedgerEntryPage to the clean page LRU map.
+         * Get the set of active ledgers.
          *
-         * @param lep Ledger Entry Page object
          */
-        private void addToCleanPagesList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (lep.isClean() && !lep.inUse()) {
-                    lruCleanPageMap.put(lep.getEntryKey(), lep);
-                }
-            }
+        List<Long> getActiveLedgers() {
+            return ledgerPages.keys();
         }
 
         /**
-         * Remove the LedgerEntryPage from the clean page LRU map.
+         * Get a clean page and provision it for the specified ledger and firstEntry within the ledger.
          *
-         * @param lep Ledger Entry Page object
+         * @param ledgerId Ledger id
+         * @param firstEntry Id of the first entry in the page
+         * @returns LedgerEntryPage if present
          */
-        private void removeFromCleanPageList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (!lep.isClean() || lep.inUse()) {
-                    lruCleanPageMap.remove(lep.getEntryKey());
+        synchronized LedgerEntryPage grabCleanPage(long ledgerId, long firstEntry) {
+            LedgerEntryPage[] pages = slots;
+            // The first turn of the clock may only clear the reference marks
+            for (int i = 0; i < 2 * numSlots; i++) {
+                LedgerEntryPage lep = pages[clockHand];
+                clockHand = (clockHand + 1) % numSlots;
+                if (lep.inUse()) {
+                    continue;
+                }
+                if (lep.isDeleted()) {
+                    // Page of a deleted ledger, or that failed to be loaded, it is not in the page table
+                    lep.reuse(ledgerId, firstEntry);
+                    return lep;
+                }
+                if (!lep.isClean()) {
+                    continue;
+                }
+                if (lep.isReferenced()) {
+                    lep.setReferenced(false);
+                    continue;
+                }
+
+                // We found a candidate page, lets see if we can reclaim it before its re-used.
+                // Remove from the table only if nothing has changed since we checked this lep.
+                // The page table is the definitive source of information, if anything has changed
+                // we should leave this page alone and continue sweeping to find another suitable page.
+                long ledgerOfPage = lep.getLedger();
+                if (pageTable.remove(ledgerOfPage, lep.getFirstEntry(), lep.getSlot(), 0)) {
+                    if (!lep.isClean() || lep.inUse()) {
+                        // Someone used this page while we were reclaiming it.
+                        pageTable.put(ledgerOfPage, lep.getFirstEntry(), lep.getSlot(), 0);
+                        continue;
+                    }
+                    removeFromLedgerPages(ledgerOfPage, lep.getSlot());
+                    lep.reuse(ledgerId, firstEntry);
+                    return lep;
                 }
             }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Did not find eligible page in two turns of the clock");
+            }
+            return null;
         }
 
         /**
-         * Get the set of active ledgers.
+         * Move the clock hand to the next dirty page that is not in use.
          *
+         * @returns the ledger of the page, or -1 if all the pages are clean or in use
          */
-        Set<Long> getActiveLedgers() {
-            return pages.keySet();
+        synchronized long findLedgerToFlush() {
+            LedgerEntryPage[] pages = slots;
+            for (int i = 0; i < numSlots; i++) {
+                LedgerEntryPage lep = pages[clockHand];
+                clockHand = (clockHand + 1) % numSlots;
+                if (!lep.isClean() && !lep.inUse() && !lep.isDeleted()) {
+                    return lep.getLedger();
+                }
+            }
+            return -1;
         }
 
         /**
-         * Get a clean page and provision it for the specified ledger and firstEntry within the ledger.
+         * Give back a page that could not be added to the page table, so that it is reclaimed first.
          *
-         * @param ledgerId Ledger id
-         * @param firstEntry Id of the first entry in the page
-         * @returns LedgerEntryPage if present
+         * @param lep Ledger Entry Page object, in use by the caller
          */
-        LedgerEntryPage grabCleanPage(long ledgerId, long firstEntry) {
-            LedgerEntryPage lep = listOfFreePages.poll();
-            if (null != lep) {
-                lep.resetPage();
-                lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
-                lep.usePage();
-                return lep;
+        void discardPage(LedgerEntryPage lep) {
+            lep.markDeleted();
+            lep.releasePage();
+            if (lep.inUse()) {
+                inMemPageMgrStats.getIllegalStateResetCounter().inc();
             }
-            while (lruCleanPageMap.size() > 0) {
-                lep = null;
-                synchronized (lruCleanPageMap) {
-                    Iterator<Map.Entry<EntryKey, LedgerEntryPage>> iterator = lruCleanPageMap.entrySet().iterator();
-
-                    Map.Entry<EntryKey, LedgerEntryPage> entry = null;
-                    while (iterator.hasNext()) {
-                        entry = iterator.next();
-                        iterator.remove();
-                        if (entry.getValue().isClean() && !entry.getValue().inUse()) {
-                            lep = entry.getValue();
-                            break;
-                        }
-                    }
-
-                    if (null == lep) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Did not find eligible page in the first pass");
-                        }
-                        return null;
-                    }
-                }
+        }
 
-                // We found a candidate page, lets see if we can reclaim it before its re-used
-                ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(lep.getLedger());
-                // Remove from map only if nothing has changed since we checked this lep.
-                // Its possible for the ledger to have been deleted or the page to have already
-                // been reclaimed. The page map is the definitive source of information, if anything
-                // has changed we should leave this page along and continue iterating to find
-                // another suitable page.
-                if ((null != pageMap) && (pageMap.remove(lep.getFirstEntry(), lep))) {
-                    if (!lep.isClean()) {
-                        // Someone wrote to this page while we were reclaiming it.
-                        pageMap.put(lep.getFirstEntry(), lep);
-                        lep = null;
-                    } else {
-                        // Do some bookkeeping on the page table
-                        pages.remove(lep.getLedger(), EMPTY_PAGE_MAP);
-                        // We can now safely reset this lep and return it.
-                        lep.usePage();
-                        lep.zeroPage();
-                        lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
-                        return lep;
-                    }
-                } else {
-                    lep = null;
-                }
-            }
-            return lep;
+        void close() {
+            pageTable.close();
         }
+    }
 
-        public void addToListOfFreePages(LedgerEntryPage lep) {
-            if ((null == lep) || lep.inUse()) {
-                inMemPageMgrStats.getIllegalStateResetCounter().inc();
+    /**
+     * Slots of the pages of a ledger. Once all its pages are removed, it is not used anymore.
+     */
+    private static class LedgerPages {
+        private int[] slots = new int[4];
+        private int size = 0;
+        private boolean removed = false;
+
+        synchronized boolean add(int slot) {
+            if (removed) {
+                return false;
             }
-            if (null != lep) {
-                listOfFreePages.add(lep);
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
             }
+            slots[size++] = slot;
+            return true;
         }
 
-        @Override
-        public void onSetInUse(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
-        }
-
-        @Override
-        public void onResetInUse(LedgerEntryPage lep) {
-            if (!lep.isDeleted()) {
-                addToCleanPagesList(lep);
-            } else {
-                addToListOfFreePages(lep);
+        /**
+         * @return true if it was the last page of the ledger
+         */
+        synchronized boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    break;
+                }
             }
+            removed = size == 0;
+            return removed;
         }
 
-        @Override
-        public void onSetClean(LedgerEntryPage lep) {
-            addToCleanPagesList(lep);
+        synchronized int[] removeAll() {
+            removed = true;
+            return Arrays.copyOf(slots, size);
         }
 
-        @Override
-        public void onSetDirty(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
+        synchronized int[] getSlots() {
+            return Arrays.copyOf(slots, size);
         }
     }
 
@@ -335,6 +390,9 @@ class IndexInMemPageMgr {
     // flush and read pages
     private final IndexPersistenceMgr indexPersistenceManager;
 
+    // Flushes the ledgers in parallel when all of them are flushed, null to flush them one by one
+    private final ExecutorService flushExecutor;
+
     // Stats
     private final Counter ledgerCacheHitCounter;
     private final Counter ledgerCacheMissCounter;
@@ -360,6 +418,10 @@ class IndexInMemPageMgr {
         }
         LOG.info("maxDirectMemory = {}, pageSize = {}, pageLimit = {}",
                 maxDirectMemory, pageSize, pageLimit);
+        int numFlushThreads = conf.getNumIndexFlushThreads();
+        this.flushExecutor = numFlushThreads > 1
+                ? Executors.newFixedThreadPool(numFlushThreads, new DefaultThreadFactory("IndexFlush"))
+                : null;
         // Expose Stats
         this.ledgerCacheHitCounter = statsLogger.getCounter(LEDGER_CACHE_HIT);
         this.ledgerCacheMissCounter = statsLogger.getCounter(LEDGER_CACHE_MISS);
@@ -425,6 +487,12 @@ class IndexInMemPageMgr {
         }
         if (null != lep) {
             lep.usePage();
+            if (lep.getLedger() != ledger || lep.getFirstEntry() != firstEntry || lep.isDeleted()) {
+                // The page has been reclaimed since it was looked up
+                lep.releasePage();
+                return null;
+            }
+            lep.setReferenced(true);
         }
         return lep;
     }
@@ -452,19 +520,17 @@ class IndexInMemPageMgr {
             }
         } catch (IOException ie) {
             // if we grab a clean page, but failed to update the page
-            // we should put this page in the free page list so that it
-            // can be reassigned to the next grabPage request
-            lep.releasePageNoCallback();
-            pageMapAndList.addToListOfFreePages(lep);
+            // we should discard this page so that it can be reassigned
+            // to the next grabPage request
+            pageMapAndList.discardPage(lep);
             throw ie;
         }
         LedgerEntryPage oldLep;
         if (lep != (oldLep = pageMapAndList.putPage(lep))) {
             // if we grab a clean page, but failed to put it in the cache
-            // we should put this page in the free page list so that it
-            // can be reassigned to the next grabPage request
-            lep.releasePageNoCallback();
-            pageMapAndList.addToListOfFreePages(lep);
+            // we should discard this page so that it can be reassigned
+            // to the next grabPage request
+            pageMapAndList.discardPage(lep);
             // Increment the use count of the old lep because this is unexpected
             oldLep.usePage();
             lep = oldLep;
@@ -494,9 +560,11 @@ class IndexInMemPageMgr {
             }
 
             if (canAllocate) {
-                LedgerEntryPage lep = new LedgerEntryPage(pageSize, entriesPerPage, pageMapAndList);
+                LedgerEntryPage lep = new LedgerEntryPage(pageSize, entriesPerPage);
                 lep.setLedgerAndFirstEntry(ledger, entry);
+                lep.setReferenced(true);
                 lep.usePage();
+                pageMapAndList.addNewPage(lep);
                 return lep;
             }
 
@@ -504,14 +572,28 @@ class IndexInMemPageMgr {
             if (null != lep) {
                 return lep;
             }
-            LOG.info("Could not grab a clean page for ledger {}, entry {}, force flushing dirty ledgers.",
-                    ledger, entry);
-            flushOneOrMoreLedgers(false);
+            // Write back the next dirty page of the clock, the concurrent callers get different pages
+            long ledgerToFlush = pageMapAndList.findLedgerToFlush();
+            LOG.info("Could not grab a clean page for ledger {}, entry {}, force flushing dirty ledger {}.",
+                    ledger, entry, ledgerToFlush);
+            if (ledgerToFlush < 0) {
+                flushOneOrMoreLedgers(false);
+            } else {
+                try {
+                    flushSpecificLedger(ledgerToFlush);
+                } catch (Bookie.NoLedgerException e) {
+                    // ledger has been deleted
+                }
+            }
         }
     }
 
     void flushOneOrMoreLedgers(boolean doAll) throws IOException {
-        List<Long> ledgersToFlush = new ArrayList<>(pageMapAndList.getActiveLedgers());
+        List<Long> ledgersToFlush = pageMapAndList.getActiveLedgers();
+        if (doAll && flushExecutor != null && ledgersToFlush.size() > 1) {
+            flushLedgersInParallel(ledgersToFlush);
+            return;
+        }
         for (Long potentiallyDirtyLedger : ledgersToFlush) {
             try {
                 flushSpecificLedger(potentiallyDirtyLedger);
@@ -524,6 +606,55 @@ class IndexInMemPageMgr {
         }
     }
 
+    private void flushLedgersInParallel(List<Long> ledgersToFlush) throws IOException {
+        List<Future<Void>> flushes = new ArrayList<>(ledgersToFlush.size());
+        for (Long potentiallyDirtyLedger : ledgersToFlush) {
+            flushes.add(flushExecutor.submit(() -> {
+                try {
+                    flushSpecificLedger(potentiallyDirtyLedger);
+                } catch (Bookie.NoLedgerException e) {
+                    // ledger has been deleted
+                }
+                return null;
+            }));
+        }
+
+        // Wait for all the flushes, even if one of them failed
+        IOException exception = null;
+        for (Future<Void> flush : flushes) {
+            try {
+                flush.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing the ledger indexes", e);
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    void close() {
+        if (flushExecutor != null) {
+            // the flushes in progress still use the page table
+            flushExecutor.shutdown();
+            try {
+                if (!flushExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.warn("Index flush threads didn't stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while waiting for the index flush threads to stop");
+            }
+        }
+        pageMapAndList.close();
+    }
+
     /**
      * Flush a specified ledger.
      *
@@ -531,28 +662,20 @@ class IndexInMemPageMgr {
      * @throws IOException
      */
     private void flushSpecificLedger(long ledger) throws IOException {
-        LinkedList<Long> firstEntryList = pageMapAndList.getFirstEntryListToBeFlushed(ledger);
-
-        // flush ledger index file header if necessary
-        indexPersistenceManager.flushLedgerHeader(ledger);
-
-        if (null == firstEntryList || firstEntryList.size() == 0) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Nothing to flush for ledger {}.", ledger);
-            }
-            // nothing to do
-            return;
-        }
-
-        // Now flush all the pages of a ledger
-        List<LedgerEntryPage> entries = new ArrayList<LedgerEntryPage>(firstEntryList.size());
+        List<LedgerEntryPage> entries = pageMapAndList.getPagesToBeFlushed(ledger);
         try {
-            for (Long firstEntry: firstEntryList) {
-                LedgerEntryPage lep = getLedgerEntryPageFromCache(ledger, firstEntry, true);
-                if (lep != null) {
-                    entries.add(lep);
+            // flush ledger index file header if necessary
+            indexPersistenceManager.flushLedgerHeader(ledger);
+
+            if (entries.isEmpty()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Nothing to flush for ledger {}.", ledger);
                 }
+                // nothing to do
+                return;
             }
+
+            // Now flush all the pages of a ledger
             indexPersistenceManager.flushLedgerEntries(ledger, entries);
         } finally {
             for (LedgerEntryPage lep: entries) {
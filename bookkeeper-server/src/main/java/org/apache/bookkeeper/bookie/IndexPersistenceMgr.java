@@ -573,6 +573,12 @@ public class IndexPersistenceMgr {
                 LOG.warn("Nothing to write, but there were entries!");
             }
             writeBuffers(l, entries, fi, start, entries.size() - start);
+            // Sync the header and all the pages at once
+            try {
+                fi.forceWrite();
+            } catch (FileInfo.FileInfoDeletedException e) {
+                throw new Bookie.NoLedgerException(l);
+            }
             for (int i = 0; i < entries.size(); i++) {
                 LedgerEntryPage lep = entries.get(i);
                 lep.setClean(versions[i]);
@@ -608,7 +614,7 @@ public class IndexPersistenceMgr {
         while (buffs[buffs.length - 1].remaining() > 0) {
             long rc = 0;
             try {
-                rc = fi.write(buffs, entries.get(start + 0).getFirstEntryPosition());
+                rc = fi.write(buffs, entries.get(start + 0).getFirstEntryPosition(), false);
             } catch (FileInfo.FileInfoDeletedException e) {
                 throw new Bookie.NoLedgerException(ledger);
             }
@@ -103,6 +103,8 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
     // contain any active ledgers in them; and compacts the entry logs that
     // has lower remaining percentage to reclaim disk space.
     GarbageCollectorThread gcThread;
+    // Offloads the sealed entry logs to the cold ledger dirs, null if there are none
+    EntryLogOffloader entryLogOffloader;
 
     // this indicates that a write has happened since the last flush
     private final AtomicBoolean somethingWritten = new AtomicBoolean(false);
@@ -192,11 +194,15 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         checkNotNull(checkpointer, "invalid null checkpointer");
         this.entryLogger = entryLogger;
         this.entryLogger.addListener(this);
+        this.entryLogger.setLedgerManager(ledgerManager);
         this.checkpointSource = checkpointSource;
         this.checkpointer = checkpointer;
         ledgerCache = new LedgerCacheImpl(conf, activeLedgers,
                 null == indexDirsManager ? ledgerDirsManager : indexDirsManager, statsLogger);
         gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger.scope("gc"));
+        if (!entryLogger.getColdLedgerDirs().isEmpty()) {
+            entryLogOffloader = new EntryLogOffloader(conf, entryLogger, stateManager, statsLogger.scope("offload"));
+        }
         pageSize = conf.getPageSize();
         ledgerDirsManager.addLedgerDirsListener(getLedgerDirsListener());
         // Expose Stats
@@ -277,6 +283,9 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
     @Override
     public void start() {
         gcThread.start();
+        if (entryLogOffloader != null) {
+            entryLogOffloader.start();
+        }
     }
 
     @Override
@@ -286,6 +295,9 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         LOG.info("Shutting down InterleavedLedgerStorage");
         LOG.info("Shutting down GC thread");
         gcThread.shutdown();
+        if (entryLogOffloader != null) {
+            entryLogOffloader.shutdown();
+        }
         LOG.info("Shutting down entry logger");
         entryLogger.shutdown();
         try {
@@ -372,7 +384,9 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         long entryId = entry.getLong(entry.readerIndex() + 8);
         long lac = entry.getLong(entry.readerIndex() + 16);
 
+        long startTimeNanos = MathUtils.nowInNano();
         processEntry(ledgerId, entryId, entry);
+        gcThread.getCompactionThrottler().recordForegroundLatency(MathUtils.elapsedNanos(startTimeNanos));
 
         ledgerCache.updateLastAddConfirmed(ledgerId, lac);
         return entryId;
@@ -413,7 +427,9 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
             return retBytes;
         } finally {
             if (success) {
-                getEntryStats.registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                long elapsedNanos = MathUtils.elapsedNanos(startTimeNanos);
+                getEntryStats.registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                gcThread.getCompactionThrottler().recordForegroundLatency(elapsedNanos);
             } else {
                 getEntryStats.registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
             }
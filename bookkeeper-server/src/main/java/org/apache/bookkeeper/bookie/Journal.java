@@ -27,6 +27,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.Recycler;
@@ -54,6 +55,7 @@ import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
 import org.apache.bookkeeper.common.collections.RecyclableArrayList;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -303,6 +305,8 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
         Object ctx;
         long enqueueTime;
         boolean ackBeforeSync;
+        // the entry holds several journal records, already prefixed with their lengths
+        boolean framed;
 
         OpStatsLogger journalAddEntryStats;
         Counter journalCbQueueSize;
@@ -314,6 +318,7 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
             QueueEntry qe = RECYCLER.get();
             qe.entry = entry;
             qe.ackBeforeSync = ackBeforeSync;
+            qe.framed = false;
             qe.cb = cb;
             qe.ctx = ctx;
             qe.ledgerId = ledgerId;
@@ -871,6 +876,36 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                 journalStats.getJournalQueueSize()));
     }
 
+    /**
+     * record the add entry operations of a batch of entries of a ledger in journal.
+     *
+     * <p>The entries are appended to the journal as a single write, and the callback is
+     * triggered once all of them are persisted, with the id of the last entry of the batch.
+     */
+    public void logAddEntries(long ledgerId, List<ByteBuf> entries, boolean ackBeforeSync,
+                              WriteCallback cb, Object ctx) throws InterruptedException {
+        CompositeByteBuf records = allocator.compositeBuffer(2 * entries.size());
+        ByteBuf lengths = allocator.buffer(4 * entries.size());
+        long lastEntryId = BookieProtocol.INVALID_ENTRY_ID;
+        for (ByteBuf entry : entries) {
+            int offset = lengths.writerIndex();
+            lengths.writeInt(entry.readableBytes());
+            records.addComponent(true, lengths.retainedSlice(offset, 4));
+            //Retain entry until it gets written to journal
+            records.addComponent(true, entry.retainedSlice());
+            lastEntryId = entry.getLong(entry.readerIndex() + 8);
+        }
+        lengths.release();
+
+        journalStats.getJournalQueueSize().inc();
+        QueueEntry qe = QueueEntry.create(
+                records, ackBeforeSync, ledgerId, lastEntryId, cb, ctx, MathUtils.nowInNano(),
+                journalStats.getJournalAddEntryStats(),
+                journalStats.getJournalQueueSize());
+        qe.framed = true;
+        queue.put(qe);
+    }
+
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx) {
         journalStats.getJournalQueueSize().inc();
         queue.add(QueueEntry.create(
@@ -1111,15 +1146,22 @@ public class Journal extends BookieCriticalThread implements CheckpointSource {
                     int entrySize = qe.entry.readableBytes();
                     journalStats.getJournalWriteBytes().add(entrySize);
 
-                    batchSize += (4 + entrySize);
+                    if (qe.framed) {
+                        batchSize += entrySize;
+
+                        // preAlloc based on size
+                        logFile.preAllocIfNeeded(entrySize);
+                    } else {
+                        batchSize += (4 + entrySize);
 
-                    lenBuff.clear();
-                    lenBuff.writeInt(entrySize);
+                        lenBuff.clear();
+                        lenBuff.writeInt(entrySize);
 
-                    // preAlloc based on size
-                    logFile.preAllocIfNeeded(4 + entrySize);
+                        // preAlloc based on size
+                        logFile.preAllocIfNeeded(4 + entrySize);
 
-                    bc.write(lenBuff);
+                        bc.write(lenBuff);
+                    }
                     bc.write(qe.entry);
                     qe.entry.release();
                 }
@@ -181,6 +181,7 @@ public class LedgerCacheImpl implements LedgerCache {
 
     @Override
     public void close() throws IOException {
+        indexPageManager.close();
         indexPersistenceManager.close();
     }
 
@@ -0,0 +1,116 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the digest type of the ledgers stored on the bookie, as recorded in their metadata,
+ * so that the bookie only verifies the digest of the entries whose digest type it knows.
+ *
+ * <p>The digest type of a ledger never changes, so it is cached once read. Ledgers whose
+ * metadata cannot be read are not cached, and are looked up again on the next access.
+ */
+class LedgerDigestTypeCache {
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerDigestTypeCache.class);
+
+    private static final int MAX_CACHED_LEDGERS = 100_000;
+
+    private final LedgerManager ledgerManager;
+    private final Cache<Long, DigestType> digestTypes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_LEDGERS)
+            .build();
+    private final ConcurrentMap<Long, CompletableFuture<DigestType>> pendingReads = new ConcurrentHashMap<>();
+
+    LedgerDigestTypeCache(LedgerManager ledgerManager) {
+        this.ledgerManager = ledgerManager;
+    }
+
+    /**
+     * Get the digest type of a ledger without blocking.
+     *
+     * @return the digest type, or null if it is not known yet, in which case the metadata of
+     *         the ledger is read in the background.
+     */
+    DigestType getIfKnown(long ledgerId) {
+        DigestType digestType = digestTypes.getIfPresent(ledgerId);
+        if (digestType != null) {
+            return digestType;
+        }
+        CompletableFuture<DigestType> future = readDigestType(ledgerId);
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * Get the digest type of a ledger, waiting for its metadata to be read if needed.
+     *
+     * @return the digest type, or null if the metadata of the ledger cannot be read.
+     */
+    DigestType get(long ledgerId) throws InterruptedException {
+        DigestType digestType = digestTypes.getIfPresent(ledgerId);
+        if (digestType != null) {
+            return digestType;
+        }
+        try {
+            return readDigestType(ledgerId).get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private CompletableFuture<DigestType> readDigestType(long ledgerId) {
+        CompletableFuture<DigestType> future = pendingReads.get(ledgerId);
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<DigestType> newFuture = new CompletableFuture<>();
+        future = pendingReads.putIfAbsent(ledgerId, newFuture);
+        if (future != null) {
+            return future;
+        }
+        ledgerManager.readLedgerMetadata(ledgerId).whenComplete((metadata, exception) -> {
+            if (exception != null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to read the digest type of ledger {}", ledgerId, exception);
+                }
+                newFuture.completeExceptionally(exception);
+            } else {
+                DigestType digestType = metadata.getValue().getDigestType();
+                digestTypes.put(ledgerId, digestType);
+                newFuture.complete(digestType);
+            }
+            pendingReads.remove(ledgerId, newFuture);
+        });
+        return newFuture;
+    }
+}
@@ -49,7 +49,11 @@ public class LedgerEntryPage implements AutoCloseable {
     private final AtomicInteger version = new AtomicInteger(0);
     private volatile int last = -1; // Last update position
     private final LEPStateChangeCallback callback;
-    private boolean deleted;
+    private volatile boolean deleted;
+    // Position of the page in the page table of the ledger cache, -1 if not managed by one
+    private int slot = -1;
+    // Set when the page is accessed, cleared by the clock sweeping the pages to evict
+    private volatile boolean referenced;
 
     public static int getIndexEntrySize() {
         return indexEntrySize;
@@ -84,6 +88,34 @@ public class LedgerEntryPage implements AutoCloseable {
         }
     }
 
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    void setReferenced(boolean referenced) {
+        this.referenced = referenced;
+    }
+
+    boolean isReferenced() {
+        return referenced;
+    }
+
+    /**
+     * Reassign a page that is not used anymore to another ledger and first entry, and mark it in use
+     * by the caller.
+     */
+    void reuse(long ledgerId, long firstEntry) {
+        usePage();
+        zeroPage();
+        deleted = false;
+        setLedgerAndFirstEntry(ledgerId, firstEntry);
+        referenced = true;
+    }
+
     public void markDeleted() {
         deleted = true;
         version.incrementAndGet();
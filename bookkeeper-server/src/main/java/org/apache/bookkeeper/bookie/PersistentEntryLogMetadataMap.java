@@ -0,0 +1,145 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry log metadata stored in a RocksDB database, so that the bookie doesn't have to read all
+ * the entry logs again when it restarts, and doesn't have to keep all the metadata on heap.
+ *
+ * <p>The database is only a cache of what can be extracted from the entry logs: the writes are not
+ * synced, and the metadata of the entry logs that don't exist anymore is dropped when it's opened.
+ */
+public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentEntryLogMetadataMap.class);
+
+    static final String METADATA_CACHE = "entrylogIndexCache";
+
+    private final KeyValueStorage metadataMapDB;
+    // ids of the entry logs in the database, as RocksDB only gives an estimate of the number of keys
+    private final ConcurrentLongHashSet entryLogIds = new ConcurrentLongHashSet();
+
+    private static final FastThreadLocal<byte[]> KEY_BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[Long.BYTES];
+        }
+    };
+
+    public PersistentEntryLogMetadataMap(String metadataPath, ServerConfiguration conf) throws IOException {
+        File dir = new File(metadataPath);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create entry log metadata cache directory " + metadataPath);
+        }
+        String dbPath = metadataPath + File.separator + METADATA_CACHE;
+        LOG.info("Opening entry log metadata cache at {}", dbPath);
+        this.metadataMapDB = new KeyValueStorageRocksDB(dbPath, DbConfigType.Small, conf);
+
+        try (CloseableIterator<byte[]> keys = metadataMapDB.keys()) {
+            while (keys.hasNext()) {
+                entryLogIds.add(toLong(keys.next()));
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(long entryLogId) {
+        return entryLogIds.contains(entryLogId);
+    }
+
+    @Override
+    public void put(long entryLogId, EntryLogMetadata entryLogMeta) throws IOException {
+        metadataMapDB.put(toKey(entryLogId), entryLogMeta.serialize());
+        entryLogIds.add(entryLogId);
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, EntryLogMetadata> action) throws IOException {
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = metadataMapDB.iterator()) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                action.accept(toLong(entry.getKey()), EntryLogMetadata.deserialize(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Drop the metadata of the entry logs that don't exist anymore, because they were deleted
+     * while the cache was not in use.
+     */
+    void removeMissingEntryLogs(EntryLogger entryLogger) throws IOException {
+        for (long entryLogId : entryLogIds.items()) {
+            if (!entryLogger.logExists(entryLogId)) {
+                LOG.info("Removing the cached metadata of missing entry log {}", entryLogId);
+                remove(entryLogId);
+            }
+        }
+    }
+
+    @Override
+    public void remove(long entryLogId) throws IOException {
+        metadataMapDB.delete(toKey(entryLogId));
+        entryLogIds.remove(entryLogId);
+    }
+
+    @Override
+    public int size() {
+        return (int) entryLogIds.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        metadataMapDB.close();
+    }
+
+    private static byte[] toKey(long entryLogId) {
+        byte[] key = KEY_BUFFER.get();
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            key[i] = (byte) entryLogId;
+            entryLogId >>>= 8;
+        }
+        return key;
+    }
+
+    private static long toLong(byte[] key) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (key[i] & 0xFF);
+        }
+        return value;
+    }
+}
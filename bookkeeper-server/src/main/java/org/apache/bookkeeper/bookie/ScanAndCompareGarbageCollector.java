@@ -25,6 +25,7 @@ import static org.apache.bookkeeper.common.concurrent.FutureUtils.result;
 
 import com.google.common.collect.Sets;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.Set;
@@ -34,7 +35,6 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
@@ -69,6 +69,10 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * </p>
  *
+ * <p>With {@link ServerConfiguration#getGcLedgerRangesPerRun()}, each run only compares a bounded number
+ * of ledger ranges, fetching the active ledgers of the bookie range by range, and the next run resumes
+ * the scan where it stopped.
+ *
  * <p>TODO: eliminate the direct usage of zookeeper here {@link https://github.com/apache/bookkeeper/issues/1331}
  */
 public class ScanAndCompareGarbageCollector implements GarbageCollector {
@@ -87,8 +91,15 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
     private final String zkServers;
     private final String zkLedgersRootPath;
     private final boolean verifyMetadataOnGc;
+    private final long zkOpTimeoutMs;
     private int activeLedgerCounter;
 
+    // Incremental scan of the ledger ranges, resumed in the next run
+    private final int gcLedgerRangesPerRun;
+    private LedgerRangeIterator ledgerRangeIterator = null;
+    private long lastScannedLedgerId = -1;
+    private long scannedActiveLedgers = 0;
+
     public ScanAndCompareGarbageCollector(LedgerManager ledgerManager, CompactableLedgerStorage ledgerStorage,
             ServerConfiguration conf, StatsLogger statsLogger) throws IOException {
         this.ledgerManager = ledgerManager;
@@ -106,6 +117,8 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                 + gcOverReplicatedLedgerIntervalMillis);
 
         verifyMetadataOnGc = conf.getVerifyMetadataOnGC();
+        this.zkOpTimeoutMs = conf.getZkTimeout() * 2;
+        this.gcLedgerRangesPerRun = conf.getGcLedgerRangesPerRun();
 
         this.activeLedgerCounter = 0;
     }
@@ -123,14 +136,19 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
         }
 
         try {
+            long curTime = System.currentTimeMillis();
+            boolean checkOverreplicatedLedgers = (enableGcOverReplicatedLedger && curTime
+                    - lastOverReplicatedLedgerGcTimeMillis > gcOverReplicatedLedgerIntervalMillis);
+            if (gcLedgerRangesPerRun > 0 && !checkOverreplicatedLedgers) {
+                gcLedgerRanges(garbageCleaner);
+                return;
+            }
+
             // Get a set of all ledgers on the bookie
             NavigableSet<Long> bkActiveLedgers = Sets.newTreeSet(ledgerStorage.getActiveLedgersInRange(0,
                     Long.MAX_VALUE));
             this.activeLedgerCounter = bkActiveLedgers.size();
 
-            long curTime = System.currentTimeMillis();
-            boolean checkOverreplicatedLedgers = (enableGcOverReplicatedLedger && curTime
-                    - lastOverReplicatedLedgerGcTimeMillis > gcOverReplicatedLedgerIntervalMillis);
             if (checkOverreplicatedLedgers) {
                 zk = ZooKeeperClient.newBuilder().connectString(zkServers)
                         .sessionTimeoutMs(conf.getZkTimeout()).build();
@@ -142,18 +160,20 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                     LOG.info("Removed over-replicated ledgers: {}", overReplicatedLedgers);
                 }
                 lastOverReplicatedLedgerGcTimeMillis = System.currentTimeMillis();
+                if (gcLedgerRangesPerRun > 0) {
+                    // The ledger ranges are scanned incrementally
+                    gcLedgerRanges(garbageCleaner);
+                    return;
+                }
             }
 
             // Iterate over all the ledger on the metadata store
-            long zkOpTimeoutMs = this.conf.getZkTimeout() * 2;
             LedgerRangeIterator ledgerRangeIterator = ledgerManager
                     .getLedgerRanges(zkOpTimeoutMs);
             Set<Long> ledgersInMetadata = null;
             long start;
             long end = -1;
             boolean done = false;
-            AtomicBoolean isBookieInEnsembles = new AtomicBoolean(false);
-            Versioned<LedgerMetadata> metadata = null;
             while (!done) {
                 start = end + 1;
                 if (ledgerRangeIterator.hasNext()) {
@@ -172,42 +192,7 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
                     LOG.debug("Active in metadata {}, Active in bookie {}", ledgersInMetadata, subBkActiveLedgers);
                 }
                 for (Long bkLid : subBkActiveLedgers) {
-                    if (!ledgersInMetadata.contains(bkLid)) {
-                        if (verifyMetadataOnGc) {
-                            isBookieInEnsembles.set(false);
-                            metadata = null;
-                            int rc = BKException.Code.OK;
-                            try {
-                                metadata = result(ledgerManager.readLedgerMetadata(bkLid), zkOpTimeoutMs,
-                                        TimeUnit.MILLISECONDS);
-                            } catch (BKException | TimeoutException e) {
-                                if (e instanceof BKException) {
-                                    rc = ((BKException) e).getCode();
-                                } else {
-                                    LOG.warn("Time-out while fetching metadata for Ledger {} : {}.", bkLid,
-                                            e.getMessage());
-
-                                    continue;
-                                }
-                            }
-                            // check bookie should be part of ensembles in one
-                            // of the segment else ledger should be deleted from
-                            // local storage
-                            if (metadata != null && metadata.getValue() != null) {
-                                metadata.getValue().getAllEnsembles().forEach((entryId, ensembles) -> {
-                                    if (ensembles != null && ensembles.contains(selfBookieAddress)) {
-                                        isBookieInEnsembles.set(true);
-                                    }
-                                });
-                                if (isBookieInEnsembles.get()) {
-                                    continue;
-                                }
-                            } else if (rc != BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
-                                LOG.warn("Ledger {} Missing in metadata list, but ledgerManager returned rc: {}.",
-                                        bkLid, rc);
-                                continue;
-                            }
-                        }
+                    if (!ledgersInMetadata.contains(bkLid) && isGarbage(bkLid, false)) {
                         garbageCleaner.clean(bkLid);
                     }
                 }
@@ -228,6 +213,103 @@ public class ScanAndCompareGarbageCollector implements GarbageCollector {
         }
     }
 
+    /**
+     * Compare the next {@link #gcLedgerRangesPerRun} ledger ranges of the metadata store with the ledgers
+     * of the bookie in these ranges, resuming the scan of the previous run.
+     *
+     * <p>The ledgers of the bookie are listed after the range of the metadata store, so a ledger created
+     * in between is missing from the metadata range. The metadata of the missing ledgers is read again to
+     * make sure they are deleted.
+     */
+    private void gcLedgerRanges(GarbageCleaner garbageCleaner) throws Exception {
+        if (ledgerRangeIterator == null) {
+            ledgerRangeIterator = ledgerManager.getLedgerRanges(zkOpTimeoutMs);
+            lastScannedLedgerId = -1;
+            scannedActiveLedgers = 0;
+        }
+
+        try {
+            for (int i = 0; i < gcLedgerRangesPerRun; i++) {
+                long start = lastScannedLedgerId + 1;
+                long end;
+                Set<Long> ledgersInMetadata;
+                boolean done = !ledgerRangeIterator.hasNext();
+                if (!done) {
+                    LedgerRange lRange = ledgerRangeIterator.next();
+                    ledgersInMetadata = lRange.getLedgers();
+                    end = lRange.end();
+                } else {
+                    ledgersInMetadata = Collections.emptySet();
+                    end = Long.MAX_VALUE;
+                }
+
+                Iterable<Long> bkActiveLedgers = ledgerStorage.getActiveLedgersInRange(start,
+                        end == Long.MAX_VALUE ? Long.MAX_VALUE : end + 1);
+                for (Long bkLid : bkActiveLedgers) {
+                    scannedActiveLedgers++;
+                    if (!ledgersInMetadata.contains(bkLid) && isGarbage(bkLid, true)) {
+                        garbageCleaner.clean(bkLid);
+                    }
+                }
+                lastScannedLedgerId = end;
+
+                if (done) {
+                    LOG.info("Completed the scan of the ledger ranges, {} active ledgers", scannedActiveLedgers);
+                    activeLedgerCounter = (int) scannedActiveLedgers;
+                    ledgerRangeIterator = null;
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // Start over in the next run
+            ledgerRangeIterator = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Check whether a ledger missing from the ledger ranges of the metadata store can be deleted from the
+     * bookie.
+     *
+     * @param ledgerId ledger missing from the metadata store ranges
+     * @param checkExists whether the ledger could have been created since its range was read
+     */
+    private boolean isGarbage(long ledgerId, boolean checkExists) throws Exception {
+        if (!verifyMetadataOnGc && !checkExists) {
+            return true;
+        }
+
+        Versioned<LedgerMetadata> metadata = null;
+        int rc = BKException.Code.OK;
+        try {
+            metadata = result(ledgerManager.readLedgerMetadata(ledgerId), zkOpTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (BKException | TimeoutException e) {
+            if (e instanceof BKException) {
+                rc = ((BKException) e).getCode();
+            } else {
+                LOG.warn("Time-out while fetching metadata for Ledger {} : {}.", ledgerId, e.getMessage());
+                return false;
+            }
+        }
+        if (metadata != null && metadata.getValue() != null) {
+            if (!verifyMetadataOnGc) {
+                return false;
+            }
+            // check bookie should be part of ensembles in one
+            // of the segment else ledger should be deleted from
+            // local storage
+            for (List<BookieSocketAddress> ensemble : metadata.getValue().getAllEnsembles().values()) {
+                if (ensemble != null && ensemble.contains(selfBookieAddress)) {
+                    return false;
+                }
+            }
+        } else if (rc != BKException.Code.NoSuchLedgerExistsOnMetadataServerException) {
+            LOG.warn("Ledger {} Missing in metadata list, but ledgerManager returned rc: {}.", ledgerId, rc);
+            return false;
+        }
+        return true;
+    }
+
     private Set<Long> removeOverReplicatedledgers(Set<Long> bkActiveledgers, final GarbageCleaner garbageCleaner)
             throws InterruptedException, KeeperException {
         final List<ACL> zkAcls = ZkUtils.getACLs(conf);
@@ -20,6 +20,11 @@
  */
 package org.apache.bookkeeper.bookie;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -44,17 +49,33 @@ import org.apache.bookkeeper.conf.ServerConfiguration;
  * interleaved throughout the heap, and the old generation gets progressively
  * more fragmented until a stop-the-world compacting collection occurs.
  * </p>
+ * <p>
+ * When created with a {@link ByteBufAllocator}, the chunks are allocated in direct memory,
+ * and the entries held in the arena don't use the heap at all. The chunks are then freed by
+ * {@link #release()}, once the SkipList has been flushed.
+ * </p>
  */
 public class SkipListArena {
     private AtomicReference<Chunk> curChunk = new AtomicReference<Chunk>();
 
+    // Direct memory chunks allocated, to release them. The heap chunks are left to the GC
+    private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<Chunk>();
+
     final int chunkSize;
 
     final int maxAlloc;
 
+    // Allocator of the direct memory chunks, or null to allocate them on the heap
+    private final ByteBufAllocator allocator;
+
     public SkipListArena(ServerConfiguration cfg) {
+        this(cfg, null);
+    }
+
+    public SkipListArena(ServerConfiguration cfg, ByteBufAllocator allocator) {
         chunkSize = cfg.getSkipListArenaChunkSize();
         maxAlloc = cfg.getSkipListArenaMaxAllocSize();
+        this.allocator = allocator;
         assert maxAlloc <= chunkSize;
     }
 
@@ -90,6 +111,17 @@ public class SkipListArena {
         }
     }
 
+    /**
+     * Release the chunks of the arena. No allocation should be made afterwards, the slices already
+     * allocated stay valid as long as they are retained.
+     */
+    public void release() {
+        Chunk c;
+        while ((c = chunks.poll()) != null) {
+            c.release();
+        }
+    }
+
     /**
     * Try to retire the current chunk if it is still there.
     */
@@ -116,7 +148,10 @@ public class SkipListArena {
             // (which is cheap to allocate)
             c = new Chunk(chunkSize);
             if (curChunk.compareAndSet(null, c)) {
-                c.init();
+                c.init(allocator);
+                if (allocator != null) {
+                    chunks.add(c);
+                }
                 return c;
             }
             // lost race
@@ -128,7 +163,7 @@ public class SkipListArena {
     */
     private static class Chunk {
         /** Actual underlying data. */
-        private byte[] data;
+        private ByteBuf data;
 
         private static final int UNINITIALIZED = -1;
         private static final int OOM = -2;
@@ -158,10 +193,11 @@ public class SkipListArena {
          * the thread that constructed the chunk. It is thread-safe against other
          * threads calling alloc(), who will block until the allocation is complete.
          */
-        public void init() {
+        public void init(ByteBufAllocator allocator) {
             assert nextFreeOffset.get() == UNINITIALIZED;
             try {
-                data = new byte[size];
+                data = allocator != null
+                        ? allocator.directBuffer(size, size) : Unpooled.wrappedBuffer(new byte[size]);
             } catch (OutOfMemoryError e) {
                 boolean failInit = nextFreeOffset.compareAndSet(UNINITIALIZED, OOM);
                 assert failInit; // should be true.
@@ -188,7 +224,7 @@ public class SkipListArena {
                     return -1;
                 }
 
-                if (oldOffset + size > data.length) {
+                if (oldOffset + size > data.capacity()) {
                     return -1; // alloc doesn't fit
                 }
 
@@ -205,7 +241,13 @@ public class SkipListArena {
         @Override
         public String toString() {
             return "Chunk@" + System.identityHashCode(this) + ": used(" + allocCount.get() + "), free("
-                    + (data.length - nextFreeOffset.get() + ")");
+                    + (data.capacity() - nextFreeOffset.get() + ")");
+        }
+
+        void release() {
+            if (data != null) {
+                data.release();
+            }
         }
     }
 
@@ -215,20 +257,20 @@ public class SkipListArena {
     * slice begins.
     */
     public static class MemorySlice {
-        private final byte[] data;
+        private final ByteBuf data;
         private final int offset;
 
-        private MemorySlice(byte[] data, int off) {
+        private MemorySlice(ByteBuf data, int off) {
             this.data = data;
             this.offset = off;
         }
 
         @Override
         public String toString() {
-            return "Slice:" + "capacity(" + data.length + "), offset(" + offset + ")";
+            return "Slice:" + "capacity(" + data.capacity() + "), offset(" + offset + ")";
         }
 
-        byte[] getData() {
+        ByteBuf getData() {
             return data;
         }
 
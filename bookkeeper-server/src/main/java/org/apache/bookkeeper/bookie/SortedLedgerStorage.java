@@ -96,10 +96,10 @@ public class SortedLedgerStorage
             statsLogger,
             allocator);
 
-        if (conf.isEntryLogPerLedgerEnabled()) {
-            this.memTable = new EntryMemTableWithParallelFlusher(conf, checkpointSource, statsLogger);
+        if (conf.isEntryLogPerLedgerEnabled() || conf.isEntryLogPerLifetimeGroupEnabled()) {
+            this.memTable = new EntryMemTableWithParallelFlusher(conf, checkpointSource, statsLogger, allocator);
         } else {
-            this.memTable = new EntryMemTable(conf, checkpointSource, statsLogger);
+            this.memTable = new EntryMemTable(conf, checkpointSource, statsLogger, allocator);
         }
         this.scheduler = Executors.newSingleThreadScheduledExecutor(
                 new ThreadFactoryBuilder()
@@ -188,9 +188,9 @@ public class SortedLedgerStorage
      * @return
      */
     private ByteBuf getLastEntryId(long ledgerId) throws IOException {
-        EntryKeyValue kv = memTable.getLastEntry(ledgerId);
-        if (null != kv) {
-            return kv.getValueAsByteBuffer();
+        ByteBuf value = memTable.getLastEntryValue(ledgerId);
+        if (null != value) {
+            return value;
         }
         // If it doesn't exist in the skip list, then fallback to the ledger cache+index.
         return interleavedLedgerStorage.getEntry(ledgerId, BookieProtocol.LAST_ADD_CONFIRMED);
@@ -205,13 +205,11 @@ public class SortedLedgerStorage
         try {
             buffToRet = interleavedLedgerStorage.getEntry(ledgerId, entryId);
         } catch (Bookie.NoEntryException nee) {
-            EntryKeyValue kv = memTable.getEntry(ledgerId, entryId);
-            if (null == kv) {
+            buffToRet = memTable.getEntryValue(ledgerId, entryId);
+            if (null == buffToRet) {
                 // The entry might have been flushed since we last checked, so query the ledger cache again.
                 // If the entry truly doesn't exist, then this will throw a NoEntryException
                 buffToRet = interleavedLedgerStorage.getEntry(ledgerId, entryId);
-            } else {
-                buffToRet = kv.getValueAsByteBuffer();
             }
         }
         // buffToRet will not be null when we reach here.
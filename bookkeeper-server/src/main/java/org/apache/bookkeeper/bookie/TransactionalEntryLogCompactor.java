@@ -58,8 +58,9 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
             ServerConfiguration conf,
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
+            CompactionThrottler throttler,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        super(conf, throttler, logRemover);
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
     }
@@ -171,7 +172,7 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
         void start() throws IOException {
             // scan entry log into compaction log and offset list
             entryLogger.createNewCompactionLog();
-            entryLogger.scanEntryLog(metadata.getEntryLogId(), new EntryLogScanner() {
+            scanEntryLog(entryLogger, metadata.getEntryLogId(), new EntryLogScanner() {
                 @Override
                 public boolean accept(long ledgerId) {
                     return metadata.containsLedger(ledgerId);
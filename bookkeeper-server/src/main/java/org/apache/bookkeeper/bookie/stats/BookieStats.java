@@ -22,10 +22,12 @@ package org.apache.bookkeeper.bookie.stats;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_ADD_ENTRY_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_ADD_ENTRY_DIGEST_MISMATCH;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_FORCE_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_GET_LIST_OF_ENTRIES_OF_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENTRY_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENTRY_DIGEST_MISMATCH;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_RECOVERY_ADD_ENTRY;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
@@ -59,6 +61,10 @@ public class BookieStats {
     private final Counter readBytes;
     @StatsDoc(name = BOOKIE_FORCE_LEDGER, help = "total force operations occurred on a bookie")
     private final Counter forceLedgerOps;
+    @StatsDoc(name = BOOKIE_ADD_ENTRY_DIGEST_MISMATCH, help = "total adds rejected because of a digest mismatch")
+    private final Counter addEntryDigestMismatches;
+    @StatsDoc(name = BOOKIE_READ_ENTRY_DIGEST_MISMATCH, help = "total reads failed because of a digest mismatch")
+    private final Counter readEntryDigestMismatches;
     // Bookie Operation Latency Stats
     @StatsDoc(
         name = BOOKIE_ADD_ENTRY,
@@ -91,6 +97,8 @@ public class BookieStats {
         writeBytes = statsLogger.getCounter(WRITE_BYTES);
         readBytes = statsLogger.getCounter(READ_BYTES);
         forceLedgerOps = statsLogger.getCounter(BOOKIE_FORCE_LEDGER);
+        addEntryDigestMismatches = statsLogger.getCounter(BOOKIE_ADD_ENTRY_DIGEST_MISMATCH);
+        readEntryDigestMismatches = statsLogger.getCounter(BOOKIE_READ_ENTRY_DIGEST_MISMATCH);
         addEntryStats = statsLogger.getOpStatsLogger(BOOKIE_ADD_ENTRY);
         recoveryAddEntryStats = statsLogger.getOpStatsLogger(BOOKIE_RECOVERY_ADD_ENTRY);
         readEntryStats = statsLogger.getOpStatsLogger(BOOKIE_READ_ENTRY);
@@ -48,6 +48,7 @@ import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
+import org.apache.bookkeeper.bookie.CompactionThrottler;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.LastAddConfirmedUpdateNotification;
 import org.apache.bookkeeper.bookie.LedgerCache;
@@ -78,6 +79,8 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
 
+    static final String CACHE_INDEX_OFF_HEAP = "dbStorage_cacheIndexOffHeap";
+
     private static final int MB = 1024 * 1024;
 
     private static final long DEFAULT_WRITE_CACHE_MAX_SIZE_MB = (long) (0.25 * PlatformDependent.maxDirectMemory())
@@ -87,8 +90,10 @@ public class DbLedgerStorage implements LedgerStorage {
     private int numberOfDirs;
     private List<SingleDirectoryDbLedgerStorage> ledgerStorageList;
 
-    // Keep 1 single Bookie GC thread so the the compactions from multiple individual directories are serialized
+    // GC threads shared by the individual directories, which are compacted in parallel within a single
+    // compaction rate budget
     private ScheduledExecutorService gcExecutor;
+    private CompactionThrottler compactionThrottler;
     private DbLedgerStorageStats stats;
 
     protected ByteBufAllocator allocator;
@@ -117,7 +122,10 @@ public class DbLedgerStorage implements LedgerStorage {
         long perDirectoryWriteCacheSize = writeCacheMaxSize / numberOfDirs;
         long perDirectoryReadCacheSize = readCacheMaxSize / numberOfDirs;
 
-        gcExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("GarbageCollector"));
+        int numGcThreads = conf.getNumCompactionThreads() > 0 ? conf.getNumCompactionThreads() : numberOfDirs;
+        log.info(" - Number of GC threads: {}", numGcThreads);
+        gcExecutor = Executors.newScheduledThreadPool(numGcThreads, new DefaultThreadFactory("GarbageCollector"));
+        compactionThrottler = new CompactionThrottler(conf, numberOfDirs);
 
         ledgerStorageList = Lists.newArrayList();
         for (File ledgerDir : ledgerDirsManager.getAllLedgerDirs()) {
@@ -127,8 +135,8 @@ public class DbLedgerStorage implements LedgerStorage {
             dirs[0] = ledgerDir.getParentFile();
             LedgerDirsManager ldm = new LedgerDirsManager(conf, dirs, ledgerDirsManager.getDiskChecker(), statsLogger);
             ledgerStorageList.add(newSingleDirectoryDbLedgerStorage(conf, ledgerManager, ldm, indexDirsManager,
-                    stateManager, checkpointSource, checkpointer, statsLogger, gcExecutor, perDirectoryWriteCacheSize,
-                    perDirectoryReadCacheSize));
+                    stateManager, checkpointSource, checkpointer, statsLogger, gcExecutor, compactionThrottler,
+                    perDirectoryWriteCacheSize, perDirectoryReadCacheSize));
         }
 
         this.stats = new DbLedgerStorageStats(
@@ -144,11 +152,11 @@ public class DbLedgerStorage implements LedgerStorage {
     protected SingleDirectoryDbLedgerStorage newSingleDirectoryDbLedgerStorage(ServerConfiguration conf,
             LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager,
             StateManager stateManager, CheckpointSource checkpointSource, Checkpointer checkpointer,
-            StatsLogger statsLogger, ScheduledExecutorService gcExecutor, long writeCacheSize, long readCacheSize)
-            throws IOException {
+            StatsLogger statsLogger, ScheduledExecutorService gcExecutor, CompactionThrottler compactionThrottler,
+            long writeCacheSize, long readCacheSize) throws IOException {
         return new SingleDirectoryDbLedgerStorage(conf, ledgerManager, ledgerDirsManager, indexDirsManager,
-                stateManager, checkpointSource, checkpointer, statsLogger, allocator, gcExecutor, writeCacheSize,
-                readCacheSize);
+                stateManager, checkpointSource, checkpointer, statsLogger, allocator, gcExecutor, compactionThrottler,
+                writeCacheSize, readCacheSize);
     }
 
     @Override
@@ -161,6 +169,7 @@ public class DbLedgerStorage implements LedgerStorage {
         for (LedgerStorage ls : ledgerStorageList) {
             ls.shutdown();
         }
+        gcExecutor.shutdownNow();
     }
 
     @Override
@@ -191,12 +200,18 @@ public class DbLedgerStorage implements LedgerStorage {
     @Override
     public long addEntry(ByteBuf entry) throws IOException, BookieException {
         long ledgerId = entry.getLong(entry.readerIndex());
-        return getLedgerSorage(ledgerId).addEntry(entry);
+        long startTime = MathUtils.nowInNano();
+        long entryId = getLedgerSorage(ledgerId).addEntry(entry);
+        compactionThrottler.recordForegroundLatency(MathUtils.elapsedNanos(startTime));
+        return entryId;
     }
 
     @Override
     public ByteBuf getEntry(long ledgerId, long entryId) throws IOException {
-        return getLedgerSorage(ledgerId).getEntry(ledgerId, entryId);
+        long startTime = MathUtils.nowInNano();
+        ByteBuf entry = getLedgerSorage(ledgerId).getEntry(ledgerId, entryId);
+        compactionThrottler.recordForegroundLatency(MathUtils.elapsedNanos(startTime));
+        return entry;
     }
 
     @Override
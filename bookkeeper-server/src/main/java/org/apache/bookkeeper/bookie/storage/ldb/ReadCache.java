@@ -34,6 +34,8 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairMap;
+import org.apache.bookkeeper.util.collections.ConcurrentOffHeapLongLongPairHashMap;
 
 /**
  * Read cache implementation.
@@ -47,10 +49,10 @@ import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.Long
  */
 public class ReadCache implements Closeable {
 
-    private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
     private final List<ByteBuf> cacheSegments;
-    private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
+    private final List<ConcurrentLongLongPairMap> cacheIndexes;
 
     private int currentSegmentIdx;
     private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
@@ -65,6 +67,10 @@ public class ReadCache implements Closeable {
     }
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean offHeapIndex) {
         this.allocator = allocator;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
@@ -74,13 +80,17 @@ public class ReadCache implements Closeable {
 
         for (int i = 0; i < segmentsCount; i++) {
             cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            cacheIndexes.add(new ConcurrentLongLongPairHashMap(4096, 2 * Runtime.getRuntime().availableProcessors()));
+            int concurrencyLevel = 2 * Runtime.getRuntime().availableProcessors();
+            cacheIndexes.add(offHeapIndex
+                    ? new ConcurrentOffHeapLongLongPairHashMap(allocator, 4096, concurrencyLevel)
+                    : new ConcurrentLongLongPairHashMap(4096, concurrencyLevel));
         }
     }
 
     @Override
     public void close() {
         cacheSegments.forEach(ByteBuf::release);
+        cacheIndexes.forEach(ConcurrentLongLongPairMap::close);
     }
 
     public void put(long ledgerId, long entryId, ByteBuf entry) {
@@ -51,6 +51,7 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.CompactableLedgerStorage;
+import org.apache.bookkeeper.bookie.CompactionThrottler;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.EntryLogger;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
@@ -134,8 +135,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     public SingleDirectoryDbLedgerStorage(ServerConfiguration conf, LedgerManager ledgerManager,
             LedgerDirsManager ledgerDirsManager, LedgerDirsManager indexDirsManager, StateManager stateManager,
             CheckpointSource checkpointSource, Checkpointer checkpointer, StatsLogger statsLogger,
-            ByteBufAllocator allocator, ScheduledExecutorService gcExecutor, long writeCacheSize, long readCacheSize)
-            throws IOException {
+            ByteBufAllocator allocator, ScheduledExecutorService gcExecutor, CompactionThrottler compactionThrottler,
+            long writeCacheSize, long readCacheSize) throws IOException {
 
         checkArgument(ledgerDirsManager.getAllLedgerDirs().size() == 1,
                 "Db implementation only allows for one storage dir");
@@ -143,9 +144,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         String baseDir = ledgerDirsManager.getAllLedgerDirs().get(0).toString();
         log.info("Creating single directory db ledger storage on {}", baseDir);
 
+        // Keep the entry location indexes of the caches in direct memory along with the cached entries
+        boolean cacheIndexOffHeap = conf.getBoolean(DbLedgerStorage.CACHE_INDEX_OFF_HEAP, false);
+
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2, WriteCache.DEFAULT_MAX_SEGMENT_SIZE,
+                cacheIndexOffHeap);
+        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2,
+                WriteCache.DEFAULT_MAX_SEGMENT_SIZE, cacheIndexOffHeap);
 
         this.checkpointSource = checkpointSource;
 
@@ -156,7 +162,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        readCache = new ReadCache(allocator, readCacheMaxSize, ReadCache.DEFAULT_MAX_SEGMENT_SIZE, cacheIndexOffHeap);
 
         ledgerIndex = new LedgerMetadataIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
         entryLocationIndex = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory, baseDir, statsLogger);
@@ -168,7 +174,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
 
         entryLogger = new EntryLogger(conf, ledgerDirsManager, null, statsLogger, allocator);
-        gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger);
+        entryLogger.setLedgerManager(ledgerManager);
+        gcThread = new GarbageCollectorThread(conf, ledgerManager, this, statsLogger, gcExecutor,
+                compactionThrottler);
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             statsLogger,
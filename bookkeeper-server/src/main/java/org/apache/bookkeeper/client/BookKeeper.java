@@ -112,6 +112,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final ClientEntryCache entryCache;
     private final double bookieQuarantineRatio;
 
     // whether the event loop group is one we created, or is owned by whoever
@@ -427,6 +428,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 .preserveMdcForTaskExecution(conf.getPreserveMdcForTaskExecution())
                 .traceTaskWarnTimeMicroSec(conf.getTaskExecutionWarnTimeMicros())
                 .enableBusyWait(conf.isBusyWaitEnabled())
+                .workStealing(conf.isWorkStealingEnabled())
                 .build();
 
         // initialize stats logger
@@ -473,9 +475,16 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                     .poolingConcurrency(conf.getAllocatorPoolingConcurrency())
                     .outOfMemoryPolicy(conf.getAllocatorOutOfMemoryPolicy())
                     .leakDetectionPolicy(conf.getAllocatorLeakDetectionPolicy())
+                    .threadArenaChunkSize(conf.getAllocatorThreadArenaChunkSize())
                     .build();
         }
 
+        if (conf.getEntryCacheMaxSizeBytes() > 0) {
+            this.entryCache = new ClientEntryCache(this.allocator, conf.getEntryCacheMaxSizeBytes(), this.statsLogger);
+        } else {
+            this.entryCache = null;
+        }
+
         // initialize bookie client
         this.bookieClient = new BookieClientImpl(conf, this.eventLoopGroup, this.allocator, this.mainWorkerPool,
                 scheduler, rootStatsLogger);
@@ -552,6 +561,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         bookieInfoScheduler = null;
         bookieClient = null;
         allocator = UnpooledByteBufAllocator.DEFAULT;
+        entryCache = null;
         bookieQuarantineRatio = 1.0;
     }
 
@@ -1431,6 +1441,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         if (!mainWorkerPool.awaitTermination(10, TimeUnit.SECONDS)) {
             LOG.warn("The mainWorkerPool did not shutdown cleanly");
         }
+        if (entryCache != null) {
+            entryCache.clear();
+        }
         if (this.bookieInfoScheduler != null) {
             this.bookieInfoScheduler.shutdown();
             if (!bookieInfoScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
@@ -1503,6 +1516,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public ClientEntryCache getEntryCache() {
+                return entryCache;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
@@ -204,6 +204,7 @@ public class BookKeeperAdmin implements AutoCloseable {
      */
     @Override
     public void close() throws InterruptedException, BKException {
+        lfr.close();
         if (ownsBK) {
             bkc.close();
         }
@@ -95,6 +95,13 @@ public interface BookKeeperClientStats {
     String FAILED_CONNECTION_COUNTER = "FAILED_CONNECTION_COUNTER";
     String FAILED_TLS_HANDSHAKE_COUNTER = "FAILED_TLS_HANDSHAKE_COUNTER";
 
+    // elastic channel pool stats
+    String CHANNEL_POOL_SCOPE = "per_bookie_channel_pool";
+    String CHANNEL_POOL_NUM_CHANNELS = "NUM_CHANNELS";
+    String CHANNEL_POOL_CHANNELS_OPENED = "CHANNELS_OPENED";
+    String CHANNEL_POOL_CHANNELS_CLOSED = "CHANNELS_CLOSED";
+    String CHANNEL_POOL_PENDING_REQUESTS = "PENDING_REQUESTS";
+
     // placementpolicy stats
     String NUM_WRITABLE_BOOKIES_IN_DEFAULT_RACK = "NUM_WRITABLE_BOOKIES_IN_DEFAULT_RACK";
     String WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS = "WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS";
@@ -43,5 +43,9 @@ interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+    /**
+     * @return the entry cache shared by all the read handles, or null if disabled.
+     */
+    ClientEntryCache getEntryCache();
     boolean isClientClosed();
 }
@@ -0,0 +1,198 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
+
+/**
+ * A size bounded cache of ledger entries shared by all the read handles of a client.
+ *
+ * <p>Entries are keyed by (ledgerId, entryId) and their payload is copied into direct
+ * memory obtained from the client allocator, so the cache does not pin the network
+ * buffers the entries were received in. Cached entries are reference counted: a lookup
+ * hands out a retained slice that the caller owns, and eviction only drops the reference
+ * held by the cache.
+ *
+ * <p>Concurrent misses on the same entry are coalesced: the first reader becomes the
+ * loader and the others wait for its outcome instead of issuing their own bookie reads.
+ */
+class ClientEntryCache {
+
+    static final String ENTRY_CACHE_SCOPE = "entry_cache";
+    static final String ENTRY_CACHE_HITS = "HITS";
+    static final String ENTRY_CACHE_MISSES = "MISSES";
+    static final String ENTRY_CACHE_COALESCED_MISSES = "COALESCED_MISSES";
+
+    private final ByteBufAllocator allocator;
+    private final Cache<EntryKey, CachedEntry> entries;
+    private final ConcurrentMap<EntryKey, CompletableFuture<Void>> pendingLoads = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalescedMisses;
+
+    ClientEntryCache(ByteBufAllocator allocator, long maxSizeBytes, StatsLogger statsLogger) {
+        this.allocator = allocator;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .<EntryKey, CachedEntry>weigher((key, entry) -> entry.data.readableBytes())
+                .removalListener((RemovalNotification<EntryKey, CachedEntry> notification) ->
+                        notification.getValue().release())
+                .build();
+        StatsLogger scopedLogger = statsLogger.scope(ENTRY_CACHE_SCOPE);
+        this.hits = scopedLogger.getCounter(ENTRY_CACHE_HITS);
+        this.misses = scopedLogger.getCounter(ENTRY_CACHE_MISSES);
+        this.coalescedMisses = scopedLogger.getCounter(ENTRY_CACHE_COALESCED_MISSES);
+    }
+
+    /**
+     * Lookup an entry in the cache.
+     *
+     * @return a new entry owning a retained slice of the cached payload, or null if the
+     *         entry is not cached.
+     */
+    LedgerEntryImpl get(long ledgerId, long entryId) {
+        CachedEntry cached = entries.getIfPresent(new EntryKey(ledgerId, entryId));
+        if (cached != null) {
+            ByteBuf data = cached.retainedSlice();
+            // null if the entry has been evicted and released concurrently
+            if (data != null) {
+                hits.inc();
+                return LedgerEntryImpl.create(ledgerId, entryId, cached.length, data);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Register the caller as interested in an entry that is not cached.
+     *
+     * @return null if the caller is now responsible for loading the entry and must call
+     *         either {@link #completeLoad} or {@link #abortLoad}; otherwise a future that
+     *         completes once the reader already loading the entry is done.
+     */
+    CompletableFuture<Void> joinOrStartLoad(long ledgerId, long entryId) {
+        CompletableFuture<Void> loadFuture = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pendingLoads.putIfAbsent(new EntryKey(ledgerId, entryId), loadFuture);
+        if (existing != null) {
+            coalescedMisses.inc();
+            return existing;
+        }
+        misses.inc();
+        return null;
+    }
+
+    /**
+     * Store the payload of a loaded entry and wake up the readers waiting for it.
+     *
+     * <p>The payload is copied, the caller keeps the ownership of <i>content</i>.
+     */
+    void completeLoad(long ledgerId, long entryId, long length, ByteBuf content) {
+        EntryKey key = new EntryKey(ledgerId, entryId);
+        ByteBuf copy = allocator.directBuffer(content.readableBytes(), content.readableBytes());
+        copy.writeBytes(content, content.readerIndex(), content.readableBytes());
+        entries.put(key, new CachedEntry(length, copy));
+        finishLoad(key);
+    }
+
+    /**
+     * Give up loading an entry. Waiting readers will have to read it by themselves.
+     */
+    void abortLoad(long ledgerId, long entryId) {
+        finishLoad(new EntryKey(ledgerId, entryId));
+    }
+
+    private void finishLoad(EntryKey key) {
+        CompletableFuture<Void> loadFuture = pendingLoads.remove(key);
+        if (loadFuture != null) {
+            loadFuture.complete(null);
+        }
+    }
+
+    /**
+     * Drop all the cached entries.
+     */
+    void clear() {
+        entries.invalidateAll();
+    }
+
+    long size() {
+        return entries.size();
+    }
+
+    private static final class CachedEntry {
+        final long length;
+        final ByteBuf data;
+        boolean released = false;
+
+        CachedEntry(long length, ByteBuf data) {
+            this.length = length;
+            this.data = data;
+        }
+
+        // guarded so that a lookup never retains a buffer that eviction already handed
+        // back to the allocator
+        synchronized ByteBuf retainedSlice() {
+            return released ? null : data.retainedSlice();
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                data.release();
+            }
+        }
+    }
+
+    private static final class EntryKey {
+        final long ledgerId;
+        final long entryId;
+
+        EntryKey(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) o;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (ledgerId * 31 + entryId) ^ (int) ((ledgerId * 31 + entryId) >>> 32);
+        }
+    }
+}
@@ -37,11 +37,13 @@ class ClientInternalConf {
 
     final int explicitLacInterval;
     final long waitForWriteSetMs;
+    final int rangeAddMaxRequestSizeBytes;
     final long addEntryQuorumTimeoutNanos;
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
     final int recoveryReadBatchSize;
+    final int recoveryReadWindowSize;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
     final int maxAllowedEnsembleChanges;
@@ -69,7 +71,9 @@ class ClientInternalConf {
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
+        this.recoveryReadWindowSize = Math.max(1, conf.getRecoveryReadWindowSize());
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
+        this.rangeAddMaxRequestSizeBytes = conf.getRangeAddMaxRequestSizeBytes();
         this.addEntryQuorumTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryQuorumTimeout());
         this.throttleValue = conf.getThrottleValue();
         this.bookieFailureHistoryExpirationMSec = conf.getBookieFailureHistoryExpirationMSec();
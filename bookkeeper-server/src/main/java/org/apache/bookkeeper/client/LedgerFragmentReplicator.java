@@ -26,7 +26,10 @@ import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_REA
 import static org.apache.bookkeeper.replication.ReplicationStats.NUM_ENTRIES_WRITTEN;
 import static org.apache.bookkeeper.replication.ReplicationStats.REPLICATION_WORKER_SCOPE;
 
+import com.google.common.util.concurrent.RateLimiter;
+
 import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -34,7 +37,13 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -91,6 +100,15 @@ public class LedgerFragmentReplicator {
     )
     private final OpStatsLogger numBytesWritten;
 
+    // Budget shared by all the fragments replicated concurrently, null when unlimited
+    private final RateLimiter replicationRateLimiter;
+    // Waits for the rate limit and writes the entries back, off the bookie client threads
+    private final ExecutorService throttledWriteExecutor;
+    private final Semaphore inFlightEntries;
+    // Entries waiting for the in-flight budget
+    private final Queue<Runnable> pendingEntries = new ConcurrentLinkedQueue<Runnable>();
+    private final ThreadLocal<Boolean> startingPendingEntries = new ThreadLocal<Boolean>();
+
     public LedgerFragmentReplicator(BookKeeper bkc, StatsLogger statsLogger) {
         this.bkc = bkc;
         this.statsLogger = statsLogger;
@@ -98,12 +116,34 @@ public class LedgerFragmentReplicator {
         numBytesRead = this.statsLogger.getOpStatsLogger(NUM_BYTES_READ);
         numEntriesWritten = this.statsLogger.getCounter(NUM_ENTRIES_WRITTEN);
         numBytesWritten = this.statsLogger.getOpStatsLogger(NUM_BYTES_WRITTEN);
+        int rateByBytes = bkc.getConf().getReplicationRateByBytes();
+        if (rateByBytes > 0) {
+            replicationRateLimiter = RateLimiter.create(rateByBytes);
+            throttledWriteExecutor = Executors.newSingleThreadExecutor(
+                    new DefaultThreadFactory("LedgerFragmentReplicator-ThrottledWrite", true));
+        } else {
+            replicationRateLimiter = null;
+            throttledWriteExecutor = null;
+        }
+        int maxInFlightEntries = bkc.getConf().getReplicationMaxInFlightEntries();
+        inFlightEntries = maxInFlightEntries > 0 ? new Semaphore(maxInFlightEntries) : null;
     }
 
     public LedgerFragmentReplicator(BookKeeper bkc) {
         this(bkc, NullStatsLogger.INSTANCE);
     }
 
+    /**
+     * Stop writing back the entries waiting for the rate limit, which then fail.
+     */
+    public void close() {
+        if (throttledWriteExecutor != null) {
+            for (Runnable pending : throttledWriteExecutor.shutdownNow()) {
+                ((ThrottledWrite) pending).fail();
+            }
+        }
+    }
+
     private static final Logger LOG = LoggerFactory
             .getLogger(LedgerFragmentReplicator.class);
 
@@ -156,9 +196,47 @@ public class LedgerFragmentReplicator {
         MultiCallback ledgerFragmentEntryMcb = new MultiCallback(
                 entriesToReplicate.size(), ledgerFragmentMcb, null, BKException.Code.OK,
                 BKException.Code.LedgerRecoveryException);
+        if (inFlightEntries == null) {
+            for (final Long entryId : entriesToReplicate) {
+                recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
+                        newBookies, onReadEntryFailureCallback);
+            }
+            return;
+        }
+
+        // Each entry takes a permit of the in-flight budget, given back once it is replicated
+        final AsyncCallback.VoidCallback entryCb = (rc, path, ctx) -> {
+            ledgerFragmentEntryMcb.processResult(rc, path, ctx);
+            inFlightEntries.release();
+            startPendingEntries();
+        };
         for (final Long entryId : entriesToReplicate) {
-            recoverLedgerFragmentEntry(entryId, lh, ledgerFragmentEntryMcb,
-                    newBookies, onReadEntryFailureCallback);
+            pendingEntries.add(() -> recoverLedgerFragmentEntry(entryId, lh, entryCb,
+                    newBookies, onReadEntryFailureCallback));
+        }
+        startPendingEntries();
+    }
+
+    /**
+     * Start the pending entries, as long as the in-flight budget allows it.
+     */
+    private void startPendingEntries() {
+        if (startingPendingEntries.get() != null) {
+            // An entry that completed right away, the outer loop starts the next ones
+            return;
+        }
+        startingPendingEntries.set(Boolean.TRUE);
+        try {
+            while (!pendingEntries.isEmpty() && inFlightEntries.tryAcquire()) {
+                Runnable entry = pendingEntries.poll();
+                if (entry == null) {
+                    inFlightEntries.release();
+                } else {
+                    entry.run();
+                }
+            }
+        } finally {
+            startingPendingEntries.remove();
         }
     }
 
@@ -306,7 +384,7 @@ public class LedgerFragmentReplicator {
             final LedgerHandle lh,
             final AsyncCallback.VoidCallback ledgerFragmentEntryMcb,
             final Set<BookieSocketAddress> newBookies,
-            final BiConsumer<Long, Long> onReadEntryFailureCallback) throws InterruptedException {
+            final BiConsumer<Long, Long> onReadEntryFailureCallback) {
         final long ledgerId = lh.getId();
         final AtomicInteger numCompleted = new AtomicInteger(0);
         final AtomicBoolean completed = new AtomicBoolean(false);
@@ -359,21 +437,72 @@ public class LedgerFragmentReplicator {
                 final long dataLength = data.length;
                 numEntriesRead.inc();
                 numBytesRead.registerSuccessfulValue(dataLength);
-                ByteBufList toSend = lh.getDigestManager()
-                        .computeDigestAndPackageForSending(entryId,
-                                lh.getLastAddConfirmed(), entry.getLength(),
-                                Unpooled.wrappedBuffer(data, 0, data.length));
-                for (BookieSocketAddress newBookie : newBookies) {
-                    bkc.getBookieClient().addEntry(newBookie, lh.getId(),
-                            lh.getLedgerKey(), entryId, ByteBufList.clone(toSend),
-                            multiWriteCallback, dataLength, BookieProtocol.FLAG_RECOVERY_ADD,
-                            false, WriteFlag.NONE);
+                if (throttledWriteExecutor == null) {
+                    writeEntry(lh, entryId, entry.getLength(), data, newBookies, multiWriteCallback);
+                    return;
+                }
+                // this runs on a bookie client callback thread, which must not block on the rate limit
+                try {
+                    throttledWriteExecutor.execute(new ThrottledWrite(lh, entryId, entry.getLength(), data,
+                            newBookies, multiWriteCallback, ledgerFragmentEntryMcb));
+                } catch (RejectedExecutionException e) {
+                    ledgerFragmentEntryMcb.processResult(BKException.Code.InterruptedException, null, null);
                 }
-                toSend.release();
             }
         }, null);
     }
 
+    /**
+     * Write of an entry waiting for the rate limit, which fails the entry if the
+     * replicator closes before it runs.
+     */
+    private class ThrottledWrite implements Runnable {
+        final LedgerHandle lh;
+        final long entryId;
+        final long length;
+        final byte[] data;
+        final Set<BookieSocketAddress> newBookies;
+        final WriteCallback multiWriteCallback;
+        final AsyncCallback.VoidCallback ledgerFragmentEntryMcb;
+
+        ThrottledWrite(LedgerHandle lh, long entryId, long length, byte[] data,
+                       Set<BookieSocketAddress> newBookies, WriteCallback multiWriteCallback,
+                       AsyncCallback.VoidCallback ledgerFragmentEntryMcb) {
+            this.lh = lh;
+            this.entryId = entryId;
+            this.length = length;
+            this.data = data;
+            this.newBookies = newBookies;
+            this.multiWriteCallback = multiWriteCallback;
+            this.ledgerFragmentEntryMcb = ledgerFragmentEntryMcb;
+        }
+
+        @Override
+        public void run() {
+            replicationRateLimiter.acquire(Math.max(1, data.length));
+            writeEntry(lh, entryId, length, data, newBookies, multiWriteCallback);
+        }
+
+        void fail() {
+            ledgerFragmentEntryMcb.processResult(BKException.Code.InterruptedException, null, null);
+        }
+    }
+
+    private void writeEntry(LedgerHandle lh, long entryId, long length, byte[] data,
+                            Set<BookieSocketAddress> newBookies, WriteCallback multiWriteCallback) {
+        ByteBufList toSend = lh.getDigestManager()
+                .computeDigestAndPackageForSending(entryId,
+                        lh.getLastAddConfirmed(), length,
+                        Unpooled.wrappedBuffer(data, 0, data.length));
+        for (BookieSocketAddress newBookie : newBookies) {
+            bkc.getBookieClient().addEntry(newBookie, lh.getId(),
+                    lh.getLedgerKey(), entryId, ByteBufList.clone(toSend),
+                    multiWriteCallback, (long) data.length, BookieProtocol.FLAG_RECOVERY_ADD,
+                    false, WriteFlag.NONE);
+        }
+        toSend.release();
+    }
+
     /**
      * Callback for recovery of a single ledger fragment. Once the fragment has
      * had all entries replicated, update the ensemble in zookeeper. Once
@@ -923,6 +923,32 @@ public class LedgerHandle implements WriteHandle {
         return callback;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The entry ids of the whole batch are reserved at once and the batch is handed
+     * over to the ordered executor as a single task, rather than paying the ledger
+     * lock, writability check and executor hand-off for each entry. The entries going
+     * to the same bookie are then sent and journaled together, see
+     * {@link org.apache.bookkeeper.conf.ClientConfiguration#getRangeAddMaxRequestSizeBytes()}.
+     */
+    @Override
+    public CompletableFuture<Long> appendBatchAsync(List<ByteBuf> entries) {
+        if (entries.isEmpty()) {
+            return FutureUtils.exception(new IllegalArgumentException("Empty batch of entries"));
+        }
+        List<CompletableFuture<Long>> futures = new ArrayList<>(entries.size());
+        List<PendingAddOp> ops = new ArrayList<>(entries.size());
+        List<BookieSocketAddress> ensemble = getCurrentEnsemble();
+        for (ByteBuf data : entries) {
+            SyncAddCallback callback = new SyncAddCallback();
+            futures.add(callback);
+            ops.add(PendingAddOp.create(this, clientCtx, ensemble, data, writeFlags, callback, null));
+        }
+        doAsyncAddEntries(ops);
+        return FutureUtils.collect(futures).thenApply(entryIds -> entryIds.get(entryIds.size() - 1));
+    }
+
     /**
      * Add entry synchronously to an open ledger. This can be used only with
      * {@link LedgerHandleAdv} returned through ledgers created with {@link
@@ -1224,7 +1250,7 @@ public class LedgerHandle implements WriteHandle {
         int nonWritableCount = 0;
         List<BookieSocketAddress> currentEnsemble = getCurrentEnsemble();
         for (int i = 0; i < sz; i++) {
-            if (!clientCtx.getBookieClient().isWritable(currentEnsemble.get(i), key)) {
+            if (!clientCtx.getBookieClient().isWritable(currentEnsemble.get(writeSet.get(i)), key)) {
                 nonWritableCount++;
                 if (nonWritableCount >= allowedNonWritableCount) {
                     return false;
@@ -1239,6 +1265,29 @@ public class LedgerHandle implements WriteHandle {
         return true;
     }
 
+    /**
+     * Wait for the channels to the bookies of all the entries of a batch, which go to different
+     * bookies when the ensemble is larger than the write quorum, to be writable.
+     */
+    private boolean waitForWritable(long firstEntryId, long lastEntryId, long durationMs) {
+        // the write sets repeat every ensemble size entries
+        long lastDistinctEntryId = Math.min(lastEntryId, firstEntryId + getCurrentEnsemble().size() - 1);
+        final long deadline = MathUtils.nowInNano() + TimeUnit.MILLISECONDS.toNanos(Math.max(durationMs, 0));
+        for (long entryId = firstEntryId; entryId <= lastDistinctEntryId; entryId++) {
+            long remainingMs = durationMs <= 0
+                    ? durationMs : Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - MathUtils.nowInNano()));
+            DistributionSchedule.WriteSet ws = distributionSchedule.getWriteSet(entryId);
+            try {
+                if (!waitForWritable(ws, entryId, 0, remainingMs)) {
+                    return false;
+                }
+            } finally {
+                ws.recycle();
+            }
+        }
+        return true;
+    }
+
     protected boolean waitForWritable(DistributionSchedule.WriteSet writeSet, long key,
                                     int allowedNonWritableCount, long durationMs) {
         if (durationMs < 0) {
@@ -1356,6 +1405,94 @@ public class LedgerHandle implements WriteHandle {
         }
     }
 
+    /**
+     * Submit a batch of add operations with consecutive entry ids.
+     *
+     * @see #doAsyncAddEntry(PendingAddOp)
+     */
+    protected void doAsyncAddEntries(final List<PendingAddOp> ops) {
+        if (throttler != null) {
+            throttler.acquire(ops.size());
+        }
+
+        boolean wasClosed = false;
+        synchronized (this) {
+            if (isHandleWritable()) {
+                for (PendingAddOp op : ops) {
+                    pushAddOp(op);
+                }
+            } else {
+                wasClosed = true;
+            }
+        }
+
+        if (wasClosed) {
+            try {
+                clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
+                    @Override
+                    public void safeRun() {
+                        LOG.warn("Attempt to add a batch of {} entries to closed ledger: {}", ops.size(), ledgerId);
+                        for (PendingAddOp op : ops) {
+                            op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
+                                    LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                        }
+                    }
+
+                    @Override
+                    public String toString() {
+                        return String.format("AsyncAddEntriesToClosedLedger(lid=%d)", ledgerId);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                for (PendingAddOp op : ops) {
+                    op.cb.addCompleteWithLatency(BookKeeper.getReturnRc(clientCtx.getBookieClient(),
+                                                                        BKException.Code.InterruptedException),
+                            LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                }
+            }
+            return;
+        }
+
+        long firstEntryId = ops.get(0).getEntryId();
+        if (!waitForWritable(firstEntryId, ops.get(ops.size() - 1).getEntryId(),
+                clientCtx.getConf().waitForWriteSetMs)) {
+            ops.forEach(PendingAddOp::allowFailFastOnUnwritableChannel);
+        }
+
+        try {
+            clientCtx.getMainWorkerPool().executeOrdered(ledgerId, new SafeRunnable() {
+                @Override
+                public void safeRun() {
+                    PendingAddOp.runBatch(ops);
+                }
+
+                @Override
+                public String toString() {
+                    return String.format("AsyncAddEntries(lid=%d, eid=%d-%d)",
+                            ledgerId, firstEntryId, firstEntryId + ops.size() - 1);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            for (PendingAddOp op : ops) {
+                op.cb.addCompleteWithLatency(
+                        BookKeeper.getReturnRc(clientCtx.getBookieClient(), BKException.Code.InterruptedException),
+                        LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+            }
+        }
+    }
+
+    /**
+     * Assign the next entry id to an add operation of a batch and queue it, under the lock
+     * of the handle.
+     */
+    void pushAddOp(PendingAddOp op) {
+        long entryId = ++lastAddPushed;
+        long currentLedgerLength = addToLength(op.payload.readableBytes());
+        op.setEntryId(entryId);
+        op.setLedgerLength(currentLedgerLength);
+        pendingAddOps.add(op);
+    }
+
     synchronized void updateLastConfirmed(long lac, long len) {
         if (lac > lastAddConfirmed) {
             lastAddConfirmed = lac;
@@ -25,8 +25,10 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.io.Serializable;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -37,6 +39,8 @@ import org.apache.bookkeeper.client.SyncCallbackUtils.SyncAddCallback;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteAdvHandle;
 import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.util.SafeRunnable;
 import org.apache.bookkeeper.versioning.Versioned;
 import org.slf4j.Logger;
@@ -284,6 +288,57 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         return callback;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The batch is submitted at once and the entries going to the same bookie are sent
+     * and journaled together, as with {@link LedgerHandle#appendBatchAsync(List)}.
+     */
+    @Override
+    public CompletableFuture<Long> writeBatchAsync(long firstEntryId, List<ByteBuf> entries) {
+        if (entries.isEmpty()) {
+            return FutureUtils.exception(new IllegalArgumentException("Empty batch of entries"));
+        }
+        List<CompletableFuture<Long>> futures = new ArrayList<>(entries.size());
+        List<PendingAddOp> ops = new ArrayList<>(entries.size());
+        List<BookieSocketAddress> ensemble = getCurrentEnsemble();
+        long entryId = firstEntryId;
+        for (ByteBuf data : entries) {
+            SyncAddCallback callback = new SyncAddCallback();
+            futures.add(callback);
+            PendingAddOp op = PendingAddOp.create(this, clientCtx, ensemble, data, writeFlags, callback, null);
+            op.setEntryId(entryId++);
+            if ((op.getEntryId() <= this.lastAddConfirmed) || pendingAddOps.contains(op)) {
+                LOG.error("Trying to re-add duplicate entryid:{}", op.getEntryId());
+                op.submitCallback(BKException.Code.DuplicateEntryIdException);
+                continue;
+            }
+            ops.add(op);
+        }
+        if (!ops.isEmpty()) {
+            doAsyncAddEntries(ops);
+        }
+        return FutureUtils.collect(futures).thenApply(entryIds -> entryIds.get(entryIds.size() - 1));
+    }
+
+    /**
+     * The entry id of an add operation is provided by the application.
+     */
+    @Override
+    void pushAddOp(PendingAddOp op) {
+        long currentLength = addToLength(op.payload.readableBytes());
+        op.setLedgerLength(currentLength);
+        pendingAddOps.add(op);
+    }
+
+    /**
+     * LedgerHandleAdv will not allow appending entries without providing their entryIds.
+     */
+    @Override
+    public CompletableFuture<Long> appendBatchAsync(List<ByteBuf> entries) {
+        return FutureUtils.exception(BKException.create(BKException.Code.IllegalOpException));
+    }
+
     /**
      * LedgerHandleAdv will not allow addEntry without providing an entryId.
      */
@@ -19,6 +19,7 @@ package org.apache.bookkeeper.client;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.bookkeeper.meta.LedgerMetadataSerDe.CURRENT_METADATA_FORMAT_VERSION;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -26,6 +27,7 @@ import com.google.common.collect.ImmutableMap;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +47,12 @@ import org.apache.bookkeeper.net.BookieSocketAddress;
 @Unstable
 @VisibleForTesting
 public class LedgerMetadataBuilder {
+    /**
+     * Key of the custom metadata holding the expected retention of the ledger, in milliseconds, as a
+     * decimal string. Bookies may use it to store together the ledgers that expire around the same time.
+     */
+    public static final String RETENTION_HINT_KEY = "bookkeeper.retentionMs";
+
     private int metadataFormatVersion = CURRENT_METADATA_FORMAT_VERSION;
     private int ensembleSize = 3;
     private int writeQuorumSize = 3;
@@ -174,6 +182,13 @@ public class LedgerMetadataBuilder {
         return this;
     }
 
+    public LedgerMetadataBuilder withRetentionHint(long retentionMs) {
+        Map<String, byte[]> newCustomMetadata = new HashMap<>(customMetadata);
+        newCustomMetadata.put(RETENTION_HINT_KEY, Long.toString(retentionMs).getBytes(UTF_8));
+        this.customMetadata = ImmutableMap.copyOf(newCustomMetadata);
+        return this;
+    }
+
     public LedgerMetadataBuilder withCreationTime(long ctime) {
         this.ctime = ctime;
         return this;
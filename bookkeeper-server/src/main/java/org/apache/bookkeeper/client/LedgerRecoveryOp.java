@@ -19,6 +19,8 @@ package org.apache.bookkeeper.client;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
@@ -33,6 +35,11 @@ import org.slf4j.LoggerFactory;
  * with entry-id of -1 (BookieProtocol.LAST_ADD_CONFIRMED) to all bookies. Then
  * starting from the last confirmed entry (from hints in the ledger entries),
  * it reads forward until it is not able to find a particular entry.
+ *
+ * <p>Entries are read in batches of {@code recoveryReadBatchSize}, keeping up to
+ * {@code recoveryReadWindowSize} batches in flight. Read entries are written back
+ * in entry id order as soon as they are available, so re-replication of the tail
+ * is pipelined with the reads of the following batches.
  */
 class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
@@ -47,6 +54,16 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     volatile long startEntryToRead;
     volatile long endEntryToRead;
 
+    // first entry read during recovery, batches are aligned on it
+    long firstEntryToRead;
+    // next entry id to request in a new recovery read batch
+    long nextEntryToRead;
+    // next entry id to process, entries read out of order are parked until then
+    long nextEntryToProcess;
+    final Map<Long, RecoveryReadResult> outOfOrderResults = new HashMap<>();
+    // lowest entry id known to be missing, no batch is read past it
+    long firstMissingEntry = Long.MAX_VALUE;
+
     // keep a copy of metadata for recovery.
     LedgerMetadata metadataForRecovery;
 
@@ -70,6 +87,34 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
     }
 
+    private static class RecoveryReadResult {
+        final int rc;
+        final LedgerEntry entry;
+
+        RecoveryReadResult(int rc, LedgerEntry entry) {
+            this.rc = rc;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Listener of one recovery read batch. Entries of a batch are notified in order,
+     * one notification per entry, even for failed entries.
+     */
+    private class RecoveryReadBatch implements ReadEntryListener {
+
+        long nextEntryId;
+
+        RecoveryReadBatch(long startEntryId) {
+            this.nextEntryId = startEntryId;
+        }
+
+        @Override
+        public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
+            processInOrder(nextEntryId++, rc, entry);
+        }
+    }
+
     public LedgerRecoveryOp(LedgerHandle lh, ClientContext clientCtx) {
         readCount = new AtomicLong(0);
         writeCount = new AtomicLong(0);
@@ -112,7 +157,12 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
                             // keep a copy of ledger metadata before proceeding
                             // ledger recovery
                             metadataForRecovery = lh.getLedgerMetadata();
-                            doRecoveryRead();
+                            synchronized (LedgerRecoveryOp.this) {
+                                firstEntryToRead = nextEntryToRead = nextEntryToProcess = endEntryToRead + 1;
+                            }
+                            for (int i = 0; i < clientCtx.getConf().recoveryReadWindowSize; i++) {
+                                doRecoveryRead();
+                            }
                         } else if (rc == BKException.Code.UnauthorizedAccessException) {
                             submitCallback(rc);
                         } else {
@@ -147,14 +197,44 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
      * Try to read past the last confirmed.
      */
     private void doRecoveryRead() {
-        if (!promise.isDone()) {
-            startEntryToRead = endEntryToRead + 1;
-            endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
-            new RecoveryReadOp(lh, clientCtx, startEntryToRead, endEntryToRead, this, null)
+        if (!promise.isDone() && !readDone) {
+            long start, end;
+            synchronized (this) {
+                if (nextEntryToRead > firstMissingEntry) {
+                    // the end of the ledger is already known
+                    return;
+                }
+                start = nextEntryToRead;
+                end = start + clientCtx.getConf().recoveryReadBatchSize - 1;
+                nextEntryToRead = end + 1;
+                startEntryToRead = start;
+                endEntryToRead = end;
+            }
+            new RecoveryReadOp(lh, clientCtx, start, end, new RecoveryReadBatch(start), null)
                 .initiate();
         }
     }
 
+    /**
+     * Process the outcome of reading <i>entryId</i>, after all the entries before it.
+     */
+    private synchronized void processInOrder(long entryId, int rc, LedgerEntry entry) {
+        if (rc == BKException.Code.NoSuchEntryException || rc == BKException.Code.NoSuchLedgerExistsException) {
+            firstMissingEntry = Math.min(firstMissingEntry, entryId);
+        }
+        if (entryId != nextEntryToProcess) {
+            outOfOrderResults.put(entryId, new RecoveryReadResult(rc, entry));
+            return;
+        }
+        nextEntryToProcess++;
+        onEntryComplete(rc, lh, entry, null);
+        RecoveryReadResult result;
+        while ((result = outOfOrderResults.remove(nextEntryToProcess)) != null) {
+            nextEntryToProcess++;
+            onEntryComplete(result.rc, lh, result.entry, null);
+        }
+    }
+
     @Override
     public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
         // notify entry listener on individual entries being read during ledger recovery.
@@ -163,8 +243,19 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             listener.onEntryComplete(rc, lh, entry, ctx);
         }
 
+        if (readDone) {
+            // the end of the ledger has been found, the reads past it are ignored whatever their outcome.
+            // a serial recovery would not have sent them.
+            if (BKException.Code.OK == rc) {
+                // this would happen on recovery a ledger than has gaps in the tail.
+                LOG.warn("Successfully read entry {} for ledger {}, but readDone is already {}",
+                        entry.getEntryId(), lh.getId(), readDone);
+            }
+            return;
+        }
+
         // we only trigger recovery add an entry when readDone == false && callbackDone == false
-        if (!promise.isDone() && !readDone && rc == BKException.Code.OK) {
+        if (!promise.isDone() && rc == BKException.Code.OK) {
             readCount.incrementAndGet();
             byte[] data = entry.getEntry();
 
@@ -184,8 +275,8 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             }
             if (BKException.Code.OK == rc) {
                 lh.asyncRecoveryAddEntry(data, 0, data.length, this, null);
-                if (entry.getEntryId() == endEntryToRead) {
-                    // trigger next batch read
+                if ((entry.getEntryId() - firstEntryToRead + 1) % clientCtx.getConf().recoveryReadBatchSize == 0) {
+                    // a batch has been processed, trigger next batch read to keep the window full
                     doRecoveryRead();
                 }
                 return;
@@ -195,7 +286,7 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
         // no entry found. stop recovery procedure but wait until recovery add finished.
         if (rc == BKException.Code.NoSuchEntryException || rc == BKException.Code.NoSuchLedgerExistsException) {
             readDone = true;
-            if (readCount.get() == writeCount.get()) {
+            if (!promise.isDone() && readCount.get() == writeCount.get()) {
                 submitCallback(BKException.Code.OK);
             }
             return;
@@ -206,11 +297,6 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             LOG.error("Failure {} while reading entries: ({} - {}), ledger: {} while recovering ledger",
                       BKException.getMessage(rc), startEntryToRead, endEntryToRead, lh.getId());
             submitCallback(rc);
-        } else if (BKException.Code.OK == rc) {
-            // we are here is because we successfully read an entry but readDone was already set to true.
-            // this would happen on recovery a ledger than has gaps in the tail.
-            LOG.warn("Successfully read entry {} for ledger {}, but readDone is already {}",
-                    entry.getEntryId(), lh.getId(), readDone);
         }
         return;
     }
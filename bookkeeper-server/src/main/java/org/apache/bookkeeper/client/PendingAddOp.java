@@ -28,6 +28,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
 import java.util.EnumSet;
 
 import java.util.HashSet;
@@ -247,13 +248,35 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
      */
     @Override
     public void safeRun() {
+        if (!prepare()) {
+            return;
+        }
+
+        // Iterate over set and trigger the sendWriteRequests
+        DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(entryId);
+
+        try {
+            for (int i = 0; i < writeSet.size(); i++) {
+                sendWriteRequest(ensemble, writeSet.get(i));
+            }
+        } finally {
+            writeSet.recycle();
+        }
+    }
+
+    /**
+     * Package the entry with its digest, before sending it.
+     *
+     * @return false if the operation has already failed and nothing has to be sent
+     */
+    private boolean prepare() {
         hasRun = true;
         if (callbackTriggered) {
             // this should only be true if the request was failed due
             // to another request ahead in the pending queue,
             // so we can just ignore this request
             maybeRecycle();
-            return;
+            return false;
         }
 
         this.requestTimeNanos = MathUtils.nowInNano();
@@ -269,16 +292,75 @@ class PendingAddOp extends SafeRunnable implements WriteCallback {
         // We are about to send. Check if we need to make an ensemble change
         // becasue of delayed write errors
         lh.maybeHandleDelayedWriteBookieFailure();
+        return true;
+    }
 
-        // Iterate over set and trigger the sendWriteRequests
-        DistributionSchedule.WriteSet writeSet = lh.distributionSchedule.getWriteSet(entryId);
+    /**
+     * Initiate a batch of add operations with consecutive entry ids.
+     *
+     * <p>The entries going to the same bookie are sent together, in requests of up to
+     * {@link ClientInternalConf#rangeAddMaxRequestSizeBytes} which the bookie journals and
+     * acknowledges as a whole. Each operation still completes on its own ack quorum, so
+     * the requests already acknowledged advance the last add confirmed while the following
+     * ones are in flight.
+     */
+    static void runBatch(List<PendingAddOp> ops) {
+        List<PendingAddOp> prepared = new ArrayList<>(ops.size());
+        for (PendingAddOp op : ops) {
+            if (op.prepare()) {
+                prepared.add(op);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
 
-        try {
-            for (int i = 0; i < writeSet.size(); i++) {
-                sendWriteRequest(ensemble, writeSet.get(i));
+        LedgerHandle lh = prepared.get(0).lh;
+        int maxRequestSize = prepared.get(0).clientCtx.getConf().rangeAddMaxRequestSizeBytes;
+        int ensembleSize = lh.getLedgerMetadata().getEnsembleSize();
+        for (int bookieIndex = 0; bookieIndex < ensembleSize; bookieIndex++) {
+            List<PendingAddOp> request = new ArrayList<>();
+            int requestSize = 0;
+            for (PendingAddOp op : prepared) {
+                if (!lh.distributionSchedule.hasEntry(op.entryId, bookieIndex)) {
+                    continue;
+                }
+                int entrySize = op.toSend.readableBytes();
+                if (!request.isEmpty()
+                        && (requestSize + entrySize > maxRequestSize || op.ensemble != request.get(0).ensemble)) {
+                    sendWriteRequests(request, bookieIndex);
+                    request = new ArrayList<>();
+                    requestSize = 0;
+                }
+                request.add(op);
+                requestSize += entrySize;
             }
-        } finally {
-            writeSet.recycle();
+            if (!request.isEmpty()) {
+                sendWriteRequests(request, bookieIndex);
+            }
+        }
+    }
+
+    private static void sendWriteRequests(List<PendingAddOp> ops, int bookieIndex) {
+        PendingAddOp first = ops.get(0);
+        if (ops.size() == 1) {
+            first.sendWriteRequest(first.ensemble, bookieIndex);
+            return;
+        }
+
+        List<Long> entryIds = new ArrayList<>(ops.size());
+        List<ByteBufList> toSend = new ArrayList<>(ops.size());
+        for (PendingAddOp op : ops) {
+            entryIds.add(op.entryId);
+            toSend.add(op.toSend);
+        }
+        int flags = first.isRecoveryAdd ? FLAG_RECOVERY_ADD | FLAG_HIGH_PRIORITY : FLAG_NONE;
+        LedgerHandle lh = first.lh;
+        first.clientCtx.getBookieClient().addEntries(first.ensemble.get(bookieIndex),
+                                                     lh.ledgerId, lh.ledgerKey, entryIds, toSend, ops, bookieIndex,
+                                                     flags, first.allowFailFast, lh.writeFlags);
+        for (PendingAddOp op : ops) {
+            ++op.pendingWriteRequests;
         }
     }
 
@@ -79,6 +79,9 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
     final AtomicBoolean complete = new AtomicBoolean(false);
     boolean allowFailFast = false;
 
+    // shared entry cache, null if disabled or not applicable to this read
+    final ClientEntryCache entryCache;
+
     abstract class LedgerEntryRequest implements SpeculativeRequestExecutor, AutoCloseable {
 
         final AtomicBoolean complete = new AtomicBoolean(false);
@@ -91,6 +94,8 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
         final DistributionSchedule.WriteSet writeSet;
         final LedgerEntryImpl entryImpl;
         final long eId;
+        // whether this request is responsible for loading the entry into the entry cache
+        boolean loadingIntoCache = false;
 
         LedgerEntryRequest(List<BookieSocketAddress> ensemble, long lId, long eId) {
             this.entryImpl = LedgerEntryImpl.create(lId, eId);
@@ -110,9 +115,58 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
 
         @Override
         public void close() {
+            if (loadingIntoCache) {
+                loadingIntoCache = false;
+                entryCache.abortLoad(lh.ledgerId, eId);
+            }
             entryImpl.close();
         }
 
+        /**
+         * Try to serve the read request from the client entry cache.
+         *
+         * <p>If another read of the same entry is already in flight, the request waits
+         * for its outcome and falls back to reading from the bookies if the entry
+         * still can not be found in the cache.
+         *
+         * @return true if the request does not need to be sent to the bookies now.
+         */
+        boolean readFromCache() {
+            if (completeFromCache()) {
+                return true;
+            }
+            CompletableFuture<Void> pendingLoad = entryCache.joinOrStartLoad(lh.ledgerId, eId);
+            if (pendingLoad == null) {
+                loadingIntoCache = true;
+                return false;
+            }
+            pendingLoad.thenRun(() -> clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+                if (PendingReadOp.this.complete.get() || isComplete()) {
+                    return;
+                }
+                if (!completeFromCache()) {
+                    read();
+                }
+            }));
+            return true;
+        }
+
+        private boolean completeFromCache() {
+            LedgerEntryImpl cached = entryCache.get(lh.ledgerId, eId);
+            if (cached == null) {
+                return false;
+            }
+            if (complete.compareAndSet(false, true)) {
+                rc = BKException.Code.OK;
+                entryImpl.setLength(cached.getLength());
+                entryImpl.setEntryBuf(cached.getEntryBuffer().retain());
+                writeSet.recycle();
+                submitCallback(BKException.Code.OK);
+            }
+            cached.close();
+            return true;
+        }
+
         /**
          * Execute the read request.
          */
@@ -152,6 +206,10 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                 entryImpl.setLength(buffer.getLong(DigestManager.METADATA_LENGTH - 8));
                 entryImpl.setEntryBuf(content);
                 writeSet.recycle();
+                if (loadingIntoCache) {
+                    loadingIntoCache = false;
+                    entryCache.completeLoad(lh.ledgerId, eId, entryImpl.getLength(), content);
+                }
                 return true;
             } else {
                 return false;
@@ -473,6 +531,12 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
                 - getLedgerMetadata().getAckQuorumSize() + 1;
         heardFromHosts = new HashSet<>();
         heardFromHostsBitSet = new BitSet(getLedgerMetadata().getEnsembleSize());
+        // only entries below the last add confirmed are immutable and safe to share
+        if (!isRecoveryRead && endEntryId <= lh.getLastAddConfirmed()) {
+            entryCache = clientCtx.getEntryCache();
+        } else {
+            entryCache = null;
+        }
     }
 
     CompletableFuture<LedgerEntries> future() {
@@ -525,8 +589,19 @@ class PendingReadOp implements ReadEntryCallback, SafeRunnable {
             seq.add(entry);
             i++;
         } while (i <= endEntryId);
+        List<LedgerEntryRequest> toRead = seq;
+        if (entryCache != null) {
+            // serve cached entries before sending any request, so their completion
+            // can not race with responses from the bookies
+            toRead = new ArrayList<>(seq.size());
+            for (LedgerEntryRequest entry : seq) {
+                if (!entry.readFromCache()) {
+                    toRead.add(entry);
+                }
+            }
+        }
         // read the entries.
-        for (LedgerEntryRequest entry : seq) {
+        for (LedgerEntryRequest entry : toRead) {
             entry.read();
             if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
                 speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
@@ -23,6 +23,8 @@ package org.apache.bookkeeper.client.api;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
@@ -141,4 +143,41 @@ public interface WriteAdvHandle extends ReadHandle, ForceableHandle {
     default long write(long entryId, ByteBuf data) throws BKException, InterruptedException {
         return FutureUtils.<Long, BKException>result(writeAsync(entryId, data), BKException.HANDLER);
     }
+
+    /**
+     * Add a batch of entries with consecutive entry ids asynchronously to an open ledger.
+     *
+     * @param firstEntryId entryId of the first entry of the batch, the following entries
+     *                     get the following entry ids
+     * @param entries bytebufs to be written
+     *                do not reuse the buffers, bk-client will release them appropriately.
+     * @return an handle to the result, in case of success it will return the entryId of the
+     *         last entry of the batch. It fails if any entry of the batch fails to be written.
+     * @since 4.12
+     */
+    default CompletableFuture<Long> writeBatchAsync(long firstEntryId, List<ByteBuf> entries) {
+        if (entries.isEmpty()) {
+            return FutureUtils.exception(new IllegalArgumentException("Empty batch of entries"));
+        }
+        List<CompletableFuture<Long>> futures = new ArrayList<>(entries.size());
+        long entryId = firstEntryId;
+        for (ByteBuf entry : entries) {
+            futures.add(writeAsync(entryId++, entry));
+        }
+        return FutureUtils.collect(futures).thenApply(entryIds -> entryIds.get(entryIds.size() - 1));
+    }
+
+    /**
+     * Add a batch of entries with consecutive entry ids synchronously to an open ledger.
+     *
+     * @param firstEntryId entryId of the first entry of the batch
+     * @param entries bytebufs to be written
+     *                do not reuse the buffers, bk-client will release them appropriately.
+     * @return the entryId of the last entry of the batch
+     * @see #writeBatchAsync(long, List)
+     * @since 4.12
+     */
+    default long writeBatch(long firstEntryId, List<ByteBuf> entries) throws BKException, InterruptedException {
+        return FutureUtils.<Long, BKException>result(writeBatchAsync(firstEntryId, entries), BKException.HANDLER);
+    }
 }
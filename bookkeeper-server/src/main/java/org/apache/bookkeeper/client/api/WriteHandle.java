@@ -23,6 +23,8 @@ package org.apache.bookkeeper.client.api;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
@@ -134,6 +136,45 @@ public interface WriteHandle extends ReadHandle, ForceableHandle {
         return append(Unpooled.wrappedBuffer(data, offset, length));
     }
 
+    /**
+     * Add a batch of entries asynchronously to an open ledger.
+     *
+     * <p>The entries are appended in order and get consecutive entry ids. This is meant
+     * for bulk loads of large sequential data sets, implementations can submit the whole
+     * batch at once instead of entry by entry.
+     *
+     * @param entries bytebufs to be written. The reference count of each bytebuf will be
+     *                decremented by 1 after the completable future is returned
+     *                do not reuse the buffers, bk-client will release them appropriately.
+     * @return an handle to the result, in case of success it will return the id of the last
+     *         entry of the batch. It fails if any entry of the batch fails to be appended.
+     * @since 4.12
+     */
+    default CompletableFuture<Long> appendBatchAsync(List<ByteBuf> entries) {
+        if (entries.isEmpty()) {
+            return FutureUtils.exception(new IllegalArgumentException("Empty batch of entries"));
+        }
+        List<CompletableFuture<Long>> futures = new ArrayList<>(entries.size());
+        for (ByteBuf entry : entries) {
+            futures.add(appendAsync(entry));
+        }
+        return FutureUtils.collect(futures).thenApply(entryIds -> entryIds.get(entryIds.size() - 1));
+    }
+
+    /**
+     * Add a batch of entries synchronously to an open ledger.
+     *
+     * @param entries bytebufs to be written. The reference count of each bytebuf will be
+     *                decremented by 1 after the call completes.
+     *                do not reuse the buffers, bk-client will release them appropriately.
+     * @return the id of the last entry of the batch
+     * @see #appendBatchAsync(List)
+     * @since 4.12
+     */
+    default long appendBatch(List<ByteBuf> entries) throws BKException, InterruptedException {
+        return FutureUtils.<Long, BKException>result(appendBatchAsync(entries), BKException.HANDLER);
+    }
+
     /**
      * Get the entry id of the last entry that has been enqueued for addition (but
      * may not have possibly been persisted to the ledger).
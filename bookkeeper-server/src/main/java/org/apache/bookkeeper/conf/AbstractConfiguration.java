@@ -86,11 +86,14 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String ZK_REQUEST_RATE_LIMIT = "zkRequestRateLimit";
     protected static final String AVAILABLE_NODE = "available";
     protected static final String REREPLICATION_ENTRY_BATCH_SIZE = "rereplicationEntryBatchSize";
+    protected static final String REPLICATION_RATE_BY_BYTES = "replicationRateByBytes";
+    protected static final String REPLICATION_MAX_IN_FLIGHT_ENTRIES = "replicationMaxInFlightEntries";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_UNDERREPLICATED_MARK_TIME =
             "storeSystemTimeAsLedgerUnderreplicatedMarkTime";
     protected static final String STORE_SYSTEMTIME_AS_LEDGER_CREATION_TIME = "storeSystemTimeAsLedgerCreationTime";
 
     protected static final String ENABLE_BUSY_WAIT = "enableBusyWait";
+    protected static final String ENABLE_WORK_STEALING = "enableWorkStealing";
 
     // Metastore settings, only being used when LEDGER_MANAGER_FACTORY_CLASS is MSLedgerManagerFactory
     protected static final String METASTORE_IMPL_CLASS = "metastoreImplClass";
@@ -182,6 +185,7 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
     protected static final String ALLOCATOR_POOLING_CONCURRENCY = "allocatorPoolingConcurrency";
     protected static final String ALLOCATOR_OOM_POLICY = "allocatorOutOfMemoryPolicy";
     protected static final String ALLOCATOR_LEAK_DETECTION_POLICY = "allocatorLeakDetectionPolicy";
+    protected static final String ALLOCATOR_THREAD_ARENA_CHUNK_SIZE = "allocatorThreadArenaChunkSize";
 
     // option to limit stats logging
     public static final String LIMIT_STATS_LOGGING = "limitStatsLogging";
@@ -580,6 +584,39 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getLong(REREPLICATION_ENTRY_BATCH_SIZE, 10);
     }
 
+    /**
+     * Set the max bytes per second written by the re-replication of the ledger
+     * fragments, shared by all the ledgers re-replicated concurrently.
+     * 0 means no limit.
+     */
+    public void setReplicationRateByBytes(int replicationRateByBytes) {
+        setProperty(REPLICATION_RATE_BY_BYTES, replicationRateByBytes);
+    }
+
+    /**
+     * Get the max bytes per second written by the re-replication of the ledger
+     * fragments. Default is 0, which means no limit.
+     */
+    public int getReplicationRateByBytes() {
+        return getInt(REPLICATION_RATE_BY_BYTES, 0);
+    }
+
+    /**
+     * Set the max number of entries being re-replicated at the same time, shared
+     * by all the ledgers re-replicated concurrently. 0 means no limit.
+     */
+    public void setReplicationMaxInFlightEntries(int maxInFlightEntries) {
+        setProperty(REPLICATION_MAX_IN_FLIGHT_ENTRIES, maxInFlightEntries);
+    }
+
+    /**
+     * Get the max number of entries being re-replicated at the same time.
+     * Default is 0, which means no limit.
+     */
+    public int getReplicationMaxInFlightEntries() {
+        return getInt(REPLICATION_MAX_IN_FLIGHT_ENTRIES, 0);
+    }
+
     /**
      * Get metastore implementation class.
      *
@@ -1104,6 +1141,29 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * @return the size of the per-thread arenas used for short lived buffers, 0 if disabled.
+     */
+    public int getAllocatorThreadArenaChunkSize() {
+        return getInt(ALLOCATOR_THREAD_ARENA_CHUNK_SIZE, 0);
+    }
+
+    /**
+     * Serve the serialized protobuf requests and responses from per-thread arenas of the
+     * given size, instead of the shared memory pool. Other buffers always come from the
+     * shared pool, since a long lived buffer would pin its whole arena chunk.
+     *
+     * <p>Default is 0, which disables thread arenas.
+     *
+     * @param chunkSize
+     *            the size in bytes of each thread arena
+     * @return configuration object.
+     */
+    public T setAllocatorThreadArenaChunkSize(int chunkSize) {
+        this.setProperty(ALLOCATOR_THREAD_ARENA_CHUNK_SIZE, chunkSize);
+        return getThis();
+    }
+
     /**
      * Return whether the busy-wait is enabled for BookKeeper and Netty IO threads.
      *
@@ -1140,6 +1200,34 @@ public abstract class AbstractConfiguration<T extends AbstractConfiguration>
         return getThis();
     }
 
+    /**
+     * Return whether the ordered worker pools let idle threads execute the tasks queued for busy threads.
+     *
+     * <p>Default is false
+     *
+     * @return the value of the option
+     */
+    public boolean isWorkStealingEnabled() {
+        return getBoolean(ENABLE_WORK_STEALING, false);
+    }
+
+    /**
+     * Option to enable work-stealing in the ordered worker pools.
+     *
+     * <p>The tasks of each ledger are still executed in order, but a few busy ledgers hashed
+     * to the same thread no longer delay the ledgers that share that thread with them.
+     * Busy-wait is not used by the pools running in this mode.
+     *
+     * @param workStealingEnabled
+     *            if enabled, idle worker threads take over the tasks queued for busy threads
+     * @return configuration.
+     * @see #isWorkStealingEnabled()
+     */
+    public T setWorkStealingEnabled(boolean workStealingEnabled) {
+        setProperty(ENABLE_WORK_STEALING, workStealingEnabled);
+        return getThis();
+    }
+
     /**
      * Return the flag indicating whether to limit stats logging.
      *
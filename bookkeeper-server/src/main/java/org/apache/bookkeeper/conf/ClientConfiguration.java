@@ -97,6 +97,10 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_WRITEBUFFER_HIGH_WATER_MARK = "clientWriteBufferHighWaterMark";
     protected static final String CLIENT_CONNECT_TIMEOUT_MILLIS = "clientConnectTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
+    protected static final String MAX_CHANNELS_PER_BOOKIE = "maxChannelsPerBookie";
+    protected static final String CHANNEL_POOL_GROWTH_PENDING_REQUESTS_THRESHOLD =
+        "channelPoolGrowthPendingRequestsThreshold";
+    protected static final String CHANNEL_POOL_IDLE_TIMEOUT_MS = "channelPoolIdleTimeoutMs";
     protected static final String USE_V2_WIRE_PROTOCOL = "useV2WireProtocol";
     protected static final String NETTY_USE_POOLED_BUFFERS = "nettyUsePooledBuffers";
 
@@ -113,8 +117,10 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         "speculativeReadLACTimeoutBackoffMultiplier";
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
+    protected static final String RECOVERY_READ_WINDOW_SIZE = "recoveryReadWindowSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String ENTRY_CACHE_MAX_SIZE_BYTES = "entryCacheMaxSizeBytes";
     // Add Parameters
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
     protected static final String MAX_ALLOWED_ENSEMBLE_CHANGES = "maxNumEnsembleChanges";
@@ -131,6 +137,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String TIMEOUT_TIMER_NUM_TICKS = "timeoutTimerNumTicks";
     // backpressure configuration
     protected static final String WAIT_TIMEOUT_ON_BACKPRESSURE = "waitTimeoutOnBackpressureMs";
+    // batched adds
+    protected static final String RANGE_ADD_MAX_REQUEST_SIZE = "rangeAddMaxRequestSizeBytes";
 
     // Bookie health check settings
     protected static final String BOOKIE_HEALTH_CHECK_ENABLED = "bookieHealthCheckEnabled";
@@ -547,6 +555,81 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of channels opened to a bookie.
+     *
+     * <p>If it is larger than {@link #getNumChannelsPerBookie()}, the channel pool
+     * to a bookie is elastic: {@link #getNumChannelsPerBookie()} channels are always
+     * kept, and additional channels are opened on demand when the existing ones are
+     * overloaded.
+     *
+     * @return max num channels per bookie. by default it is equal to num channels per bookie.
+     */
+    public int getMaxChannelsPerBookie() {
+        return getInt(MAX_CHANNELS_PER_BOOKIE, getNumChannelsPerBookie());
+    }
+
+    /**
+     * Set the max number of channels opened to a bookie.
+     *
+     * @param maxChannelsPerBookie
+     *          max num channels per bookie.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMaxChannelsPerBookie(int maxChannelsPerBookie) {
+        setProperty(MAX_CHANNELS_PER_BOOKIE, maxChannelsPerBookie);
+        return this;
+    }
+
+    /**
+     * Get the number of pending requests on a channel above which an elastic channel
+     * pool routes requests to additional channels.
+     *
+     * <p>A channel that is not writable, because its outstanding bytes exceed
+     * {@link #getClientWriteBufferHighWaterMark()}, is always considered overloaded.
+     *
+     * @return pending requests threshold of a channel.
+     */
+    public int getChannelPoolGrowthPendingRequestsThreshold() {
+        return getInt(CHANNEL_POOL_GROWTH_PENDING_REQUESTS_THRESHOLD, 1000);
+    }
+
+    /**
+     * Set the number of pending requests on a channel above which an elastic channel
+     * pool routes requests to additional channels.
+     *
+     * @param threshold
+     *          pending requests threshold of a channel.
+     * @return client configuration.
+     */
+    public ClientConfiguration setChannelPoolGrowthPendingRequestsThreshold(int threshold) {
+        setProperty(CHANNEL_POOL_GROWTH_PENDING_REQUESTS_THRESHOLD, threshold);
+        return this;
+    }
+
+    /**
+     * Get the time after which an idle additional channel of an elastic channel pool
+     * is closed.
+     *
+     * @return idle timeout in milliseconds.
+     */
+    public long getChannelPoolIdleTimeoutMs() {
+        return getLong(CHANNEL_POOL_IDLE_TIMEOUT_MS, 60000L);
+    }
+
+    /**
+     * Set the time after which an idle additional channel of an elastic channel pool
+     * is closed.
+     *
+     * @param idleTimeoutMs
+     *          idle timeout in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setChannelPoolIdleTimeoutMs(long idleTimeoutMs) {
+        setProperty(CHANNEL_POOL_IDLE_TIMEOUT_MS, idleTimeoutMs);
+        return this;
+    }
+
     /**
      * Use older Bookkeeper wire protocol (no protobuf).
      *
@@ -831,6 +914,31 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max size of a request adding a batch of entries to a bookie.
+     *
+     * <p>The entries of a batch appended with {@link org.apache.bookkeeper.client.api.WriteHandle#appendBatchAsync}
+     * are sent to each bookie in requests of up to this size, which are journaled and acknowledged
+     * one by one. It has to be lower than the max frame size of the bookies.
+     *
+     * @return the max size of a batched add request, in bytes. Default is 1MB.
+     */
+    public int getRangeAddMaxRequestSizeBytes() {
+        return getInt(RANGE_ADD_MAX_REQUEST_SIZE, 1024 * 1024);
+    }
+
+    /**
+     * Set the max size of a request adding a batch of entries to a bookie.
+     *
+     * @param size the max size of a batched add request, in bytes.
+     * @return client configuration.
+     * @see #getRangeAddMaxRequestSizeBytes()
+     */
+    public ClientConfiguration setRangeAddMaxRequestSizeBytes(int size) {
+        setProperty(RANGE_ADD_MAX_REQUEST_SIZE, size);
+        return this;
+    }
+
     /**
      * Get the number of worker threads. This is the number of
      * worker threads used by bookkeeper client to submit operations.
@@ -1112,6 +1220,34 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the number of recovery read batches that are kept in flight while
+     * recovering a ledger.
+     *
+     * @return recovery read window size.
+     */
+    public int getRecoveryReadWindowSize() {
+        return getInt(RECOVERY_READ_WINDOW_SIZE, 1);
+    }
+
+    /**
+     * Set the number of recovery read batches that are kept in flight while
+     * recovering a ledger.
+     *
+     * <p>With a window of 1, the next batch of {@link #getRecoveryReadBatchSize()}
+     * entries is only read once the previous batch has been read. Larger windows
+     * speed up the recovery of ledgers with a long unconfirmed tail, at the cost
+     * of reading up to <i>window * batchSize</i> entries past the end of the ledger.
+     *
+     * @param windowSize
+     *          recovery read window size.
+     * @return client configuration.
+     */
+    public ClientConfiguration setRecoveryReadWindowSize(int windowSize) {
+        setProperty(RECOVERY_READ_WINDOW_SIZE, windowSize);
+        return this;
+    }
+
     /**
      * If reorder read sequence enabled or not.
      *
@@ -1170,6 +1306,33 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum size, in bytes, of the client side entry cache.
+     *
+     * @return max size of the entry cache. 0 means the entry cache is disabled.
+     */
+    public long getEntryCacheMaxSizeBytes() {
+        return getLong(ENTRY_CACHE_MAX_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the maximum size, in bytes, of the client side entry cache.
+     *
+     * <p>When enabled, entries read by any read handle of this client are kept
+     * in a size bounded direct memory cache shared by all the handles, and
+     * concurrent reads of the same entry are coalesced into a single bookie
+     * read. This helps when many readers in the same process read the same
+     * ledgers. Recovery reads and reads beyond the last add confirmed are never
+     * cached.
+     *
+     * @param maxSizeBytes max size of the entry cache, 0 to disable it.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setEntryCacheMaxSizeBytes(long maxSizeBytes) {
+        setProperty(ENTRY_CACHE_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
@@ -23,7 +23,9 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import java.io.File;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.apache.bookkeeper.bookie.InterleavedLedgerStorage;
 import org.apache.bookkeeper.bookie.LedgerStorage;
 import org.apache.bookkeeper.bookie.SortedLedgerStorage;
@@ -98,16 +100,24 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String NUM_COMPACTION_THREADS = "numCompactionThreads";
+    protected static final String COMPACTION_LATENCY_THRESHOLD_MS = "compactionLatencyThresholdMs";
+    protected static final String COMPACTION_READ_BUFFER_SIZE = "compactionReadBufferSizeBytes";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
     protected static final String IS_FORCE_GC_ALLOW_WHEN_NO_SPACE = "isForceGCAllowWhenNoSpace";
     protected static final String GC_OVERREPLICATED_LEDGER_WAIT_TIME = "gcOverreplicatedLedgerWaitTime";
     protected static final String USE_TRANSACTIONAL_COMPACTION = "useTransactionalCompaction";
+    protected static final String USE_COST_BENEFIT_COMPACTION = "useCostBenefitCompaction";
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
+    protected static final String GC_LEDGER_RANGES_PER_RUN = "gcLedgerRangesPerRun";
+    protected static final String GC_ENTRYLOG_METADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
+    protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
     protected static final String LOCAL_SCRUB_RATE_LIMIT = "localScrubRateLimit";
+    protected static final String CRC32C_DIGEST_VERIFICATION_ENABLED = "crc32cDigestVerificationEnabled";
     // Sync Parameters
     protected static final String FLUSH_INTERVAL = "flushInterval";
     protected static final String FLUSH_ENTRYLOG_INTERVAL_BYTES = "flushEntrylogBytes";
@@ -116,6 +126,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     // Ledger Cache Parameters
     protected static final String OPEN_FILE_LIMIT = "openFileLimit";
     protected static final String PAGE_LIMIT = "pageLimit";
+    protected static final String NUM_INDEX_FLUSH_THREADS = "numIndexFlushThreads";
     protected static final String PAGE_SIZE = "pageSize";
     protected static final String FILEINFO_CACHE_INITIAL_CAPACITY = "fileInfoCacheInitialCapacity";
     protected static final String FILEINFO_MAX_IDLE_TIME = "fileInfoMaxIdleTime";
@@ -140,6 +151,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
+    protected static final String ALLOCATOR_MEMORY_BUDGETS_ENABLED = "allocatorMemoryBudgetsEnabled";
+    protected static final String NETTY_MEMORY_BUDGET_SOFT_LIMIT_BYTES = "nettyMemoryBudgetSoftLimitBytes";
+    protected static final String NETTY_MEMORY_BUDGET_HARD_LIMIT_BYTES = "nettyMemoryBudgetHardLimitBytes";
     protected static final String CLOSE_CHANNEL_ON_RESPONSE_TIMEOUT = "closeChannelOnResponseTimeout";
     protected static final String WAIT_TIMEOUT_ON_RESPONSE_BACKPRESSURE = "waitTimeoutOnResponseBackpressureMs";
 
@@ -154,6 +168,11 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_DIRS = "journalDirectories";
     protected static final String LEDGER_DIRS = "ledgerDirectories";
     protected static final String INDEX_DIRS = "indexDirectories";
+    protected static final String COLD_LEDGER_DIRS = "coldLedgerDirectories";
+    protected static final String ENTRY_LOG_OFFLOAD_INTERVAL = "entryLogOffloadIntervalSeconds";
+    protected static final String ENTRY_LOG_OFFLOAD_MIN_AGE = "entryLogOffloadMinAgeSeconds";
+    protected static final String COLD_READ_BUFFER_SIZE = "coldReadBufferSizeBytes";
+    protected static final String ENTRY_LOG_OFFLOAD_RATE_BY_BYTES = "entryLogOffloadRateByBytes";
     protected static final String ALLOW_STORAGE_EXPANSION = "allowStorageExpansion";
     // NIO and Netty Parameters
     protected static final String SERVER_TCP_NODELAY = "serverTcpNoDelay";
@@ -189,6 +208,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String AUTO_RECOVERY_DAEMON_ENABLED = "autoRecoveryDaemonEnabled";
     protected static final String LOST_BOOKIE_RECOVERY_DELAY = "lostBookieRecoveryDelay";
     protected static final String RW_REREPLICATE_BACKOFF_MS = "rwRereplicateBackoffMs";
+    protected static final String RW_MAX_CONCURRENT_LEDGERS = "rwMaxConcurrentLedgers";
     protected static final String UNDERREPLICATED_LEDGER_RECOVERY_GRACE_PERIOD =
             "underreplicatedLedgerRecoveryGracePeriod";
     protected static final String AUDITOR_REPLICAS_CHECK_INTERVAL = "auditorReplicasCheckInterval";
@@ -196,6 +216,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     // Worker Thread parameters.
     protected static final String NUM_ADD_WORKER_THREADS = "numAddWorkerThreads";
     protected static final String NUM_READ_WORKER_THREADS = "numReadWorkerThreads";
+    protected static final String READ_WORKER_VIRTUAL_THREADS_ENABLED = "readWorkerVirtualThreadsEnabled";
     protected static final String MAX_PENDING_READ_REQUESTS_PER_THREAD = "maxPendingReadRequestsPerThread";
     protected static final String MAX_PENDING_ADD_REQUESTS_PER_THREAD = "maxPendingAddRequestsPerThread";
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
@@ -218,6 +239,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SKIP_LIST_SIZE_LIMIT = "skipListSizeLimit";
     protected static final String SKIP_LIST_CHUNK_SIZE_ENTRY = "skipListArenaChunkSize";
     protected static final String SKIP_LIST_MAX_ALLOC_ENTRY = "skipListArenaMaxAllocSize";
+    protected static final String SKIP_LIST_MAX_SNAPSHOTS = "skipListMaxSnapshots";
+    protected static final String SKIP_LIST_ARENA_OFF_HEAP = "skipListArenaOffHeap";
 
     // Statistics Parameters
     protected static final String ENABLE_STATISTICS = "enableStatistics";
@@ -285,6 +308,16 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String ENTRY_LOG_PER_LEDGER_COUNTER_LIMITS_MULT_FACTOR =
             "entryLogPerLedgerCounterLimitsMultFactor";
 
+    /*
+     * config specifying if the ledgers are grouped by expected lifetime into a
+     * bounded number of active entrylogs.
+     */
+    protected static final String ENTRY_LOG_PER_LIFETIME_GROUP_ENABLED = "entryLogPerLifetimeGroupEnabled";
+    protected static final String ENTRY_LOG_LIFETIME_GROUP_BOUNDARIES_SECONDS =
+            "entryLogLifetimeGroupBoundariesSeconds";
+    protected static final String ENTRY_LOG_LIFETIME_GROUP_MAX_OPEN_TIME_SECONDS =
+            "entryLogLifetimeGroupMaxOpenTimeSeconds";
+
     // Perform local consistency check on bookie startup
     protected static final String LOCAL_CONSISTENCY_CHECK_ON_STARTUP = "localConsistencyCheckOnStartup";
 
@@ -371,6 +404,53 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the garbage collector keeps the metadata of the entry logs in a RocksDB store on disk,
+     * instead of in memory.
+     *
+     * <p>With the persistent store, the metadata of the entry logs isn't rebuilt by scanning all the
+     * entry logs after a restart, and doesn't take heap space on bookies with many entry logs.
+     *
+     * @return true if the entry log metadata is stored on disk
+     */
+    public boolean isGcEntryLogMetadataCacheEnabled() {
+        return getBoolean(GC_ENTRYLOG_METADATA_CACHE_ENABLED, false);
+    }
+
+    /**
+     * Set whether the garbage collector keeps the metadata of the entry logs on disk.
+     *
+     * @param gcEntryLogMetadataCacheEnabled
+     *          whether to store the entry log metadata on disk
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataCacheEnabled(boolean gcEntryLogMetadataCacheEnabled) {
+        this.setProperty(GC_ENTRYLOG_METADATA_CACHE_ENABLED, gcEntryLogMetadataCacheEnabled);
+        return this;
+    }
+
+    /**
+     * Get the directory of the entry log metadata store of the garbage collector. By default, the
+     * store is kept in the first ledger directory.
+     *
+     * @return the entry log metadata store directory, or null to use the ledger directory
+     */
+    public String getGcEntryLogMetadataCachePath() {
+        return getString(GC_ENTRYLOG_METADATA_CACHE_PATH, null);
+    }
+
+    /**
+     * Set the directory of the entry log metadata store of the garbage collector.
+     *
+     * @param gcEntrylogMetadataCachePath
+     *          entry log metadata store directory
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogMetadataCachePath(String gcEntrylogMetadataCachePath) {
+        this.setProperty(GC_ENTRYLOG_METADATA_CACHE_PATH, gcEntrylogMetadataCachePath);
+        return this;
+    }
+
     /**
      * Get wait time in millis for garbage collection of overreplicated ledgers.
      *
@@ -417,6 +497,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether to choose the entry logs to compact by cost-benefit instead of by usage.
+     *
+     * <p>The entry logs below the compaction threshold are compacted by decreasing
+     * (1 - usage) * age / (1 + usage), and the entry logs whose ledgers are expected to be deleted
+     * before the next compaction are left to the garbage collector, based on the lifetime of the
+     * ledgers deleted so far.
+     *
+     * @return use cost-benefit compaction
+     */
+    public boolean getUseCostBenefitCompaction() {
+        return this.getBoolean(USE_COST_BENEFIT_COMPACTION, false);
+    }
+
+    /**
+     * Set whether to choose the entry logs to compact by cost-benefit instead of by usage.
+     *
+     * @param useCostBenefitCompaction
+     * @return server configuration
+     */
+    public ServerConfiguration setUseCostBenefitCompaction(boolean useCostBenefitCompaction) {
+        this.setProperty(USE_COST_BENEFIT_COMPACTION, useCostBenefitCompaction);
+        return this;
+    }
+
     /**
      * Get whether the bookie is configured to double check prior to gc.
      *
@@ -436,6 +541,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of ledger ranges of the metadata store compared with the ledgers of the
+     * bookie in each garbage collection run. The scan of the metadata store resumes where it stopped in
+     * the next run, so that a full scan is spread over several runs. Default is 0, the whole metadata
+     * store is scanned in each run.
+     *
+     * @return number of ledger ranges scanned per garbage collection run
+     */
+    public int getGcLedgerRangesPerRun() {
+        return this.getInt(GC_LEDGER_RANGES_PER_RUN, 0);
+    }
+
+    /**
+     * Set the maximum number of ledger ranges of the metadata store compared with the ledgers of the
+     * bookie in each garbage collection run.
+     *
+     * @param gcLedgerRangesPerRun number of ledger ranges, or 0 to scan the whole metadata store in each run
+     * @return server configuration
+     */
+    public ServerConfiguration setGcLedgerRangesPerRun(int gcLedgerRangesPerRun) {
+        this.setProperty(GC_LEDGER_RANGES_PER_RUN, gcLedgerRangesPerRun);
+        return this;
+    }
+
     /**
      * Get whether local scrub is enabled.
      *
@@ -480,6 +609,31 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         this.setProperty(LOCAL_SCRUB_RATE_LIMIT, scrubRateLimit);
     }
 
+    /**
+     * Get whether the bookie verifies the CRC32C digest of the entries it stores.
+     *
+     * @return whether CRC32C digest verification is enabled.
+     */
+    public boolean isCrc32cDigestVerificationEnabled() {
+        return this.getBoolean(CRC32C_DIGEST_VERIFICATION_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable verification of the CRC32C digest of the entries stored by the bookie.
+     *
+     * <p>When enabled, for the ledgers whose metadata says they use the CRC32C digest type, entries
+     * whose digest does not match their content are rejected on add and fail on read, and local
+     * scrub checks the stored entries against the digest they were written with. The entries of
+     * the other ledgers, and of the ledgers whose metadata has not been read yet, are not verified.
+     *
+     * @param enabled whether to verify CRC32C digests.
+     * @return server configuration.
+     */
+    public ServerConfiguration setCrc32cDigestVerificationEnabled(boolean enabled) {
+        this.setProperty(CRC32C_DIGEST_VERIFICATION_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get flush interval. Default value is 10 second. It isn't useful to decrease
      * this value, since ledger storage only checkpoints when an entry logger file
@@ -581,6 +735,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of threads flushing the dirty index pages of the ledgers in parallel on
+     * checkpoint, in the ledger cache of the interleaved ledger storage. Default is 1, the ledgers are
+     * flushed one after the other by the checkpointing thread.
+     *
+     * @return number of index flush threads
+     */
+    public int getNumIndexFlushThreads() {
+        return this.getInt(NUM_INDEX_FLUSH_THREADS, 1);
+    }
+
+    /**
+     * Set the number of threads flushing the dirty index pages of the ledgers in parallel on
+     * checkpoint.
+     *
+     * @param numIndexFlushThreads
+     *          Number of index flush threads.
+     * @return server configuration
+     */
+    public ServerConfiguration setNumIndexFlushThreads(int numIndexFlushThreads) {
+        this.setProperty(NUM_INDEX_FLUSH_THREADS, numIndexFlushThreads);
+        return this;
+    }
+
     /**
      * Get page size.
      *
@@ -873,6 +1051,76 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether the memory allocated by the bookie is tracked per subsystem.
+     *
+     * @return whether allocator memory budgets are enabled.
+     */
+    public boolean isAllocatorMemoryBudgetsEnabled() {
+        return this.getBoolean(ALLOCATOR_MEMORY_BUDGETS_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable tracking of the memory allocated by the bookie per subsystem (netty,
+     * journal, ledger storage). Each subsystem gets its own memory budget, exposed as stats,
+     * and the limits configured for a subsystem are only enforced when this is enabled.
+     *
+     * @param enabled whether to enable allocator memory budgets.
+     * @return server configuration.
+     */
+    public ServerConfiguration setAllocatorMemoryBudgetsEnabled(boolean enabled) {
+        this.setProperty(ALLOCATOR_MEMORY_BUDGETS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the soft limit of the memory allocated for the requests read from the network. 0 == unlimited.
+     *
+     * @return soft limit in bytes.
+     */
+    public long getNettyMemoryBudgetSoftLimitBytes() {
+        return this.getLong(NETTY_MEMORY_BUDGET_SOFT_LIMIT_BYTES, 0);
+    }
+
+    /**
+     * Set the soft limit of the memory allocated for the requests read from the network. 0 == unlimited.
+     *
+     * <p>When crossed, the bookie stops reading from its connections until the memory held by the
+     * requests in progress goes back under the limit.
+     *
+     * @param limit
+     *          soft limit in bytes.
+     * @return server configuration.
+     */
+    public ServerConfiguration setNettyMemoryBudgetSoftLimitBytes(long limit) {
+        this.setProperty(NETTY_MEMORY_BUDGET_SOFT_LIMIT_BYTES, limit);
+        return this;
+    }
+
+    /**
+     * Get the hard limit of the memory allocated for the requests read from the network. 0 == unlimited.
+     *
+     * @return hard limit in bytes.
+     */
+    public long getNettyMemoryBudgetHardLimitBytes() {
+        return this.getLong(NETTY_MEMORY_BUDGET_HARD_LIMIT_BYTES, 0);
+    }
+
+    /**
+     * Set the hard limit of the memory allocated for the requests read from the network. 0 == unlimited.
+     *
+     * <p>Allocations that would go above it fail, without affecting the memory available to the
+     * other subsystems of the bookie.
+     *
+     * @param limit
+     *          hard limit in bytes.
+     * @return server configuration.
+     */
+    public ServerConfiguration setNettyMemoryBudgetHardLimitBytes(long limit) {
+        this.setProperty(NETTY_MEMORY_BUDGET_HARD_LIMIT_BYTES, limit);
+        return this;
+    }
+
     /**
      * Configures action in case if server timed out sending response to the client.
      * true == close the channel and drop response
@@ -1255,6 +1503,131 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return idxDirs;
     }
 
+    /**
+     * Get dir names of the cold tier, where the sealed entry logs are offloaded.
+     *
+     * @return cold ledger dir names, if no cold dirs provided return null
+     */
+    public String[] getColdLedgerDirNames() {
+        if (!this.containsKey(COLD_LEDGER_DIRS)) {
+            return null;
+        }
+        return this.getStringArray(COLD_LEDGER_DIRS);
+    }
+
+    /**
+     * Set dir names of the cold tier, where the sealed entry logs are offloaded.
+     *
+     * @param coldLedgerDirs
+     *          Cold ledger dir names
+     * @return server configuration.
+     */
+    public ServerConfiguration setColdLedgerDirNames(String[] coldLedgerDirs) {
+        this.setProperty(COLD_LEDGER_DIRS, coldLedgerDirs);
+        return this;
+    }
+
+    /**
+     * Get dirs of the cold tier, where the sealed entry logs are offloaded.
+     *
+     * @return cold ledger dirs, if no cold dirs provided return null
+     */
+    public File[] getColdLedgerDirs() {
+        String[] coldDirNames = getColdLedgerDirNames();
+        if (null == coldDirNames || 0 == coldDirNames.length) {
+            return null;
+        }
+        File[] coldDirs = new File[coldDirNames.length];
+        for (int i = 0; i < coldDirNames.length; i++) {
+            coldDirs[i] = new File(coldDirNames[i]);
+        }
+        return coldDirs;
+    }
+
+    /**
+     * Get the interval between two runs of the entry log offloader, which moves the
+     * sealed entry logs to the cold ledger dirs.
+     *
+     * @return offload interval in seconds (Default is 600)
+     */
+    public long getEntryLogOffloadIntervalSeconds() {
+        return getLong(ENTRY_LOG_OFFLOAD_INTERVAL, 600);
+    }
+
+    /**
+     * Set the interval between two runs of the entry log offloader.
+     *
+     * @param interval offload interval in seconds.
+     * @return server configuration.
+     */
+    public ServerConfiguration setEntryLogOffloadIntervalSeconds(long interval) {
+        setProperty(ENTRY_LOG_OFFLOAD_INTERVAL, interval);
+        return this;
+    }
+
+    /**
+     * Get the minimum age of a sealed entry log, since its last modification, before it is
+     * offloaded to the cold ledger dirs.
+     *
+     * @return min age in seconds (Default is 3600)
+     */
+    public long getEntryLogOffloadMinAgeSeconds() {
+        return getLong(ENTRY_LOG_OFFLOAD_MIN_AGE, 3600);
+    }
+
+    /**
+     * Set the minimum age of a sealed entry log before it is offloaded to the cold ledger dirs.
+     *
+     * @param minAge min age in seconds.
+     * @return server configuration.
+     */
+    public ServerConfiguration setEntryLogOffloadMinAgeSeconds(long minAge) {
+        setProperty(ENTRY_LOG_OFFLOAD_MIN_AGE, minAge);
+        return this;
+    }
+
+    /**
+     * Get the max bytes per second copied by the entry log offloader, which reads them from
+     * the ledger dirs while they serve the writes.
+     *
+     * @return offload rate in bytes per second, 0 for no limit (Default is 10000000)
+     */
+    public int getEntryLogOffloadRateByBytes() {
+        return getInt(ENTRY_LOG_OFFLOAD_RATE_BY_BYTES, 10000000);
+    }
+
+    /**
+     * Set the max bytes per second copied by the entry log offloader.
+     *
+     * @param rate offload rate in bytes per second, 0 for no limit.
+     * @return server configuration.
+     */
+    public ServerConfiguration setEntryLogOffloadRateByBytes(int rate) {
+        setProperty(ENTRY_LOG_OFFLOAD_RATE_BY_BYTES, rate);
+        return this;
+    }
+
+    /**
+     * Get the size of the read buffers of the entry logs in the cold ledger dirs. It is larger
+     * than the one of the other entry logs, to read ahead on slower disks.
+     *
+     * @return the size of the read buffer in bytes (Default is 64 KB)
+     */
+    public int getColdReadBufferBytes() {
+        return getInt(COLD_READ_BUFFER_SIZE, 64 * 1024);
+    }
+
+    /**
+     * Set the size of the read buffers of the entry logs in the cold ledger dirs.
+     *
+     * @param readBufferSize read buffer size in bytes.
+     * @return server configuration.
+     */
+    public ServerConfiguration setColdReadBufferBytes(int readBufferSize) {
+        setProperty(COLD_READ_BUFFER_SIZE, readBufferSize);
+        return this;
+    }
+
     /**
      * Is tcp connection no delay.
      *
@@ -1716,6 +2089,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getInt(NUM_READ_WORKER_THREADS, 8);
     }
 
+    /**
+     * Set whether the read requests should be handled by virtual threads, when the JVM supports them.
+     *
+     * <p>Reads blocking on the disk then don't tie up platform threads, and the number of read worker
+     * threads can be raised well beyond the number of CPUs to get more concurrent disk reads.
+     *
+     * @param enabled
+     *          flag to run the read worker threads as virtual threads.
+     * @return server configuration
+     */
+    public ServerConfiguration setReadWorkerVirtualThreadsEnabled(boolean enabled) {
+        setProperty(READ_WORKER_VIRTUAL_THREADS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get whether the read requests should be handled by virtual threads, when the JVM supports them.
+     *
+     * <p>Default is false
+     */
+    public boolean isReadWorkerVirtualThreadsEnabled() {
+        return getBoolean(READ_WORKER_VIRTUAL_THREADS_ENABLED, false);
+    }
+
     /**
      * Set the tick duration in milliseconds.
      *
@@ -1930,6 +2327,48 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of skip list snapshots that can wait for the flush in the EntryMemTable.
+     * More snapshots let the adds go on while a slow flush is in progress, at the cost of
+     * up to skipListSizeLimit bytes of memory per snapshot.
+     *
+     * @return max number of snapshots of the skip list (Default is 1)
+     */
+    public int getSkipListMaxSnapshots() {
+        return getInt(SKIP_LIST_MAX_SNAPSHOTS, 1);
+    }
+
+    /**
+     * Set the max number of skip list snapshots that can wait for the flush in the EntryMemTable.
+     *
+     * @param maxSnapshots max number of snapshots.
+     * @return server configuration object.
+     */
+    public ServerConfiguration setSkipListMaxSnapshots(int maxSnapshots) {
+        setProperty(SKIP_LIST_MAX_SNAPSHOTS, maxSnapshots);
+        return this;
+    }
+
+    /**
+     * Whether the chunks of the skiplist arena are allocated in direct memory, instead of the heap.
+     *
+     * @return true if the skiplist arena is off-heap (Default is false)
+     */
+    public boolean isSkipListArenaOffHeap() {
+        return getBoolean(SKIP_LIST_ARENA_OFF_HEAP, false);
+    }
+
+    /**
+     * Set whether the chunks of the skiplist arena are allocated in direct memory, instead of the heap.
+     *
+     * @param offHeap whether to allocate the chunks off-heap.
+     * @return server configuration object.
+     */
+    public ServerConfiguration setSkipListArenaOffHeap(boolean offHeap) {
+        setProperty(SKIP_LIST_ARENA_OFF_HEAP, offHeap);
+        return this;
+    }
+
     /**
      * Should the data be fsynced on journal before acknowledgment.
      *
@@ -2392,6 +2831,25 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(RW_REREPLICATE_BACKOFF_MS, backoffMs);
     }
 
+    /**
+     * Get the max number of ledgers that the replication worker rereplicates concurrently.
+     * When more than one, the ledgers with the fewest replicas left are rereplicated first.
+     *
+     * @return max number of ledgers rereplicated concurrently (Default is 1)
+     */
+    public int getRwMaxConcurrentLedgers() {
+        return getInt(RW_MAX_CONCURRENT_LEDGERS, 1);
+    }
+
+    /**
+     * Set the max number of ledgers that the replication worker rereplicates concurrently.
+     *
+     * @param maxConcurrentLedgers max number of ledgers rereplicated concurrently
+     */
+    public void setRwMaxConcurrentLedgers(int maxConcurrentLedgers) {
+        setProperty(RW_MAX_CONCURRENT_LEDGERS, maxConcurrentLedgers);
+    }
+
     /**
      * Sets that whether force start a bookie in readonly mode.
      *
@@ -2533,6 +2991,78 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of threads running the garbage collection and the compaction of the ledger
+     * directories, when each ledger directory has its own entry logs (DbLedgerStorage). The
+     * directories are compacted in parallel, sharing the compaction rate, and each directory is
+     * compacted by a single thread at a time. Default is 0, one thread per ledger directory.
+     *
+     * @return number of compaction threads
+     */
+    public int getNumCompactionThreads() {
+        return getInt(NUM_COMPACTION_THREADS, 0);
+    }
+
+    /**
+     * Set the number of threads running the garbage collection and the compaction of the ledger
+     * directories.
+     *
+     * @param numThreads number of compaction threads, or 0 for one thread per ledger directory
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setNumCompactionThreads(int numThreads) {
+        setProperty(NUM_COMPACTION_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the 99th percentile latency of the reads and writes of the ledger storage above which the
+     * compaction rate is lowered. The rate goes back up towards the configured compaction rate while the
+     * latency is below the threshold. Default is 0, the compaction rate doesn't adapt to the latency.
+     *
+     * @return foreground latency threshold in milliseconds
+     */
+    public long getCompactionLatencyThresholdMs() {
+        return getLong(COMPACTION_LATENCY_THRESHOLD_MS, 0);
+    }
+
+    /**
+     * Set the 99th percentile latency of the reads and writes of the ledger storage above which the
+     * compaction rate is lowered.
+     *
+     * @param thresholdMs foreground latency threshold in milliseconds, or 0 to disable
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionLatencyThresholdMs(long thresholdMs) {
+        setProperty(COMPACTION_LATENCY_THRESHOLD_MS, thresholdMs);
+        return this;
+    }
+
+    /**
+     * Get the size of the chunks in which the entry logs are read sequentially when they are compacted.
+     * The next chunk is read ahead while the current one is compacted, and the chunks compacted are
+     * dropped from the page cache. Default is 8MB. 0 means the entry logs are scanned entry by entry.
+     *
+     * @return size of the compaction reads in bytes
+     */
+    public int getCompactionReadBufferBytes() {
+        return getInt(COMPACTION_READ_BUFFER_SIZE, 8 * 1024 * 1024);
+    }
+
+    /**
+     * Set the size of the chunks in which the entry logs are read sequentially when they are compacted.
+     *
+     * @param bufferSize size of the compaction reads in bytes, or 0 to scan the entry logs entry by entry
+     *
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionReadBufferBytes(int bufferSize) {
+        setProperty(COMPACTION_READ_BUFFER_SIZE, bufferSize);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
@@ -3342,6 +3872,68 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /*
+     * specifies if the ledgers are grouped by expected lifetime into a bounded
+     * number of active entrylogs, so that the entries of an entrylog expire
+     * around the same time. The expected lifetime of a ledger is the retention
+     * hint of its custom metadata (see LedgerMetadataBuilder#withRetentionHint).
+     * Ignored when entryLogPerLedgerEnabled is enabled.
+     */
+    public boolean isEntryLogPerLifetimeGroupEnabled() {
+        return this.getBoolean(ENTRY_LOG_PER_LIFETIME_GROUP_ENABLED, false);
+    }
+
+    /*
+     * enables/disables grouping the ledgers into entrylogs by expected lifetime.
+     */
+    public ServerConfiguration setEntryLogPerLifetimeGroupEnabled(boolean entryLogPerLifetimeGroupEnabled) {
+        this.setProperty(ENTRY_LOG_PER_LIFETIME_GROUP_ENABLED, Boolean.toString(entryLogPerLifetimeGroupEnabled));
+        return this;
+    }
+
+    /*
+     * get the upper bounds, in seconds and in ascending order, of the expected
+     * lifetime of the ledgers of each lifetime group. The ledgers with a longer
+     * retention hint make up a last group, and the ledgers without a hint have
+     * their own group. Default is 1 hour, 1 day and 1 week.
+     */
+    public long[] getEntryLogLifetimeGroupBoundariesSeconds() {
+        String[] boundaries = this.getStringArray(ENTRY_LOG_LIFETIME_GROUP_BOUNDARIES_SECONDS);
+        if (boundaries == null || boundaries.length == 0) {
+            return new long[] { 3600, 86400, 604800 };
+        }
+        return Arrays.stream(boundaries).mapToLong(b -> Long.parseLong(b.trim())).sorted().toArray();
+    }
+
+    /*
+     * sets the upper bounds, in seconds, of the expected lifetime of the
+     * ledgers of each lifetime group.
+     */
+    public ServerConfiguration setEntryLogLifetimeGroupBoundariesSeconds(long... boundariesSeconds) {
+        this.setProperty(ENTRY_LOG_LIFETIME_GROUP_BOUNDARIES_SECONDS,
+                Arrays.stream(boundariesSeconds).mapToObj(Long::toString).collect(Collectors.joining(",")));
+        return this;
+    }
+
+    /*
+     * in the lifetime groups feature, this specifies the time after which the
+     * active entrylog of a group is rolled even if it didn't reach the entrylog
+     * size limit, so that the entrylogs of the slow groups can be garbage
+     * collected and compacted.
+     */
+    public int getEntryLogLifetimeGroupMaxOpenTimeSeconds() {
+        return this.getInt(ENTRY_LOG_LIFETIME_GROUP_MAX_OPEN_TIME_SECONDS, 3600);
+    }
+
+    /*
+     * sets the time after which the active entrylog of a lifetime group is
+     * rolled.
+     */
+    public ServerConfiguration setEntryLogLifetimeGroupMaxOpenTimeSeconds(int maxOpenTimeSeconds) {
+        this.setProperty(ENTRY_LOG_LIFETIME_GROUP_MAX_OPEN_TIME_SECONDS, Integer.toString(maxOpenTimeSeconds));
+        return this;
+    }
+
     /**
      * True if a local consistency check should be performed on startup.
      */
@@ -143,6 +143,31 @@ public interface BookieClient {
                   long entryId, ByteBufList toSend, WriteCallback cb, Object ctx,
                   int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags);
 
+    /**
+     * Add a batch of entries for ledger {@code ledgerId} on the bookie at address {@code address},
+     * in a single request. The bookie journals the entries together, and the callback of each
+     * entry is notified once the whole batch completes.
+     *
+     * <p>The entries are added one by one if the bookie or the wire protocol in use does not
+     * support batched adds.
+     *
+     * @param address the address of the bookie
+     * @param ledgerId the ledger to which we wish to add the entries
+     * @param entryIds the ids of the entries we wish to add
+     * @param toSend the buffers containing the entries and their digests
+     * @param cbs the callbacks notified when the entries complete
+     * @param ctx a context object passed to the callbacks on completion
+     * @see #addEntry(BookieSocketAddress,long,byte[],long,ByteBufList,WriteCallback,Object,int,boolean,EnumSet)
+     */
+    default void addEntries(BookieSocketAddress address, long ledgerId, byte[] masterKey,
+                            List<Long> entryIds, List<ByteBufList> toSend, List<? extends WriteCallback> cbs,
+                            Object ctx, int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags) {
+        for (int i = 0; i < entryIds.size(); i++) {
+            addEntry(address, ledgerId, masterKey, entryIds.get(i), toSend.get(i), cbs.get(i), ctx,
+                     options, allowFastFail, writeFlags);
+        }
+    }
+
     /**
      * Read entry with a null masterkey, disallowing failfast.
      * @see #readEntry(BookieSocketAddress,long,long,ReadEntryCallback,Object,int,byte[],boolean)
@@ -99,6 +99,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
     private final ReentrantReadWriteLock closeLock;
     private final StatsLogger statsLogger;
     private final int numConnectionsPerBookie;
+    private final int maxConnectionsPerBookie;
 
     private final long bookieErrorThresholdPerInterval;
 
@@ -121,6 +122,7 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
 
         this.statsLogger = statsLogger;
         this.numConnectionsPerBookie = conf.getNumChannelsPerBookie();
+        this.maxConnectionsPerBookie = conf.getMaxChannelsPerBookie();
         this.bookieErrorThresholdPerInterval = conf.getBookieErrorThresholdPerInterval();
 
         this.scheduler = scheduler;
@@ -205,8 +207,14 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                 if (closed) {
                     return null;
                 }
-                PerChannelBookieClientPool newClientPool =
-                    new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie);
+                PerChannelBookieClientPool newClientPool;
+                if (maxConnectionsPerBookie > numConnectionsPerBookie) {
+                    newClientPool = new ElasticPerChannelBookieClientPool(conf, this, addr,
+                            numConnectionsPerBookie, maxConnectionsPerBookie,
+                            conf.getLimitStatsLogging() ? NullStatsLogger.INSTANCE : statsLogger);
+                } else {
+                    newClientPool = new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie);
+                }
                 PerChannelBookieClientPool oldClientPool = channels.putIfAbsent(addr, newClientPool);
                 if (null == oldClientPool) {
                     clientPool = newClientPool;
@@ -329,6 +337,43 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                       ledgerId);
     }
 
+    @Override
+    public void addEntries(final BookieSocketAddress addr,
+                           final long ledgerId,
+                           final byte[] masterKey,
+                           final List<Long> entryIds,
+                           final List<ByteBufList> toSend,
+                           final List<? extends WriteCallback> cbs,
+                           final Object ctx,
+                           final int options,
+                           final boolean allowFastFail,
+                           final EnumSet<WriteFlag> writeFlags) {
+        final PerChannelBookieClientPool client = lookupClient(addr);
+        if (client == null) {
+            for (int i = 0; i < entryIds.size(); i++) {
+                completeAdd(getRc(BKException.Code.BookieHandleNotAvailableException),
+                            ledgerId, entryIds.get(i), addr, cbs.get(i), ctx);
+            }
+            return;
+        }
+
+        // Retain the buffers, since the connection could be obtained after
+        // the PendingApps might have already failed
+        toSend.forEach(ByteBufList::retain);
+
+        client.obtain((rc, pcbc) -> {
+            if (rc != BKException.Code.OK) {
+                for (int i = 0; i < entryIds.size(); i++) {
+                    completeAdd(rc, ledgerId, entryIds.get(i), addr, cbs.get(i), ctx);
+                }
+            } else {
+                pcbc.addEntries(ledgerId, masterKey, entryIds, toSend, cbs, ctx,
+                                options, allowFastFail, writeFlags);
+            }
+            toSend.forEach(ByteBufList::release);
+        }, ledgerId);
+    }
+
     @Override
     public CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieSocketAddress address,
             long ledgerId) {
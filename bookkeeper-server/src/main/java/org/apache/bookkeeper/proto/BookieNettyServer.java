@@ -101,6 +101,9 @@ class BookieNettyServer {
     final AtomicBoolean isClosed = new AtomicBoolean(false);
     final Object suspensionLock = new Object();
     volatile boolean suspended = false;
+    // Guards readingPaused, so that the channels accepted while the reads are paused are paused too
+    final Object readingLock = new Object();
+    boolean readingPaused = false;
     ChannelGroup allChannels;
     final BookieSocketAddress bookieAddress;
     final InetSocketAddress bindAddress;
@@ -184,6 +187,7 @@ class BookieNettyServer {
         synchronized (suspensionLock) {
             suspended = true;
             for (Channel channel : allChannels) {
+                ChannelReadPauses.pause(channel, ChannelReadPauses.SUSPENDED);
                 // To suspend processing in the bookie, submit a task
                 // that keeps the event loop busy until resume is
                 // explicitely invoked
@@ -205,12 +209,51 @@ class BookieNettyServer {
         synchronized (suspensionLock) {
             suspended = false;
             for (Channel channel : allChannels) {
-                channel.config().setAutoRead(true);
+                ChannelReadPauses.resume(channel, ChannelReadPauses.SUSPENDED);
             }
             suspensionLock.notifyAll();
         }
     }
 
+    /**
+     * Stop reading requests from all the connections, until {@link #resumeReading()} is called.
+     */
+    void pauseReading() {
+        LOG.info("Disabling autoread on all the channels");
+        synchronized (readingLock) {
+            readingPaused = true;
+            for (Channel channel : allChannels) {
+                ChannelReadPauses.pause(channel, ChannelReadPauses.MEMORY_BUDGET);
+            }
+        }
+    }
+
+    /**
+     * Resume reading requests after {@link #pauseReading()}, on the channels that are not paused
+     * for another reason.
+     */
+    void resumeReading() {
+        LOG.info("Re-enabling autoread on all the channels");
+        synchronized (readingLock) {
+            readingPaused = false;
+            for (Channel channel : allChannels) {
+                ChannelReadPauses.resume(channel, ChannelReadPauses.MEMORY_BUDGET);
+            }
+        }
+    }
+
+    /**
+     * Add a new channel to the group, with the reads paused if {@link #pauseReading()} is in effect.
+     */
+    private void addChannel(Channel channel) {
+        synchronized (readingLock) {
+            allChannels.add(channel);
+            if (readingPaused) {
+                ChannelReadPauses.pause(channel, ChannelReadPauses.MEMORY_BUDGET);
+            }
+        }
+    }
+
     class BookieSideConnectionPeerContextHandler extends ChannelInboundHandlerAdapter {
 
         final BookieConnectionPeer connectionPeer;
@@ -325,6 +368,7 @@ class BookieNettyServer {
                             suspensionLock.wait();
                         }
                     }
+                    addChannel(ch);
 
                     BookieSideConnectionPeerContextHandler contextHandler =
                         new BookieSideConnectionPeerContextHandler();
@@ -388,6 +432,7 @@ class BookieNettyServer {
                             suspensionLock.wait();
                         }
                     }
+                    addChannel(ch);
 
                     BookieSideConnectionPeerContextHandler contextHandler =
                         new BookieSideConnectionPeerContextHandler();
@@ -139,11 +139,13 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getNumReadWorkerThreads(),
                 "BookieReadThreadPool",
                 serverCfg.getMaxPendingReadRequestPerThread(),
+                serverCfg.isReadWorkerVirtualThreadsEnabled(),
                 statsLogger);
         this.writeThreadPool = createExecutor(
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
                 serverCfg.getMaxPendingAddRequestPerThread(),
+                false,
                 statsLogger);
         if (serverCfg.getNumLongPollWorkerThreads() <= 0 && readThreadPool != null) {
             this.longPollThreadPool = this.readThreadPool;
@@ -155,12 +157,12 @@ public class BookieRequestProcessor implements RequestProcessor {
             this.longPollThreadPool = createExecutor(
                 numThreads,
                 "BookieLongPollThread-" + serverCfg.getBookiePort(),
-                OrderedExecutor.NO_TASK_LIMIT, statsLogger);
+                OrderedExecutor.NO_TASK_LIMIT, false, statsLogger);
         }
         this.highPriorityThreadPool = createExecutor(
                 this.serverCfg.getNumHighPriorityWorkerThreads(),
                 "BookieHighPriorityThread-" + serverCfg.getBookiePort(),
-                OrderedExecutor.NO_TASK_LIMIT, statsLogger);
+                OrderedExecutor.NO_TASK_LIMIT, false, statsLogger);
         this.shFactory = shFactory;
         if (shFactory != null) {
             shFactory.init(NodeType.Server, serverCfg, allocator);
@@ -205,11 +207,11 @@ public class BookieRequestProcessor implements RequestProcessor {
         if (addsSemaphore != null) {
             if (!addsSemaphore.tryAcquire()) {
                 final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
+                ChannelReadPauses.pause(channel, ChannelReadPauses.ADDS_IN_PROGRESS);
                 LOG.info("Too many add requests in progress, disabling autoread on channel {}", channel);
                 requestStats.blockAddRequest();
                 addsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
+                ChannelReadPauses.resume(channel, ChannelReadPauses.ADDS_IN_PROGRESS);
                 final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
                 LOG.info("Re-enabled autoread on channel {} after AddRequest delay of {} nanos", channel, delayNanos);
                 requestStats.unblockAddRequest(delayNanos);
@@ -229,11 +231,11 @@ public class BookieRequestProcessor implements RequestProcessor {
         if (readsSemaphore != null) {
             if (!readsSemaphore.tryAcquire()) {
                 final long throttlingStartTimeNanos = MathUtils.nowInNano();
-                channel.config().setAutoRead(false);
+                ChannelReadPauses.pause(channel, ChannelReadPauses.READS_IN_PROGRESS);
                 LOG.info("Too many read requests in progress, disabling autoread on channel {}", channel);
                 requestStats.blockReadRequest();
                 readsSemaphore.acquireUninterruptibly();
-                channel.config().setAutoRead(true);
+                ChannelReadPauses.resume(channel, ChannelReadPauses.READS_IN_PROGRESS);
                 final long delayNanos = MathUtils.elapsedNanos(throttlingStartTimeNanos);
                 LOG.info("Re-enabled autoread on channel {} after ReadRequest delay of {} nanos", channel, delayNanos);
                 requestStats.unblockReadRequest(delayNanos);
@@ -274,6 +276,7 @@ public class BookieRequestProcessor implements RequestProcessor {
             int numThreads,
             String nameFormat,
             int maxTasksInQueue,
+            boolean virtualThreads,
             StatsLogger statsLogger) {
         if (numThreads <= 0) {
             return null;
@@ -285,6 +288,8 @@ public class BookieRequestProcessor implements RequestProcessor {
                     .preserveMdcForTaskExecution(serverCfg.getPreserveMdcForTaskExecution())
                     .statsLogger(statsLogger)
                     .maxTasksInQueue(maxTasksInQueue)
+                    .workStealing(serverCfg.isWorkStealingEnabled())
+                    .virtualThreads(virtualThreads)
                     .build();
         }
     }
@@ -308,6 +313,9 @@ public class BookieRequestProcessor implements RequestProcessor {
                     case ADD_ENTRY:
                         processAddRequestV3(r, c);
                         break;
+                    case RANGE_ADD_ENTRY:
+                        processRangeAddRequestV3(r, c);
+                        break;
                     case READ_ENTRY:
                         processReadRequestV3(r, c);
                         break;
@@ -451,6 +459,40 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processRangeAddRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
+        RangeAddProcessorV3 rangeAdd = new RangeAddProcessorV3(r, c, this);
+
+        final OrderedExecutor threadPool;
+        if (RequestUtils.isHighPriority(r)) {
+            threadPool = highPriorityThreadPool;
+        } else {
+            threadPool = writeThreadPool;
+        }
+
+        if (null == threadPool) {
+            rangeAdd.run();
+        } else {
+            try {
+                threadPool.executeOrdered(r.getRangeAddRequest().getLedgerId(), rangeAdd);
+            } catch (RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Failed to process request to add {} entries to ledger {}. Too many pending requests",
+                              r.getRangeAddRequest().getBodyCount(), r.getRangeAddRequest().getLedgerId());
+                }
+                BookkeeperProtocol.RangeAddResponse.Builder rangeAddResponse =
+                        BookkeeperProtocol.RangeAddResponse.newBuilder()
+                        .setLedgerId(r.getRangeAddRequest().getLedgerId())
+                        .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+                        .setHeader(rangeAdd.getHeader())
+                        .setStatus(rangeAddResponse.getStatus())
+                        .setRangeAddResponse(rangeAddResponse);
+                BookkeeperProtocol.Response resp = response.build();
+                rangeAdd.sendResponse(rangeAddResponse.getStatus(), resp, requestStats.getAddRequestStats());
+            }
+        }
+    }
+
     private void processForceLedgerRequestV3(final BookkeeperProtocol.Request r, final Channel c) {
         ForceLedgerProcessorV3 forceLedger = new ForceLedgerProcessorV3(r, c, this);
 
@@ -21,6 +21,10 @@
 package org.apache.bookkeeper.proto;
 
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_NETTY;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_SCOPE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_SOFT_LIMIT_EXCEEDED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MEMORY_BUDGET_USED_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.SERVER_SCOPE;
 import static org.apache.bookkeeper.conf.AbstractConfiguration.PERMITTED_STARTUP_USERS;
 
@@ -41,6 +45,8 @@ import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.ExitCode;
 import org.apache.bookkeeper.bookie.ReadOnlyBookie;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
+import org.apache.bookkeeper.common.allocator.MemoryBudget;
+import org.apache.bookkeeper.common.allocator.MemoryBudgetListener;
 import org.apache.bookkeeper.common.util.JsonUtil.ParseJsonException;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.discover.BookieServiceInfo;
@@ -49,6 +55,7 @@ import org.apache.bookkeeper.processor.RequestProcessor;
 import org.apache.bookkeeper.replication.ReplicationException.CompatibilityException;
 import org.apache.bookkeeper.replication.ReplicationException.UnavailableException;
 import org.apache.bookkeeper.server.Main;
+import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
@@ -101,9 +108,13 @@ public class BookieServer {
             LOG.error("Got ParseJsonException while converting Config to JSONString", pe);
         }
 
-        ByteBufAllocator allocator = getAllocator(conf);
+        MemoryBudget memoryBudget = conf.isAllocatorMemoryBudgetsEnabled()
+                ? MemoryBudget.create(BOOKIE_SCOPE, 0, 0) : null;
+        ByteBufAllocator allocator = getAllocator(conf, memoryBudget);
+        ByteBufAllocator nettyAllocator = MemoryBudget.newChildAllocator(allocator, MEMORY_BUDGET_NETTY,
+                conf.getNettyMemoryBudgetSoftLimitBytes(), conf.getNettyMemoryBudgetHardLimitBytes());
         this.statsLogger = statsLogger;
-        this.nettyServer = new BookieNettyServer(this.conf, null, allocator);
+        this.nettyServer = new BookieNettyServer(this.conf, null, nettyAllocator);
         try {
             this.bookie = newBookie(conf, allocator, bookieServiceInfoProvider);
         } catch (IOException | KeeperException | InterruptedException | BookieException e) {
@@ -111,6 +122,21 @@ public class BookieServer {
             this.nettyServer.shutdown();
             throw e;
         }
+        if (memoryBudget != null) {
+            // stop reading new requests while the ones in progress hold too much memory
+            MemoryBudget.of(nettyAllocator).addListener(new MemoryBudgetListener() {
+                @Override
+                public void onSoftLimitExceeded(MemoryBudget budget) {
+                    nettyServer.pauseReading();
+                }
+
+                @Override
+                public void onSoftLimitRecovered(MemoryBudget budget) {
+                    nettyServer.resumeReading();
+                }
+            });
+            registerMemoryBudgetStats(memoryBudget, statsLogger.scope(SERVER_SCOPE).scope(MEMORY_BUDGET_SCOPE));
+        }
         final SecurityHandlerFactory shFactory;
 
         shFactory = SecurityProviderFactoryFactory
@@ -292,7 +318,36 @@ public class BookieServer {
         }
     }
 
-    private ByteBufAllocator getAllocator(ServerConfiguration conf) {
+    private static void registerMemoryBudgetStats(MemoryBudget budget, StatsLogger statsLogger) {
+        StatsLogger budgetStatsLogger = statsLogger.scope(budget.getName());
+        budgetStatsLogger.registerGauge(MEMORY_BUDGET_USED_BYTES, new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return budget.getUsedBytes();
+            }
+        });
+        budgetStatsLogger.registerGauge(MEMORY_BUDGET_SOFT_LIMIT_EXCEEDED, new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return budget.isSoftLimitExceeded() ? 1 : 0;
+            }
+        });
+        for (MemoryBudget child : budget.getChildren()) {
+            registerMemoryBudgetStats(child, statsLogger);
+        }
+    }
+
+    private ByteBufAllocator getAllocator(ServerConfiguration conf, MemoryBudget memoryBudget) {
         return ByteBufAllocatorBuilder.create()
                 .poolingPolicy(conf.getAllocatorPoolingPolicy())
                 .poolingConcurrency(conf.getAllocatorPoolingConcurrency())
@@ -307,6 +362,8 @@ public class BookieServer {
                     }
                 })
                 .leakDetectionPolicy(conf.getAllocatorLeakDetectionPolicy())
+                .threadArenaChunkSize(conf.getAllocatorThreadArenaChunkSize())
+                .memoryBudget(memoryBudget)
                 .build();
     }
 
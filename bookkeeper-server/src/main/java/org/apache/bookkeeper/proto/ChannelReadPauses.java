@@ -0,0 +1,80 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * Tracks the reasons for which the reads of a channel are paused, so that its autoread is only
+ * re-enabled once none of them is left.
+ */
+final class ChannelReadPauses {
+
+    // Processing suspended on the bookie
+    static final int SUSPENDED = 1;
+    // Memory budget of the bookie over its soft limit
+    static final int MEMORY_BUDGET = 1 << 1;
+    // Too many add requests in progress
+    static final int ADDS_IN_PROGRESS = 1 << 2;
+    // Too many read requests in progress
+    static final int READS_IN_PROGRESS = 1 << 3;
+
+    private static final AttributeKey<ChannelReadPauses> KEY = AttributeKey.valueOf("ChannelReadPauses");
+
+    private int reasons = 0;
+
+    private ChannelReadPauses() {
+    }
+
+    /**
+     * Disable the autoread of the channel for the given reason.
+     */
+    static void pause(Channel channel, int reason) {
+        get(channel).update(channel, reason, true);
+    }
+
+    /**
+     * Remove the given reason, and re-enable the autoread of the channel if it was the last one.
+     */
+    static void resume(Channel channel, int reason) {
+        get(channel).update(channel, reason, false);
+    }
+
+    private static ChannelReadPauses get(Channel channel) {
+        Attribute<ChannelReadPauses> attr = channel.attr(KEY);
+        ChannelReadPauses pauses = attr.get();
+        if (pauses == null) {
+            ChannelReadPauses newPauses = new ChannelReadPauses();
+            pauses = attr.setIfAbsent(newPauses);
+            if (pauses == null) {
+                pauses = newPauses;
+            }
+        }
+        return pauses;
+    }
+
+    private synchronized void update(Channel channel, int reason, boolean pause) {
+        reasons = pause ? reasons | reason : reasons & ~reason;
+        channel.config().setAutoRead(reasons == 0);
+    }
+}
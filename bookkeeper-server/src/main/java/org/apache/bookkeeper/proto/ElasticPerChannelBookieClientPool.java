@@ -0,0 +1,371 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.bookkeeper.client.BookKeeperClientStats;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.tls.SecurityException;
+import org.apache.bookkeeper.util.MathUtils;
+
+/**
+ * A channel pool that opens additional channels to a bookie when the core channels
+ * are overloaded, and closes them again once they have been idle for a while.
+ *
+ * <p>Requests are routed by key to one of the core channels, as in
+ * {@link DefaultPerChannelBookieClientPool}. When that channel has more pending requests
+ * than the configured threshold, or is not writable because too many bytes are queued
+ * on it, the request is routed to the least loaded additional channel instead, and a
+ * new additional channel is opened if all of them are overloaded too and the pool has
+ * not reached its max size yet.
+ *
+ * <p>All the requests of a key (i.e. of a ledger) go to the same channel, so that they
+ * cannot be reordered across connections. A key is only routed again once its channel
+ * has no pending request left, or once the key has not been used for the idle timeout,
+ * which is longer than the request timeouts. An additional channel is only closed once
+ * no key is routed to it.
+ */
+class ElasticPerChannelBookieClientPool extends DefaultPerChannelBookieClientPool {
+
+    private final int maxSize;
+    private final int pendingRequestsThreshold;
+    private final long idleTimeoutNanos;
+
+    private final List<ElasticChannel> elasticClients = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Long, Route> routes = new ConcurrentHashMap<>();
+
+    private final StatsLogger poolStatsLogger;
+    private final Counter channelsOpened;
+    private final Counter channelsClosed;
+    private final List<Gauge<Long>> channelGauges = new ArrayList<>();
+    private Gauge<Integer> numChannelsGauge = null;
+
+    private static class ElasticChannel {
+        final PerChannelBookieClient pcbc;
+        // Index of the channel in the pool, between the core size and the max size
+        final int slot;
+        // Number of keys routed to the channel, guarded by the pool lock when it goes up from 0
+        final AtomicInteger numRoutes = new AtomicInteger();
+        volatile long lastUsedNanos;
+
+        ElasticChannel(PerChannelBookieClient pcbc, int slot) {
+            this.pcbc = pcbc;
+            this.slot = slot;
+            this.lastUsedNanos = MathUtils.nowInNano();
+        }
+    }
+
+    /**
+     * Channel a key is routed to.
+     */
+    private static class Route {
+        final PerChannelBookieClient pcbc;
+        // null when routed to a core channel
+        final ElasticChannel elastic;
+        // Requests of the key that have obtained the channel but may not be pending on it yet
+        final AtomicInteger obtaining = new AtomicInteger();
+        volatile long lastUsedNanos;
+
+        Route(PerChannelBookieClient pcbc, ElasticChannel elastic) {
+            this.pcbc = pcbc;
+            this.elastic = elastic;
+            this.lastUsedNanos = MathUtils.nowInNano();
+        }
+    }
+
+    ElasticPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
+                                      BookieSocketAddress address, int coreSize, int maxSize,
+                                      StatsLogger statsLogger) throws SecurityException {
+        super(conf, factory, address, coreSize);
+        checkArgument(maxSize >= coreSize);
+        this.maxSize = maxSize;
+        this.pendingRequestsThreshold = conf.getChannelPoolGrowthPendingRequestsThreshold();
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(conf.getChannelPoolIdleTimeoutMs());
+
+        this.poolStatsLogger = statsLogger.scope(BookKeeperClientStats.CHANNEL_POOL_SCOPE)
+                .scope(PerChannelBookieClient.buildStatsLoggerScopeName(address));
+        this.channelsOpened = poolStatsLogger.getCounter(BookKeeperClientStats.CHANNEL_POOL_CHANNELS_OPENED);
+        this.channelsClosed = poolStatsLogger.getCounter(BookKeeperClientStats.CHANNEL_POOL_CHANNELS_CLOSED);
+        for (int i = 0; i < maxSize; i++) {
+            channelGauges.add(null);
+        }
+    }
+
+    @Override
+    public synchronized void intialize() {
+        super.intialize();
+        // register the gauges only once the pool is the one in use for the bookie
+        numChannelsGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return clients.length + elasticClients.size();
+            }
+        };
+        poolStatsLogger.registerGauge(BookKeeperClientStats.CHANNEL_POOL_NUM_CHANNELS, numChannelsGauge);
+        for (int i = 0; i < clients.length; i++) {
+            registerChannelGauge(i, clients[i]);
+        }
+    }
+
+    private void registerChannelGauge(int slot, PerChannelBookieClient pcbc) {
+        Gauge<Long> gauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return pcbc.getNumPendingCompletionRequests();
+            }
+        };
+        channelGauges.set(slot, gauge);
+        poolStatsLogger.scope("channel_" + slot).registerGauge(BookKeeperClientStats.CHANNEL_POOL_PENDING_REQUESTS,
+                gauge);
+    }
+
+    private void unregisterChannelGauge(int slot) {
+        Gauge<Long> gauge = channelGauges.set(slot, null);
+        if (gauge != null) {
+            poolStatsLogger.scope("channel_" + slot)
+                    .unregisterGauge(BookKeeperClientStats.CHANNEL_POOL_PENDING_REQUESTS, gauge);
+        }
+    }
+
+    private boolean isOverloaded(PerChannelBookieClient pcbc) {
+        return !pcbc.isWritable() || pcbc.getNumPendingCompletionRequests() > pendingRequestsThreshold;
+    }
+
+    /**
+     * Get the channel of a key, and mark the request as obtaining it until {@link #releaseRoute(Route)}.
+     */
+    private Route obtainRoute(long key) {
+        return routes.compute(key, (k, route) -> {
+            if (route == null) {
+                route = newRoute(k);
+            }
+            route.obtaining.incrementAndGet();
+            return route;
+        });
+    }
+
+    private void releaseRoute(Route route) {
+        long now = MathUtils.nowInNano();
+        route.lastUsedNanos = now;
+        if (route.elastic != null) {
+            route.elastic.lastUsedNanos = now;
+        }
+        route.obtaining.decrementAndGet();
+    }
+
+    private Route newRoute(long key) {
+        PerChannelBookieClient core = clients[MathUtils.signSafeMod(key, clients.length)];
+        if (!isOverloaded(core)) {
+            return new Route(core, null);
+        }
+        synchronized (this) {
+            ElasticChannel leastLoaded = null;
+            for (ElasticChannel channel : elasticClients) {
+                if (leastLoaded == null || channel.pcbc.getNumPendingCompletionRequests()
+                        < leastLoaded.pcbc.getNumPendingCompletionRequests()) {
+                    leastLoaded = channel;
+                }
+            }
+            if (leastLoaded == null || isOverloaded(leastLoaded.pcbc)) {
+                ElasticChannel added = maybeAddChannel();
+                if (added != null) {
+                    leastLoaded = added;
+                }
+            }
+            if (leastLoaded == null) {
+                return new Route(core, null);
+            }
+            // counted under the lock, so that the channel cannot be closed as idle from now on
+            leastLoaded.numRoutes.incrementAndGet();
+            leastLoaded.lastUsedNanos = MathUtils.nowInNano();
+            return new Route(leastLoaded.pcbc, leastLoaded);
+        }
+    }
+
+    private synchronized ElasticChannel maybeAddChannel() {
+        if (clients.length + elasticClients.size() >= maxSize) {
+            return null;
+        }
+        int slot = clients.length;
+        while (channelGauges.get(slot) != null) {
+            slot++;
+        }
+        try {
+            ElasticChannel channel = new ElasticChannel(factory.create(address, this, shFactory, false), slot);
+            elasticClients.add(channel);
+            registerChannelGauge(slot, channel.pcbc);
+            channelsOpened.inc();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Opened additional channel to bookie {}, pool size is now {}",
+                        address, clients.length + elasticClients.size());
+            }
+            return channel;
+        } catch (SecurityException e) {
+            LOG.error("Security Exception in creating additional channel to bookie {} : ", address, e);
+            return null;
+        }
+    }
+
+    /**
+     * Forget the routes of the keys that have no request pending on their channel anymore or have been
+     * idle for long enough, and close the additional channels that have been idle for long enough and
+     * have no key routed to them.
+     */
+    private void closeIdleChannels() {
+        long now = MathUtils.nowInNano();
+        for (Long key : routes.keySet()) {
+            routes.computeIfPresent(key, (k, route) -> {
+                if (route.obtaining.get() > 0 || (route.pcbc.getNumPendingCompletionRequests() > 0
+                        && now - route.lastUsedNanos <= idleTimeoutNanos)) {
+                    return route;
+                }
+                if (route.elastic != null) {
+                    route.elastic.numRoutes.decrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        synchronized (this) {
+            for (ElasticChannel channel : elasticClients) {
+                if (channel.numRoutes.get() == 0 && channel.pcbc.getNumPendingCompletionRequests() == 0
+                        && now - channel.lastUsedNanos > idleTimeoutNanos) {
+                    elasticClients.remove(channel);
+                    unregisterChannelGauge(channel.slot);
+                    channel.pcbc.close(false);
+                    channelsClosed.inc();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Closed idle channel to bookie {}, pool size is now {}",
+                                address, clients.length + elasticClients.size());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void obtain(GenericCallback<PerChannelBookieClient> callback, long key, boolean forceUseV3) {
+        if (forceUseV3 && clients != clientsV3Enforced) {
+            super.obtain(callback, key, true);
+            return;
+        }
+        Route route = obtainRoute(key);
+        route.pcbc.connectIfNeededAndDoOp((rc, pcbc) -> {
+            try {
+                callback.operationComplete(rc, pcbc);
+            } finally {
+                releaseRoute(route);
+            }
+        });
+    }
+
+    @Override
+    public boolean isWritable(long key) {
+        Route route = routes.get(key);
+        if (route != null) {
+            return route.pcbc.isWritable();
+        }
+        PerChannelBookieClient core = clients[MathUtils.signSafeMod(key, clients.length)];
+        if (core.isWritable()) {
+            return true;
+        }
+        // the request would be routed to an additional channel
+        if (clients.length + elasticClients.size() < maxSize) {
+            return true;
+        }
+        for (ElasticChannel channel : elasticClients) {
+            if (channel.pcbc.isWritable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void checkTimeoutOnPendingOperations() {
+        super.checkTimeoutOnPendingOperations();
+        for (ElasticChannel channel : elasticClients) {
+            channel.pcbc.checkTimeoutOnPendingOperations();
+        }
+        closeIdleChannels();
+    }
+
+    @Override
+    public void disconnect(boolean wait) {
+        super.disconnect(wait);
+        for (ElasticChannel channel : elasticClients) {
+            channel.pcbc.disconnect();
+        }
+    }
+
+    @Override
+    public void close(boolean wait) {
+        // not under the pool lock, which is taken while routing a key
+        routes.clear();
+        synchronized (this) {
+            super.close(wait);
+            for (ElasticChannel channel : elasticClients) {
+                channel.pcbc.close(wait);
+            }
+            elasticClients.clear();
+            for (int i = 0; i < channelGauges.size(); i++) {
+                unregisterChannelGauge(i);
+            }
+            if (numChannelsGauge != null) {
+                poolStatsLogger.unregisterGauge(BookKeeperClientStats.CHANNEL_POOL_NUM_CHANNELS, numChannelsGauge);
+                numChannelsGauge = null;
+            }
+        }
+    }
+
+    @Override
+    public long getNumPendingCompletionRequests() {
+        long numPending = super.getNumPendingCompletionRequests();
+        for (ElasticChannel channel : elasticClients) {
+            numPending += channel.pcbc.getNumPendingCompletionRequests();
+        }
+        return numPending;
+    }
+}
@@ -114,6 +114,8 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerRe
 import org.apache.bookkeeper.proto.BookkeeperProtocol.GetListOfEntriesOfLedgerResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadLacResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadRequest;
@@ -331,6 +333,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final ExtensionRegistry extRegistry;
     private final SecurityHandlerFactory shFactory;
     private volatile boolean isWritable = true;
+    // cleared once the bookie answered that it does not support batched adds
+    private volatile boolean rangeAddSupported = true;
     private long lastBookieUnavailableLogTimestamp = 0;
 
     public PerChannelBookieClient(OrderedExecutor executor, EventLoopGroup eventLoopGroup,
@@ -813,6 +817,74 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Add a batch of entries of a ledger in a single request. The entries are added one by one
+     * with the v2 protocol, or once the bookie turned out not to support batched adds.
+     *
+     * <p>This method should be called only after connection has been checked for
+     * {@link #connectIfNeededAndDoOp(GenericCallback)}.
+     *
+     * @see #addEntry(long, byte[], long, ByteBufList, WriteCallback, Object, int, boolean, EnumSet)
+     */
+    void addEntries(final long ledgerId, byte[] masterKey, List<Long> entryIds, List<ByteBufList> toSend,
+                    List<? extends WriteCallback> cbs, Object ctx, final int options, boolean allowFastFail,
+                    final EnumSet<WriteFlag> writeFlags) {
+        if (useV2WireProtocol || !rangeAddSupported) {
+            for (int i = 0; i < entryIds.size(); i++) {
+                addEntry(ledgerId, masterKey, entryIds.get(i), toSend.get(i), cbs.get(i), ctx,
+                         options, allowFastFail, writeFlags);
+            }
+            return;
+        }
+
+        final long txnId = getTxnId();
+        final CompletionKey completionKey = new V3CompletionKey(txnId, OperationType.RANGE_ADD_ENTRY);
+
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.RANGE_ADD_ENTRY)
+                .setTxnId(txnId);
+        if (((short) options & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
+            headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
+        }
+
+        RangeAddRequest.Builder rangeAddBuilder = RangeAddRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey));
+        for (ByteBufList entry : toSend) {
+            ByteString body = null;
+            if (entry.hasArray()) {
+                body = UnsafeByteOperations.unsafeWrap(entry.array(), entry.arrayOffset(), entry.readableBytes());
+            } else {
+                for (int i = 0; i < entry.size(); i++) {
+                    ByteString piece = UnsafeByteOperations.unsafeWrap(entry.getBuffer(i).nioBuffer());
+                    // use ByteString.concat to avoid byte[] allocation when toSend has multiple ByteBufs
+                    body = (body == null) ? piece : body.concat(piece);
+                }
+            }
+            rangeAddBuilder.addBody(body);
+        }
+
+        if (((short) options & BookieProtocol.FLAG_RECOVERY_ADD) == BookieProtocol.FLAG_RECOVERY_ADD) {
+            rangeAddBuilder.setFlag(RangeAddRequest.Flag.RECOVERY_ADD);
+        }
+
+        if (!writeFlags.isEmpty()) {
+            rangeAddBuilder.setWriteFlags(WriteFlag.getWriteFlagsValue(writeFlags));
+        }
+
+        final Request request = withRequestContext(Request.newBuilder())
+                .setHeader(headerBuilder)
+                .setRangeAddRequest(rangeAddBuilder)
+                .build();
+
+        putCompletionKeyValue(completionKey,
+                              new RangeAddCompletion(completionKey, ledgerId, masterKey, entryIds, toSend, cbs, ctx,
+                                                     options, allowFastFail, writeFlags));
+        // addEntry times out on backpressure
+        writeAndFlush(channel, completionKey, request, allowFastFail);
+    }
+
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
         CompletionKey completionKey = null;
@@ -2181,6 +2253,95 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    class RangeAddCompletion extends CompletionValue {
+        final CompletionKey key;
+        final byte[] masterKey;
+        final List<Long> entryIds;
+        final List<ByteBufList> toSend;
+        final List<? extends WriteCallback> cbs;
+        final int options;
+        final boolean allowFastFail;
+        final EnumSet<WriteFlag> writeFlags;
+
+        RangeAddCompletion(final CompletionKey key, final long ledgerId, final byte[] masterKey,
+                           final List<Long> entryIds, final List<ByteBufList> toSend,
+                           final List<? extends WriteCallback> cbs, final Object ctx, final int options,
+                           final boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
+            super("RangeAdd", ctx, ledgerId, entryIds.get(0), addEntryOpLogger, addTimeoutOpLogger);
+            this.key = key;
+            this.masterKey = masterKey;
+            this.entryIds = entryIds;
+            // keep the entries until the batch completes, they are resent one by one
+            // if the bookie does not support batched adds
+            this.toSend = toSend;
+            toSend.forEach(ByteBufList::retain);
+            this.cbs = cbs;
+            this.options = options;
+            this.allowFastFail = allowFastFail;
+            this.writeFlags = writeFlags;
+        }
+
+        private void writeComplete(int rc) {
+            logOpResult(rc);
+            for (int i = 0; i < entryIds.size(); i++) {
+                cbs.get(i).writeComplete(rc, ledgerId, entryIds.get(i), addr, ctx);
+            }
+            toSend.forEach(ByteBufList::release);
+            key.release();
+        }
+
+        @Override
+        boolean maybeTimeout() {
+            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
+                timeout();
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void errorOut() {
+            errorOut(BKException.Code.BookieHandleNotAvailableException);
+        }
+
+        @Override
+        public void errorOut(final int rc) {
+            errorOutAndRunCallback(() -> writeComplete(rc));
+        }
+
+        @Override
+        public void setOutstanding() {
+            addEntryOutstanding.inc();
+        }
+
+        @Override
+        public void handleV3Response(BookkeeperProtocol.Response response) {
+            addEntryOutstanding.dec();
+            if (!response.hasRangeAddResponse() && response.getStatus() == StatusCode.EBADREQ) {
+                // the bookie does not know batched adds, fall back to adding the entries one by one
+                LOG.info("Bookie {} does not support batched adds, adding the entries one by one", addr);
+                rangeAddSupported = false;
+                for (int i = 0; i < entryIds.size(); i++) {
+                    addEntry(ledgerId, masterKey, entryIds.get(i), toSend.get(i), cbs.get(i), ctx,
+                             options, allowFastFail, writeFlags);
+                }
+                toSend.forEach(ByteBufList::release);
+                key.release();
+                return;
+            }
+            RangeAddResponse rangeAddResponse = response.getRangeAddResponse();
+            StatusCode status = response.getStatus() == StatusCode.EOK
+                ? rangeAddResponse.getStatus() : response.getStatus();
+
+            if (LOG.isDebugEnabled()) {
+                logResponse(status, "ledger", ledgerId, "entries", entryIds.size());
+            }
+            int rc = convertStatus(status, BKException.Code.WriteException);
+            writeComplete(rc);
+        }
+    }
+
     // visable for testing
     CompletionKey newCompletionKey(long txnId, OperationType operationType) {
         return new V3CompletionKey(txnId, operationType);
@@ -0,0 +1,207 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import com.google.protobuf.ByteString;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddRequest;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.RangeAddResponse;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.StatusCode;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes a batch of entries of a ledger added in a single request. The entries are
+ * journaled together and acknowledged with a single response.
+ */
+class RangeAddProcessorV3 extends PacketProcessorBaseV3 {
+    private static final Logger logger = LoggerFactory.getLogger(RangeAddProcessorV3.class);
+
+    public RangeAddProcessorV3(Request request, Channel channel,
+                               BookieRequestProcessor requestProcessor) {
+        super(request, channel, requestProcessor);
+        requestProcessor.onAddRequestStart(channel);
+    }
+
+    // Returns null if there is no exception thrown
+    private RangeAddResponse getRangeAddResponse() {
+        final long startTimeNanos = MathUtils.nowInNano();
+        RangeAddRequest rangeAddRequest = request.getRangeAddRequest();
+        long ledgerId = rangeAddRequest.getLedgerId();
+
+        final RangeAddResponse.Builder rangeAddResponse = RangeAddResponse.newBuilder()
+                .setLedgerId(ledgerId);
+
+        if (!isVersionCompatible()) {
+            rangeAddResponse.setStatus(StatusCode.EBADVERSION);
+            return rangeAddResponse.build();
+        }
+
+        if (rangeAddRequest.getBodyCount() == 0) {
+            rangeAddResponse.setStatus(StatusCode.EBADREQ);
+            return rangeAddResponse.build();
+        }
+
+        if (requestProcessor.getBookie().isReadOnly()
+            && !(RequestUtils.isHighPriority(request)
+                    && requestProcessor.getBookie().isAvailableForHighPriorityWrites())) {
+            logger.warn("BookieServer is running as readonly mode, so rejecting the request from the client!");
+            rangeAddResponse.setStatus(StatusCode.EREADONLY);
+            return rangeAddResponse.build();
+        }
+
+        BookkeeperInternalCallbacks.WriteCallback wcb = new BookkeeperInternalCallbacks.WriteCallback() {
+            @Override
+            public void writeComplete(int rc, long ledgerId, long entryId,
+                                      BookieSocketAddress addr, Object ctx) {
+                if (BookieProtocol.EOK == rc) {
+                    requestProcessor.getRequestStats().getAddEntryStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                } else {
+                    requestProcessor.getRequestStats().getAddEntryStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                }
+
+                StatusCode status;
+                switch (rc) {
+                    case BookieProtocol.EOK:
+                        status = StatusCode.EOK;
+                        break;
+                    case BookieProtocol.EIO:
+                        status = StatusCode.EIO;
+                        break;
+                    default:
+                        status = StatusCode.EUA;
+                        break;
+                }
+                rangeAddResponse.setStatus(status);
+                Response.Builder response = Response.newBuilder()
+                        .setHeader(getHeader())
+                        .setStatus(rangeAddResponse.getStatus())
+                        .setRangeAddResponse(rangeAddResponse);
+                Response resp = response.build();
+                sendResponse(status, resp, requestProcessor.getRequestStats().getAddRequestStats());
+            }
+        };
+        final EnumSet<WriteFlag> writeFlags;
+        if (rangeAddRequest.hasWriteFlags()) {
+            writeFlags = WriteFlag.getWriteFlags(rangeAddRequest.getWriteFlags());
+        } else {
+            writeFlags = WriteFlag.NONE;
+        }
+        final boolean ackBeforeSync = writeFlags.contains(WriteFlag.DEFERRED_SYNC);
+        final boolean recovery = RequestUtils.hasFlag(rangeAddRequest, RangeAddRequest.Flag.RECOVERY_ADD);
+        StatusCode status = null;
+        byte[] masterKey = rangeAddRequest.getMasterKey().toByteArray();
+        List<ByteBuf> entriesToAdd = new ArrayList<>(rangeAddRequest.getBodyCount());
+        for (ByteString body : rangeAddRequest.getBodyList()) {
+            entriesToAdd.add(Unpooled.wrappedBuffer(body.asReadOnlyByteBuffer()));
+        }
+        try {
+            requestProcessor.getBookie().addEntries(ledgerId, entriesToAdd, ackBeforeSync, recovery,
+                    wcb, channel, masterKey);
+            status = StatusCode.EOK;
+        } catch (OperationRejectedException e) {
+            // Avoid to log each occurence of this exception as this can happen when the ledger storage is
+            // unable to keep up with the write rate.
+            if (logger.isDebugEnabled()) {
+                logger.debug("Operation rejected while writing {}", request, e);
+            }
+            status = StatusCode.EIO;
+        } catch (IOException e) {
+            logger.error("Error writing {} entries to ledger:{}",
+                    entriesToAdd.size(), ledgerId, e);
+            status = StatusCode.EIO;
+        } catch (BookieException.LedgerFencedException e) {
+            logger.error("Ledger fenced while writing {} entries to ledger:{}",
+                    entriesToAdd.size(), ledgerId, e);
+            status = StatusCode.EFENCED;
+        } catch (BookieException.DigestMismatchException e) {
+            status = StatusCode.EBADREQ;
+        } catch (BookieException e) {
+            logger.error("Unauthorized access to ledger:{} while writing {} entries",
+                    ledgerId, entriesToAdd.size(), e);
+            status = StatusCode.EUA;
+        } catch (Throwable t) {
+            logger.error("Unexpected exception while writing {} entries to ledger {} : ",
+                    entriesToAdd.size(), ledgerId, t);
+            // some bad request which cause unexpected exception
+            status = StatusCode.EBADREQ;
+        }
+
+        // If everything is okay, we return null so that the calling function
+        // doesn't return a response back to the caller.
+        if (!status.equals(StatusCode.EOK)) {
+            rangeAddResponse.setStatus(status);
+            return rangeAddResponse.build();
+        }
+        return null;
+    }
+
+    @Override
+    public void safeRun() {
+        RangeAddResponse rangeAddResponse = getRangeAddResponse();
+        if (null != rangeAddResponse) {
+            // This means there was an error and we should send this back.
+            Response.Builder response = Response.newBuilder()
+                    .setHeader(getHeader())
+                    .setStatus(rangeAddResponse.getStatus())
+                    .setRangeAddResponse(rangeAddResponse);
+            Response resp = response.build();
+            sendResponse(rangeAddResponse.getStatus(), resp,
+                         requestProcessor.getRequestStats().getAddRequestStats());
+        }
+    }
+
+    @Override
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        super.sendResponse(code, response, statsLogger);
+        requestProcessor.onAddRequestFinish();
+    }
+
+    /**
+     * this toString method filters out body and masterKey from the output.
+     * masterKey contains the password of the ledger and body is customer data,
+     * so it is not appropriate to have these in logs or system output.
+     */
+    @Override
+    public String toString() {
+        return RequestUtils.toSafeString(request);
+    }
+}
@@ -48,6 +48,11 @@ class RequestUtils {
         return request.hasFlag() && request.getFlag() == flag;
     }
 
+    static boolean hasFlag(BookkeeperProtocol.RangeAddRequest request,
+                           BookkeeperProtocol.RangeAddRequest.Flag flag) {
+        return request.hasFlag() && request.getFlag() == flag;
+    }
+
     /**
      * this toSafeString method filters out body and masterKey from the output.
      * masterKey contains the password of the ledger and body is customer data,
@@ -68,6 +73,18 @@ class RequestUtils {
                 stringHelper.add("writeFlags", addRequest.getWriteFlags());
             }
             return stringHelper.toString();
+        } else if (request.hasRangeAddRequest()) {
+            BookkeeperProtocol.RangeAddRequest rangeAddRequest = request.getRangeAddRequest();
+            includeHeaderFields(stringHelper, header);
+            stringHelper.add("ledgerId", rangeAddRequest.getLedgerId());
+            stringHelper.add("numEntries", rangeAddRequest.getBodyCount());
+            if (rangeAddRequest.hasFlag()) {
+                stringHelper.add("flag", rangeAddRequest.getFlag());
+            }
+            if (rangeAddRequest.hasWriteFlags()) {
+                stringHelper.add("writeFlags", rangeAddRequest.getWriteFlags());
+            }
+            return stringHelper.toString();
         } else if (request.hasReadRequest()) {
             BookkeeperProtocol.ReadRequest readRequest = request.getReadRequest();
             includeHeaderFields(stringHelper, header);
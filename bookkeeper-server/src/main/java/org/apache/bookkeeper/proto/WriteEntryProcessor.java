@@ -92,6 +92,8 @@ class WriteEntryProcessor extends PacketProcessorBase<ParsedAddRequest> implemen
         } catch (BookieException.LedgerFencedException lfe) {
             LOG.error("Attempt to write to fenced ledger", lfe);
             rc = BookieProtocol.EFENCED;
+        } catch (BookieException.DigestMismatchException e) {
+            rc = BookieProtocol.EBADREQ;
         } catch (BookieException e) {
             LOG.error("Unauthorized access to ledger {}", request.getLedgerId(), e);
             rc = BookieProtocol.EUA;
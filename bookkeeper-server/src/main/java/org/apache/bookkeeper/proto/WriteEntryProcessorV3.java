@@ -140,6 +140,8 @@ class WriteEntryProcessorV3 extends PacketProcessorBaseV3 {
             logger.error("Ledger fenced while writing entry:{} to ledger:{}",
                     entryId, ledgerId, e);
             status = StatusCode.EFENCED;
+        } catch (BookieException.DigestMismatchException e) {
+            status = StatusCode.EBADREQ;
         } catch (BookieException e) {
             logger.error("Unauthorized access to ledger:{} while writing entry:{}",
                     ledgerId, entryId, e);
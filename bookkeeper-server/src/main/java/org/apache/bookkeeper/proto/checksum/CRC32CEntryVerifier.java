@@ -0,0 +1,57 @@
+package org.apache.bookkeeper.proto.checksum;
+
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Verifies the CRC32C digest carried by an entry, as packaged by {@link CRC32CDigestManager}.
+ *
+ * <p>Unlike {@link DigestManager}, it does not need to know the ledger the entry belongs to,
+ * so a bookie can use it to check entries on the write path and to scrub stored entries
+ * against the checksum they were written with.
+ */
+public final class CRC32CEntryVerifier {
+
+    private static final int CRC32C_LENGTH = 4;
+
+    private CRC32CEntryVerifier() {
+    }
+
+    /**
+     * Check the CRC32C digest of an entry. The reader index of the buffer is not modified.
+     *
+     * @param entry entry starting at its reader index with the ledger id, entry id,
+     *              last add confirmed and length header, followed by the digest and payload.
+     * @return true if the entry is long enough and its digest matches its content.
+     */
+    public static boolean verify(ByteBuf entry) {
+        int start = entry.readerIndex();
+        int length = entry.readableBytes();
+        if (length < DigestManager.METADATA_LENGTH + CRC32C_LENGTH) {
+            return false;
+        }
+        int payloadOffset = DigestManager.METADATA_LENGTH + CRC32C_LENGTH;
+        int crc = Crc32cIntChecksum.computeChecksum(entry.slice(start, DigestManager.METADATA_LENGTH));
+        crc = Crc32cIntChecksum.resumeChecksum(crc, entry.slice(start + payloadOffset, length - payloadOffset));
+        return crc == entry.getInt(start + DigestManager.METADATA_LENGTH);
+    }
+}
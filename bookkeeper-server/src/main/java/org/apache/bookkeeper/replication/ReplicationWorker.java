@@ -30,19 +30,26 @@ import com.google.common.base.Stopwatch;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
@@ -77,6 +84,11 @@ import org.slf4j.LoggerFactory;
 /**
  * ReplicationWorker will take the fragments one by one from
  * ZKLedgerUnderreplicationManager and replicates to it.
+ *
+ * <p>When {@link ServerConfiguration#getRwMaxConcurrentLedgers()} is more than one, several
+ * ledgers are rereplicated concurrently, starting with the ones that have the fewest replicas
+ * left, and their entries share the bandwidth and in-flight budget of the
+ * {@link org.apache.bookkeeper.client.LedgerFragmentReplicator}.
  */
 @StatsDoc(
     name = REPLICATION_WORKER_SCOPE,
@@ -102,6 +114,12 @@ public class ReplicationWorker implements Runnable {
     private final long lockReleaseOfFailedLedgerGracePeriod;
     private final long baseBackoffForLockReleaseOfFailedLedger;
     private final BiConsumer<Long, Long> onReadEntryFailureCallback;
+    private final int maxConcurrentLedgers;
+    // Rereplicates the ledgers when more than one is rereplicated at a time, null otherwise
+    private final ExecutorService rereplicationExecutor;
+    private final Semaphore concurrentLedgersPermits;
+    // Ledgers locked by the worker thread and waiting for a free slot, fewest replicas left first
+    private final PriorityQueue<PendingLedger> pendingLedgers;
 
     // Expose Stats
     private final StatsLogger statsLogger;
@@ -191,6 +209,18 @@ public class ReplicationWorker implements Runnable {
                 / (long) (Math.pow(2, NUM_OF_EXPONENTIAL_BACKOFF_RETRIALS));
         this.rwRereplicateBackoffMs = conf.getRwRereplicateBackoffMs();
         this.pendingReplicationTimer = new Timer("PendingReplicationTimer");
+        this.maxConcurrentLedgers = Math.max(1, conf.getRwMaxConcurrentLedgers());
+        if (maxConcurrentLedgers > 1) {
+            this.rereplicationExecutor = Executors.newFixedThreadPool(maxConcurrentLedgers,
+                    new DefaultThreadFactory("ReplicationWorker-Rereplication"));
+            this.concurrentLedgersPermits = new Semaphore(maxConcurrentLedgers);
+            this.pendingLedgers = new PriorityQueue<PendingLedger>(
+                    Comparator.comparingInt((PendingLedger pending) -> pending.replicasLeft));
+        } else {
+            this.rereplicationExecutor = null;
+            this.concurrentLedgersPermits = null;
+            this.pendingLedgers = null;
+        }
         this.replicationFailedLedgers = CacheBuilder.newBuilder().maximumSize(REPLICATED_FAILED_LEDGERS_MAXSIZE)
                 .build(new CacheLoader<Long, AtomicInteger>() {
                     @Override
@@ -216,7 +246,7 @@ public class ReplicationWorker implements Runnable {
                 .getCounter(NUM_DEFER_LEDGER_LOCK_RELEASE_OF_FAILED_LEDGER);
         this.numEntriesUnableToReadForReplication = this.statsLogger
                 .getCounter(NUM_ENTRIES_UNABLE_TO_READ_FOR_REPLICATION);
-        this.exceptionCounters = new HashMap<String, Counter>();
+        this.exceptionCounters = new ConcurrentHashMap<String, Counter>();
         this.onReadEntryFailureCallback = (ledgerid, entryid) -> {
             numEntriesUnableToReadForReplication.inc();
             unableToReadEntriesForReplication.getUnchecked(ledgerid).add(entryid);
@@ -233,23 +263,31 @@ public class ReplicationWorker implements Runnable {
     @Override
     public void run() {
         workerRunning = true;
-        while (workerRunning) {
-            try {
-                rereplicate();
-            } catch (InterruptedException e) {
-                LOG.info("InterruptedException "
-                        + "while replicating fragments", e);
-                shutdown();
-                Thread.currentThread().interrupt();
-                return;
-            } catch (BKException e) {
-                LOG.error("BKException while replicating fragments", e);
-                waitBackOffTime(rwRereplicateBackoffMs);
-            } catch (UnavailableException e) {
-                LOG.error("UnavailableException "
-                        + "while replicating fragments", e);
-                waitBackOffTime(rwRereplicateBackoffMs);
+        try {
+            while (workerRunning) {
+                try {
+                    if (rereplicationExecutor == null) {
+                        rereplicate();
+                    } else {
+                        rereplicateConcurrently();
+                    }
+                } catch (InterruptedException e) {
+                    LOG.info("InterruptedException "
+                            + "while replicating fragments", e);
+                    shutdown();
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (BKException e) {
+                    LOG.error("BKException while replicating fragments", e);
+                    waitBackOffTime(rwRereplicateBackoffMs);
+                } catch (UnavailableException e) {
+                    LOG.error("UnavailableException "
+                            + "while replicating fragments", e);
+                    waitBackOffTime(rwRereplicateBackoffMs);
+                }
             }
+        } finally {
+            releasePendingLedgers();
         }
         LOG.info("ReplicationWorker exited loop!");
     }
@@ -270,7 +308,110 @@ public class ReplicationWorker implements Runnable {
             UnavailableException {
         long ledgerIdToReplicate = underreplicationManager
                 .getLedgerToRereplicate();
+        rereplicateAndRecordStats(ledgerIdToReplicate);
+    }
 
+    /**
+     * Waits for a free slot, and rereplicates the ledger with the fewest replicas left
+     * among the ones available, on the rereplication executor.
+     */
+    private void rereplicateConcurrently() throws InterruptedException, UnavailableException {
+        concurrentLedgersPermits.acquire();
+        boolean submitted = false;
+        try {
+            if (pendingLedgers.isEmpty()) {
+                addPendingLedger(underreplicationManager.getLedgerToRereplicate());
+            }
+            // Look ahead for the ledgers with fewer replicas left
+            while (pendingLedgers.size() < maxConcurrentLedgers) {
+                long ledgerId = underreplicationManager.pollLedgerToRereplicate();
+                if (ledgerId == -1) {
+                    break;
+                }
+                addPendingLedger(ledgerId);
+            }
+
+            final long ledgerIdToReplicate = pendingLedgers.poll().ledgerId;
+            rereplicationExecutor.execute(() -> {
+                try {
+                    rereplicateAndRecordStats(ledgerIdToReplicate);
+                } catch (InterruptedException e) {
+                    LOG.info("InterruptedException while replicating fragments of ledger {}",
+                            ledgerIdToReplicate, e);
+                    Thread.currentThread().interrupt();
+                } catch (BKException e) {
+                    LOG.error("BKException while replicating fragments", e);
+                    waitBackOffTime(rwRereplicateBackoffMs);
+                } catch (UnavailableException e) {
+                    LOG.error("UnavailableException "
+                            + "while replicating fragments", e);
+                    waitBackOffTime(rwRereplicateBackoffMs);
+                } finally {
+                    concurrentLedgersPermits.release();
+                }
+            });
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                concurrentLedgersPermits.release();
+            }
+        }
+    }
+
+    private void addPendingLedger(long ledgerId) throws InterruptedException {
+        pendingLedgers.add(new PendingLedger(ledgerId, getMinReplicasLeft(ledgerId)));
+    }
+
+    /**
+     * Gets the number of replicas left, on the available bookies, of the entries
+     * that lost the most replicas, assuming that the missing bookies of an ensemble
+     * are in the same write quorum.
+     */
+    private int getMinReplicasLeft(long ledgerId) throws InterruptedException {
+        try {
+            LedgerMetadata metadata = bkc.getLedgerManager().readLedgerMetadata(ledgerId).get().getValue();
+            Collection<BookieSocketAddress> available = admin.getAvailableBookies();
+            Collection<BookieSocketAddress> readOnly = admin.getReadOnlyBookies();
+            int minReplicasLeft = metadata.getWriteQuorumSize();
+            for (List<BookieSocketAddress> ensemble : metadata.getAllEnsembles().values()) {
+                int missing = 0;
+                for (BookieSocketAddress bookie : ensemble) {
+                    if (!available.contains(bookie) && !readOnly.contains(bookie)) {
+                        missing++;
+                    }
+                }
+                minReplicasLeft = Math.min(minReplicasLeft, Math.max(0, metadata.getWriteQuorumSize() - missing));
+            }
+            return minReplicasLeft;
+        } catch (ExecutionException | BKException e) {
+            // Deleted ledger or metadata not available, left to the rereplication
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to get the replicas left of ledger {}", ledgerId, e);
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Release the ledgers locked by the worker thread that were not rereplicated yet.
+     */
+    private void releasePendingLedgers() {
+        if (pendingLedgers == null) {
+            return;
+        }
+        PendingLedger pending;
+        while ((pending = pendingLedgers.poll()) != null) {
+            try {
+                underreplicationManager.releaseUnderreplicatedLedger(pending.ledgerId);
+            } catch (UnavailableException e) {
+                LOG.warn("UnavailableException while releasing the underreplicated lock for ledger {}",
+                        pending.ledgerId, e);
+            }
+        }
+    }
+
+    private void rereplicateAndRecordStats(long ledgerIdToReplicate) throws InterruptedException, BKException,
+            UnavailableException {
         Stopwatch stopwatch = Stopwatch.createStarted();
         boolean success = false;
         try {
@@ -624,11 +765,25 @@ public class ReplicationWorker implements Runnable {
         try {
             this.workerThread.interrupt();
             this.workerThread.join();
+            if (rereplicationExecutor != null) {
+                rereplicationExecutor.shutdownNow();
+                if (!rereplicationExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.warn("Rereplication of the ledgers didn't stop in time");
+                }
+            }
         } catch (InterruptedException e) {
             LOG.error("Interrupted during shutting down replication worker : ",
                     e);
             Thread.currentThread().interrupt();
         }
+        try {
+            admin.close();
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while closing the Bookie admin", e);
+            Thread.currentThread().interrupt();
+        } catch (BKException e) {
+            LOG.warn("Exception while closing the Bookie admin", e);
+        }
         if (ownBkc) {
             try {
                 bkc.close();
@@ -679,12 +834,20 @@ public class ReplicationWorker implements Runnable {
     }
 
     private Counter getExceptionCounter(String name) {
-        Counter counter = this.exceptionCounters.get(name);
-        if (counter == null) {
-            counter = this.exceptionLogger.getCounter(name);
-            this.exceptionCounters.put(name, counter);
+        return this.exceptionCounters.computeIfAbsent(name, this.exceptionLogger::getCounter);
+    }
+
+    /**
+     * Ledger locked for rereplication, with the replicas left of its entries.
+     */
+    private static class PendingLedger {
+        final long ledgerId;
+        final int replicasLeft;
+
+        PendingLedger(long ledgerId, int replicasLeft) {
+            this.ledgerId = ledgerId;
+            this.replicasLeft = replicasLeft;
         }
-        return counter;
     }
 
 }
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 public final class NativeIO {
     private static final Logger LOG = LoggerFactory.getLogger(NativeIO.class);
 
+    private static final int POSIX_FADV_WILLNEED = 3; /* fadvise.h */
     private static final int POSIX_FADV_DONTNEED = 4; /* fadvise.h */
 
     private static boolean initialized = false;
@@ -96,11 +97,27 @@ public final class NativeIO {
      * @param len    The length to be flushed.
      */
     public static void bestEffortRemoveFromPageCache(int fd, long offset, long len) {
+        bestEffortFadvise(fd, offset, len, POSIX_FADV_DONTNEED);
+    }
+
+    /**
+     * Ask the kernel to start reading pages into the file system page cache,
+     * ahead of reading them.
+     *
+     * @param fd     The file descriptor of the source file.
+     * @param offset The offset within the file.
+     * @param len    The length to be read ahead.
+     */
+    public static void bestEffortReadAhead(int fd, long offset, long len) {
+        bestEffortFadvise(fd, offset, len, POSIX_FADV_WILLNEED);
+    }
+
+    private static void bestEffortFadvise(int fd, long offset, long len, int flag) {
         if (!initialized || !fadvisePossible || fd < 0) {
             return;
         }
         try {
-            posix_fadvise(fd, offset, len, POSIX_FADV_DONTNEED);
+            posix_fadvise(fd, offset, len, flag);
         } catch (UnsupportedOperationException uoe) {
             LOG.warn("posix_fadvise is not supported : ", uoe);
             fadvisePossible = false;
@@ -39,6 +39,10 @@ import java.util.function.LongFunction;
  * <li>Open hash map with linear probing, no node allocations to store the values
  * </ol>
  *
+ * <p>When a section needs to expand, its entries are not re-hashed all at once under the write lock. The new table is
+ * installed right away and the entries of the previous one are moved over a few buckets at a time by the following
+ * write operations on the section, so that the latency of any single operation stays bounded.
+ *
  * @param <V>
  */
 @SuppressWarnings("unchecked")
@@ -49,6 +53,9 @@ public class ConcurrentLongHashMap<V> {
 
     private static final float MapFillFactor = 0.66f;
 
+    // Number of buckets moved from the previous table by each write operation while a section is expanding
+    private static final int MigrationBucketsPerOperation = 64;
+
     private static final int DefaultExpectedItems = 256;
     private static final int DefaultConcurrencyLevel = 16;
 
@@ -223,6 +230,12 @@ public class ConcurrentLongHashMap<V> {
         private int usedBuckets;
         private int resizeThreshold;
 
+        // Table that is being migrated to the new one after an expansion, or null. The entries before migrationIndex
+        // have already been copied to the new table, the ones after are still owned by the old table
+        private long[] oldKeys;
+        private volatile V[] oldValues;
+        private int migrationIndex;
+
         Section(int capacity) {
             this.capacity = alignToPowerOfTwo(capacity);
             this.keys = new long[this.capacity];
@@ -233,57 +246,60 @@ public class ConcurrentLongHashMap<V> {
         }
 
         V get(long key, int keyHash) {
-            int bucket = keyHash;
-
             long stamp = tryOptimisticRead();
-            boolean acquiredLock = false;
 
-            try {
+            if (oldValues == null) {
+                // First try optimistic locking
+                int capacity = this.capacity;
+                int bucket = keyHash;
+
                 while (true) {
-                    int capacity = this.capacity;
                     bucket = signSafeMod(bucket, capacity);
 
-                    // First try optimistic locking
                     long storedKey = keys[bucket];
                     V storedValue = values[bucket];
 
-                    if (!acquiredLock && validate(stamp)) {
-                        // The values we have read are consistent
-                        if (storedKey == key) {
-                            return storedValue != DeletedValue ? storedValue : null;
-                        } else if (storedValue == EmptyValue) {
-                            // Not found
-                            return null;
-                        }
-                    } else {
-                        // Fallback to acquiring read lock
-                        if (!acquiredLock) {
-                            stamp = readLock();
-                            acquiredLock = true;
-                            storedKey = keys[bucket];
-                            storedValue = values[bucket];
-                        }
+                    if (!validate(stamp)) {
+                        break;
+                    }
 
-                        if (capacity != this.capacity) {
-                            // There has been a rehashing. We need to restart the search
-                            bucket = keyHash;
-                            continue;
-                        }
+                    // The values we have read are consistent
+                    if (storedKey == key) {
+                        return storedValue != DeletedValue ? storedValue : null;
+                    } else if (storedValue == EmptyValue) {
+                        // Not found
+                        return null;
+                    }
 
-                        if (storedKey == key) {
-                            return storedValue != DeletedValue ? storedValue : null;
-                        } else if (storedValue == EmptyValue) {
-                            // Not found
-                            return null;
-                        }
+                    ++bucket;
+                }
+            }
+
+            // Fallback to acquiring read lock, which is also needed to look into both tables during a migration
+            tryMigrateStep();
+            stamp = readLock();
+            try {
+                int capacity = this.capacity;
+                int bucket = keyHash;
+                while (true) {
+                    bucket = signSafeMod(bucket, capacity);
+
+                    long storedKey = keys[bucket];
+                    V storedValue = values[bucket];
+
+                    if (storedValue == EmptyValue) {
+                        break;
+                    } else if (storedKey == key) {
+                        return storedValue != DeletedValue ? storedValue : null;
                     }
 
                     ++bucket;
                 }
+
+                int oldBucket = findInOldTable(key, keyHash);
+                return oldBucket != -1 ? oldValues[oldBucket] : null;
             } finally {
-                if (acquiredLock) {
-                    unlockRead(stamp);
-                }
+                unlockRead(stamp);
             }
         }
 
@@ -297,6 +313,16 @@ public class ConcurrentLongHashMap<V> {
             int firstDeletedKey = -1;
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    V storedValue = oldValues[oldBucket];
+                    if (!onlyIfAbsent) {
+                        oldValues[oldBucket] = value;
+                    }
+                    return storedValue;
+                }
+
                 while (true) {
                     bucket = signSafeMod(bucket, capacity);
 
@@ -360,6 +386,21 @@ public class ConcurrentLongHashMap<V> {
             long stamp = writeLock();
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    V storedValue = oldValues[oldBucket];
+                    if (value == null || value.equals(storedValue)) {
+                        --size;
+
+                        // Buckets of the old table are never reused, a tombstone is enough
+                        oldValues[oldBucket] = (V) DeletedValue;
+                        return storedValue;
+                    } else {
+                        return null;
+                    }
+                }
+
                 while (true) {
                     int capacity = this.capacity;
                     bucket = signSafeMod(bucket, capacity);
@@ -403,6 +444,8 @@ public class ConcurrentLongHashMap<V> {
 
             int removedCount = 0;
             try {
+                completeMigration();
+
                 // Go through all the buckets for this section
                 int capacity = this.capacity;
                 for (int bucket = 0; bucket < capacity; bucket++) {
@@ -438,6 +481,8 @@ public class ConcurrentLongHashMap<V> {
             try {
                 Arrays.fill(keys, 0);
                 Arrays.fill(values, EmptyValue);
+                this.oldKeys = null;
+                this.oldValues = null;
                 this.size = 0;
                 this.usedBuckets = 0;
             } finally {
@@ -451,13 +496,15 @@ public class ConcurrentLongHashMap<V> {
             int capacity = this.capacity;
             long[] keys = this.keys;
             V[] values = this.values;
+            V[] oldValues = this.oldValues;
 
             boolean acquiredReadLock = false;
 
             try {
 
-                // Validate no rehashing
-                if (!validate(stamp)) {
+                // Validate no rehashing. A migration in progress requires the read lock as well, since entries
+                // could be moved from one table to the other while we go through them
+                if (!validate(stamp) || oldValues != null) {
                     // Fallback to read lock
                     stamp = readLock();
                     acquiredReadLock = true;
@@ -465,6 +512,7 @@ public class ConcurrentLongHashMap<V> {
                     capacity = this.capacity;
                     keys = this.keys;
                     values = this.values;
+                    oldValues = this.oldValues;
                 }
 
                 // Go through all the buckets for this section
@@ -485,6 +533,16 @@ public class ConcurrentLongHashMap<V> {
                         processor.accept(storedKey, storedValue);
                     }
                 }
+
+                if (oldValues != null) {
+                    // Entries that were not moved to the new table yet
+                    for (int bucket = migrationIndex; bucket < oldValues.length; bucket++) {
+                        V storedValue = oldValues[bucket];
+                        if (storedValue != DeletedValue && storedValue != EmptyValue) {
+                            processor.accept(oldKeys[bucket], storedValue);
+                        }
+                    }
+                }
             } finally {
                 if (acquiredReadLock) {
                     unlockRead(stamp);
@@ -493,29 +551,103 @@ public class ConcurrentLongHashMap<V> {
         }
 
         private void rehash() {
+            // Finish the previous expansion, if any, before starting a new one
+            completeMigration();
+
             // Expand the hashmap
             int newCapacity = capacity * 2;
             long[] newKeys = new long[newCapacity];
             V[] newValues = (V[]) new Object[newCapacity];
 
-            // Re-hash table
-            for (int i = 0; i < keys.length; i++) {
-                long storedKey = keys[i];
-                V storedValue = values[i];
-                if (storedValue != EmptyValue && storedValue != DeletedValue) {
-                    insertKeyValueNoLock(newKeys, newValues, storedKey, storedValue);
-                }
-            }
-
+            // The entries are moved to the new table by the subsequent write operations
+            oldKeys = keys;
+            oldValues = values;
+            migrationIndex = 0;
             keys = newKeys;
             values = newValues;
-            usedBuckets = size;
+            usedBuckets = 0;
             // Capacity needs to be updated after the values, so that we won't see
             // a capacity value bigger than the actual array size
             capacity = newCapacity;
             resizeThreshold = (int) (capacity * MapFillFactor);
         }
 
+        /**
+         * Copy the next few buckets of the old table into the new one. The old table is left untouched, so that
+         * the probe sequences of the entries not yet moved stay valid.
+         */
+        private void migrateStep() {
+            V[] oldValues = this.oldValues;
+            if (oldValues == null) {
+                return;
+            }
+
+            int end = Math.min(migrationIndex + MigrationBucketsPerOperation, oldValues.length);
+            for (int bucket = migrationIndex; bucket < end; bucket++) {
+                V storedValue = oldValues[bucket];
+                if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                    insertKeyValueNoLock(keys, values, oldKeys[bucket], storedValue);
+                    ++usedBuckets;
+                }
+            }
+
+            migrationIndex = end;
+            if (end == oldValues.length) {
+                this.oldKeys = null;
+                this.oldValues = null;
+            }
+        }
+
+        private void completeMigration() {
+            while (oldValues != null) {
+                migrateStep();
+            }
+        }
+
+        /**
+         * Let a read move a pending migration forward as well, so that it completes even when the writes stop.
+         * The read doesn't wait if the section is locked.
+         */
+        private void tryMigrateStep() {
+            if (oldValues == null) {
+                return;
+            }
+
+            long stamp = tryWriteLock();
+            if (stamp != 0) {
+                try {
+                    migrateStep();
+                } finally {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        /**
+         * @return the bucket of the key in the old table, or -1 if there is no migration in progress, the key is not
+         *         in the old table or it has already been moved to the new one
+         */
+        private int findInOldTable(long key, int keyHash) {
+            V[] oldValues = this.oldValues;
+            if (oldValues == null) {
+                return -1;
+            }
+
+            int bucket = keyHash;
+            while (true) {
+                bucket = signSafeMod(bucket, oldValues.length);
+
+                V storedValue = oldValues[bucket];
+                if (storedValue == EmptyValue) {
+                    return -1;
+                } else if (oldKeys[bucket] == key) {
+                    return storedValue != DeletedValue && bucket >= migrationIndex ? bucket : -1;
+                }
+
+                ++bucket;
+            }
+        }
+
         private static <V> void insertKeyValueNoLock(long[] keys, V[] values, long key, V value) {
             int bucket = (int) hash(key);
 
@@ -39,6 +39,10 @@ import java.util.function.LongPredicate;
  * no node allocations are required to store the values.
  *
  * <p>Keys <strong>MUST</strong> be >= 0.
+ *
+ * <p>When a section needs to expand, its entries are not re-hashed all at once under the write lock. The new table is
+ * installed right away and the entries of the previous one are moved over a few buckets at a time by the following
+ * write operations on the section, so that the latency of any single operation stays bounded.
  */
 public class ConcurrentLongLongHashMap {
 
@@ -49,6 +53,9 @@ public class ConcurrentLongLongHashMap {
 
     private static final float MapFillFactor = 0.66f;
 
+    // Number of buckets moved from the previous table by each write operation while a section is expanding
+    private static final int MigrationBucketsPerOperation = 64;
+
     private static final int DefaultExpectedItems = 256;
     private static final int DefaultConcurrencyLevel = 16;
 
@@ -292,6 +299,11 @@ public class ConcurrentLongLongHashMap {
         private int usedBuckets;
         private int resizeThreshold;
 
+        // Table that is being migrated to the new one after an expansion, or null. The entries before migrationIndex
+        // have already been copied to the new table, the ones after are still owned by the old table
+        private volatile long[] oldTable;
+        private int migrationIndex;
+
         Section(int capacity) {
             this.capacity = alignToPowerOfTwo(capacity);
             this.table = new long[2 * this.capacity];
@@ -303,48 +315,52 @@ public class ConcurrentLongLongHashMap {
 
         long get(long key, int keyHash) {
             long stamp = tryOptimisticRead();
-            boolean acquiredLock = false;
-            int bucket = signSafeMod(keyHash, capacity);
 
-            try {
+            if (oldTable == null) {
+                // First try optimistic locking
+                int bucket = signSafeMod(keyHash, capacity);
+                long[] table = this.table;
+
                 while (true) {
-                    // First try optimistic locking
                     long storedKey = table[bucket];
                     long storedValue = table[bucket + 1];
 
-                    if (!acquiredLock && validate(stamp)) {
-                        // The values we have read are consistent
-                        if (key == storedKey) {
-                            return storedValue;
-                        } else if (storedKey == EmptyKey) {
-                            // Not found
-                            return ValueNotFound;
-                        }
-                    } else {
-                        // Fallback to acquiring read lock
-                        if (!acquiredLock) {
-                            stamp = readLock();
-                            acquiredLock = true;
+                    if (!validate(stamp)) {
+                        break;
+                    }
 
-                            bucket = signSafeMod(keyHash, capacity);
-                            storedKey = table[bucket];
-                            storedValue = table[bucket + 1];
-                        }
+                    // The values we have read are consistent
+                    if (key == storedKey) {
+                        return storedValue;
+                    } else if (storedKey == EmptyKey) {
+                        // Not found
+                        return ValueNotFound;
+                    }
 
-                        if (key == storedKey) {
-                            return storedValue;
-                        } else if (storedKey == EmptyKey) {
-                            // Not found
-                            return ValueNotFound;
-                        }
+                    bucket = (bucket + 2) & (table.length - 1);
+                }
+            }
+
+            // Fallback to acquiring read lock, which is also needed to look into both tables during a migration
+            tryMigrateStep();
+            stamp = readLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    long storedKey = table[bucket];
+                    if (key == storedKey) {
+                        return table[bucket + 1];
+                    } else if (storedKey == EmptyKey) {
+                        break;
                     }
 
                     bucket = (bucket + 2) & (table.length - 1);
                 }
+
+                int oldBucket = findInOldTable(key, keyHash);
+                return oldBucket != -1 ? oldTable[oldBucket + 1] : ValueNotFound;
             } finally {
-                if (acquiredLock) {
-                    unlockRead(stamp);
-                }
+                unlockRead(stamp);
             }
         }
 
@@ -356,6 +372,16 @@ public class ConcurrentLongLongHashMap {
             int firstDeletedKey = -1;
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    long storedValue = oldTable[oldBucket + 1];
+                    if (!onlyIfAbsent) {
+                        oldTable[oldBucket + 1] = value;
+                    }
+                    return storedValue;
+                }
+
                 while (true) {
                     long storedKey = table[bucket];
                     long storedValue = table[bucket + 1];
@@ -415,6 +441,16 @@ public class ConcurrentLongLongHashMap {
             int firstDeletedKey = -1;
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    long newValue = oldTable[oldBucket + 1] + delta;
+                    checkBiggerEqualZero(newValue);
+
+                    oldTable[oldBucket + 1] = newValue;
+                    return newValue;
+                }
+
                 while (true) {
                     long storedKey = table[bucket];
                     long storedValue = table[bucket + 1];
@@ -471,6 +507,17 @@ public class ConcurrentLongLongHashMap {
             int firstDeletedKey = -1;
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    if (oldTable[oldBucket + 1] != currentValue) {
+                        return false;
+                    }
+
+                    oldTable[oldBucket + 1] = newValue;
+                    return true;
+                }
+
                 while (true) {
                     long storedKey = table[bucket];
                     long storedValue = table[bucket + 1];
@@ -526,6 +573,22 @@ public class ConcurrentLongLongHashMap {
             int bucket = signSafeMod(keyHash, capacity);
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key, keyHash);
+                if (oldBucket != -1) {
+                    long storedValue = oldTable[oldBucket + 1];
+                    if (value == ValueNotFound || value == storedValue) {
+                        --size;
+
+                        // Buckets of the old table are never reused, a tombstone is enough
+                        oldTable[oldBucket] = DeletedKey;
+                        oldTable[oldBucket + 1] = ValueNotFound;
+                        return storedValue;
+                    } else {
+                        return ValueNotFound;
+                    }
+                }
+
                 while (true) {
                     long storedKey = table[bucket];
                     long storedValue = table[bucket + 1];
@@ -556,6 +619,8 @@ public class ConcurrentLongLongHashMap {
 
             int removedCount = 0;
             try {
+                completeMigration();
+
                 // Go through all the buckets for this section
                 for (int bucket = 0; bucket < table.length; bucket += 2) {
                     long storedKey = table[bucket];
@@ -581,6 +646,8 @@ public class ConcurrentLongLongHashMap {
 
             int removedCount = 0;
             try {
+                completeMigration();
+
                 // Go through all the buckets for this section
                 for (int bucket = 0; bucket < table.length; bucket += 2) {
                     long storedKey = table[bucket];
@@ -619,6 +686,7 @@ public class ConcurrentLongLongHashMap {
 
             try {
                 Arrays.fill(table, EmptyKey);
+                this.oldTable = null;
                 this.size = 0;
                 this.usedBuckets = 0;
             } finally {
@@ -630,16 +698,19 @@ public class ConcurrentLongLongHashMap {
             long stamp = tryOptimisticRead();
 
             long[] table = this.table;
+            long[] oldTable = this.oldTable;
             boolean acquiredReadLock = false;
 
             try {
 
-                // Validate no rehashing
-                if (!validate(stamp)) {
+                // Validate no rehashing. A migration in progress requires the read lock as well, since entries
+                // could be moved from one table to the other while we go through them
+                if (!validate(stamp) || oldTable != null) {
                     // Fallback to read lock
                     stamp = readLock();
                     acquiredReadLock = true;
                     table = this.table;
+                    oldTable = this.oldTable;
                 }
 
                 // Go through all the buckets for this section
@@ -660,6 +731,16 @@ public class ConcurrentLongLongHashMap {
                         processor.accept(storedKey, storedValue);
                     }
                 }
+
+                if (oldTable != null) {
+                    // Entries that were not moved to the new table yet
+                    for (int bucket = migrationIndex; bucket < oldTable.length; bucket += 2) {
+                        long storedKey = oldTable[bucket];
+                        if (storedKey != DeletedKey && storedKey != EmptyKey) {
+                            processor.accept(storedKey, oldTable[bucket + 1]);
+                        }
+                    }
+                }
             } finally {
                 if (acquiredReadLock) {
                     unlockRead(stamp);
@@ -668,28 +749,98 @@ public class ConcurrentLongLongHashMap {
         }
 
         private void rehash() {
+            // Finish the previous expansion, if any, before starting a new one
+            completeMigration();
+
             // Expand the hashmap
             int newCapacity = capacity * 2;
             long[] newTable = new long[2 * newCapacity];
             Arrays.fill(newTable, EmptyKey);
 
-            // Re-hash table
-            for (int i = 0; i < table.length; i += 2) {
-                long storedKey = table[i];
-                long storedValue = table[i + 1];
-                if (storedKey != EmptyKey && storedKey != DeletedKey) {
-                    insertKeyValueNoLock(newTable, newCapacity, storedKey, storedValue);
-                }
-            }
-
+            // The entries are moved to the new table by the subsequent write operations
+            oldTable = table;
+            migrationIndex = 0;
             table = newTable;
-            usedBuckets = size;
+            usedBuckets = 0;
             // Capacity needs to be updated after the values, so that we won't see
             // a capacity value bigger than the actual array size
             capacity = newCapacity;
             resizeThreshold = (int) (capacity * MapFillFactor);
         }
 
+        /**
+         * Copy the next few buckets of the old table into the new one. The old table is left untouched, so that
+         * the probe sequences of the entries not yet moved stay valid.
+         */
+        private void migrateStep() {
+            long[] oldTable = this.oldTable;
+            if (oldTable == null) {
+                return;
+            }
+
+            int end = Math.min(migrationIndex + 2 * MigrationBucketsPerOperation, oldTable.length);
+            for (int bucket = migrationIndex; bucket < end; bucket += 2) {
+                long storedKey = oldTable[bucket];
+                if (storedKey != EmptyKey && storedKey != DeletedKey) {
+                    insertKeyValueNoLock(table, capacity, storedKey, oldTable[bucket + 1]);
+                    ++usedBuckets;
+                }
+            }
+
+            migrationIndex = end;
+            if (end == oldTable.length) {
+                this.oldTable = null;
+            }
+        }
+
+        private void completeMigration() {
+            while (oldTable != null) {
+                migrateStep();
+            }
+        }
+
+        /**
+         * Let a read move a pending migration forward as well, so that it completes even when the writes stop.
+         * The read doesn't wait if the section is locked.
+         */
+        private void tryMigrateStep() {
+            if (oldTable == null) {
+                return;
+            }
+
+            long stamp = tryWriteLock();
+            if (stamp != 0) {
+                try {
+                    migrateStep();
+                } finally {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        /**
+         * @return the bucket of the key in the old table, or -1 if there is no migration in progress, the key is not
+         *         in the old table or it has already been moved to the new one
+         */
+        private int findInOldTable(long key, int keyHash) {
+            long[] oldTable = this.oldTable;
+            if (oldTable == null) {
+                return -1;
+            }
+
+            int bucket = signSafeMod(keyHash, oldTable.length >> 1);
+            while (true) {
+                long storedKey = oldTable[bucket];
+                if (key == storedKey) {
+                    return bucket >= migrationIndex ? bucket : -1;
+                } else if (storedKey == EmptyKey) {
+                    return -1;
+                }
+
+                bucket = (bucket + 2) & (oldTable.length - 1);
+            }
+        }
+
         private static void insertKeyValueNoLock(long[] table, int capacity, long key, long value) {
             int bucket = signSafeMod(hash(key), capacity);
 
@@ -39,8 +39,12 @@ import java.util.concurrent.locks.StampedLock;
  * no node allocations are required to store the keys and values, and no boxing is required.
  *
  * <p>Keys <strong>MUST</strong> be &gt;= 0.
+ *
+ * <p>When a section needs to expand, its entries are not re-hashed all at once under the write lock. The new table is
+ * installed right away and the entries of the previous one are moved over a few buckets at a time by the following
+ * write operations on the section, so that the latency of any single operation stays bounded.
  */
-public class ConcurrentLongLongPairHashMap {
+public class ConcurrentLongLongPairHashMap implements ConcurrentLongLongPairMap {
 
     private static final long EmptyKey = -1L;
     private static final long DeletedKey = -2L;
@@ -49,6 +53,9 @@ public class ConcurrentLongLongPairHashMap {
 
     private static final float MapFillFactor = 0.66f;
 
+    // Number of buckets moved from the previous table by each write operation while a section is expanding
+    private static final int MigrationBucketsPerOperation = 64;
+
     private static final int DefaultExpectedItems = 256;
     private static final int DefaultConcurrencyLevel = 16;
 
@@ -98,6 +105,7 @@ public class ConcurrentLongLongPairHashMap {
         }
     }
 
+    @Override
     public long size() {
         long size = 0;
         for (Section s : sections) {
@@ -106,6 +114,7 @@ public class ConcurrentLongLongPairHashMap {
         return size;
     }
 
+    @Override
     public long capacity() {
         long capacity = 0;
         for (Section s : sections) {
@@ -114,6 +123,7 @@ public class ConcurrentLongLongPairHashMap {
         return capacity;
     }
 
+    @Override
     public boolean isEmpty() {
         for (Section s : sections) {
             if (s.size != 0) {
@@ -137,16 +147,26 @@ public class ConcurrentLongLongPairHashMap {
      * @param key
      * @return the value or -1 if the key was not present
      */
+    @Override
     public LongPair get(long key1, long key2) {
         checkBiggerEqualZero(key1);
         long h = hash(key1, key2);
         return getSection(h).get(key1, key2, (int) h);
     }
 
+    @Override
+    public long getFirstValue(long key1, long key2) {
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        return getSection(h).getFirstValue(key1, key2, (int) h);
+    }
+
+    @Override
     public boolean containsKey(long key1, long key2) {
         return get(key1, key2) != null;
     }
 
+    @Override
     public boolean put(long key1, long key2, long value1, long value2) {
         checkBiggerEqualZero(key1);
         checkBiggerEqualZero(value1);
@@ -154,6 +174,7 @@ public class ConcurrentLongLongPairHashMap {
         return getSection(h).put(key1, key2, value1, value2, (int) h, false);
     }
 
+    @Override
     public boolean putIfAbsent(long key1, long key2, long value1, long value2) {
         checkBiggerEqualZero(key1);
         checkBiggerEqualZero(value1);
@@ -167,12 +188,14 @@ public class ConcurrentLongLongPairHashMap {
      * @param key
      * @return the value associated with the key or -1 if key was not present
      */
+    @Override
     public boolean remove(long key1, long key2) {
         checkBiggerEqualZero(key1);
         long h = hash(key1, key2);
         return getSection(h).remove(key1, key2, ValueNotFound, ValueNotFound, (int) h);
     }
 
+    @Override
     public boolean remove(long key1, long key2, long value1, long value2) {
         checkBiggerEqualZero(key1);
         checkBiggerEqualZero(value1);
@@ -186,12 +209,14 @@ public class ConcurrentLongLongPairHashMap {
         return sections[sectionIdx];
     }
 
+    @Override
     public void clear() {
         for (Section s : sections) {
             s.clear();
         }
     }
 
+    @Override
     public void forEach(BiConsumerLongPair processor) {
         for (Section s : sections) {
             s.forEach(processor);
@@ -201,18 +226,21 @@ public class ConcurrentLongLongPairHashMap {
     /**
      * @return a new list of all keys (makes a copy)
      */
+    @Override
     public List<LongPair> keys() {
         List<LongPair> keys = Lists.newArrayList();
         forEach((key1, key2, value1, value2) -> keys.add(new LongPair(key1, key2)));
         return keys;
     }
 
+    @Override
     public List<LongPair> values() {
         List<LongPair> values = Lists.newArrayList();
         forEach((key1, key2, value1, value2) -> values.add(new LongPair(value1, value2)));
         return values;
     }
 
+    @Override
     public Map<LongPair, LongPair> asMap() {
         Map<LongPair, LongPair> map = Maps.newHashMap();
         forEach((key1, key2, value1, value2) -> map.put(new LongPair(key1, key2), new LongPair(value1, value2)));
@@ -230,6 +258,11 @@ public class ConcurrentLongLongPairHashMap {
         private int usedBuckets;
         private int resizeThreshold;
 
+        // Table that is being migrated to the new one after an expansion, or null. The entries before migrationIndex
+        // have already been copied to the new table, the ones after are still owned by the old table
+        private volatile long[] oldTable;
+        private int migrationIndex;
+
         Section(int capacity) {
             this.capacity = alignToPowerOfTwo(capacity);
             this.table = new long[4 * this.capacity];
@@ -241,52 +274,107 @@ public class ConcurrentLongLongPairHashMap {
 
         LongPair get(long key1, long key2, int keyHash) {
             long stamp = tryOptimisticRead();
-            boolean acquiredLock = false;
-            int bucket = signSafeMod(keyHash, capacity);
 
-            try {
+            if (oldTable == null) {
+                // First try optimistic locking
+                int bucket = signSafeMod(keyHash, capacity);
+                long[] table = this.table;
+
                 while (true) {
-                    // First try optimistic locking
                     long storedKey1 = table[bucket];
                     long storedKey2 = table[bucket + 1];
                     long storedValue1 = table[bucket + 2];
                     long storedValue2 = table[bucket + 3];
 
-                    if (!acquiredLock && validate(stamp)) {
-                        // The values we have read are consistent
-                        if (key1 == storedKey1 && key2 == storedKey2) {
-                            return new LongPair(storedValue1, storedValue2);
-                        } else if (storedKey1 == EmptyKey) {
-                            // Not found
-                            return null;
-                        }
-                    } else {
-                        // Fallback to acquiring read lock
-                        if (!acquiredLock) {
-                            stamp = readLock();
-                            acquiredLock = true;
-
-                            bucket = signSafeMod(keyHash, capacity);
-                            storedKey1 = table[bucket];
-                            storedKey2 = table[bucket + 1];
-                            storedValue1 = table[bucket + 2];
-                            storedValue2 = table[bucket + 3];
-                        }
+                    if (!validate(stamp)) {
+                        break;
+                    }
 
-                        if (key1 == storedKey1 && key2 == storedKey2) {
-                            return new LongPair(storedValue1, storedValue2);
-                        } else if (storedKey1 == EmptyKey) {
-                            // Not found
-                            return null;
-                        }
+                    // The values we have read are consistent
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return new LongPair(storedValue1, storedValue2);
+                    } else if (storedKey1 == EmptyKey) {
+                        // Not found
+                        return null;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+            }
+
+            // Fallback to acquiring read lock, which is also needed to look into both tables during a migration
+            tryMigrateStep();
+            stamp = readLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return new LongPair(table[bucket + 2], table[bucket + 3]);
+                    } else if (storedKey1 == EmptyKey) {
+                        break;
                     }
 
                     bucket = (bucket + 4) & (table.length - 1);
                 }
+
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                return oldBucket != -1 ? new LongPair(oldTable[oldBucket + 2], oldTable[oldBucket + 3]) : null;
             } finally {
-                if (acquiredLock) {
-                    unlockRead(stamp);
+                unlockRead(stamp);
+            }
+        }
+
+        long getFirstValue(long key1, long key2, int keyHash) {
+            long stamp = tryOptimisticRead();
+
+            if (oldTable == null) {
+                // First try optimistic locking
+                int bucket = signSafeMod(keyHash, capacity);
+                long[] table = this.table;
+
+                while (true) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    long storedValue1 = table[bucket + 2];
+
+                    if (!validate(stamp)) {
+                        break;
+                    }
+
+                    // The values we have read are consistent
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return storedValue1;
+                    } else if (storedKey1 == EmptyKey) {
+                        // Not found
+                        return ValueNotFound;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+            }
+
+            tryMigrateStep();
+            stamp = readLock();
+            try {
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    long storedKey1 = table[bucket];
+                    long storedKey2 = table[bucket + 1];
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return table[bucket + 2];
+                    } else if (storedKey1 == EmptyKey) {
+                        break;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
                 }
+
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                return oldBucket != -1 ? oldTable[oldBucket + 2] : ValueNotFound;
+            } finally {
+                unlockRead(stamp);
             }
         }
 
@@ -298,6 +386,18 @@ public class ConcurrentLongLongPairHashMap {
             int firstDeletedKey = -1;
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                if (oldBucket != -1) {
+                    if (!onlyIfAbsent) {
+                        oldTable[oldBucket + 2] = value1;
+                        oldTable[oldBucket + 3] = value2;
+                        return true;
+                    } else {
+                        return false;
+                    }
+                }
+
                 while (true) {
                     long storedKey1 = table[bucket];
                     long storedKey2 = table[bucket + 1];
@@ -353,6 +453,24 @@ public class ConcurrentLongLongPairHashMap {
             int bucket = signSafeMod(keyHash, capacity);
 
             try {
+                migrateStep();
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                if (oldBucket != -1) {
+                    if (value1 == ValueNotFound
+                            || (value1 == oldTable[oldBucket + 2] && value2 == oldTable[oldBucket + 3])) {
+                        --size;
+
+                        // Buckets of the old table are never reused, a tombstone is enough
+                        oldTable[oldBucket] = DeletedKey;
+                        oldTable[oldBucket + 1] = DeletedKey;
+                        oldTable[oldBucket + 2] = ValueNotFound;
+                        oldTable[oldBucket + 3] = ValueNotFound;
+                        return true;
+                    } else {
+                        return false;
+                    }
+                }
+
                 while (true) {
                     long storedKey1 = table[bucket];
                     long storedKey2 = table[bucket + 1];
@@ -401,6 +519,7 @@ public class ConcurrentLongLongPairHashMap {
 
             try {
                 Arrays.fill(table, EmptyKey);
+                this.oldTable = null;
                 this.size = 0;
                 this.usedBuckets = 0;
             } finally {
@@ -412,16 +531,19 @@ public class ConcurrentLongLongPairHashMap {
             long stamp = tryOptimisticRead();
 
             long[] table = this.table;
+            long[] oldTable = this.oldTable;
             boolean acquiredReadLock = false;
 
             try {
 
-                // Validate no rehashing
-                if (!validate(stamp)) {
+                // Validate no rehashing. A migration in progress requires the read lock as well, since entries
+                // could be moved from one table to the other while we go through them
+                if (!validate(stamp) || oldTable != null) {
                     // Fallback to read lock
                     stamp = readLock();
                     acquiredReadLock = true;
                     table = this.table;
+                    oldTable = this.oldTable;
                 }
 
                 // Go through all the buckets for this section
@@ -446,6 +568,17 @@ public class ConcurrentLongLongPairHashMap {
                         processor.accept(storedKey1, storedKey2, storedValue1, storedValue2);
                     }
                 }
+
+                if (oldTable != null) {
+                    // Entries that were not moved to the new table yet
+                    for (int bucket = migrationIndex; bucket < oldTable.length; bucket += 4) {
+                        long storedKey1 = oldTable[bucket];
+                        if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
+                            processor.accept(storedKey1, oldTable[bucket + 1], oldTable[bucket + 2],
+                                    oldTable[bucket + 3]);
+                        }
+                    }
+                }
             } finally {
                 if (acquiredReadLock) {
                     unlockRead(stamp);
@@ -454,30 +587,100 @@ public class ConcurrentLongLongPairHashMap {
         }
 
         private void rehash() {
+            // Finish the previous expansion, if any, before starting a new one
+            completeMigration();
+
             // Expand the hashmap
             int newCapacity = capacity * 2;
             long[] newTable = new long[4 * newCapacity];
             Arrays.fill(newTable, EmptyKey);
 
-            // Re-hash table
-            for (int i = 0; i < table.length; i += 4) {
-                long storedKey1 = table[i];
-                long storedKey2 = table[i + 1];
-                long storedValue1 = table[i + 2];
-                long storedValue2 = table[i + 3];
-                if (storedKey1 != EmptyKey && storedKey1 != DeletedKey) {
-                    insertKeyValueNoLock(newTable, newCapacity, storedKey1, storedKey2, storedValue1, storedValue2);
-                }
-            }
-
+            // The entries are moved to the new table by the subsequent write operations
+            oldTable = table;
+            migrationIndex = 0;
             table = newTable;
-            usedBuckets = size;
+            usedBuckets = 0;
             // Capacity needs to be updated after the values, so that we won't see
             // a capacity value bigger than the actual array size
             capacity = newCapacity;
             resizeThreshold = (int) (capacity * MapFillFactor);
         }
 
+        /**
+         * Copy the next few buckets of the old table into the new one. The old table is left untouched, so that
+         * the probe sequences of the entries not yet moved stay valid.
+         */
+        private void migrateStep() {
+            long[] oldTable = this.oldTable;
+            if (oldTable == null) {
+                return;
+            }
+
+            int end = Math.min(migrationIndex + 4 * MigrationBucketsPerOperation, oldTable.length);
+            for (int bucket = migrationIndex; bucket < end; bucket += 4) {
+                long storedKey1 = oldTable[bucket];
+                if (storedKey1 != EmptyKey && storedKey1 != DeletedKey) {
+                    insertKeyValueNoLock(table, capacity, storedKey1, oldTable[bucket + 1], oldTable[bucket + 2],
+                            oldTable[bucket + 3]);
+                    ++usedBuckets;
+                }
+            }
+
+            migrationIndex = end;
+            if (end == oldTable.length) {
+                this.oldTable = null;
+            }
+        }
+
+        private void completeMigration() {
+            while (oldTable != null) {
+                migrateStep();
+            }
+        }
+
+        /**
+         * Let a read move a pending migration forward as well, so that it completes even when the writes stop.
+         * The read doesn't wait if the section is locked.
+         */
+        private void tryMigrateStep() {
+            if (oldTable == null) {
+                return;
+            }
+
+            long stamp = tryWriteLock();
+            if (stamp != 0) {
+                try {
+                    migrateStep();
+                } finally {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        /**
+         * @return the bucket of the key in the old table, or -1 if there is no migration in progress, the key is not
+         *         in the old table or it has already been moved to the new one
+         */
+        private int findInOldTable(long key1, long key2, int keyHash) {
+            long[] oldTable = this.oldTable;
+            if (oldTable == null) {
+                return -1;
+            }
+
+            int bucket = signSafeMod(keyHash, oldTable.length >> 2);
+            while (true) {
+                long storedKey1 = oldTable[bucket];
+                long storedKey2 = oldTable[bucket + 1];
+                if (key1 == storedKey1 && key2 == storedKey2) {
+                    return bucket >= migrationIndex ? bucket : -1;
+                } else if (storedKey1 == EmptyKey) {
+                    return -1;
+                }
+
+                bucket = (bucket + 4) & (oldTable.length - 1);
+            }
+        }
+
         private static void insertKeyValueNoLock(long[] table, int capacity, long key1, long key2, long value1,
                 long value2) {
             int bucket = signSafeMod(hash(key1, key2), capacity);
@@ -0,0 +1,672 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.hash;
+import static org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.signSafeMod;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+// CHECKSTYLE.OFF: IllegalImport
+import io.netty.util.internal.PlatformDependent;
+// CHECKSTYLE.ON: IllegalImport
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.BiConsumerLongPair;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * Concurrent hash map where both keys and values are composed of pairs of longs, with the tables stored in direct
+ * memory.
+ *
+ * <p>Same layout and behavior as {@link ConcurrentLongLongPairHashMap}, but the tables are allocated from the given
+ * {@link ByteBufAllocator} instead of the heap, so that big indexes do not add to the old generation and to the GC
+ * pauses. Since a table can be released when its section expands, lookups always take the section read lock instead of
+ * reading optimistically.
+ *
+ * <p>The memory is released by {@link #close()}, after which any access to the map throws
+ * {@link IllegalStateException}.
+ *
+ * <p>Keys <strong>MUST</strong> be &gt;= 0.
+ */
+public class ConcurrentOffHeapLongLongPairHashMap implements ConcurrentLongLongPairMap {
+
+    private static final long EmptyKey = -1L;
+    private static final long DeletedKey = -2L;
+
+    private static final long ValueNotFound = -1L;
+
+    private static final float MapFillFactor = 0.66f;
+
+    // Number of buckets moved from the previous table by each write operation while a section is expanding
+    private static final int MigrationBucketsPerOperation = 64;
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private final Section[] sections;
+
+    public ConcurrentOffHeapLongLongPairHashMap(ByteBufAllocator allocator) {
+        this(allocator, DefaultExpectedItems);
+    }
+
+    public ConcurrentOffHeapLongLongPairHashMap(ByteBufAllocator allocator, int expectedItems) {
+        this(allocator, expectedItems, DefaultConcurrencyLevel);
+    }
+
+    public ConcurrentOffHeapLongLongPairHashMap(ByteBufAllocator allocator, int expectedItems, int concurrencyLevel) {
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+
+        int numSections = concurrencyLevel;
+        int perSectionExpectedItems = expectedItems / numSections;
+        int perSectionCapacity = (int) (perSectionExpectedItems / MapFillFactor);
+        this.sections = new Section[numSections];
+
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section(allocator, perSectionCapacity);
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Section s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    @Override
+    public long capacity() {
+        long capacity = 0;
+        for (Section s : sections) {
+            capacity += s.capacity;
+        }
+        return capacity;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Section s : sections) {
+            if (s.size != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    long getUsedBucketCount() {
+        long usedBucketCount = 0;
+        for (Section s : sections) {
+            usedBucketCount += s.usedBuckets;
+        }
+        return usedBucketCount;
+    }
+
+    @Override
+    public LongPair get(long key1, long key2) {
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        return getSection(h).get(key1, key2, (int) h);
+    }
+
+    @Override
+    public long getFirstValue(long key1, long key2) {
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        return getSection(h).getFirstValue(key1, key2, (int) h);
+    }
+
+    @Override
+    public boolean containsKey(long key1, long key2) {
+        return get(key1, key2) != null;
+    }
+
+    @Override
+    public boolean put(long key1, long key2, long value1, long value2) {
+        checkBiggerEqualZero(key1);
+        checkBiggerEqualZero(value1);
+        long h = hash(key1, key2);
+        return getSection(h).put(key1, key2, value1, value2, (int) h, false);
+    }
+
+    @Override
+    public boolean putIfAbsent(long key1, long key2, long value1, long value2) {
+        checkBiggerEqualZero(key1);
+        checkBiggerEqualZero(value1);
+        long h = hash(key1, key2);
+        return getSection(h).put(key1, key2, value1, value2, (int) h, true);
+    }
+
+    @Override
+    public boolean remove(long key1, long key2) {
+        checkBiggerEqualZero(key1);
+        long h = hash(key1, key2);
+        return getSection(h).remove(key1, key2, ValueNotFound, ValueNotFound, (int) h);
+    }
+
+    @Override
+    public boolean remove(long key1, long key2, long value1, long value2) {
+        checkBiggerEqualZero(key1);
+        checkBiggerEqualZero(value1);
+        long h = hash(key1, key2);
+        return getSection(h).remove(key1, key2, value1, value2, (int) h);
+    }
+
+    private Section getSection(long hash) {
+        // Use 32 msb out of long to get the section
+        final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
+        return sections[sectionIdx];
+    }
+
+    @Override
+    public void clear() {
+        for (Section s : sections) {
+            s.clear();
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumerLongPair processor) {
+        for (Section s : sections) {
+            s.forEach(processor);
+        }
+    }
+
+    @Override
+    public List<LongPair> keys() {
+        List<LongPair> keys = Lists.newArrayList();
+        forEach((key1, key2, value1, value2) -> keys.add(new LongPair(key1, key2)));
+        return keys;
+    }
+
+    @Override
+    public List<LongPair> values() {
+        List<LongPair> values = Lists.newArrayList();
+        forEach((key1, key2, value1, value2) -> values.add(new LongPair(value1, value2)));
+        return values;
+    }
+
+    @Override
+    public Map<LongPair, LongPair> asMap() {
+        Map<LongPair, LongPair> map = Maps.newHashMap();
+        forEach((key1, key2, value1, value2) -> map.put(new LongPair(key1, key2), new LongPair(value1, value2)));
+        return map;
+    }
+
+    @Override
+    public void close() {
+        for (Section s : sections) {
+            s.close();
+        }
+    }
+
+    /**
+     * Array of longs backed by a direct buffer, accessed through its memory address when possible.
+     */
+    private static final class LongTable {
+        private final ByteBuf buffer;
+        private final long address;
+        private final int length;
+
+        LongTable(ByteBufAllocator allocator, long length) {
+            // a ByteBuf can't hold more than Integer.MAX_VALUE bytes
+            long sizeInBytes = length * Long.BYTES;
+            if (sizeInBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Section table of " + length + " longs exceeds "
+                        + Integer.MAX_VALUE + " bytes, use a higher concurrency level");
+            }
+            this.buffer = allocator.directBuffer((int) sizeInBytes, (int) sizeInBytes);
+            this.address = buffer.hasMemoryAddress() ? buffer.memoryAddress() : 0;
+            this.length = (int) length;
+        }
+
+        long get(int index) {
+            if (address != 0) {
+                return PlatformDependent.getLong(address + ((long) index << 3));
+            } else {
+                return buffer.getLong(index << 3);
+            }
+        }
+
+        void set(int index, long value) {
+            if (address != 0) {
+                PlatformDependent.putLong(address + ((long) index << 3), value);
+            } else {
+                buffer.setLong(index << 3, value);
+            }
+        }
+
+        void fill(long value) {
+            if (address != 0 && value == EmptyKey) {
+                // All bits set
+                PlatformDependent.setMemory(address, (long) length << 3, (byte) 0xFF);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    set(i, value);
+                }
+            }
+        }
+
+        void release() {
+            buffer.release();
+        }
+    }
+
+    // A section is a portion of the hash map that is covered by a single
+    @SuppressWarnings("serial")
+    private static final class Section extends StampedLock {
+        private final ByteBufAllocator allocator;
+
+        // Keys and values are stored interleaved in the table, null once the section is closed
+        private LongTable table;
+
+        private volatile int capacity;
+        private volatile int size;
+        private int usedBuckets;
+        private int resizeThreshold;
+
+        // Table that is being migrated to the new one after an expansion, or null. The entries before migrationIndex
+        // have already been copied to the new table, the ones after are still owned by the old table
+        private LongTable oldTable;
+        private int migrationIndex;
+
+        Section(ByteBufAllocator allocator, int capacity) {
+            this.allocator = allocator;
+            this.capacity = alignToPowerOfTwo(capacity);
+            this.table = new LongTable(allocator, 4L * this.capacity);
+            this.size = 0;
+            this.usedBuckets = 0;
+            this.resizeThreshold = (int) (this.capacity * MapFillFactor);
+            table.fill(EmptyKey);
+        }
+
+        LongPair get(long key1, long key2, int keyHash) {
+            // The table memory could be released by a concurrent expansion, so it cannot be read optimistically
+            long stamp = readLock();
+            try {
+                checkOpen();
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return new LongPair(table.get(bucket + 2), table.get(bucket + 3));
+                    } else if (storedKey1 == EmptyKey) {
+                        break;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                return oldBucket != -1 ? new LongPair(oldTable.get(oldBucket + 2), oldTable.get(oldBucket + 3)) : null;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        long getFirstValue(long key1, long key2, int keyHash) {
+            long stamp = readLock();
+            try {
+                checkOpen();
+                int bucket = signSafeMod(keyHash, capacity);
+                while (true) {
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        return table.get(bucket + 2);
+                    } else if (storedKey1 == EmptyKey) {
+                        break;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                return oldBucket != -1 ? oldTable.get(oldBucket + 2) : ValueNotFound;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        boolean put(long key1, long key2, long value1, long value2, int keyHash, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            int bucket = signSafeMod(keyHash, capacity);
+
+            // Remember where we find the first available spot
+            int firstDeletedKey = -1;
+
+            try {
+                checkOpen();
+                migrateStep();
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                if (oldBucket != -1) {
+                    if (!onlyIfAbsent) {
+                        oldTable.set(oldBucket + 2, value1);
+                        oldTable.set(oldBucket + 3, value2);
+                        return true;
+                    } else {
+                        return false;
+                    }
+                }
+
+                while (true) {
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        if (!onlyIfAbsent) {
+                            // Over written an old value for same key
+                            table.set(bucket + 2, value1);
+                            table.set(bucket + 3, value2);
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    } else if (storedKey1 == EmptyKey) {
+                        // Found an empty bucket. This means the key is not in the map. If we've already seen a deleted
+                        // key, we should write at that position
+                        if (firstDeletedKey != -1) {
+                            bucket = firstDeletedKey;
+                        } else {
+                            ++usedBuckets;
+                        }
+
+                        table.set(bucket, key1);
+                        table.set(bucket + 1, key2);
+                        table.set(bucket + 2, value1);
+                        table.set(bucket + 3, value2);
+                        ++size;
+                        return true;
+                    } else if (storedKey1 == DeletedKey) {
+                        // The bucket contained a different deleted key
+                        if (firstDeletedKey == -1) {
+                            firstDeletedKey = bucket;
+                        }
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+            } finally {
+                if (usedBuckets > resizeThreshold) {
+                    try {
+                        rehash();
+                    } finally {
+                        unlockWrite(stamp);
+                    }
+                } else {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        private boolean remove(long key1, long key2, long value1, long value2, int keyHash) {
+            long stamp = writeLock();
+            int bucket = signSafeMod(keyHash, capacity);
+
+            try {
+                checkOpen();
+                migrateStep();
+                int oldBucket = findInOldTable(key1, key2, keyHash);
+                if (oldBucket != -1) {
+                    if (value1 == ValueNotFound
+                            || (value1 == oldTable.get(oldBucket + 2) && value2 == oldTable.get(oldBucket + 3))) {
+                        --size;
+
+                        // Buckets of the old table are never reused, a tombstone is enough
+                        oldTable.set(oldBucket, DeletedKey);
+                        oldTable.set(oldBucket + 1, DeletedKey);
+                        oldTable.set(oldBucket + 2, ValueNotFound);
+                        oldTable.set(oldBucket + 3, ValueNotFound);
+                        return true;
+                    } else {
+                        return false;
+                    }
+                }
+
+                while (true) {
+                    long storedKey1 = table.get(bucket);
+                    long storedKey2 = table.get(bucket + 1);
+                    if (key1 == storedKey1 && key2 == storedKey2) {
+                        if (value1 == ValueNotFound
+                                || (value1 == table.get(bucket + 2) && value2 == table.get(bucket + 3))) {
+                            --size;
+
+                            cleanBucket(bucket);
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    } else if (storedKey1 == EmptyKey) {
+                        // Key wasn't found
+                        return false;
+                    }
+
+                    bucket = (bucket + 4) & (table.length - 1);
+                }
+
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        private void cleanBucket(int bucket) {
+            int nextInArray = (bucket + 4) & (table.length - 1);
+            if (table.get(nextInArray) == EmptyKey) {
+                table.set(bucket, EmptyKey);
+                table.set(bucket + 1, EmptyKey);
+                table.set(bucket + 2, ValueNotFound);
+                table.set(bucket + 3, ValueNotFound);
+                --usedBuckets;
+            } else {
+                table.set(bucket, DeletedKey);
+                table.set(bucket + 1, DeletedKey);
+                table.set(bucket + 2, ValueNotFound);
+                table.set(bucket + 3, ValueNotFound);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+
+            try {
+                checkOpen();
+                table.fill(EmptyKey);
+                releaseOldTable();
+                this.size = 0;
+                this.usedBuckets = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void close() {
+            long stamp = writeLock();
+
+            try {
+                if (table != null) {
+                    table.release();
+                    table = null;
+                    releaseOldTable();
+                    size = 0;
+                    usedBuckets = 0;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        public void forEach(BiConsumerLongPair processor) {
+            long stamp = readLock();
+
+            try {
+                checkOpen();
+                // Go through all the buckets for this section
+                for (int bucket = 0; bucket < table.length; bucket += 4) {
+                    long storedKey1 = table.get(bucket);
+                    if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
+                        processor.accept(storedKey1, table.get(bucket + 1), table.get(bucket + 2),
+                                table.get(bucket + 3));
+                    }
+                }
+
+                if (oldTable != null) {
+                    // Entries that were not moved to the new table yet
+                    for (int bucket = migrationIndex; bucket < oldTable.length; bucket += 4) {
+                        long storedKey1 = oldTable.get(bucket);
+                        if (storedKey1 != DeletedKey && storedKey1 != EmptyKey) {
+                            processor.accept(storedKey1, oldTable.get(bucket + 1), oldTable.get(bucket + 2),
+                                    oldTable.get(bucket + 3));
+                        }
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private void checkOpen() {
+            if (table == null) {
+                throw new IllegalStateException("The map is closed");
+            }
+        }
+
+        private void rehash() {
+            // Finish the previous expansion, if any, before starting a new one
+            completeMigration();
+
+            // Expand the hashmap
+            int newCapacity = capacity * 2;
+            LongTable newTable = new LongTable(allocator, 4L * newCapacity);
+            newTable.fill(EmptyKey);
+
+            // The entries are moved to the new table by the subsequent write operations
+            oldTable = table;
+            migrationIndex = 0;
+            table = newTable;
+            usedBuckets = 0;
+            capacity = newCapacity;
+            resizeThreshold = (int) (capacity * MapFillFactor);
+        }
+
+        /**
+         * Copy the next few buckets of the old table into the new one, and release the old table once all of them have
+         * been copied.
+         */
+        private void migrateStep() {
+            if (oldTable == null) {
+                return;
+            }
+
+            int end = Math.min(migrationIndex + 4 * MigrationBucketsPerOperation, oldTable.length);
+            for (int bucket = migrationIndex; bucket < end; bucket += 4) {
+                long storedKey1 = oldTable.get(bucket);
+                if (storedKey1 != EmptyKey && storedKey1 != DeletedKey) {
+                    insertKeyValueNoLock(table, capacity, storedKey1, oldTable.get(bucket + 1),
+                            oldTable.get(bucket + 2), oldTable.get(bucket + 3));
+                    ++usedBuckets;
+                }
+            }
+
+            migrationIndex = end;
+            if (end == oldTable.length) {
+                releaseOldTable();
+            }
+        }
+
+        private void completeMigration() {
+            while (oldTable != null) {
+                migrateStep();
+            }
+        }
+
+        private void releaseOldTable() {
+            if (oldTable != null) {
+                oldTable.release();
+                oldTable = null;
+            }
+        }
+
+        /**
+         * @return the bucket of the key in the old table, or -1 if there is no migration in progress, the key is not
+         *         in the old table or it has already been moved to the new one
+         */
+        private int findInOldTable(long key1, long key2, int keyHash) {
+            if (oldTable == null) {
+                return -1;
+            }
+
+            int bucket = signSafeMod(keyHash, oldTable.length >> 2);
+            while (true) {
+                long storedKey1 = oldTable.get(bucket);
+                long storedKey2 = oldTable.get(bucket + 1);
+                if (key1 == storedKey1 && key2 == storedKey2) {
+                    return bucket >= migrationIndex ? bucket : -1;
+                } else if (storedKey1 == EmptyKey) {
+                    return -1;
+                }
+
+                bucket = (bucket + 4) & (oldTable.length - 1);
+            }
+        }
+
+        private static void insertKeyValueNoLock(LongTable table, int capacity, long key1, long key2, long value1,
+                long value2) {
+            int bucket = signSafeMod(hash(key1, key2), capacity);
+
+            while (true) {
+                long storedKey1 = table.get(bucket);
+
+                if (storedKey1 == EmptyKey) {
+                    // The bucket is empty, so we can use it
+                    table.set(bucket, key1);
+                    table.set(bucket + 1, key2);
+                    table.set(bucket + 2, value1);
+                    table.set(bucket + 3, value2);
+                    return;
+                }
+
+                bucket = (bucket + 4) & (table.length - 1);
+            }
+        }
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    private static void checkBiggerEqualZero(long n) {
+        if (n < 0L) {
+            throw new IllegalArgumentException("Keys and values must be >= 0");
+        }
+    }
+}
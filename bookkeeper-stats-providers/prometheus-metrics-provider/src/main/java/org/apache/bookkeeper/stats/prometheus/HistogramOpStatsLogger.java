@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.bookkeeper.stats.OpStatsData;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * OpStatsLogger implementation that records the events in cumulative log-linear histograms.
+ *
+ * <p>Each power of 2 range is split in {@link #SUB_BUCKETS} linear buckets, so that the relative
+ * error of a quantile is bounded and the memory used by a histogram is constant. Each thread
+ * records its events in its own histograms without any lock, and the histograms of all the threads
+ * are merged when the metrics are collected.
+ *
+ * <p>Values are recorded in thousandths of the exported unit: the event latencies are recorded in
+ * microseconds and exported in milliseconds, as in {@link DataSketchesOpStatsLogger}, and the raw
+ * values are exported as they are.
+ */
+public class HistogramOpStatsLogger implements OpStatsLogger {
+
+    static final int UNIT_SCALE = 1000;
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /*
+     * Values higher than 2^(MAX_EXPONENT + 1) are recorded in the last bucket.
+     */
+    static final int MAX_EXPONENT = 40;
+    static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final Map<LocalData, Boolean> threadsData = new ConcurrentHashMap<>();
+    private final FastThreadLocal<LocalData> localData = new FastThreadLocal<LocalData>() {
+        @Override
+        protected LocalData initialValue() throws Exception {
+            LocalData data = new LocalData();
+            threadsData.put(data, Boolean.TRUE);
+            return data;
+        }
+
+        @Override
+        protected void onRemoval(LocalData value) throws Exception {
+            retire(value);
+        }
+    };
+
+    /*
+     * Events recorded by the threads that are gone, to keep the histograms cumulative.
+     */
+    private final AtomicLongArray retiredSuccess = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLongArray retiredFail = new AtomicLongArray(NUM_BUCKETS);
+
+    private final LongAdder successSumAdder = new LongAdder();
+    private final LongAdder failSumAdder = new LongAdder();
+
+    @Override
+    public void registerFailedEvent(long eventLatency, TimeUnit unit) {
+        long value = unit.toMicros(eventLatency);
+        failSumAdder.add(value);
+        localData.get().failBuckets().record(value);
+    }
+
+    @Override
+    public void registerSuccessfulEvent(long eventLatency, TimeUnit unit) {
+        long value = unit.toMicros(eventLatency);
+        successSumAdder.add(value);
+        localData.get().successBuckets.record(value);
+    }
+
+    @Override
+    public void registerSuccessfulValue(long value) {
+        long scaledValue = scale(value);
+        successSumAdder.add(scaledValue);
+        localData.get().successBuckets.record(scaledValue);
+    }
+
+    @Override
+    public void registerFailedValue(long value) {
+        long scaledValue = scale(value);
+        failSumAdder.add(scaledValue);
+        localData.get().failBuckets().record(scaledValue);
+    }
+
+    @Override
+    public OpStatsData toOpStatsData() {
+        // Not relevant as we don't use JMX here
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        // Not relevant as we don't use JMX here
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Merge the histograms of all the threads.
+     *
+     * @return the number of events recorded in each bucket since the logger was created
+     */
+    public synchronized long[] snapshot(boolean success) {
+        long[] buckets = new long[NUM_BUCKETS];
+        addTo(buckets, success ? retiredSuccess : retiredFail);
+        threadsData.forEach((data, b) -> {
+            Buckets threadBuckets = success ? data.successBuckets : data.failBuckets;
+            if (threadBuckets != null) {
+                addTo(buckets, threadBuckets);
+            }
+        });
+        return buckets;
+    }
+
+    public double getSum(boolean success) {
+        return (success ? successSumAdder.sum() : failSumAdder.sum()) / (double) UNIT_SCALE;
+    }
+
+    /**
+     * Get a quantile from a snapshot of the histograms, with a relative error lower than
+     * 1 / (2 * {@link #SUB_BUCKETS}).
+     */
+    public static double getQuantileValue(long[] snapshot, double quantile) {
+        long count = 0;
+        for (long bucketCount : snapshot) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // Middle of the bucket
+                return (bucketLowerBound(i) + bucketLowerBound(i + 1) - 1) / 2.0 / UNIT_SCALE;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * @return the index of the first bucket recording the events at 2^exponent or above
+     */
+    static int firstBucketAtPowerOfTwo(int exponent) {
+        return bucketIndex(1L << exponent);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1)))) << shift;
+    }
+
+    private static long scale(long value) {
+        return value > Long.MAX_VALUE / UNIT_SCALE ? Long.MAX_VALUE : value * UNIT_SCALE;
+    }
+
+    private static void addTo(long[] buckets, AtomicLongArray source) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] += source.get(i);
+        }
+    }
+
+    private static void addTo(AtomicLongArray target, AtomicLongArray source) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = source.get(i);
+            if (count != 0) {
+                target.addAndGet(i, count);
+            }
+        }
+    }
+
+    private synchronized void retire(LocalData data) {
+        threadsData.remove(data);
+        addTo(retiredSuccess, data.successBuckets);
+        if (data.failBuckets != null) {
+            addTo(retiredFail, data.failBuckets);
+        }
+    }
+
+    /**
+     * Histogram only updated by its owner thread, and read when the metrics are collected.
+     */
+    private static class Buckets extends AtomicLongArray {
+        private static final long serialVersionUID = 1L;
+
+        Buckets() {
+            super(NUM_BUCKETS);
+        }
+
+        void record(long value) {
+            int index = bucketIndex(value);
+            // Single writer, no need for an atomic increment
+            lazySet(index, get(index) + 1);
+        }
+    }
+
+    private static class LocalData {
+        private final Buckets successBuckets = new Buckets();
+        // Most operations never fail, only allocated on the first failure
+        private volatile Buckets failBuckets;
+
+        Buckets failBuckets() {
+            Buckets buckets = failBuckets;
+            if (buckets == null) {
+                buckets = new Buckets();
+                failBuckets = buckets;
+            }
+            return buckets;
+        }
+    }
+}
@@ -53,4 +53,8 @@ public class LongAdderCounter implements Counter {
     public Long get() {
         return counter.sum();
     }
+
+    long getCount() {
+        return counter.sum();
+    }
 }
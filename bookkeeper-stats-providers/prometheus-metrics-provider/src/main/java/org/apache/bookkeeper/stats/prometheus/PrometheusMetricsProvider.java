@@ -18,6 +18,8 @@ package org.apache.bookkeeper.stats.prometheus;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.util.concurrent.DefaultThreadFactory;
 //CHECKSTYLE.OFF: IllegalImport
 import io.netty.util.internal.PlatformDependent;
@@ -35,6 +37,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
@@ -69,6 +72,9 @@ public class PrometheusMetricsProvider implements StatsProvider {
     public static final String PROMETHEUS_STATS_LATENCY_ROLLOVER_SECONDS = "prometheusStatsLatencyRolloverSeconds";
     public static final int DEFAULT_PROMETHEUS_STATS_LATENCY_ROLLOVER_SECONDS = 60;
 
+    public static final String PROMETHEUS_STATS_LATENCY_HISTOGRAM = "prometheusStatsLatencyHistogram";
+    public static final boolean DEFAULT_PROMETHEUS_STATS_LATENCY_HISTOGRAM = false;
+
     final CollectorRegistry registry;
 
     Server server;
@@ -80,6 +86,9 @@ public class PrometheusMetricsProvider implements StatsProvider {
     final ConcurrentMap<String, LongAdderCounter> counters = new ConcurrentSkipListMap<>();
     final ConcurrentMap<String, SimpleGauge<? extends Number>> gauges = new ConcurrentSkipListMap<>();
     final ConcurrentMap<String, DataSketchesOpStatsLogger> opStats = new ConcurrentSkipListMap<>();
+    final ConcurrentMap<String, HistogramOpStatsLogger> histogramOpStats = new ConcurrentSkipListMap<>();
+
+    volatile boolean latencyHistogramEnabled = DEFAULT_PROMETHEUS_STATS_LATENCY_HISTOGRAM;
 
     public PrometheusMetricsProvider() {
         this(CollectorRegistry.defaultRegistry);
@@ -120,6 +129,9 @@ public class PrometheusMetricsProvider implements StatsProvider {
 
     @Override
     public void start(Configuration conf) {
+        latencyHistogramEnabled = conf.getBoolean(PROMETHEUS_STATS_LATENCY_HISTOGRAM,
+                DEFAULT_PROMETHEUS_STATS_LATENCY_HISTOGRAM);
+
         boolean httpEnabled = conf.getBoolean(PROMETHEUS_STATS_HTTP_ENABLE, DEFAULT_PROMETHEUS_STATS_HTTP_ENABLE);
         boolean bkHttpServerEnabled = conf.getBoolean("httpServerEnabled", false);
         // only start its own http server when prometheus http is enabled and bk http server is not enabled.
@@ -191,11 +203,34 @@ public class PrometheusMetricsProvider implements StatsProvider {
 
     @Override
     public void writeAllMetrics(Writer writer) throws IOException {
-        PrometheusTextFormatUtil.writeMetricsCollectedByPrometheusClient(writer, registry);
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            writeAllMetrics(buf, false);
+            writer.write(buf.toString(StandardCharsets.UTF_8));
+        } finally {
+            buf.release();
+        }
+    }
 
-        gauges.forEach((name, gauge) -> PrometheusTextFormatUtil.writeGauge(writer, name, gauge));
-        counters.forEach((name, counter) -> PrometheusTextFormatUtil.writeCounter(writer, name, counter));
-        opStats.forEach((name, opStatLogger) -> PrometheusTextFormatUtil.writeOpStat(writer, name, opStatLogger));
+    /**
+     * Write all the metrics in Prometheus text format into a buffer.
+     *
+     * @param buf the buffer to write to
+     * @param openMetrics whether to use the OpenMetrics flavor of the text format
+     */
+    public void writeAllMetrics(ByteBuf buf, boolean openMetrics) {
+        SimpleTextOutputStream stream = new SimpleTextOutputStream(buf);
+        PrometheusTextFormatUtil.writeMetricsCollectedByPrometheusClient(stream, registry);
+
+        gauges.forEach((name, gauge) -> PrometheusTextFormatUtil.writeGauge(stream, name, gauge));
+        counters.forEach((name, counter) -> PrometheusTextFormatUtil.writeCounter(stream, name, counter, openMetrics));
+        opStats.forEach((name, opStatLogger) -> PrometheusTextFormatUtil.writeOpStat(stream, name, opStatLogger));
+        histogramOpStats.forEach((name, opStatLogger) ->
+                PrometheusTextFormatUtil.writeHistogram(stream, name, opStatLogger));
+
+        if (openMetrics) {
+            stream.write("# EOF\n");
+        }
     }
 
     @Override
@@ -16,10 +16,13 @@
  */
 package org.apache.bookkeeper.stats.prometheus;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.prometheus.client.exporter.common.TextFormat;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -28,27 +31,51 @@ import javax.servlet.http.HttpServletResponse;
 
 /**
  * Servlet used to export metrics in prometheus text format.
+ *
+ * <p>The metrics are written into a pooled buffer which is then streamed to the response. The
+ * OpenMetrics flavor of the format and the gzip compression are used when the scraper accepts them.
  */
 public class PrometheusServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
+    static final String CONTENT_TYPE_OPENMETRICS = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
     private final transient PrometheusMetricsProvider provider;
 
+    // Size of the last scrape, to allocate a buffer large enough upfront
+    private transient volatile int lastScrapeSize = INITIAL_BUFFER_SIZE;
+
     public PrometheusServlet(PrometheusMetricsProvider provider) {
         this.provider = provider;
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        resp.setStatus(HttpServletResponse.SC_OK);
-        resp.setContentType(TextFormat.CONTENT_TYPE_004);
+        boolean openMetrics = accepts(req.getHeader("Accept"), "application/openmetrics-text");
+        boolean gzip = accepts(req.getHeader("Accept-Encoding"), "gzip");
 
-        Writer writer = resp.getWriter();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer(lastScrapeSize);
         try {
-            provider.writeAllMetrics(writer);
-            writer.flush();
+            provider.writeAllMetrics(buf, openMetrics);
+            lastScrapeSize = buf.readableBytes();
+
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType(openMetrics ? CONTENT_TYPE_OPENMETRICS : TextFormat.CONTENT_TYPE_004);
+            OutputStream out = resp.getOutputStream();
+            if (gzip) {
+                resp.setHeader("Content-Encoding", "gzip");
+                out = new GZIPOutputStream(out);
+            } else {
+                resp.setContentLength(buf.readableBytes());
+            }
+            try {
+                buf.readBytes(out, buf.readableBytes());
+            } finally {
+                out.close();
+            }
         } finally {
-            writer.close();
+            buf.release();
         }
     }
 
@@ -57,4 +84,31 @@ public class PrometheusServlet extends HttpServlet {
         doGet(req, resp);
     }
 
+    /**
+     * Whether the value is one of the comma-separated tokens of the header, with a non-zero q-value.
+     */
+    static boolean accepts(String header, String value) {
+        if (header == null) {
+            return false;
+        }
+        for (String token : header.split(",")) {
+            String[] parts = token.split(";");
+            if (!parts[0].trim().equalsIgnoreCase(value)) {
+                continue;
+            }
+            double q = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.length() > 2 && param.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            return q > 0;
+        }
+        return false;
+    }
 }
@@ -40,6 +40,9 @@ public class PrometheusStatsLogger implements StatsLogger {
 
     @Override
     public OpStatsLogger getOpStatsLogger(String name) {
+        if (provider.latencyHistogramEnabled) {
+            return provider.histogramOpStats.computeIfAbsent(completeName(name), x -> new HistogramOpStatsLogger());
+        }
         return provider.opStats.computeIfAbsent(completeName(name), x -> new DataSketchesOpStatsLogger());
     }
 
@@ -16,113 +16,178 @@
  */
 package org.apache.bookkeeper.stats.prometheus;
 
-import io.prometheus.client.Collector;
 import io.prometheus.client.Collector.MetricFamilySamples;
 import io.prometheus.client.Collector.MetricFamilySamples.Sample;
 import io.prometheus.client.CollectorRegistry;
 
-import java.io.IOException;
-import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
-
-import org.apache.bookkeeper.stats.Counter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Logic to write metrics in Prometheus text format.
+ *
+ * <p>The constant part of each line, the metric name and its labels, is encoded once per metric and
+ * cached, so that a scrape only has to format the values.
  */
 public class PrometheusTextFormatUtil {
-    static void writeGauge(Writer w, String name, SimpleGauge<? extends Number> gauge) {
+
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.75", "0.95", "0.99", "0.999", "0.9999", "1.0" };
+    private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.99, 0.999, 0.9999, 1.0 };
+    private static final String[] SUCCESS_LABELS = { "false", "true" };
+
+    // Number of exported histogram buckets, with the power of 2 boundaries and +Inf
+    private static final int NUM_HISTOGRAM_BUCKETS = HistogramOpStatsLogger.MAX_EXPONENT + 2;
+
+    /*
+     * Pre-encoded lines prefixes, by metric name
+     */
+    private static final ConcurrentMap<String, byte[][]> gaugePrefixes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, byte[][]> counterPrefixes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, byte[][]> summaryPrefixes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, byte[][]> histogramPrefixes = new ConcurrentHashMap<>();
+
+    static void writeGauge(SimpleTextOutputStream w, String name, SimpleGauge<? extends Number> gauge) {
         // Example:
         // # TYPE bookie_storage_entries_count gauge
         // bookie_storage_entries_count 519
-        try {
-            w.append("# TYPE ").append(name).append(" gauge\n");
-            w.append(name).append(' ').append(gauge.getSample().toString()).append('\n');
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        byte[][] prefixes = gaugePrefixes.computeIfAbsent(name, n -> encode(
+                "# TYPE " + n + " gauge\n",
+                n + " "));
+        w.write(prefixes[0]).write(prefixes[1]).write(gauge.getSample()).write('\n');
     }
 
-    static void writeCounter(Writer w, String name, Counter counter) {
+    static void writeCounter(SimpleTextOutputStream w, String name, LongAdderCounter counter, boolean openMetrics) {
         // Example:
-        // # TYPE jvm_threads_started_total counter
+        // # TYPE jvm_threads_started counter
+        // jvm_threads_started 59
+        // or, with OpenMetrics:
         // jvm_threads_started_total 59
-        try {
-            w.append("# TYPE ").append(name).append(" counter\n");
-            w.append(name).append(' ').append(counter.get().toString()).append('\n');
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        byte[][] prefixes = counterPrefixes.computeIfAbsent(name, n -> encode(
+                "# TYPE " + n + " counter\n",
+                n + " ",
+                n + "_total "));
+        w.write(prefixes[0]).write(prefixes[openMetrics ? 2 : 1]).write(counter.getCount()).write('\n');
     }
 
-    static void writeOpStat(Writer w, String name, DataSketchesOpStatsLogger opStat) {
+    static void writeOpStat(SimpleTextOutputStream w, String name, DataSketchesOpStatsLogger opStat) {
         // Example:
         // # TYPE bookie_journal_JOURNAL_ADD_ENTRY summary
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.5",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.75",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.95",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.99",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.999",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.9999",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="1.0",} NaN
-        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="false",} 0.0
-        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="false",} 0.0
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.5",} 1.706
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.75",} 1.89
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.95",} 2.121
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.99",} 10.708
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.999",} 10.902
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.9999",} 10.902
-        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="1.0",} 10.902
-        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="true",} 658.0
-        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="true",} 1265.0800000000002
-        try {
-            w.append("# TYPE ").append(name).append(" summary\n");
-            writeQuantile(w, opStat, name, false, 0.5);
-            writeQuantile(w, opStat, name, false, 0.75);
-            writeQuantile(w, opStat, name, false, 0.95);
-            writeQuantile(w, opStat, name, false, 0.99);
-            writeQuantile(w, opStat, name, false, 0.999);
-            writeQuantile(w, opStat, name, false, 0.9999);
-            writeQuantile(w, opStat, name, false, 1.0);
-            writeCount(w, opStat, name, false);
-            writeSum(w, opStat, name, false);
-
-            writeQuantile(w, opStat, name, true, 0.5);
-            writeQuantile(w, opStat, name, true, 0.75);
-            writeQuantile(w, opStat, name, true, 0.95);
-            writeQuantile(w, opStat, name, true, 0.99);
-            writeQuantile(w, opStat, name, true, 0.999);
-            writeQuantile(w, opStat, name, true, 0.9999);
-            writeQuantile(w, opStat, name, true, 1.0);
-            writeCount(w, opStat, name, true);
-            writeSum(w, opStat, name, true);
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.5"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.75"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.95"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.99"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.999"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="0.9999"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="false",quantile="1.0"} NaN
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="false"} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="false"} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.5"} 1.706
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.75"} 1.89
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.95"} 2.121
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.99"} 10.708
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.999"} 10.902
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="0.9999"} 10.902
+        // bookie_journal_JOURNAL_ADD_ENTRY{success="true",quantile="1.0"} 10.902
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="true"} 658
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="true"} 1265
+        byte[][] prefixes = summaryPrefixes.computeIfAbsent(name, PrometheusTextFormatUtil::encodeSummaryPrefixes);
+        w.write(prefixes[0]);
+        int line = 1;
+        for (int s = 0; s < SUCCESS_LABELS.length; s++) {
+            boolean success = s == 1;
+            for (double quantile : QUANTILES) {
+                w.write(prefixes[line++]).write(opStat.getQuantileValue(success, quantile)).write('\n');
+            }
+            w.write(prefixes[line++]).write(opStat.getCount(success)).write('\n');
+            w.write(prefixes[line++]).write(opStat.getSum(success)).write('\n');
         }
     }
 
-    private static void writeQuantile(Writer w, DataSketchesOpStatsLogger opStat, String name, Boolean success,
-            double quantile) throws IOException {
-        w.append(name).append("{success=\"").append(success.toString()).append("\",quantile=\"")
-                .append(Double.toString(quantile)).append("\"} ")
-                .append(Double.toString(opStat.getQuantileValue(success, quantile))).append('\n');
+    private static byte[][] encodeSummaryPrefixes(String name) {
+        String[] prefixes = new String[1 + SUCCESS_LABELS.length * (QUANTILES.length + 2)];
+        int line = 0;
+        prefixes[line++] = "# TYPE " + name + " summary\n";
+        for (String success : SUCCESS_LABELS) {
+            for (String quantile : QUANTILE_LABELS) {
+                prefixes[line++] = name + "{success=\"" + success + "\",quantile=\"" + quantile + "\"} ";
+            }
+            prefixes[line++] = name + "_count{success=\"" + success + "\"} ";
+            prefixes[line++] = name + "_sum{success=\"" + success + "\"} ";
+        }
+        return encode(prefixes);
     }
 
-    private static void writeCount(Writer w, DataSketchesOpStatsLogger opStat, String name, Boolean success)
-            throws IOException {
-        w.append(name).append("_count{success=\"").append(success.toString()).append("\"} ")
-                .append(Long.toString(opStat.getCount(success))).append('\n');
+    static void writeHistogram(SimpleTextOutputStream w, String name, HistogramOpStatsLogger opStat) {
+        // Example:
+        // # TYPE bookie_journal_JOURNAL_ADD_ENTRY histogram
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="false",le="0.001"} 0
+        // ...
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="false",le="+Inf"} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="false"} 0
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="false"} 0.0
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="0.001"} 0
+        // ...
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="1.024"} 93
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="2.048"} 655
+        // ...
+        // bookie_journal_JOURNAL_ADD_ENTRY_bucket{success="true",le="+Inf"} 658
+        // bookie_journal_JOURNAL_ADD_ENTRY_count{success="true"} 658
+        // bookie_journal_JOURNAL_ADD_ENTRY_sum{success="true"} 1265.08
+        byte[][] prefixes = histogramPrefixes.computeIfAbsent(name, PrometheusTextFormatUtil::encodeHistogramPrefixes);
+        w.write(prefixes[0]);
+        int line = 1;
+        for (int s = 0; s < SUCCESS_LABELS.length; s++) {
+            boolean success = s == 1;
+            long[] buckets = opStat.snapshot(success);
+
+            // Only expose the power of 2 boundaries, the finer buckets are used for the quantiles
+            long count = 0;
+            int bucket = 0;
+            for (int exponent = 0; exponent <= HistogramOpStatsLogger.MAX_EXPONENT; exponent++) {
+                int end = HistogramOpStatsLogger.firstBucketAtPowerOfTwo(exponent);
+                for (; bucket < end; bucket++) {
+                    count += buckets[bucket];
+                }
+                w.write(prefixes[line++]).write(count).write('\n');
+            }
+            for (; bucket < buckets.length; bucket++) {
+                count += buckets[bucket];
+            }
+            w.write(prefixes[line++]).write(count).write('\n');
+
+            w.write(prefixes[line++]).write(count).write('\n');
+            w.write(prefixes[line++]).write(opStat.getSum(success)).write('\n');
+        }
     }
 
-    private static void writeSum(Writer w, DataSketchesOpStatsLogger opStat, String name, Boolean success)
-            throws IOException {
-        w.append(name).append("_sum{success=\"").append(success.toString()).append("\"} ")
-                .append(Double.toString(opStat.getSum(success))).append('\n');
+    private static byte[][] encodeHistogramPrefixes(String name) {
+        String[] prefixes = new String[1 + SUCCESS_LABELS.length * (NUM_HISTOGRAM_BUCKETS + 2)];
+        int line = 0;
+        prefixes[line++] = "# TYPE " + name + " histogram\n";
+        for (String success : SUCCESS_LABELS) {
+            for (int exponent = 0; exponent <= HistogramOpStatsLogger.MAX_EXPONENT; exponent++) {
+                // The bucket counts the values below 2^exponent, which are integers: the largest is 2^exponent - 1
+                String le = Double.toString((double) ((1L << exponent) - 1) / HistogramOpStatsLogger.UNIT_SCALE);
+                prefixes[line++] = name + "_bucket{success=\"" + success + "\",le=\"" + le + "\"} ";
+            }
+            prefixes[line++] = name + "_bucket{success=\"" + success + "\",le=\"+Inf\"} ";
+            prefixes[line++] = name + "_count{success=\"" + success + "\"} ";
+            prefixes[line++] = name + "_sum{success=\"" + success + "\"} ";
+        }
+        return encode(prefixes);
+    }
+
+    private static byte[][] encode(String... prefixes) {
+        byte[][] encoded = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            encoded[i] = prefixes[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return encoded;
     }
 
-    static void writeMetricsCollectedByPrometheusClient(Writer w, CollectorRegistry registry) throws IOException {
+    static void writeMetricsCollectedByPrometheusClient(SimpleTextOutputStream w, CollectorRegistry registry) {
         Enumeration<MetricFamilySamples> metricFamilySamples = registry.metricFamilySamples();
         while (metricFamilySamples.hasMoreElements()) {
             MetricFamilySamples metricFamily = metricFamilySamples.nextElement();
@@ -133,7 +198,7 @@ public class PrometheusTextFormatUtil {
                 w.write('{');
                 for (int j = 0; j < sample.labelNames.size(); j++) {
                     if (j != 0) {
-                        w.write(", ");
+                        w.write(',');
                     }
                     w.write(sample.labelNames.get(j));
                     w.write("=\"");
@@ -142,7 +207,7 @@ public class PrometheusTextFormatUtil {
                 }
 
                 w.write("} ");
-                w.write(Collector.doubleToGoString(sample.value));
+                w.write(sample.value);
                 w.write('\n');
             }
         }
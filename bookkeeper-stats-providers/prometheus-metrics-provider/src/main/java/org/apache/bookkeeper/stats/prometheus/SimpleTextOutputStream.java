@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the Prometheus text format straight into a {@link ByteBuf}, without creating any
+ * intermediate string.
+ *
+ * <p>Strings are encoded in UTF-8, the numbers are formatted directly into the buffer.
+ */
+class SimpleTextOutputStream {
+
+    // Doubles outside of this range are written in scientific notation
+    private static final double MAX_PLAIN_DOUBLE = 1e15;
+    private static final double MIN_PLAIN_DOUBLE = 1e-3;
+    // Largest integer below which all the longs are exact doubles
+    private static final long MAX_EXACT_LONG = 1L << 53;
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuf buffer;
+    private final byte[] digits = new byte[20];
+
+    SimpleTextOutputStream(ByteBuf buffer) {
+        this.buffer = buffer;
+    }
+
+    ByteBuf getBuffer() {
+        return buffer;
+    }
+
+    SimpleTextOutputStream write(byte[] bytes) {
+        buffer.writeBytes(bytes);
+        return this;
+    }
+
+    SimpleTextOutputStream write(char c) {
+        buffer.writeByte((byte) c);
+        return this;
+    }
+
+    SimpleTextOutputStream write(String s) {
+        buffer.writeCharSequence(s, StandardCharsets.UTF_8);
+        return this;
+    }
+
+    SimpleTextOutputStream write(Number n) {
+        if (n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte) {
+            return write(n.longValue());
+        } else {
+            return write(n.doubleValue());
+        }
+    }
+
+    SimpleTextOutputStream write(long n) {
+        if (n == Long.MIN_VALUE) {
+            return write(Long.toString(n));
+        }
+        if (n < 0) {
+            buffer.writeByte('-');
+            n = -n;
+        }
+
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        buffer.writeBytes(digits, i, digits.length - i);
+        return this;
+    }
+
+    /**
+     * Write the shortest decimal representation that parses back to the same double.
+     */
+    SimpleTextOutputStream write(double d) {
+        if (Double.isNaN(d)) {
+            return write("NaN");
+        } else if (Double.isInfinite(d)) {
+            return write(d > 0 ? "+Inf" : "-Inf");
+        }
+
+        double abs = Math.abs(d);
+        if (abs < MAX_PLAIN_DOUBLE && (abs >= MIN_PLAIN_DOUBLE || abs == 0)) {
+            // Find the fewest fraction digits that give back the double. Both m and 10^k are exact
+            // doubles, so m / 10^k is the double nearest to the decimal, the one it would be parsed to.
+            for (int k = 0; k < POWERS_OF_TEN.length; k++) {
+                double scaled = abs * POWERS_OF_TEN[k];
+                if (scaled >= MAX_EXACT_LONG) {
+                    break;
+                }
+                long m = Math.round(scaled);
+                for (long candidate = m - 1; candidate <= m + 1; candidate++) {
+                    if (candidate >= 0 && (double) candidate / POWERS_OF_TEN[k] == abs) {
+                        writePlain(d < 0, candidate, k);
+                        return this;
+                    }
+                }
+            }
+        }
+        // Rare enough to not be worth avoiding the allocation
+        return write(Double.toString(d));
+    }
+
+    private void writePlain(boolean negative, long unscaled, int fractionDigits) {
+        if (negative) {
+            buffer.writeByte('-');
+        }
+        long scale = POWERS_OF_TEN[fractionDigits];
+        write(unscaled / scale);
+        buffer.writeByte('.');
+        if (fractionDigits == 0) {
+            buffer.writeByte('0');
+            return;
+        }
+        long fraction = unscaled % scale;
+        for (int i = fractionDigits - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        buffer.writeBytes(digits, 0, fractionDigits);
+    }
+}
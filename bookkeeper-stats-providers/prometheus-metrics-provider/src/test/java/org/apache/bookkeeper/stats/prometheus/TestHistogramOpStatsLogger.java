@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.prometheus.client.CollectorRegistry;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link HistogramOpStatsLogger}.
+ */
+public class TestHistogramOpStatsLogger {
+
+    @Test
+    public void testBucketBounds() {
+        for (int i = 0; i < HistogramOpStatsLogger.NUM_BUCKETS; i++) {
+            long lowerBound = HistogramOpStatsLogger.bucketLowerBound(i);
+            long upperBound = HistogramOpStatsLogger.bucketLowerBound(i + 1);
+            assertTrue(upperBound > lowerBound);
+            assertEquals(i, HistogramOpStatsLogger.bucketIndex(lowerBound));
+            assertEquals(i, HistogramOpStatsLogger.bucketIndex(upperBound - 1));
+        }
+        assertEquals(0, HistogramOpStatsLogger.bucketIndex(-1));
+        assertEquals(HistogramOpStatsLogger.NUM_BUCKETS - 1, HistogramOpStatsLogger.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testQuantileRelativeError() {
+        HistogramOpStatsLogger opStats = new HistogramOpStatsLogger();
+        Random r = new Random(1);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform between 1us and 10s
+            values[i] = (long) Math.pow(10, r.nextDouble() * 7);
+            opStats.registerSuccessfulEvent(values[i], TimeUnit.MICROSECONDS);
+        }
+        Arrays.sort(values);
+
+        long[] snapshot = opStats.snapshot(true);
+        for (double q : new double[] { 0.5, 0.9, 0.99, 0.999, 1.0 }) {
+            double expectedMillis = values[(int) Math.ceil(q * values.length) - 1] / 1000.0;
+            double actualMillis = HistogramOpStatsLogger.getQuantileValue(snapshot, q);
+            assertEquals(expectedMillis, actualMillis, expectedMillis / (2 * HistogramOpStatsLogger.SUB_BUCKETS));
+        }
+        assertTrue(Double.isNaN(HistogramOpStatsLogger.getQuantileValue(opStats.snapshot(false), 0.5)));
+    }
+
+    @Test
+    public void testMergeThreads() throws Exception {
+        HistogramOpStatsLogger opStats = new HistogramOpStatsLogger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    opStats.registerSuccessfulValue(j);
+                    opStats.registerFailedValue(1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long count = 0;
+        for (long bucketCount : opStats.snapshot(true)) {
+            count += bucketCount;
+        }
+        assertEquals(4000, count);
+        assertEquals(4 * 999 * 1000 / 2, opStats.getSum(true), 0.0);
+        assertEquals(4000, opStats.snapshot(false)[HistogramOpStatsLogger.bucketIndex(1000)]);
+        assertEquals(4000, opStats.getSum(false), 0.0);
+    }
+
+    @Test
+    public void testStatsOutput() throws Exception {
+        PrometheusMetricsProvider provider = new PrometheusMetricsProvider(new CollectorRegistry());
+        provider.latencyHistogramEnabled = true;
+        OpStatsLogger opStats = provider.getStatsLogger("test").getOpStatsLogger("op");
+        opStats.registerSuccessfulEvent(10, TimeUnit.MILLISECONDS);
+        opStats.registerSuccessfulEvent(5, TimeUnit.MILLISECONDS);
+        opStats.registerFailedEvent(100, TimeUnit.MICROSECONDS);
+
+        StringWriter writer = new StringWriter();
+        provider.writeAllMetrics(writer);
+        String output = writer.toString();
+
+        assertTrue(output.contains("# TYPE test_op histogram\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"4.095\"} 0\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"8.191\"} 1\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"16.383\"} 2\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"+Inf\"} 2\n"));
+        assertTrue(output.contains("test_op_count{success=\"true\"} 2\n"));
+        assertTrue(output.contains("test_op_sum{success=\"true\"} 15.0\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"false\",le=\"0.063\"} 0\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"false\",le=\"0.127\"} 1\n"));
+        assertTrue(output.contains("test_op_count{success=\"false\"} 1\n"));
+        assertTrue(output.contains("test_op_sum{success=\"false\"} 0.1\n"));
+    }
+
+    @Test
+    public void testStatsOutputBucketBoundaries() throws Exception {
+        PrometheusMetricsProvider provider = new PrometheusMetricsProvider(new CollectorRegistry());
+        provider.latencyHistogramEnabled = true;
+        OpStatsLogger opStats = provider.getStatsLogger("test").getOpStatsLogger("op");
+        opStats.registerSuccessfulEvent(4095, TimeUnit.MICROSECONDS);
+        opStats.registerSuccessfulEvent(4096, TimeUnit.MICROSECONDS);
+
+        StringWriter writer = new StringWriter();
+        provider.writeAllMetrics(writer);
+        String output = writer.toString();
+
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"2.047\"} 0\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"4.095\"} 1\n"));
+        assertTrue(output.contains("test_op_bucket{success=\"true\",le=\"8.191\"} 2\n"));
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.bookkeeper.stats.prometheus;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.base.MoreObjects;
@@ -25,7 +26,12 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.prometheus.client.CollectorRegistry;
+
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -114,6 +120,26 @@ public class TestPrometheusFormatter {
         assertTrue(found);
     }
 
+    @Test
+    public void testOpenMetricsOutput() throws Exception {
+        PrometheusMetricsProvider provider = new PrometheusMetricsProvider(new CollectorRegistry());
+        StatsLogger statsLogger = provider.getStatsLogger("test");
+        statsLogger.getCounter("my_counter").add(3);
+
+        ByteBuf buf = Unpooled.buffer();
+        provider.writeAllMetrics(buf, true);
+        String output = buf.toString(StandardCharsets.UTF_8);
+
+        assertTrue(output.contains("# TYPE test_my_counter counter\ntest_my_counter_total 3\n"));
+        assertTrue(output.endsWith("# EOF\n"));
+
+        buf.clear();
+        provider.writeAllMetrics(buf, false);
+        output = buf.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("# TYPE test_my_counter counter\ntest_my_counter 3\n"));
+        assertFalse(output.contains("# EOF"));
+    }
+
     /**
      * Hacky parsing of Prometheus text format. Sould be good enough for unit tests
      */
@@ -125,7 +151,7 @@ public class TestPrometheusFormatter {
         // or
         // pulsar_subscriptions_count{cluster="standalone", namespace="sample/standalone/ns1",
         // topic="persistent://sample/standalone/ns1/test-2"} 0.0 1517945780897
-        Pattern pattern = Pattern.compile("^(\\w+)(\\{([^\\}]+)\\})?\\s(-?[\\d\\w\\.]+)(\\s(\\d+))?$");
+        Pattern pattern = Pattern.compile("^(\\w+)(\\{([^\\}]+)\\})?\\s([-+]?[\\d\\w\\.]+)(\\s(\\d+))?$");
         Pattern tagsPattern = Pattern.compile("(\\w+)=\"([^\"]+)\"(,\\s?)?");
 
         Splitter.on("\n").split(metrics).forEach(line -> {
@@ -147,7 +173,12 @@ public class TestPrometheusFormatter {
             String name = matcher.group(1);
 
             Metric m = new Metric();
-            m.value = Double.valueOf(matcher.group(4));
+            String rawValue = matcher.group(4);
+            if (rawValue.endsWith("Inf")) {
+                m.value = rawValue.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            } else {
+                m.value = Double.valueOf(rawValue);
+            }
 
             String tags = matcher.group(3);
             if (tags != null) {
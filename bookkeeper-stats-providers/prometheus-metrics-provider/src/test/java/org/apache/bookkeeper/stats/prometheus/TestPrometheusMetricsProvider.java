@@ -17,15 +17,28 @@
 package org.apache.bookkeeper.stats.prometheus;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+
+import io.prometheus.client.CollectorRegistry;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
 
 import lombok.Cleanup;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.commons.configuration.PropertiesConfiguration;
+import org.eclipse.jetty.server.ServerConnector;
 import org.junit.Test;
 
 /**
@@ -89,6 +102,31 @@ public class TestPrometheusMetricsProvider {
         }
     }
 
+    @Test
+    public void testScrapeWithGzipAndOpenMetrics() throws Exception {
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_ENABLE, true);
+        config.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_PORT, 0); // ephemeral
+        @Cleanup("stop") PrometheusMetricsProvider provider = new PrometheusMetricsProvider(new CollectorRegistry());
+        provider.start(config);
+        provider.getStatsLogger("test").getCounter("scraped").inc();
+
+        int port = ((ServerConnector) provider.server.getConnectors()[0]).getLocalPort();
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics").openConnection();
+        conn.setRequestProperty("Accept", "application/openmetrics-text; version=1.0.0");
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+        assertTrue(conn.getContentType().startsWith("application/openmetrics-text"));
+
+        String body;
+        try (InputStream in = new GZIPInputStream(conn.getInputStream())) {
+            body = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+        }
+        assertTrue(body.contains("test_scraped_total 1\n"));
+        assertTrue(body.endsWith("# EOF\n"));
+    }
+
     @Test
     public void testCounter() {
         LongAdderCounter counter = new LongAdderCounter();
@@ -115,4 +153,18 @@ public class TestPrometheusMetricsProvider {
         assertEquals(1, provider.counters.size());
     }
 
+
+    @Test
+    public void testAcceptsHeader() {
+        assertTrue(PrometheusServlet.accepts("gzip", "gzip"));
+        assertTrue(PrometheusServlet.accepts("deflate, GZIP;q=0.5", "gzip"));
+        assertFalse(PrometheusServlet.accepts("gzip;q=0", "gzip"));
+        assertFalse(PrometheusServlet.accepts("deflate, gzip; q=0.0", "gzip"));
+        assertFalse(PrometheusServlet.accepts("x-gzip", "gzip"));
+        assertFalse(PrometheusServlet.accepts(null, "gzip"));
+        assertTrue(PrometheusServlet.accepts("application/openmetrics-text; version=1.0.0,text/plain;q=0.5",
+                "application/openmetrics-text"));
+        assertFalse(PrometheusServlet.accepts("application/openmetrics-text;q=0,text/plain",
+                "application/openmetrics-text"));
+    }
 }
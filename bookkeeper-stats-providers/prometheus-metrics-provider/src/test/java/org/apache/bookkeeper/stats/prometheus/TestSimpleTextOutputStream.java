@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.stats.prometheus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link SimpleTextOutputStream}.
+ */
+public class TestSimpleTextOutputStream {
+
+    private final ByteBuf buf = Unpooled.buffer();
+    private final SimpleTextOutputStream stream = new SimpleTextOutputStream(buf);
+
+    private String written() {
+        String s = buf.toString(StandardCharsets.UTF_8);
+        buf.clear();
+        return s;
+    }
+
+    @Test
+    public void testLong() {
+        for (long n : new long[] { 0, 1, -1, 9, 10, 1234567890L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            stream.write(n);
+            assertEquals(Long.toString(n), written());
+        }
+    }
+
+    @Test
+    public void testDouble() {
+        for (double d : new double[] { 0.0, 1.0, -1.0, 0.1, 15.0, 1.706, 1265.0800000000002, 0.001, 123456789.5,
+                0.9999996, 1.0 / 3, Math.PI, 1e-5, 2e20, Double.MAX_VALUE, Double.MIN_VALUE }) {
+            stream.write(d);
+            String s = written();
+            assertEquals(s, d, Double.parseDouble(s), 0.0);
+            assertTrue(s, s.length() <= Double.toString(d).length());
+        }
+
+        stream.write(1.706);
+        assertEquals("1.706", written());
+        stream.write(15.0);
+        assertEquals("15.0", written());
+        stream.write(0.9999996);
+        assertEquals("0.9999996", written());
+        stream.write(0.1 + 0.2);
+        assertEquals("0.30000000000000004", written());
+        stream.write(Double.NaN);
+        assertEquals("NaN", written());
+        stream.write(Double.POSITIVE_INFINITY);
+        assertEquals("+Inf", written());
+        stream.write(Double.NEGATIVE_INFINITY);
+        assertEquals("-Inf", written());
+        stream.write(1e-5);
+        assertEquals("1.0E-5", written());
+        stream.write(2e20);
+        assertEquals("2.0E20", written());
+    }
+
+    @Test
+    public void testRandomDoubles() {
+        Random r = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            double d = r.nextDouble() * Math.pow(10, r.nextInt(20) - 4);
+            stream.write(d);
+            String s = written();
+            assertEquals(s, d, Double.parseDouble(s), 0.0);
+            assertTrue(s, s.length() <= Double.toString(d).length());
+        }
+    }
+
+    @Test
+    public void testNumber() {
+        stream.write(Integer.valueOf(42));
+        assertEquals("42", written());
+        stream.write(Double.valueOf(4.2));
+        assertEquals("4.2", written());
+    }
+
+    @Test
+    public void testString() {
+        stream.write("jvm_memory_pool_bytes_used{pool=\"é\"} ");
+        assertEquals("jvm_memory_pool_bytes_used{pool=\"é\"} ", written());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.scurrilous.circe.checksum;
+
+/**
+ * CRC-32C combination, i.e. computing the checksum of the concatenation of two sequences
+ * from the checksums of each sequence and the length of the second one.
+ *
+ * <p>This is what allows independently computed checksums, e.g. of the components of a
+ * composite buffer, to be merged without going over the data again. The operator is
+ * computed in O(log(length)) by multiplying precomputed powers of x modulo the CRC-32C
+ * polynomial, as done by zlib's <code>crc32_combine</code>.
+ */
+final class Crc32cCombine {
+
+    // CRC-32C (Castagnoli) polynomial, reflected
+    private static final int POLY = 0x82F63B78;
+
+    // X2N_TABLE[k] = x^(2^k) mod p(x)
+    private static final int[] X2N_TABLE = new int[32];
+
+    static {
+        int p = 1 << 30; // x^1
+        X2N_TABLE[0] = p;
+        for (int n = 1; n < X2N_TABLE.length; n++) {
+            p = multModP(p, p);
+            X2N_TABLE[n] = p;
+        }
+    }
+
+    private Crc32cCombine() {}
+
+    /**
+     * Returns the checksum of the concatenation of two sequences.
+     *
+     * @param crc1 checksum of the first sequence
+     * @param crc2 checksum of the second sequence
+     * @param length2 length in bytes of the second sequence
+     * @return the checksum of the first sequence followed by the second one
+     */
+    static int combine(int crc1, int crc2, long length2) {
+        if (crc1 == 0 || length2 <= 0) {
+            // nothing to shift
+            return crc1 ^ crc2;
+        }
+        return multModP(x2nModP(length2, 3), crc1) ^ crc2;
+    }
+
+    /**
+     * Multiplies a(x) by b(x) modulo p(x), in the reflected bit order. <i>a</i> must not be 0.
+     */
+    private static int multModP(int a, int b) {
+        int m = 1 << 31;
+        int p = 0;
+        for (;;) {
+            if ((a & m) != 0) {
+                p ^= b;
+                if ((a & (m - 1)) == 0) {
+                    break;
+                }
+            }
+            m >>>= 1;
+            b = (b & 1) != 0 ? (b >>> 1) ^ POLY : b >>> 1;
+        }
+        return p;
+    }
+
+    /**
+     * Returns x^(n * 2^k) modulo p(x).
+     */
+    private static int x2nModP(long n, int k) {
+        int p = 1 << 31; // x^0
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                p = multModP(X2N_TABLE[k & 31], p);
+            }
+            n >>>= 1;
+            k++;
+        }
+        return p;
+    }
+}
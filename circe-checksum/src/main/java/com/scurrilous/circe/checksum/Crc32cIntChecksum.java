@@ -25,6 +25,7 @@ import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.Sse42Crc32C;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +40,9 @@ public class Crc32cIntChecksum {
         if (Sse42Crc32C.isSupported()) {
             CRC32C_HASH = new Crc32cSse42Provider().getIncrementalInt(CRC32C);
             log.info("SSE4.2 CRC32C provider initialized");
+        } else if (Java9IntHash.isSupported()) {
+            CRC32C_HASH = new Java9IntHash();
+            log.info("Failed to load Circe JNI library. Falling back to java.util.zip.CRC32C provider");
         } else {
             CRC32C_HASH = new StandardCrcProvider().getIncrementalInt(CRC32C);
             log.warn("Failed to load Circe JNI library. Falling back to Java based CRC32c provider");
@@ -58,11 +62,41 @@ public class Crc32cIntChecksum {
         } else if (payload.hasArray()) {
             return CRC32C_HASH.calculate(payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
-        } else {
+        } else if (payload.nioBufferCount() == 1) {
             return CRC32C_HASH.calculate(payload.nioBuffer());
+        } else {
+            return resumeChecksumByComponent(0, payload);
         }
     }
 
+    /**
+     * Computes crc32c checksum of the concatenation of several buffers, e.g. the header and the payload
+     * of an entry, without merging them into a single buffer.
+     *
+     * @param payloads
+     * @return
+     */
+    public static int computeChecksum(ByteBuf... payloads) {
+        int checksum = 0;
+        for (ByteBuf payload : payloads) {
+            checksum = resumeChecksum(checksum, payload);
+        }
+        return checksum;
+    }
+
+    /**
+     * Combines two checksums: returns the checksum of a sequence A followed by a sequence B, given the checksum
+     * of A, the checksum of B, and the length of B. This allows checksums of buffers computed independently,
+     * possibly by different threads, to be merged without reading the data again.
+     *
+     * @param previousChecksum : checksum of the first sequence
+     * @param checksum : checksum of the second sequence
+     * @param length : length in bytes of the second sequence
+     * @return
+     */
+    public static int combineChecksums(int previousChecksum, int checksum, long length) {
+        return Crc32cCombine.combine(previousChecksum, checksum, length);
+    }
 
     /**
      * Computes incremental checksum with input previousChecksum and input payload
@@ -78,9 +112,20 @@ public class Crc32cIntChecksum {
         } else if (payload.hasArray()) {
             return CRC32C_HASH.resume(previousChecksum, payload.array(), payload.arrayOffset() + payload.readerIndex(),
                 payload.readableBytes());
-        } else {
+        } else if (payload.nioBufferCount() == 1) {
             return CRC32C_HASH.resume(previousChecksum, payload.nioBuffer());
+        } else {
+            return resumeChecksumByComponent(previousChecksum, payload);
+        }
+    }
+
+    // nioBuffer() would copy the components of a composite buffer into a new one, go over them in place instead
+    private static int resumeChecksumByComponent(int previousChecksum, ByteBuf payload) {
+        int checksum = previousChecksum;
+        for (ByteBuffer buffer : payload.nioBuffers()) {
+            checksum = CRC32C_HASH.resume(checksum, buffer);
         }
+        return checksum;
     }
 
 }
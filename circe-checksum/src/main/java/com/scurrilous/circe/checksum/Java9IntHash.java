@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.scurrilous.circe.checksum;
+
+import com.scurrilous.circe.IncrementalIntHash;
+import com.scurrilous.circe.impl.AbstractIncrementalIntHash;
+import com.scurrilous.circe.params.CrcParameters;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C implementation based on <code>java.util.zip.CRC32C</code>, available since Java 9.
+ *
+ * <p>The JDK class is intrinsified by the JIT using the CPU CRC32 instructions, and it reads
+ * direct {@link ByteBuffer}s in place, so it is a good fallback when the circe JNI library
+ * cannot be loaded. Since a <code>CRC32C</code> instance cannot be seeded with a previous
+ * checksum, resuming computes the checksum of the new input alone and combines it with
+ * the previous one.
+ *
+ * <p>The class is looked up reflectively, so this module can still be compiled for Java 8.
+ */
+public final class Java9IntHash extends AbstractIncrementalIntHash implements IncrementalIntHash {
+
+    private static final MethodHandle NEW_CRC32C;
+    private static final MethodHandle UPDATE_BYTE_BUFFER;
+
+    static {
+        MethodHandle newCrc32c = null;
+        MethodHandle updateByteBuffer = null;
+        try {
+            Class<?> crc32cClass = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            newCrc32c = lookup.findConstructor(crc32cClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            updateByteBuffer = lookup.findVirtual(crc32cClass, "update",
+                    MethodType.methodType(void.class, ByteBuffer.class))
+                    .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            newCrc32c = null;
+            updateByteBuffer = null;
+        }
+        NEW_CRC32C = newCrc32c;
+        UPDATE_BYTE_BUFFER = updateByteBuffer;
+    }
+
+    /**
+     * Returns whether <code>java.util.zip.CRC32C</code> is available on this JVM.
+     *
+     * @return true if this class is supported, false if not
+     */
+    public static boolean isSupported() {
+        return NEW_CRC32C != null;
+    }
+
+    @Override
+    public String algorithm() {
+        return CrcParameters.CRC32C.algorithm();
+    }
+
+    @Override
+    public int length() {
+        return 4;
+    }
+
+    @Override
+    public int resume(int current, ByteBuffer input) {
+        final int length = input.remaining();
+        final Checksum checksum = newChecksum();
+        try {
+            UPDATE_BYTE_BUFFER.invokeExact(checksum, input);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to update CRC32C checksum", t);
+        }
+        return Crc32cCombine.combine(current, (int) checksum.getValue(), length);
+    }
+
+    @Override
+    protected int initial() {
+        return 0;
+    }
+
+    @Override
+    protected int resumeUnchecked(int current, byte[] input, int index, int length) {
+        final Checksum checksum = newChecksum();
+        checksum.update(input, index, length);
+        return Crc32cCombine.combine(current, (int) checksum.getValue(), length);
+    }
+
+    private static Checksum newChecksum() {
+        try {
+            return (Checksum) NEW_CRC32C.invokeExact();
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create CRC32C checksum", t);
+        }
+    }
+}
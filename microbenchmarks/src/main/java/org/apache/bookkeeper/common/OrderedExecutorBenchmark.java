@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -40,6 +41,7 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
 
 /**
  * Microbenchmarks for different executors providers.
@@ -56,6 +58,11 @@ public class OrderedExecutorBenchmark {
             "OrderedExecutor", () -> OrderedExecutor.newBuilder().numThreads(1).build(), //
             "OrderedScheduler", () -> OrderedScheduler.newSchedulerBuilder().numThreads(1).build());
 
+    private static Map<String, Supplier<OrderedExecutor>> orderedProviders = ImmutableMap.of( //
+            "OrderedExecutor", () -> OrderedExecutor.newBuilder().numThreads(4).build(), //
+            "OrderedExecutor-WorkStealing", () -> OrderedExecutor.newBuilder().numThreads(4)
+                    .workStealing(true).build());
+
     @State(Scope.Benchmark)
     public static class TestState {
         @Param({ "JDK-ThreadPool", "OrderedExecutor", "OrderedScheduler" })
@@ -79,4 +86,50 @@ public class OrderedExecutorBenchmark {
         s.executor.submit(() -> {
         }).get();
     }
+
+    /**
+     * State for the workload where most of the tasks are submitted for a few hot keys.
+     */
+    @State(Scope.Benchmark)
+    public static class SkewedKeysState {
+        @Param({ "OrderedExecutor", "OrderedExecutor-WorkStealing" })
+        private String executorName;
+
+        // percentage of the tasks submitted for the hot keys
+        @Param({ "20", "80" })
+        private int hotKeysPercent;
+
+        private static final int NUM_HOT_KEYS = 2;
+        private static final int NUM_KEYS = 1000;
+
+        private OrderedExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            executor = orderedProviders.get(executorName).get();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            executor.shutdown();
+        }
+
+        long nextKey() {
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            if (r.nextInt(100) < hotKeysPercent) {
+                // the hot keys are all hashed to the same thread
+                return r.nextInt(NUM_HOT_KEYS) * 4L;
+            } else {
+                return r.nextInt(NUM_KEYS);
+            }
+        }
+    }
+
+    @Benchmark
+    public void submitOrderedSkewedKeysAndWait(SkewedKeysState s) throws Exception {
+        s.executor.submitOrdered(s.nextKey(), () -> {
+            Blackhole.consumeCPU(1000);
+            return null;
+        }).get();
+    }
 }
@@ -21,12 +21,20 @@
 
 package org.apache.bookkeeper.proto.checksum;
 
+import com.scurrilous.circe.IncrementalIntHash;
+import com.scurrilous.circe.checksum.Crc32cIntChecksum;
+import com.scurrilous.circe.checksum.Crc32cSse42Provider;
+import com.scurrilous.circe.checksum.Java9IntHash;
+import com.scurrilous.circe.crc.Sse42Crc32C;
+import com.scurrilous.circe.crc.StandardCrcProvider;
+import com.scurrilous.circe.params.CrcParameters;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -76,6 +84,15 @@ public class DigestTypeBenchmark {
         CRC32_C,
     }
 
+    /**
+     * Crc32cProvider.
+     */
+    public enum Crc32cProvider {
+        SSE42,
+        JAVA9,
+        JAVA
+    }
+
     static byte[] randomBytes(int sz) {
         byte[] b = new byte[sz];
         ThreadLocalRandom.current().nextBytes(b);
@@ -180,4 +197,97 @@ public class DigestTypeBenchmark {
         dm.populateValueAndReset(state.digestBuf);
     }
 
+    /**
+     * Crc32cState.
+     */
+    @State(Scope.Thread)
+    public static class Crc32cState {
+
+        @Param
+        public BufferType bufferType;
+        @Param
+        public Crc32cProvider provider;
+        @Param({"1024", "4086", "8192", "16384", "65536"})
+        public int entrySize;
+
+        private IncrementalIntHash hash;
+        private ByteBuf buffer;
+
+        @Setup(Level.Trial)
+        public void doSetup() throws Exception {
+            switch (provider) {
+            case SSE42:
+                if (!Sse42Crc32C.isSupported()) {
+                    throw new UnsupportedOperationException("SSE4.2 CRC32C is not supported on this system");
+                }
+                hash = new Crc32cSse42Provider().getIncrementalInt(CrcParameters.CRC32C);
+                break;
+            case JAVA9:
+                if (!Java9IntHash.isSupported()) {
+                    throw new UnsupportedOperationException("java.util.zip.CRC32C is not available on this JVM");
+                }
+                hash = new Java9IntHash();
+                break;
+            case JAVA:
+                hash = new StandardCrcProvider().getIncrementalInt(CrcParameters.CRC32C);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown provider " + provider);
+            }
+
+            switch (bufferType) {
+            case ARRAY_BACKED:
+                buffer = Unpooled.wrappedBuffer(randomBytes(entrySize));
+                break;
+            case NOT_ARRAY_BACKED:
+                // header and payload of an entry, as sent by the client
+                final int headerSize = 32 + 4;
+                CompositeByteBuf composite = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, 2);
+                composite.addComponent(true, Unpooled.wrappedBuffer(randomBytes(headerSize)));
+                ByteBuf payload = Unpooled.directBuffer(entrySize - headerSize);
+                payload.writeBytes(randomBytes(entrySize - headerSize));
+                composite.addComponent(true, payload);
+                buffer = composite;
+                break;
+            case BYTE_BUF_DEFAULT_ALLOC:
+                buffer = ByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+                buffer.writeBytes(randomBytes(entrySize));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown buffer type " + bufferType);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void doTearDown() {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Compares the CRC32C providers on the same buffers, going over composite buffers component by
+     * component as {@link Crc32cIntChecksum} does.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 5, time = 12, timeUnit = TimeUnit.SECONDS)
+    @Threads(2)
+    @Fork(value = 1, warmups = 1)
+    public int crc32cProvider(Crc32cState state) {
+        final ByteBuf buff = state.buffer;
+        final IncrementalIntHash hash = state.hash;
+        if (buff.hasMemoryAddress() && hash.supportsUnsafe()) {
+            return hash.calculate(buff.memoryAddress() + buff.readerIndex(), buff.readableBytes());
+        } else if (buff.hasArray()) {
+            return hash.calculate(buff.array(), buff.arrayOffset() + buff.readerIndex(), buff.readableBytes());
+        }
+        int checksum = 0;
+        for (ByteBuffer nioBuffer : buff.nioBuffers()) {
+            checksum = hash.resume(checksum, nioBuffer);
+        }
+        return checksum;
+    }
+
 }
@@ -26,6 +26,7 @@ import java.util.function.Supplier;
 import org.apache.bookkeeper.stats.codahale.CodahaleMetricsProvider;
 import org.apache.bookkeeper.stats.codahale.FastCodahaleMetricsProvider;
 import org.apache.bookkeeper.stats.prometheus.PrometheusMetricsProvider;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -52,13 +53,21 @@ public class StatsLoggerBenchmark {
 
     static {
         providers.put("Prometheus", PrometheusMetricsProvider::new);
+        providers.put("Prometheus-Histogram", () -> {
+            PropertiesConfiguration conf = new PropertiesConfiguration();
+            conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_HTTP_ENABLE, false);
+            conf.setProperty(PrometheusMetricsProvider.PROMETHEUS_STATS_LATENCY_HISTOGRAM, true);
+            PrometheusMetricsProvider provider = new PrometheusMetricsProvider();
+            provider.start(conf);
+            return provider;
+        });
         providers.put("Codahale", CodahaleMetricsProvider::new);
         providers.put("FastCodahale", FastCodahaleMetricsProvider::new);
     }
 
     @State(Scope.Benchmark)
     public static class LoggerState {
-        @Param({ "Prometheus", "Codahale", "FastCodahale", "Twitter", "Ostrich" })
+        @Param({ "Prometheus", "Prometheus-Histogram", "Codahale", "FastCodahale", "Twitter", "Ostrich" })
         private String statsProvider;
 
         private Counter counter;
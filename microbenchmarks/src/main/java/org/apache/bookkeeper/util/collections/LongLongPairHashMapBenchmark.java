@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.util.collections;
+
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the heap and off-heap (long, long) -> (long, long) maps used to index the DbLedgerStorage caches.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class LongLongPairHashMapBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({ "heap", "off-heap" })
+        private String mapType;
+
+        @Param({ "1000000" })
+        private int entries;
+
+        private ConcurrentLongLongPairMap map;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            int concurrencyLevel = 2 * Runtime.getRuntime().availableProcessors();
+            map = "heap".equals(mapType)
+                    ? new ConcurrentLongLongPairHashMap(4096, concurrencyLevel)
+                    : new ConcurrentOffHeapLongLongPairHashMap(PooledByteBufAllocator.DEFAULT, 4096, concurrencyLevel);
+
+            // Same shape as a cache index: a few ledgers with sequential entry ids
+            for (int i = 0; i < entries; i++) {
+                map.put(i % 100, i / 100, i, 100);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            map.close();
+        }
+    }
+
+    @Benchmark
+    public LongPair get(TestState s) {
+        int i = ThreadLocalRandom.current().nextInt(s.entries);
+        return s.map.get(i % 100, i / 100);
+    }
+
+    @Benchmark
+    public boolean put(TestState s) {
+        int i = ThreadLocalRandom.current().nextInt(s.entries);
+        return s.map.put(i % 100, i / 100, i, 200);
+    }
+}